@@ -0,0 +1,34 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+dependencies {
+    // the benchmarks live in the packages of the classes they measure, so package-private types are reachable
+    jmh(project(":extensions:dataplane-public-endpoint"))
+    jmh(project(":extensions:dcp-patch"))
+    jmh(project(":extensions:trusted-issuer-api"))
+
+    jmh(libs.edc.spi.core)
+    jmh(libs.edc.spi.identity.trust)
+    jmh("org.eclipse.edc:data-plane-spi:${libs.versions.edc.get()}")
+    jmh("org.eclipse.edc:verifiable-credentials-spi:${libs.versions.edc.get()}")
+    jmh("org.eclipse.edc:request-policy-context-spi:${libs.versions.edc.get()}")
+    jmh("org.eclipse.edc:jersey-core:${libs.versions.edc.get()}")
+    jmh("jakarta.ws.rs:jakarta.ws.rs-api:4.0.0")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    // machine-readable results, to compare runs between commits:
+    // ./gradlew :benchmarks:jmh && cp benchmarks/build/results/jmh/results.json <somewhere>
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    // narrow a run down with e.g. ./gradlew :benchmarks:jmh -Pjmh.includes=ScopeMapping
+    providers.gradleProperty("jmh.includes").orNull?.let { includes.add(it) }
+    failOnError.set(true)
+}
+
+edcBuild {
+    publish.set(false)
+}
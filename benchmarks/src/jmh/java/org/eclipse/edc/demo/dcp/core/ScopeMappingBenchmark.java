@@ -0,0 +1,62 @@
+package org.eclipse.edc.demo.dcp.core;
+
+import org.eclipse.edc.policy.context.request.spi.RequestCatalogPolicyContext;
+import org.eclipse.edc.policy.context.request.spi.RequestPolicyContext;
+import org.eclipse.edc.policy.model.Operator;
+import org.eclipse.edc.policy.model.Policy;
+import org.eclipse.edc.spi.iam.RequestScope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the DCP scope hooks that run on every catalog, negotiation and transfer request: the default scope
+ * mapping and the {@code DataAccess.*} constraint extractor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScopeMappingBenchmark {
+
+    @Param({ "DataAccess.level", "MembershipCredential" })
+    public String leftOperand;
+
+    private DefaultScopeMappingFunction scopeMapping;
+    private DataAccessCredentialScopeExtractor scopeExtractor;
+    private Policy policy;
+    private RequestPolicyContext context;
+
+    @Setup
+    public void setUp() {
+        scopeMapping = new DefaultScopeMappingFunction(Set.of(
+                "org.eclipse.edc.vc.type:MembershipCredential:read",
+                "org.eclipse.edc.vc.type:DataProcessorCredential:read"));
+        scopeExtractor = new DataAccessCredentialScopeExtractor();
+        policy = Policy.Builder.newInstance().build();
+        context = new RequestCatalogPolicyContext(null, RequestScope.Builder.newInstance());
+    }
+
+    @Benchmark
+    public Boolean defaultScopeMapping() {
+        return scopeMapping.apply(policy, context);
+    }
+
+    @Benchmark
+    public Set<String> extractScopes() {
+        return scopeExtractor.extractScopes(leftOperand, Operator.EQ, "processing", context);
+    }
+}
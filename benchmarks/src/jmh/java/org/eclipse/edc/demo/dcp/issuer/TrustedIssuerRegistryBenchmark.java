@@ -0,0 +1,116 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import org.eclipse.edc.iam.verifiablecredentials.spi.model.Issuer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link DynamicTrustedIssuerRegistry#getSupportedTypes(Issuer)}, which every credential validation
+ * calls, on its own and while the management API keeps updating issuers, and the time to fill an empty registry
+ * one registration at a time. Persistence is not configured, so writes measure the in-memory update only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrustedIssuerRegistryBenchmark {
+
+    @Param({ "10", "1000" })
+    public int issuerCount;
+
+    private DynamicTrustedIssuerRegistry registry;
+    private Issuer[] issuers;
+    // only touched by the single writer thread
+    private long writes;
+
+    @Setup
+    public void setUp() {
+        registry = new DynamicTrustedIssuerRegistry();
+        issuers = new Issuer[issuerCount];
+        for (var i = 0; i < issuerCount; i++) {
+            issuers[i] = new Issuer("did:web:issuer-" + i, Map.of());
+            registry.registerWithMetadata(issuers[i].id(), "Issuer " + i, "Organization " + i % 10, null, null, null);
+            registry.register(issuers[i], "MembershipCredential");
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Set<String> getSupportedTypes() {
+        return registry.getSupportedTypes(randomIssuer());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(7)
+    public Set<String> getSupportedTypesWhileWriting() {
+        return registry.getSupportedTypes(randomIssuer());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void register() {
+        // new metadata every time, so every call publishes a change; registering a type the issuer already has would not
+        var issuer = randomIssuer();
+        var change = writes++;
+        registry.registerWithMetadata(issuer.id(), "Issuer " + change, "Organization " + change % 10, null, null, null);
+    }
+
+    /**
+     * Registers {@code registrations} issuers with metadata and a credential type into an empty registry, as a
+     * deployment seeding its issuers through the management API does; every registration publishes a snapshot.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 20)
+    public DynamicTrustedIssuerRegistry registerAll(EmptyRegistry empty) {
+        var target = empty.registry;
+        for (var i = 0; i < empty.registrations; i++) {
+            var did = "did:web:issuer-" + i;
+            target.registerWithMetadata(did, "Issuer " + i, "Organization " + i % 10, null, null, null);
+            target.register(new Issuer(did, Map.of()), "MembershipCredential");
+        }
+        return target;
+    }
+
+    @State(Scope.Thread)
+    public static class EmptyRegistry {
+
+        @Param({ "4000" })
+        public int registrations;
+
+        private DynamicTrustedIssuerRegistry registry;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            registry = new DynamicTrustedIssuerRegistry();
+        }
+    }
+
+    private Issuer randomIssuer() {
+        return issuers[ThreadLocalRandom.current().nextInt(issuers.length)];
+    }
+}
@@ -0,0 +1,193 @@
+package org.eclipse.edc.extension;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriInfo;
+import org.eclipse.edc.connector.dataplane.spi.iam.DataPlaneAuthorizationService;
+import org.eclipse.edc.connector.dataplane.spi.store.AccessTokenDataStore;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.result.Result;
+import org.eclipse.edc.spi.types.domain.DataAddress;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * End-to-end cost of one proxied {@code GET} through {@link DataPlanePublicApiController}: token authorization (a
+ * cache hit after the first call), upstream exchange against a local stub and streaming the body to the client.
+ * <p>
+ * The JAX-RS context objects and EDC services are in-memory stand-ins, so the measurement covers the proxy itself
+ * and the loopback transfer but not Jetty or Jersey's request dispatching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DataPlanePublicApiBenchmark {
+
+    @Param({ "1024", "1048576", "104857600" })
+    public int payloadSize;
+
+    private HttpServer upstream;
+    private DataPlanePublicApiController controller;
+    private HttpHeaders headers;
+    private UriInfo uriInfo;
+    private String authorization;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        var payload = new byte[payloadSize];
+        for (var i = 0; i < payload.length; i++) {
+            payload[i] = (byte) ('a' + i % 26);
+        }
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        upstream.setExecutor(Executors.newCachedThreadPool());
+        upstream.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, payload.length);
+            try (var body = exchange.getResponseBody()) {
+                body.write(payload);
+            }
+        });
+        upstream.start();
+
+        var dataAddress = DataAddress.Builder.newInstance()
+                .type("HttpData")
+                .property("baseUrl", "http://127.0.0.1:" + upstream.getAddress().getPort())
+                .build();
+        var authorizationService = stub(DataPlaneAuthorizationService.class, (method, args) ->
+                method.equals("authorize") ? Result.success(dataAddress) : null);
+        var accessTokenDataStore = stub(AccessTokenDataStore.class, (method, args) -> null);
+        var monitor = stub(Monitor.class, (method, args) -> null);
+
+        var authorizer = new TokenAuthorizer(authorizationService, accessTokenDataStore, null, null, monitor, 1_000, Duration.ofMinutes(5), false);
+        var upstreamClient = new UpstreamClient(
+                new UpstreamClientConfiguration(Duration.ofSeconds(5), Duration.ofSeconds(30), false, 64,
+                        Duration.ofSeconds(5), 0, false, Set.of()),
+                new ResilienceConfiguration(0.5, 20, 10, Duration.ofSeconds(10), 1, false, 3,
+                        Duration.ofSeconds(1), false, Duration.ofMillis(50)));
+        var executor = Executors.newCachedThreadPool(ProxyThreads.platform("benchmark"));
+        var liveStreams = new LiveStreams();
+        controller = DataPlanePublicApiController.Builder.newInstance()
+                .authorizer(authorizer)
+                .upstreamClient(upstreamClient)
+                .tracer(new ProxyTracer(0, null))
+                .batchProcessor(new BatchProcessor(authorizer, null, upstreamClient, null, executor,
+                        new BatchConfiguration(100, 8, 1024 * 1024, 10 * 1024 * 1024), monitor))
+                .liveStreams(liveStreams)
+                .webSocketRelay(new WebSocketRelay(null, liveStreams, executor, Duration.ofSeconds(5), Duration.ofSeconds(5), monitor))
+                .monitor(monitor)
+                .build();
+
+        headers = stub(HttpHeaders.class, (method, args) -> null);
+        var requestUri = URI.create("http://localhost/public/payload");
+        uriInfo = stub(UriInfo.class, (method, args) -> method.equals("getRequestUri") ? requestUri : null);
+        authorization = "Bearer " + token();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        upstream.stop(0);
+    }
+
+    @Benchmark
+    public long proxyGet() throws IOException {
+        var resumed = new AtomicReference<Object>();
+        var asyncResponse = stub(AsyncResponse.class, (method, args) -> {
+            if (method.equals("resume")) {
+                resumed.set(args[0]);
+                return true;
+            }
+            return null;
+        });
+        controller.getSubPath(authorization, "payload", headers, uriInfo, asyncResponse);
+
+        if (!(resumed.get() instanceof Response response) || response.getStatus() != 200) {
+            throw new IllegalStateException("Unexpected proxy outcome: " + resumed.get());
+        }
+        var sink = new CountingOutputStream();
+        if (response.getEntity() instanceof StreamingOutput streamingOutput) {
+            streamingOutput.write(sink);
+        }
+        return sink.count;
+    }
+
+    /**
+     * An unsigned token carrying the {@code jti} and {@code exp} claims, so authorization results are cached the way
+     * they are for real EDRs.
+     */
+    private static String token() {
+        var encoder = Base64.getUrlEncoder().withoutPadding();
+        var header = encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8));
+        var claims = encoder.encodeToString("{\"jti\":\"benchmark\",\"exp\":%d}"
+                .formatted(Instant.now().plus(Duration.ofHours(1)).getEpochSecond())
+                .getBytes(StandardCharsets.UTF_8));
+        return header + "." + claims + ".signature";
+    }
+
+    /**
+     * Implements an interface with a single handler, which is enough for the few methods the proxy calls.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, StubHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{ type }, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName() + " stub";
+                };
+            }
+            return handler.handle(method.getName(), args);
+        });
+    }
+
+    @FunctionalInterface
+    private interface StubHandler {
+        Object handle(String method, Object[] args);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -7,8 +7,24 @@ dependencies {
     implementation("org.eclipse.edc:data-plane-spi:${libs.versions.edc.get()}")
     implementation("org.eclipse.edc:web-spi:${libs.versions.edc.get()}")
     implementation("org.eclipse.edc:data-plane-http-spi:${libs.versions.edc.get()}")
+    implementation("org.eclipse.edc:keys-spi:${libs.versions.edc.get()}")
     implementation("org.eclipse.edc:jersey-core:${libs.versions.edc.get()}")
     implementation("jakarta.ws.rs:jakarta.ws.rs-api:4.0.0")
+    // provided by EDC's Jetty (ee10, Servlet 6.0) at runtime, never bundled with a second copy
+    compileOnly("jakarta.servlet:jakarta.servlet-api:6.0.0")
+    implementation(libs.caffeine)
+
+    testImplementation(libs.edc.junit)
+    testImplementation(libs.junit.jupiter)
+    // the WebSocket tests stand in for the container, compileOnly dependencies are not on the test classpath
+    testImplementation("jakarta.servlet:jakarta.servlet-api:6.0.0")
+    testRuntimeOnly(libs.junit.platform.launcher)
+}
+
+tasks.test {
+    useJUnitPlatform()
+    // far below the multi-GB payloads the streaming tests move, which only pass if bodies are never held whole
+    maxHeapSize = "256m"
 }
 
 edcBuild {
@@ -0,0 +1,322 @@
+package org.eclipse.edc.extension;
+
+import org.eclipse.edc.spi.monitor.Monitor;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured access log of the public proxy, one JSON line per request.
+ * <p>
+ * Request threads never format or write anything: they claim a slot of a pre-allocated ring buffer with a single CAS
+ * and copy references and primitives into its fixed fields. A daemon writer thread drains the ring in batches and
+ * writes the lines to a file or stdout, flushing once per batch. When the ring is full the record is dropped and
+ * counted, so a slow disk can never hold up a request.
+ * <p>
+ * The ring is a bounded multi-producer queue with one sequence number per slot: a producer owns the slot once its
+ * CAS on the tail succeeds and publishes it by advancing the slot's sequence, which the writer waits for.
+ */
+class AccessLog implements AutoCloseable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int WRITE_CHUNK = 32 * 1024;
+
+    private final AccessLogConfiguration configuration;
+    private final Monitor monitor;
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+    private final OutputStream output;
+    private final StringBuilder lines = new StringBuilder(WRITE_CHUNK + 1024);
+    private final Thread writer;
+    private volatile long head;
+    private long formattedSecond = Long.MIN_VALUE;
+    private String formattedSecondPrefix;
+    private int buffered;
+    private volatile boolean running = true;
+
+    AccessLog(AccessLogConfiguration configuration, Monitor monitor) throws IOException {
+        this.configuration = configuration;
+        this.monitor = monitor;
+        var capacity = Integer.highestOneBit(Math.max(2, configuration.capacity() - 1)) << 1;
+        this.slots = new Slot[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (var i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.output = configuration.file() != null
+                ? new BufferedOutputStream(Files.newOutputStream(configuration.file(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), 64 * 1024)
+                : System.out;
+        this.writer = ProxyThreads.platform("public-proxy-access-log").newThread(this::run);
+    }
+
+    void start() {
+        writer.start();
+    }
+
+    /**
+     * Records a finished request. Never blocks.
+     *
+     * @param path the requested sub-path, without the query string
+     */
+    void log(ProxyTrace trace, String path) {
+        var warning = trace.statusCode() >= 400;
+        if (!warning) {
+            if (configuration.level() == AccessLogConfiguration.Level.WARNING) {
+                return;
+            }
+            if (configuration.sampleRatio() < 1 && ThreadLocalRandom.current().nextDouble() >= configuration.sampleRatio()) {
+                sampledOut.increment();
+                return;
+            }
+        }
+
+        var position = tail.get();
+        while (true) {
+            var index = (int) (position & mask);
+            var difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // the writer has not yet drained the record a full lap ago
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+
+        var index = (int) (position & mask);
+        var slot = slots[index];
+        slot.startEpochNanos = trace.epochNanos(trace.startNanos());
+        slot.durationNanos = trace.durationNanos();
+        slot.warning = warning;
+        slot.method = trace.method();
+        slot.path = path;
+        slot.status = trace.statusCode();
+        slot.origin = trace.origin();
+        slot.traceId = trace.traceId();
+        slot.error = trace.error();
+        slot.errorDetail = trace.errorDetail();
+        sequences.setRelease(index, position + 1);
+    }
+
+    Map<String, Object> stats() {
+        var stats = new LinkedHashMap<String, Object>();
+        stats.put("level", configuration.level().name().toLowerCase());
+        stats.put("sampleRatio", configuration.sampleRatio());
+        stats.put("capacity", slots.length);
+        stats.put("pending", Math.max(0, tail.get() - head));
+        stats.put("written", written.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("sampledOut", sampledOut.sum());
+        stats.put("writeErrors", writeErrors.sum());
+        return stats;
+    }
+
+    /**
+     * Stops the writer after it has drained what was recorded so far.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (output != System.out) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                monitor.warning("Public API: failed to close the access log: " + e.getMessage());
+            }
+        }
+    }
+
+    private void run() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Writes every published record and flushes once.
+     *
+     * @return the number of records drained
+     */
+    private int drain() {
+        var count = 0;
+        while (true) {
+            var index = (int) (head & mask);
+            if (sequences.getAcquire(index) != head + 1) {
+                break;
+            }
+            format(slots[index]);
+            slots[index].clear();
+            sequences.setRelease(index, head + slots.length);
+            head++;
+            count++;
+            if (lines.length() >= WRITE_CHUNK) {
+                write();
+            }
+        }
+        if (count > 0) {
+            write();
+            try {
+                output.flush();
+            } catch (IOException e) {
+                writeErrors.increment();
+            }
+        }
+        return count;
+    }
+
+    private void format(Slot slot) {
+        lines.append("{\"time\":\"");
+        timestamp(slot.startEpochNanos);
+        lines.append("\",\"level\":\"").append(slot.warning ? "WARNING" : "INFO")
+                .append("\",\"method\":\"").append(slot.method)
+                .append("\",\"path\":\"/");
+        escaped(slot.path);
+        lines.append('"');
+        lines.append(",\"status\":").append(slot.status)
+                .append(",\"durationMs\":");
+        var micros = slot.durationNanos / 1_000;
+        lines.append(micros / 1_000).append('.');
+        padded(micros % 1_000, 3);
+        lines.append(",\"origin\":");
+        string(slot.origin);
+        lines.append(",\"traceId\":\"").append(slot.traceId).append('"');
+        if (slot.error != null) {
+            lines.append(",\"error\":\"").append(slot.error).append('"');
+        }
+        if (slot.errorDetail != null) {
+            lines.append(",\"detail\":");
+            string(slot.errorDetail);
+        }
+        lines.append("}\n");
+        buffered++;
+    }
+
+    /**
+     * Appends an ISO-8601 UTC timestamp with microsecond precision; the date and time of day are formatted once per second.
+     */
+    private void timestamp(long epochNanos) {
+        var second = Math.floorDiv(epochNanos, 1_000_000_000L);
+        if (second != formattedSecond) {
+            formattedSecond = second;
+            formattedSecondPrefix = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC));
+        }
+        lines.append(formattedSecondPrefix).append('.');
+        var micros = Math.floorMod(epochNanos, 1_000_000_000L) / 1_000;
+        padded(micros, 6);
+        lines.append('Z');
+    }
+
+    /**
+     * Appends a non-negative value left-padded with zeros to the given number of digits.
+     */
+    private void padded(long value, int digits) {
+        var length = value == 0 ? 1 : (int) Math.log10(value) + 1;
+        for (var i = length; i < digits; i++) {
+            lines.append('0');
+        }
+        lines.append(value);
+    }
+
+    private void write() {
+        try {
+            output.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+            written.add(buffered);
+        } catch (IOException e) {
+            writeErrors.increment();
+        }
+        lines.setLength(0);
+        buffered = 0;
+    }
+
+    /**
+     * Appends a JSON string literal.
+     */
+    private void string(String value) {
+        lines.append('"');
+        escaped(value);
+        lines.append('"');
+    }
+
+    private void escaped(String value) {
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '"' -> lines.append("\\\"");
+                case '\\' -> lines.append("\\\\");
+                case '\n' -> lines.append("\\n");
+                case '\r' -> lines.append("\\r");
+                case '\t' -> lines.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        lines.append("\\u%04x".formatted((int) c));
+                    } else {
+                        lines.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fixed layout of one record, reused for every lap of the ring.
+     */
+    private static final class Slot {
+        long startEpochNanos;
+        long durationNanos;
+        boolean warning;
+        int status;
+        String method;
+        String path;
+        String origin;
+        String traceId;
+        String error;
+        String errorDetail;
+
+        void clear() {
+            method = null;
+            path = null;
+            origin = null;
+            traceId = null;
+            error = null;
+            errorDetail = null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.eclipse.edc.extension;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of the {@link AccessLog}.
+ *
+ * @param level       least severe records that are written
+ * @param sampleRatio fraction of {@link Level#INFO} records that are written, {@link Level#WARNING} records are never sampled
+ * @param capacity    number of records the ring buffer holds, rounded up to a power of two
+ * @param file        file the JSON lines are appended to, {@code null} to write them to stdout
+ */
+record AccessLogConfiguration(Level level, double sampleRatio, int capacity, Path file) {
+
+    enum Level {
+        /**
+         * Every request, subject to sampling.
+         */
+        INFO,
+        /**
+         * Requests answered with a client or server error status.
+         */
+        WARNING
+    }
+}
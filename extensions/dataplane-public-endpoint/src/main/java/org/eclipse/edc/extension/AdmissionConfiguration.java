@@ -0,0 +1,39 @@
+package org.eclipse.edc.extension;
+
+/**
+ * Settings of the {@link AdmissionController}.
+ *
+ * @param keyType       attribute of the authorized grant the limits are keyed by
+ * @param ratePerSecond sustained requests per second admitted per key, {@code 0} disables rate limiting
+ * @param burst         requests per key that may be admitted at once on top of the sustained rate
+ * @param maxConcurrent requests per key that may be in flight at the same time, {@code 0} disables the bulkhead
+ */
+record AdmissionConfiguration(KeyType keyType, double ratePerSecond, int burst, int maxConcurrent) {
+
+    enum KeyType {
+        AGREEMENT,
+        PARTICIPANT,
+        ASSET;
+
+        /**
+         * The key the limits of the grant are kept under, {@code null} if the grant cannot be limited.
+         */
+        String keyOf(AuthorizedGrant grant) {
+            var key = switch (this) {
+                case AGREEMENT -> grant.agreementId();
+                case PARTICIPANT -> grant.participantId();
+                case ASSET -> grant.assetId();
+            };
+            // grants without the attribute are limited on their own, never together with other unknown grants; without
+            // a token id there is nothing to tell their requests apart by, so they are not limited at all
+            if (key != null) {
+                return key;
+            }
+            return grant.tokenId() != null ? "token:" + grant.tokenId() : null;
+        }
+    }
+
+    boolean enabled() {
+        return ratePerSecond > 0 || maxConcurrent > 0;
+    }
+}
@@ -0,0 +1,206 @@
+package org.eclipse.edc.extension;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-key rate limits and concurrency bulkheads applied to authorized requests of the public proxy.
+ * <p>
+ * Each key (agreement, participant or asset, see {@link AdmissionConfiguration.KeyType}) owns a token bucket and a
+ * bulkhead. The bucket is implemented as a generic cell rate algorithm on a single {@link AtomicLong} holding the
+ * theoretical arrival time of the next request, the bulkhead as an {@link AtomicInteger}; both are updated with
+ * compare-and-set loops, so admission never takes a lock. Keys that have been idle for a while are dropped by
+ * {@link #evictIdle()}; a request that looked up a limiter while it was being dropped notices it has been retired and
+ * looks its key up again, so that it is never admitted against state no later request of its key will see.
+ */
+class AdmissionController {
+
+    private static final long IDLE_NANOS = Duration.ofMinutes(5).toNanos();
+
+    private final AdmissionConfiguration configuration;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder concurrencyLimited = new LongAdder();
+    private final LongAdder unkeyed = new LongAdder();
+
+    AdmissionController(AdmissionConfiguration configuration) {
+        this.configuration = configuration;
+        this.emissionIntervalNanos = configuration.ratePerSecond() > 0 ? (long) (1_000_000_000L / configuration.ratePerSecond()) : 0;
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(0, configuration.burst() - 1);
+    }
+
+    /**
+     * Tries to admit a request of the given grant. An admitted request holds a bulkhead slot until its
+     * {@link Admission#release()} is called. Grants without a key to limit them by are always admitted.
+     */
+    Admission admit(AuthorizedGrant grant) {
+        var limitKey = configuration.keyType().keyOf(grant);
+        if (limitKey == null) {
+            unkeyed.increment();
+            return Admission.admitted(null);
+        }
+        var now = System.nanoTime();
+        Limiter limiter;
+        do {
+            limiter = limiters.computeIfAbsent(limitKey, key -> new Limiter());
+            limiter.lastUsed = now;
+        } while (limiter.retired);
+
+        if (configuration.maxConcurrent() > 0 && !limiter.tryEnter()) {
+            concurrencyLimited.increment();
+            return Admission.rejected(Duration.ofSeconds(1));
+        }
+        if (emissionIntervalNanos > 0) {
+            var wait = limiter.tryConsume(now);
+            if (wait > 0) {
+                limiter.exit();
+                rateLimited.increment();
+                return Admission.rejected(Duration.ofNanos(wait));
+            }
+        }
+        admitted.increment();
+        return configuration.maxConcurrent() > 0 ? Admission.admitted(limiter) : Admission.admitted(null);
+    }
+
+    /**
+     * Drops the state of keys that have neither requests in flight nor been used recently.
+     */
+    void evictIdle() {
+        var threshold = System.nanoTime() - IDLE_NANOS;
+        for (var key : limiters.keySet()) {
+            limiters.computeIfPresent(key, (k, limiter) -> limiter.retire(threshold) ? null : limiter);
+        }
+    }
+
+    Map<String, Object> stats() {
+        var stats = new LinkedHashMap<String, Object>();
+        stats.put("keyType", configuration.keyType().name().toLowerCase());
+        stats.put("ratePerSecond", configuration.ratePerSecond());
+        stats.put("burst", configuration.burst());
+        stats.put("maxConcurrent", configuration.maxConcurrent());
+        stats.put("activeKeys", limiters.size());
+        stats.put("admitted", admitted.sum());
+        stats.put("unkeyed", unkeyed.sum());
+        stats.put("rateLimited", rateLimited.sum());
+        stats.put("concurrencyLimited", concurrencyLimited.sum());
+        return stats;
+    }
+
+    /**
+     * Outcome of an admission attempt.
+     */
+    static final class Admission {
+        private final boolean admitted;
+        private final Duration retryAfter;
+        private final Limiter limiter;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Admission(boolean admitted, Duration retryAfter, Limiter limiter) {
+            this.admitted = admitted;
+            this.retryAfter = retryAfter;
+            this.limiter = limiter;
+        }
+
+        static Admission admitted(Limiter limiter) {
+            return new Admission(true, Duration.ZERO, limiter);
+        }
+
+        static Admission rejected(Duration retryAfter) {
+            return new Admission(false, retryAfter, null);
+        }
+
+        boolean isAdmitted() {
+            return admitted;
+        }
+
+        /**
+         * Time after which a rejected request may be retried, rounded up to whole seconds for {@code Retry-After}.
+         */
+        long retryAfterSeconds() {
+            return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        }
+
+        /**
+         * Frees the bulkhead slot of an admitted request; calling it more than once has no effect.
+         */
+        void release() {
+            if (limiter != null && released.compareAndSet(false, true)) {
+                limiter.exit();
+            }
+        }
+    }
+
+    private class Limiter {
+        private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile long lastUsed = System.nanoTime();
+        private volatile boolean retired;
+
+        /**
+         * Retires the limiter if it has neither requests in flight nor been used since the threshold. Idleness is
+         * checked again after the mark is set, so a concurrent {@link #admit} either sees the mark and retries, or
+         * has its use seen here and keeps the limiter.
+         */
+        boolean retire(long threshold) {
+            if (!idleSince(threshold)) {
+                return false;
+            }
+            retired = true;
+            if (idleSince(threshold)) {
+                return true;
+            }
+            retired = false;
+            return false;
+        }
+
+        private boolean idleSince(long threshold) {
+            return inFlight.get() == 0 && lastUsed - threshold < 0;
+        }
+
+        /**
+         * Consumes one token if the bucket has one.
+         *
+         * @return {@code 0} if the request conforms, otherwise the nanoseconds until it would
+         */
+        long tryConsume(long now) {
+            while (true) {
+                var current = theoreticalArrival.get();
+                var arrival = current - now < 0 ? now : current;
+                var wait = arrival - burstToleranceNanos - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (theoreticalArrival.compareAndSet(current, arrival + emissionIntervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+
+        boolean tryEnter() {
+            while (true) {
+                var current = inFlight.get();
+                if (current >= configuration.maxConcurrent()) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void exit() {
+            if (configuration.maxConcurrent() > 0) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
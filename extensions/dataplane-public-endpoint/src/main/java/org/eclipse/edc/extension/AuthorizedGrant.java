@@ -0,0 +1,18 @@
+package org.eclipse.edc.extension;
+
+import org.eclipse.edc.spi.types.domain.DataAddress;
+
+/**
+ * Outcome of a successful EDR token authorization.
+ *
+ * @param dataAddress   the source {@link DataAddress} the token grants access to
+ * @param tokenId       the {@code jti} claim of the token, {@code null} if the token carries none
+ * @param expiresAt     the {@code exp} claim of the token in epoch milliseconds, {@code 0} if the token carries none
+ * @param processId     the transfer process the EDR was issued for, if known
+ * @param agreementId   the contract agreement the EDR was issued under, if known
+ * @param assetId       the asset the EDR grants access to, if known
+ * @param participantId the consumer participant the EDR was issued to, if known
+ */
+record AuthorizedGrant(DataAddress dataAddress, String tokenId, long expiresAt,
+                       String processId, String agreementId, String assetId, String participantId) {
+}
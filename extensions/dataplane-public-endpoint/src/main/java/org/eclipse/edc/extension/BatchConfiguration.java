@@ -0,0 +1,12 @@
+package org.eclipse.edc.extension;
+
+/**
+ * Settings of the {@link BatchProcessor}.
+ *
+ * @param maxItems     largest number of sub-requests accepted in one batch
+ * @param concurrency  number of sub-requests of one batch that run against the upstream at the same time
+ * @param itemMaxBytes largest sub-request response body that is returned, larger ones fail with 502
+ * @param maxBytes     largest batch request body that is read, larger ones are rejected with 413
+ */
+record BatchConfiguration(int maxItems, int concurrency, long itemMaxBytes, long maxBytes) {
+}
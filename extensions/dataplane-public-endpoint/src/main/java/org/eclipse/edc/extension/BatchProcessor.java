@@ -0,0 +1,445 @@
+package org.eclipse.edc.extension;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.eclipse.edc.spi.monitor.Monitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the sub-requests of a {@code POST /$batch} call against the upstream of the authorized data address.
+ * <p>
+ * A batch is a JSON object with a {@code requests} array; each entry has an {@code id}, a {@code method}, a
+ * {@code path} relative to the data address, and optionally a {@code query} (an object of parameters, or a query
+ * string), allowlisted {@code headers} and a {@code body} (or {@code bodyBase64}). The token is authorized once per
+ * method used, then up to {@link BatchConfiguration#concurrency()} entries run at a time. Results are streamed back
+ * as NDJSON in completion order, one line per entry carrying its {@code id}, {@code status}, {@code headers} and
+ * {@code body} (or {@code bodyBase64} for non-textual content). Request limits apply to every entry, and entries of a
+ * data address with several upstream replicas are spread over them one by one.
+ * <p>
+ * Entries cannot leave the data address: paths with dot segments, {@code ?} or {@code #}, also percent-encoded, are
+ * answered with {@code 400} without reaching the upstream, query parameters are percent-encoded by the proxy, and
+ * the resolved URL must still lie below the base URL.
+ */
+class BatchProcessor {
+
+    private static final Set<String> METHODS = Set.of("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE");
+
+    private final TokenAuthorizer authorizer;
+    private final AdmissionController admissionController;
+    private final UpstreamClient upstreamClient;
+    private final ReplicaBalancer balancer;
+    private final Executor executor;
+    private final BatchConfiguration configuration;
+    private final Monitor monitor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Creates the processor.
+     *
+     * @param admissionController per-key limits applied to every entry, {@code null} to admit all
+     * @param balancer            picks the replica of each entry, {@code null} to always use the first one
+     * @param executor            executor the entries run on
+     */
+    BatchProcessor(TokenAuthorizer authorizer, AdmissionController admissionController, UpstreamClient upstreamClient,
+                   ReplicaBalancer balancer, Executor executor, BatchConfiguration configuration, Monitor monitor) {
+        this.authorizer = authorizer;
+        this.admissionController = admissionController;
+        this.upstreamClient = upstreamClient;
+        this.balancer = balancer;
+        this.executor = executor;
+        this.configuration = configuration;
+        this.monitor = monitor;
+    }
+
+    Response process(String token, InputStream body) {
+        List<Item> items;
+        try {
+            // the whole batch is parsed in memory, so its size is capped while it is read
+            items = parse(body != null ? new BoundedInputStream(body, configuration.maxBytes()) : null);
+        } catch (BoundedInputStream.LimitExceededException e) {
+            return error(Response.Status.REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+        } catch (IllegalArgumentException | IOException e) {
+            return error(Response.Status.BAD_REQUEST, "Invalid batch: " + e.getMessage());
+        }
+
+        var grants = new HashMap<String, AuthorizedGrant>();
+        for (var item : items) {
+            if (!grants.containsKey(item.method())) {
+                var result = authorizer.authorize(token, item.method());
+                if (result.failed()) {
+                    monitor.warning("Public API: batch authorization failed: " + result.getFailureDetail());
+                    return error(Response.Status.FORBIDDEN, result.getFailureDetail());
+                }
+                grants.put(item.method(), result.getContent());
+            }
+        }
+
+        var baseUrls = ReplicaBalancer.baseUrls(grants.values().iterator().next().dataAddress());
+        if (baseUrls.isEmpty()) {
+            monitor.warning("Public API: no baseUrl in DataAddress");
+            return error(Response.Status.BAD_GATEWAY, "No source URL configured for this data address");
+        }
+
+        monitor.info("Public API: running batch of %d requests against %s".formatted(items.size(), String.join(", ", baseUrls)));
+        var batch = new Batch(items, grants, baseUrls);
+        try {
+            batch.start();
+        } catch (RejectedExecutionException e) {
+            return error(Response.Status.SERVICE_UNAVAILABLE, "Data plane is shutting down");
+        }
+        return Response.ok(batch).header("Content-Type", "application/x-ndjson").build();
+    }
+
+    private List<Item> parse(InputStream body) throws IOException {
+        if (body == null) {
+            throw new IllegalArgumentException("missing body");
+        }
+        JsonNode root;
+        try (body) {
+            root = objectMapper.readTree(body);
+        }
+        var requests = root != null ? root.get("requests") : null;
+        if (requests == null || !requests.isArray() || requests.isEmpty()) {
+            throw new IllegalArgumentException("'requests' must be a non-empty array");
+        }
+        if (requests.size() > configuration.maxItems()) {
+            throw new IllegalArgumentException("at most %d requests are allowed".formatted(configuration.maxItems()));
+        }
+        var items = new ArrayList<Item>();
+        for (var index = 0; index < requests.size(); index++) {
+            var request = requests.get(index);
+            var id = request.hasNonNull("id") ? request.get("id").asText() : String.valueOf(index);
+            var method = request.path("method").asText("GET").toUpperCase(Locale.ROOT);
+            if (!METHODS.contains(method)) {
+                throw new IllegalArgumentException("unsupported method '%s' in request '%s'".formatted(method, id));
+            }
+            var path = request.path("path").asText("");
+            while (path.startsWith("/")) {
+                path = path.substring(1);
+            }
+            // rejected per entry, so the rest of the batch still runs
+            var invalid = invalidPath(path);
+            String query = null;
+            try {
+                query = encodeQuery(request.get("query"));
+            } catch (IllegalArgumentException e) {
+                invalid = invalid != null ? invalid : e.getMessage();
+            }
+            var headers = new LinkedHashMap<String, String>();
+            request.path("headers").fields().forEachRemaining(field -> headers.put(field.getKey(), field.getValue().asText()));
+            byte[] content = null;
+            if (request.hasNonNull("bodyBase64")) {
+                content = Base64.getDecoder().decode(request.get("bodyBase64").asText());
+            } else if (request.hasNonNull("body")) {
+                var node = request.get("body");
+                content = (node.isTextual() ? node.asText() : node.toString()).getBytes(StandardCharsets.UTF_8);
+            }
+            items.add(new Item(id, method, path, query, headers, content, invalid));
+        }
+        return items;
+    }
+
+    /**
+     * Why a batch path could leave the data address, {@code null} if it cannot. Percent-encoded forms are checked as
+     * well, since upstreams decode them before resolving the path.
+     */
+    static String invalidPath(String path) {
+        String decoded;
+        try {
+            decoded = URLDecoder.decode(path.replace("+", "%2B"), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return "malformed percent-encoding in path";
+        }
+        for (var candidate : List.of(path, decoded)) {
+            if (candidate.contains("?") || candidate.contains("#")) {
+                return "path must not contain '?' or '#', pass parameters in 'query'";
+            }
+            for (var segment : candidate.split("[/\\\\]", -1)) {
+                if (segment.equals(".") || segment.equals("..")) {
+                    return "path must not contain '.' or '..' segments";
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Percent-encodes the query of a batch entry, given as an object of parameters (with a single value or an array
+     * of values each) or as a query string, whose names and values are decoded and encoded again.
+     *
+     * @return the raw query, {@code null} if there is none
+     */
+    static String encodeQuery(JsonNode query) {
+        if (query == null || query.isNull()) {
+            return null;
+        }
+        var pairs = new ArrayList<String>();
+        if (query.isObject()) {
+            query.fields().forEachRemaining(field -> {
+                var values = field.getValue().isArray() ? field.getValue() : List.of(field.getValue());
+                values.forEach(value -> pairs.add(encode(field.getKey()) + "=" + encode(value.asText())));
+            });
+        } else if (query.isTextual()) {
+            var raw = query.asText();
+            if (raw.contains("#")) {
+                throw new IllegalArgumentException("query must not contain '#'");
+            }
+            for (var pair : raw.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                var equals = pair.indexOf('=');
+                var name = decode(equals < 0 ? pair : pair.substring(0, equals));
+                pairs.add(equals < 0 ? encode(name) : encode(name) + "=" + encode(decode(pair.substring(equals + 1))));
+            }
+        } else {
+            throw new IllegalArgumentException("query must be an object or a string");
+        }
+        return pairs.isEmpty() ? null : String.join("&", pairs);
+    }
+
+    /**
+     * Whether the target stays on the origin of the base URL and below its path.
+     */
+    static boolean withinBase(URI base, URI target) {
+        var basePath = Objects.requireNonNullElse(base.normalize().getRawPath(), "");
+        basePath = basePath.endsWith("/") ? basePath : basePath + "/";
+        var targetPath = Objects.requireNonNullElse(target.normalize().getRawPath(), "");
+        targetPath = targetPath.endsWith("/") ? targetPath : targetPath + "/";
+        return Objects.equals(base.getScheme(), target.getScheme())
+                && Objects.equals(base.getRawAuthority(), target.getRawAuthority())
+                && targetPath.startsWith(basePath);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("malformed percent-encoding in query");
+        }
+    }
+
+    private static Response error(Response.Status status, String message) {
+        return Response.status(status)
+                .entity("{\"error\": \"" + message + "\"}")
+                .build();
+    }
+
+    /**
+     * An entry of the batch.
+     *
+     * @param invalid why the entry is rejected without reaching the upstream, {@code null} if it is not
+     */
+    private record Item(String id, String method, String path, String query, Map<String, String> headers, byte[] body,
+                        String invalid) {
+    }
+
+    /**
+     * One running batch: workers take the entries in order and queue their result lines, which are written to the
+     * client as they arrive. The queue holds no more lines than there are workers, so a slow client holds back the
+     * workers rather than letting finished responses pile up in memory.
+     */
+    private class Batch implements StreamingOutput {
+        private final List<Item> items;
+        private final Map<String, AuthorizedGrant> grants;
+        private final List<String> baseUrls;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final BlockingQueue<byte[]> results;
+
+        Batch(List<Item> items, Map<String, AuthorizedGrant> grants, List<String> baseUrls) {
+            this.items = items;
+            this.grants = grants;
+            this.baseUrls = baseUrls;
+            this.results = new LinkedBlockingQueue<>(Math.max(1, configuration.concurrency()));
+        }
+
+        void start() {
+            var workers = Math.min(configuration.concurrency(), items.size());
+            for (var i = 0; i < workers; i++) {
+                executor.execute(this::work);
+            }
+        }
+
+        @Override
+        public void write(OutputStream output) throws IOException {
+            try {
+                for (var written = 0; written < items.size(); written++) {
+                    output.write(results.take());
+                    output.write('\n');
+                    output.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for batch results", e);
+            } finally {
+                // entries not started yet are skipped once the client is gone
+                cancelled.set(true);
+            }
+        }
+
+        private void work() {
+            int index;
+            while (!cancelled.get() && (index = next.getAndIncrement()) < items.size()) {
+                if (!deliver(run(items.get(index)))) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Queues a result line, waiting while the client is behind; returns {@code false} once the client is gone.
+         */
+        private boolean deliver(byte[] line) {
+            try {
+                while (!cancelled.get()) {
+                    if (results.offer(line, 100, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        private byte[] run(Item item) {
+            if (item.invalid() != null) {
+                return line(item.id(), 400, Map.of(), null, "Invalid request: " + item.invalid());
+            }
+            var grant = grants.get(item.method());
+            AdmissionController.Admission admission = null;
+            if (admissionController != null) {
+                admission = admissionController.admit(grant);
+                if (!admission.isAdmitted()) {
+                    return line(item.id(), 429, Map.of("Retry-After", String.valueOf(admission.retryAfterSeconds())), null,
+                            "Request limit exceeded, retry later");
+                }
+            }
+            var lease = balancer != null && baseUrls.size() > 1 ? balancer.select(baseUrls) : null;
+            var baseUrl = lease != null ? lease.baseUrl() : baseUrls.get(0);
+            var targetUrl = DataPlanePublicApiController.targetUrl(baseUrl, item.path(), item.query());
+            try {
+                URI target;
+                try {
+                    target = URI.create(targetUrl);
+                    if (!withinBase(URI.create(baseUrl), target)) {
+                        return line(item.id(), 400, Map.of(), null, "Invalid request: path leaves the data address");
+                    }
+                } catch (IllegalArgumentException e) {
+                    // the client's path or query, not the replica, is at fault
+                    return line(item.id(), 400, Map.of(), null, "Invalid request: " + e.getMessage());
+                }
+                var builder = upstreamClient.newRequest(target)
+                        .method(item.method(), item.body() != null
+                                ? HttpRequest.BodyPublishers.ofByteArray(item.body())
+                                : HttpRequest.BodyPublishers.noBody());
+                ProxyHeaders.copyRequestHeaders(item.headers(), builder);
+                var response = upstreamClient.send(builder.build());
+                if (lease != null) {
+                    lease.responded(response.statusCode());
+                }
+                byte[] content;
+                try (var in = response.body()) {
+                    content = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, configuration.itemMaxBytes() + 1));
+                }
+                if (content.length > configuration.itemMaxBytes()) {
+                    return line(item.id(), 502, Map.of(), null, "Response exceeds the batch item limit of %d bytes".formatted(configuration.itemMaxBytes()));
+                }
+                var headers = new LinkedHashMap<String, String>();
+                headers.put("Content-Type", response.headers().firstValue("Content-Type").orElse("application/octet-stream"));
+                headers.putAll(ProxyHeaders.responseHeaders(response.headers()));
+                return line(item.id(), response.statusCode(), headers, content, null);
+            } catch (UpstreamClient.UpstreamUnavailableException e) {
+                if (lease != null) {
+                    lease.failed();
+                }
+                return line(item.id(), 503, Map.of("Retry-After", String.valueOf(e.retryAfterSeconds())), null, "Upstream is unavailable, retry later");
+            } catch (UpstreamClient.UpstreamSaturatedException e) {
+                return line(item.id(), 503, Map.of(), null, "Upstream is saturated, retry later");
+            } catch (HttpTimeoutException e) {
+                if (lease != null) {
+                    lease.failed();
+                }
+                return line(item.id(), 504, Map.of(), null, "Upstream did not respond in time");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return line(item.id(), 502, Map.of(), null, "Interrupted");
+            } catch (Exception e) {
+                if (lease != null) {
+                    lease.failed();
+                }
+                monitor.warning("Public API: batch request %s %s failed: %s".formatted(item.method(), targetUrl, e.getMessage()));
+                return line(item.id(), 502, Map.of(), null, "Failed to proxy request: " + e.getMessage());
+            } finally {
+                if (lease != null) {
+                    lease.release();
+                }
+                if (admission != null) {
+                    admission.release();
+                }
+            }
+        }
+
+        private byte[] line(String id, int status, Map<String, String> headers, byte[] body, String error) {
+            var line = new LinkedHashMap<String, Object>();
+            line.put("id", id);
+            line.put("status", status);
+            line.put("headers", headers);
+            if (error != null) {
+                line.put("error", error);
+            }
+            if (body != null && body.length > 0) {
+                if (textual(headers.get("Content-Type")) && !headers.containsKey("Content-Encoding")) {
+                    line.put("body", new String(body, StandardCharsets.UTF_8));
+                } else {
+                    line.put("bodyBase64", Base64.getEncoder().encodeToString(body));
+                }
+            }
+            try {
+                return objectMapper.writeValueAsBytes(line);
+            } catch (IOException e) {
+                return "{\"status\": 500}".getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        private static boolean textual(String contentType) {
+            if (contentType == null) {
+                return false;
+            }
+            var mediaType = contentType.toLowerCase(Locale.ROOT);
+            return mediaType.startsWith("text/") || mediaType.contains("json") || mediaType.contains("xml");
+        }
+    }
+}
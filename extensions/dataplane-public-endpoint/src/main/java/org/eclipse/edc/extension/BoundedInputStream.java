@@ -0,0 +1,78 @@
+package org.eclipse.edc.extension;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Caps the number of bytes read from a client request body. Reading past the limit fails with a
+ * {@link LimitExceededException} rather than truncating, so an upload that does not declare its length (chunked
+ * transfer encoding) is aborted as soon as it grows too large instead of after it has been received.
+ */
+class BoundedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long read;
+
+    BoundedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        var b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        // one byte more than allowed is enough to tell an oversized body from one that is exactly at the limit
+        var n = super.read(buffer, offset, (int) Math.min(length, Math.max(1, limit - read + 1)));
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        var skipped = super.skip(Math.min(n, limit - read + 1));
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Whether the given exception was caused by a body exceeding its limit, however deeply it was wrapped by the
+     * code that read it.
+     */
+    static boolean isLimitExceeded(Throwable throwable) {
+        for (var cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LimitExceededException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void count(long n) throws LimitExceededException {
+        read += n;
+        if (read > limit) {
+            throw new LimitExceededException(limit);
+        }
+    }
+
+    static class LimitExceededException extends IOException {
+        LimitExceededException(long limit) {
+            super("Request body exceeds %d bytes".formatted(limit));
+        }
+    }
+}
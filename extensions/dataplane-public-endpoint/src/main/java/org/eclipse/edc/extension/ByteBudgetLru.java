@@ -0,0 +1,100 @@
+package org.eclipse.edc.extension;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Least-recently-used map bounded by the summed weight (in bytes) of its values rather than by entry count.
+ * <p>
+ * The eviction callback runs outside the lock, so it may perform I/O such as deleting a backing file.
+ */
+class ByteBudgetLru<V> {
+
+    private final LinkedHashMap<String, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long budget;
+    private final ToLongFunction<V> weigher;
+    private final Consumer<V> onRemoval;
+    private long used;
+    private long evictions;
+
+    ByteBudgetLru(long budget, ToLongFunction<V> weigher, Consumer<V> onRemoval) {
+        this.budget = budget;
+        this.weigher = weigher;
+        this.onRemoval = onRemoval;
+    }
+
+    V get(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    /**
+     * Stores the value, evicting the least recently used entries until the budget is met again. A value that is
+     * heavier than the whole budget is rejected and handed to the removal callback straight away.
+     */
+    void put(String key, V value) {
+        var removed = new ArrayList<V>();
+        var weight = weigher.applyAsLong(value);
+        synchronized (entries) {
+            if (weight > budget) {
+                removed.add(value);
+            } else {
+                var previous = entries.put(key, value);
+                used += weight;
+                if (previous != null) {
+                    used -= weigher.applyAsLong(previous);
+                    removed.add(previous);
+                }
+                evictOverBudget(removed);
+            }
+        }
+        removed.forEach(onRemoval);
+    }
+
+    V remove(String key) {
+        V removed;
+        synchronized (entries) {
+            removed = entries.remove(key);
+            if (removed != null) {
+                used -= weigher.applyAsLong(removed);
+            }
+        }
+        if (removed != null) {
+            onRemoval.accept(removed);
+        }
+        return removed;
+    }
+
+    long usedBytes() {
+        synchronized (entries) {
+            return used;
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long evictions() {
+        synchronized (entries) {
+            return evictions;
+        }
+    }
+
+    private void evictOverBudget(List<V> removed) {
+        var iterator = entries.values().iterator();
+        while (used > budget && iterator.hasNext()) {
+            var eldest = iterator.next();
+            iterator.remove();
+            used -= weigher.applyAsLong(eldest);
+            evictions++;
+            removed.add(eldest);
+        }
+    }
+}
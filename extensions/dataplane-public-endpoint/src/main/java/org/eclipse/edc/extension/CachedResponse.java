@@ -0,0 +1,138 @@
+package org.eclipse.edc.extension;
+
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A response body stored by the {@link ResponseCache}, either on the heap or in a file of the disk tier.
+ */
+final class CachedResponse {
+
+    private final String contentType;
+    private final String contentEncoding;
+    private final String etag;
+    private final String lastModified;
+    private final String cacheControl;
+    private final long size;
+    private final byte[] heapBody;
+    private final Path file;
+    private volatile long freshUntil;
+
+    CachedResponse(String contentType, String contentEncoding, String etag, String lastModified, String cacheControl,
+                   long freshUntil, byte[] heapBody, Path file, long size) {
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.cacheControl = cacheControl;
+        this.freshUntil = freshUntil;
+        this.heapBody = heapBody;
+        this.file = file;
+        this.size = size;
+    }
+
+    String contentType() {
+        return contentType;
+    }
+
+    /**
+     * The encoding the upstream applied to the stored body, {@code null} if it is stored as is.
+     */
+    String contentEncoding() {
+        return contentEncoding;
+    }
+
+    String etag() {
+        return etag;
+    }
+
+    String lastModified() {
+        return lastModified;
+    }
+
+    String cacheControl() {
+        return cacheControl;
+    }
+
+    long size() {
+        return size;
+    }
+
+    boolean onDisk() {
+        return file != null;
+    }
+
+    boolean isFresh() {
+        return System.currentTimeMillis() < freshUntil;
+    }
+
+    boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    void extendFreshness(long freshUntil) {
+        this.freshUntil = freshUntil;
+    }
+
+    /**
+     * Opens the body for serving. Disk entries are opened eagerly, so an entry evicted concurrently either fails here,
+     * before anything was sent, or keeps its open file readable until the body has been written or closed.
+     */
+    Body open() throws IOException {
+        return new Body(file != null ? FileChannel.open(file, StandardOpenOption.READ) : null);
+    }
+
+    void delete() {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // the cache directory is wiped on startup anyway
+            }
+        }
+    }
+
+    /**
+     * An opened cached body, written to the client with {@link FileChannel#transferTo} for disk entries.
+     */
+    final class Body implements StreamingOutput, AutoCloseable {
+        private final FileChannel channel;
+
+        private Body(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(OutputStream output) throws IOException {
+            if (channel == null) {
+                output.write(heapBody);
+                return;
+            }
+            try (channel) {
+                var target = Channels.newChannel(output);
+                long position = 0;
+                while (position < size) {
+                    position += channel.transferTo(position, size - position, target);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // nothing was written from it
+                }
+            }
+        }
+    }
+}
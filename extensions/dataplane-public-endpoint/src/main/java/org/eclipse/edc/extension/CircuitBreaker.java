@@ -0,0 +1,129 @@
+package org.eclipse.edc.extension;
+
+import java.time.Duration;
+
+/**
+ * Count-based circuit breaker of one upstream origin.
+ * <p>
+ * While closed, the outcomes of the last {@link ResilienceConfiguration#window()} exchanges are tracked; once the share
+ * of failures reaches {@link ResilienceConfiguration#failureRatio()} the circuit opens and every request fails fast.
+ * After {@link ResilienceConfiguration#openDuration()} the circuit turns half open and lets a limited number of probes
+ * through: a successful probe closes it again, a failed one re-opens it.
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final ResilienceConfiguration configuration;
+    private final boolean[] failures;
+    private int next;
+    private int size;
+    private int failed;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probes;
+    private long rejected;
+
+    CircuitBreaker(ResilienceConfiguration configuration) {
+        this.configuration = configuration;
+        this.failures = new boolean[Math.max(1, configuration.window())];
+    }
+
+    /**
+     * Lets a request through, or rejects it while the circuit is open or all half-open probes are taken.
+     */
+    synchronized void acquirePermission() throws UpstreamClient.UpstreamUnavailableException {
+        if (configuration.failureRatio() <= 0) {
+            return;
+        }
+        if (state == State.OPEN) {
+            var remaining = configuration.openDuration().toMillis() - (System.currentTimeMillis() - openedAt);
+            if (remaining > 0) {
+                rejected++;
+                throw new UpstreamClient.UpstreamUnavailableException("Upstream circuit is open", Duration.ofMillis(remaining));
+            }
+            state = State.HALF_OPEN;
+            probes = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probes >= configuration.halfOpenProbes()) {
+                rejected++;
+                throw new UpstreamClient.UpstreamUnavailableException("Upstream circuit is half open and probing", Duration.ofSeconds(1));
+            }
+            probes++;
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (size >= configuration.minCalls() && failed >= configuration.failureRatio() * size) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Returns the permission of a request that never reached the upstream, e.g. because no connection slot was free.
+     */
+    synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probes > 0) {
+            probes--;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    synchronized long rejected() {
+        return rejected;
+    }
+
+    private void record(boolean failure) {
+        if (size == failures.length) {
+            if (failures[next]) {
+                failed--;
+            }
+        } else {
+            size++;
+        }
+        failures[next] = failure;
+        if (failure) {
+            failed++;
+        }
+        next = (next + 1) % failures.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        reset();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        reset();
+    }
+
+    private void reset() {
+        next = 0;
+        size = 0;
+        failed = 0;
+        probes = 0;
+    }
+}
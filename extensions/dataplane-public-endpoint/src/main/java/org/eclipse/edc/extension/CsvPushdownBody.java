@@ -0,0 +1,211 @@
+package org.eclipse.edc.extension;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Applies a {@link QueryPushdown.Query} to a CSV body (RFC 4180, comma-separated, with a header row) while it streams
+ * from the upstream. {@code $select} and {@code $filter} refer to columns by their header; rows are read one at a
+ * time and written out with the selected columns in the order they were selected.
+ */
+class CsvPushdownBody implements StreamingOutput {
+
+    private final CsvReader reader;
+    private final Charset charset;
+    private final List<String> header;
+    private final int[] selected;
+    private final Map<String, Integer> columns;
+    private final QueryPushdown.Query query;
+    private final QueryPushdown pushdown;
+
+    private CsvPushdownBody(CsvReader reader, Charset charset, List<String> header, int[] selected,
+                            Map<String, Integer> columns, QueryPushdown.Query query, QueryPushdown pushdown) {
+        this.reader = reader;
+        this.charset = charset;
+        this.header = header;
+        this.selected = selected;
+        this.columns = columns;
+        this.query = query;
+        this.pushdown = pushdown;
+    }
+
+    /**
+     * Starts parsing a body by reading its header row.
+     *
+     * @throws IllegalArgumentException if the query refers to a column the header does not have
+     */
+    static CsvPushdownBody open(InputStream upstream, Charset charset, QueryPushdown.Query query, QueryPushdown pushdown) throws IOException {
+        var reader = new CsvReader(new BufferedReader(new InputStreamReader(upstream, charset), 16 * 1024));
+        try {
+            var header = reader.next();
+            header = header != null ? header : List.of();
+            var columns = new HashMap<String, Integer>();
+            for (var i = 0; i < header.size(); i++) {
+                columns.putIfAbsent(header.get(i), i);
+            }
+            var referenced = new ArrayList<>(query.select());
+            if (query.filter() != null) {
+                referenced.addAll(query.filter().fields());
+            }
+            for (var column : referenced) {
+                if (!columns.containsKey(column)) {
+                    throw new IllegalArgumentException("the CSV body has no column '%s'".formatted(column));
+                }
+            }
+            var selected = query.select().isEmpty()
+                    ? IntStream.range(0, header.size()).toArray()
+                    : query.select().stream().mapToInt(columns::get).toArray();
+            return new CsvPushdownBody(reader, charset, header, selected, columns, query, pushdown);
+        } catch (IllegalArgumentException | IOException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        long scanned = 0;
+        long emitted = 0;
+        try (reader) {
+            // not closed, the client connection is Jersey's to close
+            var writer = new BufferedWriter(new OutputStreamWriter(output, charset), 16 * 1024);
+            if (!header.isEmpty()) {
+                writeRow(writer, header);
+            }
+            List<String> row;
+            while ((row = reader.next()) != null) {
+                scanned++;
+                var cells = row;
+                if (query.filter() == null || query.filter().matches(column -> {
+                    var index = columns.get(column);
+                    return index != null && index < cells.size() ? TextNode.valueOf(cells.get(index)) : null;
+                })) {
+                    writeRow(writer, cells);
+                    emitted++;
+                }
+                if (!reader.ready()) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+        } finally {
+            pushdown.count(scanned, emitted);
+        }
+    }
+
+    private void writeRow(Writer writer, List<String> cells) throws IOException {
+        for (var i = 0; i < selected.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            var cell = selected[i] < cells.size() ? cells.get(selected[i]) : "";
+            if (cell.indexOf(',') >= 0 || cell.indexOf('"') >= 0 || cell.indexOf('\n') >= 0 || cell.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(cell.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(cell);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Reads RFC 4180 records: quoted fields may hold commas, line breaks and doubled quotes; records end with CRLF,
+     * LF or CR.
+     */
+    private static class CsvReader implements AutoCloseable {
+        private final Reader in;
+        private int lookahead = -2;
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * The next record, {@code null} at the end of the body.
+         */
+        List<String> next() throws IOException {
+            var c = read();
+            if (c == -1) {
+                return null;
+            }
+            var cells = new ArrayList<String>();
+            var cell = new StringBuilder();
+            var quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("unterminated quoted CSV field");
+                    }
+                    if (c == '"') {
+                        var following = read();
+                        if (following == '"') {
+                            cell.append('"');
+                        } else {
+                            quoted = false;
+                            c = following;
+                            continue;
+                        }
+                    } else {
+                        cell.append((char) c);
+                    }
+                } else if (c == '"' && cell.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                } else if (c == '\n' || c == '\r' || c == -1) {
+                    if (c == '\r') {
+                        var following = read();
+                        if (following != '\n') {
+                            lookahead = following;
+                        }
+                    }
+                    cells.add(cell.toString());
+                    return cells;
+                } else {
+                    cell.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        /**
+         * Whether more input can be read without blocking.
+         */
+        boolean ready() throws IOException {
+            return lookahead != -2 || in.ready();
+        }
+
+        private int read() throws IOException {
+            if (lookahead != -2) {
+                var c = lookahead;
+                lookahead = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
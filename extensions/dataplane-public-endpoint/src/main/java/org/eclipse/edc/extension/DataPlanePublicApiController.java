@@ -1,120 +1,299 @@
 package org.eclipse.edc.extension;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HEAD;
 import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.PATCH;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
-import org.eclipse.edc.connector.dataplane.spi.iam.DataPlaneAuthorizationService;
 import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.types.domain.DataAddress;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.util.Map;
+import java.net.http.HttpTimeoutException;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 @Path("/")
 public class DataPlanePublicApiController {
 
-    private final DataPlaneAuthorizationService authorizationService;
+    /**
+     * Data address property with which an asset opts in to sharing upstream GETs between concurrent requests.
+     */
+    static final String COALESCE_PROPERTY = "proxyCoalesce";
+
+    private final TokenAuthorizer authorizer;
     private final Monitor monitor;
-    private final HttpClient httpClient;
+    private final UpstreamClient upstreamClient;
+    private final ReplicaBalancer balancer;
+    private final ResponseCache responseCache;
+    private final AdmissionController admissionController;
+    private final ProxyTracer tracer;
+    private final AccessLog accessLog;
+    private final ResponseCompression compression;
+    private final RequestCoalescer coalescer;
+    private final BatchProcessor batchProcessor;
+    private final LiveStreams liveStreams;
+    private final WebSocketRelay webSocketRelay;
+    private final QueryPushdown queryPushdown;
+    private final Executor handlerExecutor;
+    private final int streamBufferSize;
+    private final long maxUploadBytes;
 
-    public DataPlanePublicApiController(DataPlaneAuthorizationService authorizationService, Monitor monitor) {
-        this.authorizationService = authorizationService;
-        this.monitor = monitor;
-        this.httpClient = HttpClient.newHttpClient();
+    private DataPlanePublicApiController(Builder builder) {
+        this.authorizer = Objects.requireNonNull(builder.authorizer, "authorizer");
+        this.upstreamClient = Objects.requireNonNull(builder.upstreamClient, "upstreamClient");
+        this.tracer = Objects.requireNonNull(builder.tracer, "tracer");
+        this.batchProcessor = Objects.requireNonNull(builder.batchProcessor, "batchProcessor");
+        this.liveStreams = Objects.requireNonNull(builder.liveStreams, "liveStreams");
+        this.webSocketRelay = Objects.requireNonNull(builder.webSocketRelay, "webSocketRelay");
+        this.monitor = Objects.requireNonNull(builder.monitor, "monitor");
+        this.balancer = builder.balancer;
+        this.responseCache = builder.responseCache;
+        this.admissionController = builder.admissionController;
+        this.accessLog = builder.accessLog;
+        this.compression = builder.compression;
+        this.coalescer = builder.coalescer;
+        this.queryPushdown = builder.queryPushdown;
+        this.handlerExecutor = builder.handlerExecutor;
+        this.streamBufferSize = builder.streamBufferSize;
+        this.maxUploadBytes = builder.maxUploadBytes;
     }
 
     @GET
-    public Response getRoot(@HeaderParam("Authorization") String auth,
-                            @Context UriInfo uriInfo) {
-        return proxy(auth, "GET", "", null, null, null, uriInfo);
+    public void getRoot(@HeaderParam("Authorization") String auth,
+                        @Context HttpHeaders headers,
+                        @Context UriInfo uriInfo,
+                        @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> proxy(auth, "GET", "", null, headers, uriInfo));
     }
 
     @GET
     @Path("{subPath: .+}")
-    public Response getSubPath(@HeaderParam("Authorization") String auth,
-                               @PathParam("subPath") String subPath,
-                               @Context UriInfo uriInfo) {
-        return proxy(auth, "GET", subPath, null, null, null, uriInfo);
+    public void getSubPath(@HeaderParam("Authorization") String auth,
+                           @PathParam("subPath") String subPath,
+                           @Context HttpHeaders headers,
+                           @Context UriInfo uriInfo,
+                           @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> proxy(auth, "GET", subPath, null, headers, uriInfo));
+    }
+
+    @HEAD
+    public void headRoot(@HeaderParam("Authorization") String auth,
+                         @Context HttpHeaders headers,
+                         @Context UriInfo uriInfo,
+                         @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> proxy(auth, "HEAD", "", null, headers, uriInfo));
+    }
+
+    @HEAD
+    @Path("{subPath: .+}")
+    public void headSubPath(@HeaderParam("Authorization") String auth,
+                            @PathParam("subPath") String subPath,
+                            @Context HttpHeaders headers,
+                            @Context UriInfo uriInfo,
+                            @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> proxy(auth, "HEAD", subPath, null, headers, uriInfo));
     }
 
     @POST
-    public Response postRoot(@HeaderParam("Authorization") String auth,
-                             @HeaderParam("Content-Type") String contentType,
-                             byte[] body,
-                             @Context UriInfo uriInfo) {
-        return proxy(auth, "POST", "", body, contentType, null, uriInfo);
+    public void postRoot(@HeaderParam("Authorization") String auth,
+                         @Context HttpHeaders headers,
+                         InputStream body,
+                         @Context UriInfo uriInfo,
+                         @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> proxy(auth, "POST", "", body, headers, uriInfo));
     }
 
     @POST
     @Path("{subPath: .+}")
-    public Response postSubPath(@HeaderParam("Authorization") String auth,
-                                @PathParam("subPath") String subPath,
-                                @HeaderParam("Content-Type") String contentType,
-                                byte[] body,
-                                @Context UriInfo uriInfo) {
-        return proxy(auth, "POST", subPath, body, contentType, null, uriInfo);
+    public void postSubPath(@HeaderParam("Authorization") String auth,
+                            @PathParam("subPath") String subPath,
+                            @Context HttpHeaders headers,
+                            InputStream body,
+                            @Context UriInfo uriInfo,
+                            @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> proxy(auth, "POST", subPath, body, headers, uriInfo));
+    }
+
+    @POST
+    @Path("$batch")
+    public void batch(@HeaderParam("Authorization") String auth,
+                      InputStream body,
+                      @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> {
+            if (auth == null || !auth.toLowerCase().startsWith("bearer ")) {
+                closeQuietly(body);
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity("{\"error\": \"Missing or invalid Authorization header\"}")
+                        .build();
+            }
+            return batchProcessor.process(auth.substring(7), body);
+        });
     }
 
     @PUT
-    public Response putRoot(@HeaderParam("Authorization") String auth,
-                            @HeaderParam("Content-Type") String contentType,
-                            byte[] body,
-                            @Context UriInfo uriInfo) {
-        return proxy(auth, "PUT", "", body, contentType, null, uriInfo);
+    public void putRoot(@HeaderParam("Authorization") String auth,
+                        @Context HttpHeaders headers,
+                        InputStream body,
+                        @Context UriInfo uriInfo,
+                        @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> proxy(auth, "PUT", "", body, headers, uriInfo));
     }
 
     @PUT
     @Path("{subPath: .+}")
-    public Response putSubPath(@HeaderParam("Authorization") String auth,
-                               @PathParam("subPath") String subPath,
-                               @HeaderParam("Content-Type") String contentType,
-                               byte[] body,
-                               @Context UriInfo uriInfo) {
-        return proxy(auth, "PUT", subPath, body, contentType, null, uriInfo);
+    public void putSubPath(@HeaderParam("Authorization") String auth,
+                           @PathParam("subPath") String subPath,
+                           @Context HttpHeaders headers,
+                           InputStream body,
+                           @Context UriInfo uriInfo,
+                           @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> proxy(auth, "PUT", subPath, body, headers, uriInfo));
     }
 
     @PATCH
-    public Response patchRoot(@HeaderParam("Authorization") String auth,
-                              @HeaderParam("Content-Type") String contentType,
-                              @HeaderParam("If-Match") String ifMatch,
-                              byte[] body,
-                              @Context UriInfo uriInfo) {
-        return proxy(auth, "PATCH", "", body, contentType, ifMatch, uriInfo);
+    public void patchRoot(@HeaderParam("Authorization") String auth,
+                          @Context HttpHeaders headers,
+                          InputStream body,
+                          @Context UriInfo uriInfo,
+                          @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> proxy(auth, "PATCH", "", body, headers, uriInfo));
     }
 
     @PATCH
     @Path("{subPath: .+}")
-    public Response patchSubPath(@HeaderParam("Authorization") String auth,
-                                 @PathParam("subPath") String subPath,
-                                 @HeaderParam("Content-Type") String contentType,
-                                 @HeaderParam("If-Match") String ifMatch,
-                                 byte[] body,
-                                 @Context UriInfo uriInfo) {
-        return proxy(auth, "PATCH", subPath, body, contentType, ifMatch, uriInfo);
+    public void patchSubPath(@HeaderParam("Authorization") String auth,
+                             @PathParam("subPath") String subPath,
+                             @Context HttpHeaders headers,
+                             InputStream body,
+                             @Context UriInfo uriInfo,
+                             @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> proxy(auth, "PATCH", subPath, body, headers, uriInfo));
+    }
+
+    /**
+     * WebSocket upgrades of any path, routed here by the {@link WebSocketUpgradeFilter}. The handshake is answered
+     * on the Jetty thread, the relay runs on the WebSocket executor afterwards.
+     */
+    @GET
+    @Path(WebSocketUpgradeFilter.PATH + "/{subPath: .*}")
+    public Response websocket(@HeaderParam("Authorization") String auth,
+                              @PathParam("subPath") String subPath,
+                              @Context HttpHeaders headers,
+                              @Context UriInfo uriInfo,
+                              @Context HttpServletRequest request) {
+        return websocket(auth, subPath, headers, uriInfo, () -> request.upgrade(WebSocketTunnel.class));
+    }
+
+    Response websocket(String auth, String subPath, HttpHeaders headers, UriInfo uriInfo, WebSocketRelay.ClientUpgrade clientUpgrade) {
+        var trace = tracer.start("GET", headers.getHeaderString("traceparent"), headers.getHeaderString("tracestate"));
+        Response response;
+        try {
+            response = upgrade(trace, auth, subPath, headers, uriInfo, clientUpgrade);
+        } catch (RuntimeException e) {
+            trace.fail("internal_error", e.getMessage());
+            finish(trace, subPath, 500);
+            throw e;
+        }
+        finish(trace, subPath, response.getStatus());
+        return response;
     }
 
     @DELETE
     @Path("{subPath: .+}")
-    public Response deleteSubPath(@HeaderParam("Authorization") String auth,
-                                  @PathParam("subPath") String subPath,
-                                  @Context UriInfo uriInfo) {
-        return proxy(auth, "DELETE", subPath, null, null, null, uriInfo);
+    public void deleteSubPath(@HeaderParam("Authorization") String auth,
+                              @PathParam("subPath") String subPath,
+                              @Context HttpHeaders headers,
+                              @Context UriInfo uriInfo,
+                              @Suspended AsyncResponse asyncResponse) {
+        dispatch(asyncResponse, () -> proxy(auth, "DELETE", subPath, null, headers, uriInfo));
+    }
+
+    private void dispatch(AsyncResponse asyncResponse, Supplier<Response> handler) {
+        if (handlerExecutor == null) {
+            resume(asyncResponse, handler);
+            return;
+        }
+        try {
+            handlerExecutor.execute(() -> resume(asyncResponse, handler));
+        } catch (RejectedExecutionException e) {
+            asyncResponse.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity("{\"error\": \"Data plane is shutting down\"}")
+                    .build());
+        }
+    }
+
+    private void resume(AsyncResponse asyncResponse, Supplier<Response> handler) {
+        try {
+            asyncResponse.resume(handler.get());
+        } catch (RuntimeException e) {
+            asyncResponse.resume(e);
+        }
     }
 
     private Response proxy(String authorization, String method, String subPath,
-                           byte[] body, String contentType, String ifMatch,
-                           UriInfo uriInfo) {
+                           InputStream body, HttpHeaders headers, UriInfo uriInfo) {
+        var trace = tracer.start(method, headers.getHeaderString("traceparent"), headers.getHeaderString("tracestate"));
+        Response response;
+        try {
+            response = authorizeAndForward(trace, authorization, method, subPath, body, headers, uriInfo);
+        } catch (RuntimeException e) {
+            trace.fail("internal_error", e.getMessage());
+            finish(trace, subPath, 500);
+            throw e;
+        }
+        var streamed = response.getEntity() instanceof StreamingOutput;
+        var transferStart = System.nanoTime();
+        return afterWritten(response, () -> {
+            if (streamed) {
+                trace.end(ProxyTrace.TRANSFER, transferStart);
+            }
+            finish(trace, subPath, response.getStatus());
+        });
+    }
+
+    private void finish(ProxyTrace trace, String subPath, int status) {
+        tracer.finish(trace, status);
+        if (accessLog != null) {
+            accessLog.log(trace, subPath);
+        }
+    }
+
+    /**
+     * Reports a failed request on the access log, or through the monitor if there is none. The monitor message is
+     * only built in the latter case.
+     */
+    private void failed(ProxyTrace trace, String error, String detail, Supplier<String> message) {
+        trace.fail(error, detail);
+        if (accessLog == null) {
+            monitor.warning(message.get());
+        }
+    }
+
+    private Response authorizeAndForward(ProxyTrace trace, String authorization, String method, String subPath,
+                                         InputStream body, HttpHeaders headers, UriInfo uriInfo) {
         if (authorization == null || !authorization.toLowerCase().startsWith("bearer ")) {
+            trace.fail("missing_token", null);
             return Response.status(Response.Status.UNAUTHORIZED)
                     .entity("{\"error\": \"Missing or invalid Authorization header\"}")
                     .build();
@@ -122,66 +301,684 @@ public class DataPlanePublicApiController {
 
         var token = authorization.substring(7);
 
-        var requestData = Map.<String, Object>of("method", method);
-        var result = authorizationService.authorize(token, requestData);
+        var authorizeStart = System.nanoTime();
+        var result = authorizer.authorize(token, method);
+        trace.end(ProxyTrace.AUTHORIZE, authorizeStart);
+
+        if (result.failed()) {
+            failed(trace, "authorization_failed", result.getFailureDetail(),
+                    () -> "Public API: authorization failed: " + result.getFailureDetail());
+            return Response.status(Response.Status.FORBIDDEN)
+                    .entity("{\"error\": \"" + result.getFailureDetail() + "\"}")
+                    .build();
+        }
+
+        // bodies are only read once the token has been authorized, those declared too large are not read at all
+        var declaredLength = parseLength(headers.getHeaderString("Content-Length"));
+        if (body != null && maxUploadBytes > 0 && declaredLength != null && declaredLength > maxUploadBytes) {
+            trace.fail("upload_too_large", "declared " + declaredLength + " bytes");
+            closeQuietly(body);
+            return uploadTooLarge();
+        }
+
+        var grant = result.getContent();
+        if (admissionController == null) {
+            return forward(trace, grant, method, subPath, body, headers, uriInfo);
+        }
+
+        var admission = admissionController.admit(grant);
+        if (!admission.isAdmitted()) {
+            trace.fail("rate_limited", null);
+            closeQuietly(body);
+            return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header("Retry-After", admission.retryAfterSeconds())
+                    .entity("{\"error\": \"Request limit exceeded, retry later\"}")
+                    .build();
+        }
+        try {
+            return afterWritten(forward(trace, grant, method, subPath, body, headers, uriInfo), admission::release);
+        } catch (RuntimeException e) {
+            admission.release();
+            throw e;
+        }
+    }
+
+    private Response upgrade(ProxyTrace trace, String authorization, String subPath, HttpHeaders headers,
+                             UriInfo uriInfo, WebSocketRelay.ClientUpgrade clientUpgrade) {
+        if (!"websocket".equalsIgnoreCase(headers.getHeaderString("Upgrade"))) {
+            trace.fail("not_an_upgrade", null);
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Not a WebSocket upgrade request, paths starting with '%s/' are reserved for them\"}"
+                            .formatted(WebSocketUpgradeFilter.PATH))
+                    .build();
+        }
+        if (authorization == null || !authorization.toLowerCase().startsWith("bearer ")) {
+            trace.fail("missing_token", null);
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity("{\"error\": \"Missing or invalid Authorization header\"}")
+                    .build();
+        }
 
+        // authorized once, the connection is closed when the EDR is revoked
+        var authorizeStart = System.nanoTime();
+        var result = authorizer.authorize(authorization.substring(7), "GET");
+        trace.end(ProxyTrace.AUTHORIZE, authorizeStart);
         if (result.failed()) {
-            monitor.warning("Public API: authorization failed: " + result.getFailureDetail());
+            failed(trace, "authorization_failed", result.getFailureDetail(),
+                    () -> "Public API: authorization failed: " + result.getFailureDetail());
             return Response.status(Response.Status.FORBIDDEN)
                     .entity("{\"error\": \"" + result.getFailureDetail() + "\"}")
                     .build();
         }
 
-        var dataAddress = result.getContent();
-        var baseUrl = dataAddress.getStringProperty("baseUrl");
+        var grant = result.getContent();
+        Runnable onClosed = () -> {
+        };
+        if (admissionController != null) {
+            var admission = admissionController.admit(grant);
+            if (!admission.isAdmitted()) {
+                trace.fail("rate_limited", null);
+                return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                        .header("Retry-After", admission.retryAfterSeconds())
+                        .entity("{\"error\": \"Request limit exceeded, retry later\"}")
+                        .build();
+            }
+            // an open WebSocket holds its bulkhead slot until it closes
+            onClosed = admission::release;
+        }
+        return webSocketRelay.open(grant, subPath, uriInfo.getRequestUri().getRawQuery(), headers, clientUpgrade, onClosed);
+    }
 
-        if (baseUrl == null || baseUrl.isBlank()) {
-            monitor.warning("Public API: no baseUrl in DataAddress");
+    private Response forward(ProxyTrace trace, AuthorizedGrant grant, String method, String subPath,
+                             InputStream body, HttpHeaders headers, UriInfo uriInfo) {
+        var resolveStart = System.nanoTime();
+        var baseUrls = ReplicaBalancer.baseUrls(grant.dataAddress());
+
+        if (baseUrls.isEmpty()) {
+            failed(trace, "no_base_url", null, () -> "Public API: no baseUrl in DataAddress");
             return Response.status(Response.Status.BAD_GATEWAY)
                     .entity("{\"error\": \"No source URL configured for this data address\"}")
                     .build();
         }
+        if (balancer == null || baseUrls.size() == 1) {
+            return forward(trace, grant, baseUrls.get(0), null, resolveStart, method, subPath, body, headers, uriInfo);
+        }
 
-        // Build target URL: baseUrl + sub-path from request + query string
-        var targetUrl = baseUrl.endsWith("/") ? baseUrl.stripTrailing() : baseUrl;
-        if (!subPath.isEmpty()) {
-            targetUrl = targetUrl + "/" + subPath;
+        // the replica counts as busy until the body has been written, so long downloads weigh on its selection
+        var lease = balancer.select(baseUrls);
+        try {
+            return afterWritten(forward(trace, grant, lease.baseUrl(), lease, resolveStart, method, subPath, body, headers, uriInfo),
+                    lease::release);
+        } catch (RuntimeException e) {
+            lease.release();
+            throw e;
         }
-        var rawQuery = uriInfo.getRequestUri().getRawQuery();
-        if (rawQuery != null && !rawQuery.isEmpty()) {
-            targetUrl = targetUrl + "?" + rawQuery;
+    }
+
+    private Response forward(ProxyTrace trace, AuthorizedGrant grant, String baseUrl, ReplicaBalancer.Lease lease, long resolveStart,
+                             String method, String subPath, InputStream body, HttpHeaders headers, UriInfo uriInfo) {
+        var dataAddress = grant.dataAddress();
+        var requestQuery = uriInfo.getRequestUri().getRawQuery();
+        QueryPushdown.Query pushdown;
+        try {
+            pushdown = queryPushdown != null && "GET".equals(method) ? QueryPushdown.parse(requestQuery) : null;
+        } catch (IllegalArgumentException e) {
+            trace.fail("invalid_query", e.getMessage());
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
         }
+        // the upstream never sees the parameters evaluated here, nor do the cache and coalescing keys
+        var rawQuery = pushdown != null ? QueryPushdown.stripReserved(requestQuery) : requestQuery;
+        var targetUrl = targetUrl(baseUrl, subPath, rawQuery);
+        URI targetUri;
+        try {
+            targetUri = URI.create(targetUrl);
+        } catch (IllegalArgumentException e) {
+            failed(trace, "invalid_target_url", e.getMessage(),
+                    () -> "Public API: invalid target URL " + targetUrl + ": " + e.getMessage());
+            return Response.status(Response.Status.BAD_GATEWAY)
+                    .entity("{\"error\": \"Failed to proxy request: " + e.getMessage() + "\"}")
+                    .build();
+        }
+        trace.origin(UpstreamClient.originKey(targetUri));
 
-        monitor.info("Public API: proxying " + method + " " + targetUrl);
+        // Serve fresh entries straight from the response cache, pin stale ones for revalidation
+        var cacheKey = responseCache != null ? ResponseCache.key(dataAddress, subPath, rawQuery) : null;
+        CachedResponse cached = null;
+        CachedResponse.Body cachedBody = null;
+        if (responseCache != null && pushdown == null) {
+            var requestCacheControl = Objects.requireNonNullElse(headers.getHeaderString("Cache-Control"), "").toLowerCase();
+            // partial requests always go to the upstream, which knows how to answer them
+            var partial = headers.getHeaderString("Range") != null;
+            if ("GET".equals(method) && !partial && !requestCacheControl.contains("no-store")) {
+                cached = responseCache.lookup(cacheKey);
+                // entries stored in an encoding this client does not accept are bypassed
+                if (cached != null && !ResponseCompression.accepts(headers.getHeaderString("Accept-Encoding"), cached.contentEncoding())) {
+                    cached = null;
+                }
+                cachedBody = openQuietly(cached);
+                if (cachedBody == null) {
+                    cached = null;
+                } else if (cached.isFresh() && !requestCacheControl.contains("no-cache")) {
+                    trace.end(ProxyTrace.RESOLVE, resolveStart);
+                    return serveCached(cached, cachedBody, headers);
+                }
+            }
+        }
+
+        trace.end(ProxyTrace.RESOLVE, resolveStart);
+        if (accessLog == null) {
+            monitor.info("Public API: proxying " + method + " " + targetUrl + " (trace " + trace.traceId() + ")");
+        }
 
         try {
-            var bodyPublisher = (body != null && body.length > 0)
-                    ? HttpRequest.BodyPublishers.ofByteArray(body)
-                    : HttpRequest.BodyPublishers.noBody();
+            var builder = upstreamClient.newRequest(targetUri)
+                    .method(method, bodyPublisher(body, headers.getHeaderString("Content-Length")));
 
-            var builder = HttpRequest.newBuilder()
-                    .uri(URI.create(targetUrl))
-                    .method(method, bodyPublisher);
+            ProxyHeaders.copyRequestHeaders(headers, builder, pushdown != null
+                    ? QueryPushdown.UNFORWARDED_REQUEST_HEADERS
+                    : cached != null ? ProxyHeaders.CONDITIONAL_REQUEST_HEADERS : Set.of());
+            builder.header("traceparent", trace.upstreamTraceparent());
+            if (trace.traceState() != null) {
+                builder.header("tracestate", trace.traceState());
+            }
+            if (cached != null) {
+                if (cached.etag() != null) {
+                    builder.header("If-None-Match", cached.etag());
+                }
+                if (cached.lastModified() != null) {
+                    builder.header("If-Modified-Since", cached.lastModified());
+                }
+            }
 
-            if (contentType != null) {
-                builder.header("Content-Type", contentType);
+            // only the headers are awaited here, the body is piped to the client as it arrives
+            var request = builder.build();
+            var coalesced = cached == null && pushdown == null && coalescible(method, dataAddress, headers);
+            var response = coalesced
+                    ? coalescer.send(coalescingKey(dataAddress, subPath, rawQuery, headers),
+                            () -> upstreamClient.send(request, trace), shared -> cacheable(method, dataAddress, cacheKey, shared))
+                    : upstreamClient.send(request, trace);
+
+            if (lease != null) {
+                lease.responded(response.statusCode());
             }
-            if (ifMatch != null) {
-                builder.header("If-Match", ifMatch);
+
+            if (cached != null) {
+                var notModified = response.statusCode() == 304;
+                responseCache.recordRevalidation(notModified);
+                if (notModified) {
+                    closeQuietly(response.body());
+                    responseCache.refresh(cached, response.headers());
+                    return serveCached(cached, cachedBody, headers);
+                }
+                cachedBody.close();
             }
 
-            var response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
             var respContentType = response.headers().firstValue("Content-Type").orElse("application/octet-stream");
+            var eventStream = EventStreamProxyBody.isEventStream(respContentType);
+            if (pushdown != null && response.statusCode() == 200 && !eventStream) {
+                return pushdown(trace, pushdown, response, respContentType, headers);
+            }
 
-            return Response.status(response.statusCode())
-                    .entity(response.body())
-                    .header("Content-Type", respContentType)
+            // a shared body has already been handed to the cache by the request that performed the exchange, event
+            // streams never end and are not cached at all
+            var responseBody = coalesced || eventStream ? response.body() : cacheable(method, dataAddress, cacheKey, response);
+
+            var responseBuilder = Response.status(response.statusCode())
+                    .header("Content-Type", respContentType);
+            ProxyHeaders.copyResponseHeaders(response.headers(), responseBuilder);
+            if (eventStream && hasBody(method, response.statusCode())) {
+                // authorized once for the whole stream, which is closed when the EDR is revoked
+                var entity = new EventStreamProxyBody(responseBody, streamBufferSize);
+                var registration = liveStreams.register(grant, LiveStreams.Kind.EVENT_STREAM, entity);
+                return afterWritten(responseBuilder.entity(entity).build(), registration::close);
+            }
+            if (hasBody(method, response.statusCode())) {
+                StreamingOutput entity = new StreamingProxyBody(responseBody, streamBufferSize);
+                if (compression != null) {
+                    var upstreamHeaders = response.headers();
+                    var encoding = compression.select(headers.getHeaderString("Accept-Encoding"), response.statusCode(), respContentType,
+                            upstreamHeaders.firstValue("Content-Encoding").orElse(null), upstreamHeaders.firstValueAsLong("Content-Length").orElse(-1));
+                    if (encoding != null) {
+                        entity = compression.compress(entity, encoding, responseBuilder, upstreamHeaders.firstValue("ETag").orElse(null));
+                    }
+                }
+                responseBuilder.entity(entity);
+            } else {
+                // Jersey never writes an entity for these, so release the upstream exchange right away
+                closeQuietly(responseBody);
+            }
+            return responseBuilder.build();
+        } catch (UpstreamClient.UpstreamUnavailableException e) {
+            trace.fail("upstream_unavailable", e.getMessage());
+            if (lease != null) {
+                lease.failed();
+            }
+            closeQuietly(body);
+            closeQuietly(cachedBody);
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", e.retryAfterSeconds())
+                    .entity("{\"error\": \"Upstream is unavailable, retry later\"}")
+                    .build();
+        } catch (UpstreamClient.UpstreamSaturatedException e) {
+            failed(trace, "upstream_saturated", e.getMessage(),
+                    () -> "Public API: upstream saturated for " + method + " " + targetUrl + ": " + e.getMessage());
+            closeQuietly(body);
+            closeQuietly(cachedBody);
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity("{\"error\": \"Upstream is saturated, retry later\"}")
+                    .build();
+        } catch (HttpTimeoutException e) {
+            if (lease != null) {
+                lease.failed();
+            }
+            failed(trace, "upstream_timeout", e.getMessage(),
+                    () -> "Public API: upstream timed out for " + method + " " + targetUrl + ": " + e.getMessage());
+            closeQuietly(body);
+            closeQuietly(cachedBody);
+            return Response.status(Response.Status.GATEWAY_TIMEOUT)
+                    .entity("{\"error\": \"Upstream did not respond in time\"}")
                     .build();
         } catch (Exception e) {
-            monitor.warning("Public API: failed to proxy " + method + " " + targetUrl + ": " + e.getMessage());
+            if (BoundedInputStream.isLimitExceeded(e)) {
+                trace.fail("upload_too_large", e.getMessage());
+                closeQuietly(body);
+                closeQuietly(cachedBody);
+                return uploadTooLarge();
+            }
+            if (lease != null) {
+                lease.failed();
+            }
+            failed(trace, "upstream_error", e.getMessage(),
+                    () -> "Public API: failed to proxy " + method + " " + targetUrl + ": " + e.getMessage());
+            closeQuietly(body);
+            closeQuietly(cachedBody);
             return Response.status(Response.Status.BAD_GATEWAY)
                     .entity("{\"error\": \"Failed to proxy request: " + e.getMessage() + "\"}")
                     .build();
         }
     }
+
+    /**
+     * Answers with the records of an upstream body selected by {@code $select} and {@code $filter}. The body is no
+     * longer the upstream's representation, so its length, validator, range and encoding headers are dropped.
+     */
+    private Response pushdown(ProxyTrace trace, QueryPushdown.Query query, HttpResponse<InputStream> response,
+                              String contentType, HttpHeaders headers) throws IOException {
+        StreamingOutput entity;
+        try {
+            entity = queryPushdown.open(query, contentType, response.headers().firstValue("Content-Encoding").orElse(null), response.body());
+        } catch (IllegalArgumentException e) {
+            trace.fail("pushdown_unsupported", e.getMessage());
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+        var responseBuilder = Response.ok().header("Content-Type", contentType);
+        ProxyHeaders.copyResponseHeaders(response.headers(), responseBuilder);
+        for (var name : List.of("Accept-Ranges", "Content-Encoding", "Content-Length", "Content-Range", "ETag")) {
+            responseBuilder.header(name, null);
+        }
+        if (compression != null) {
+            var encoding = compression.select(headers.getHeaderString("Accept-Encoding"), 200, contentType, null, -1);
+            if (encoding != null) {
+                entity = compression.compress(entity, encoding, responseBuilder, null);
+            }
+        }
+        return responseBuilder.entity(entity).build();
+    }
+
+    /**
+     * Runs the callback once the response body has been written to the client, or right away if it has none.
+     */
+    private static Response afterWritten(Response response, Runnable callback) {
+        if (response.getEntity() instanceof StreamingOutput entity) {
+            StreamingOutput completing = output -> {
+                try {
+                    entity.write(output);
+                } finally {
+                    callback.run();
+                }
+            };
+            return Response.fromResponse(response).entity(completing).build();
+        }
+        callback.run();
+        return response;
+    }
+
+    /**
+     * Builds the target URL: baseUrl + sub-path from request + query string.
+     */
+    static String targetUrl(String baseUrl, String subPath, String rawQuery) {
+        var targetUrl = baseUrl.endsWith("/") ? baseUrl.stripTrailing() : baseUrl;
+        if (!subPath.isEmpty()) {
+            targetUrl = targetUrl + "/" + subPath;
+        }
+        if (rawQuery != null && !rawQuery.isEmpty()) {
+            targetUrl = targetUrl + "?" + rawQuery;
+        }
+        return targetUrl;
+    }
+
+    /**
+     * Hands the body of a GET to the response cache, or invalidates the cached entry after a successful unsafe request.
+     */
+    private InputStream cacheable(String method, DataAddress dataAddress, String cacheKey, HttpResponse<InputStream> response) {
+        var responseBody = response.body();
+        if (responseCache != null) {
+            if ("GET".equals(method)) {
+                if (responseCache.isCacheable(response.statusCode(), response.headers(), ResponseCache.authenticatesUpstream(dataAddress))) {
+                    responseBody = responseCache.capture(cacheKey, response.headers(), responseBody);
+                }
+            } else if (!"HEAD".equals(method) && response.statusCode() < 400) {
+                // a successful unsafe request invalidates what is cached for the same target
+                responseCache.invalidate(cacheKey);
+            }
+        }
+        return responseBody;
+    }
+
+    /**
+     * Whether a request may share the upstream exchange of identical concurrent requests: plain GETs of assets whose
+     * data address opted in with {@code proxyCoalesce=true}.
+     */
+    private boolean coalescible(String method, DataAddress dataAddress, HttpHeaders headers) {
+        if (coalescer == null || !"GET".equals(method) || !"true".equalsIgnoreCase(dataAddress.getStringProperty(COALESCE_PROPERTY))) {
+            return false;
+        }
+        // event streams are live and never end, there is nothing to share
+        var accept = headers.getHeaderString("Accept");
+        if (accept != null && accept.toLowerCase().contains(EventStreamProxyBody.MEDIA_TYPE)) {
+            return false;
+        }
+        // partial and conditional requests get answers specific to the requesting client
+        for (var name : List.of("Range", "If-Range", "If-Match", "If-None-Match", "If-Modified-Since", "If-Unmodified-Since")) {
+            if (headers.getHeaderString(name) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String coalescingKey(DataAddress dataAddress, String subPath, String rawQuery, HttpHeaders headers) {
+        // the negotiation headers select the representation, so they are part of what must be identical
+        return ResponseCache.key(dataAddress, subPath, rawQuery)
+                + "|" + Objects.requireNonNullElse(headers.getHeaderString("Accept"), "")
+                + "|" + Objects.requireNonNullElse(headers.getHeaderString("Accept-Encoding"), "")
+                + "|" + Objects.requireNonNullElse(headers.getHeaderString("Accept-Language"), "");
+    }
+
+    private Response serveCached(CachedResponse entry, CachedResponse.Body body, HttpHeaders headers) {
+        responseCache.recordHit();
+        if (etagMatches(headers.getHeaderString("If-None-Match"), entry.etag())) {
+            body.close();
+            return validators(Response.notModified(), entry).build();
+        }
+        var builder = validators(Response.ok(), entry)
+                .header("Content-Type", entry.contentType());
+        StreamingOutput entity = body;
+        if (entry.contentEncoding() != null) {
+            builder.header("Content-Encoding", entry.contentEncoding()).header("Vary", "Accept-Encoding");
+        } else if (compression != null) {
+            var encoding = compression.select(headers.getHeaderString("Accept-Encoding"), 200, entry.contentType(), null, entry.size());
+            if (encoding != null) {
+                entity = compression.compress(body, encoding, builder, entry.etag());
+            }
+        }
+        return builder.entity(entity).build();
+    }
+
+    private Response.ResponseBuilder validators(Response.ResponseBuilder builder, CachedResponse entry) {
+        if (entry.etag() != null) {
+            builder.header("ETag", entry.etag());
+        }
+        if (entry.lastModified() != null) {
+            builder.header("Last-Modified", entry.lastModified());
+        }
+        if (entry.cacheControl() != null) {
+            builder.header("Cache-Control", entry.cacheControl());
+        }
+        return builder;
+    }
+
+    /**
+     * Weak comparison of an {@code If-None-Match} header against an entity tag, as required for GET.
+     */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        if (ifNoneMatch.trim().equals("*")) {
+            return true;
+        }
+        var opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (var candidate : ifNoneMatch.split(",")) {
+            var tag = candidate.trim();
+            if ((tag.startsWith("W/") ? tag.substring(2) : tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CachedResponse.Body openQuietly(CachedResponse entry) {
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return entry.open();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private HttpRequest.BodyPublisher bodyPublisher(InputStream body, String contentLengthHeader) {
+        var contentLength = parseLength(contentLengthHeader);
+        if (body == null || (contentLength != null && contentLength == 0)) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+        // the upstream pulls the body as it sends it, so at most one chunk of it is in memory at a time
+        var bounded = maxUploadBytes > 0 ? new BoundedInputStream(body, maxUploadBytes) : body;
+        var publisher = HttpRequest.BodyPublishers.ofInputStream(() -> bounded);
+        // keep a fixed Content-Length upstream when the client sent one, fall back to chunked otherwise
+        return contentLength != null && contentLength > 0
+                ? HttpRequest.BodyPublishers.fromPublisher(publisher, contentLength)
+                : publisher;
+    }
+
+    private Response uploadTooLarge() {
+        return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE)
+                .entity("{\"error\": \"Request body exceeds the upload limit of " + maxUploadBytes + " bytes\"}")
+                .build();
+    }
+
+    private static boolean hasBody(String method, int statusCode) {
+        return !"HEAD".equals(method) && statusCode != 204 && statusCode != 304 && statusCode >= 200;
+    }
+
+    private static Long parseLength(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // nothing left to do
+        }
+    }
+
+    /**
+     * Assembles the controller. The authorizer, upstream client, tracer, batch processor, live stream registry,
+     * WebSocket relay and monitor are required; every optional feature is off unless it is set.
+     */
+    static final class Builder {
+        private TokenAuthorizer authorizer;
+        private UpstreamClient upstreamClient;
+        private ProxyTracer tracer;
+        private BatchProcessor batchProcessor;
+        private LiveStreams liveStreams;
+        private WebSocketRelay webSocketRelay;
+        private Monitor monitor;
+        private ReplicaBalancer balancer;
+        private ResponseCache responseCache;
+        private AdmissionController admissionController;
+        private AccessLog accessLog;
+        private ResponseCompression compression;
+        private RequestCoalescer coalescer;
+        private QueryPushdown queryPushdown;
+        private Executor handlerExecutor;
+        private int streamBufferSize = 64 * 1024;
+        private long maxUploadBytes;
+
+        private Builder() {
+        }
+
+        static Builder newInstance() {
+            return new Builder();
+        }
+
+        Builder authorizer(TokenAuthorizer authorizer) {
+            this.authorizer = authorizer;
+            return this;
+        }
+
+        Builder upstreamClient(UpstreamClient upstreamClient) {
+            this.upstreamClient = upstreamClient;
+            return this;
+        }
+
+        /**
+         * Records the latency of each phase of a request.
+         */
+        Builder tracer(ProxyTracer tracer) {
+            this.tracer = tracer;
+            return this;
+        }
+
+        /**
+         * Runs the sub-requests of {@code POST /$batch}.
+         */
+        Builder batchProcessor(BatchProcessor batchProcessor) {
+            this.batchProcessor = batchProcessor;
+            return this;
+        }
+
+        /**
+         * Tracks event streams and WebSockets so they can be closed when their EDR is revoked.
+         */
+        Builder liveStreams(LiveStreams liveStreams) {
+            this.liveStreams = liveStreams;
+            return this;
+        }
+
+        Builder webSocketRelay(WebSocketRelay webSocketRelay) {
+            this.webSocketRelay = webSocketRelay;
+            return this;
+        }
+
+        Builder monitor(Monitor monitor) {
+            this.monitor = monitor;
+            return this;
+        }
+
+        /**
+         * Spreads requests over the replicas of data addresses listing several base URLs; without it the first one is
+         * always used.
+         */
+        Builder balancer(ReplicaBalancer balancer) {
+            this.balancer = balancer;
+            return this;
+        }
+
+        /**
+         * Caches idempotent GETs; without it every request goes to the upstream.
+         */
+        Builder responseCache(ResponseCache responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
+        /**
+         * Per-key rate limits and bulkheads; without it every authorized request is admitted.
+         */
+        Builder admissionController(AdmissionController admissionController) {
+            this.admissionController = admissionController;
+            return this;
+        }
+
+        /**
+         * Structured log of every request; without it requests are reported through the monitor.
+         */
+        Builder accessLog(AccessLog accessLog) {
+            this.accessLog = accessLog;
+            return this;
+        }
+
+        /**
+         * Compresses uncompressed bodies on the fly; without it bodies are passed on as they are.
+         */
+        Builder compression(ResponseCompression compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * Shares upstream GETs of assets that opted in; without it no exchange is shared.
+         */
+        Builder coalescer(RequestCoalescer coalescer) {
+            this.coalescer = coalescer;
+            return this;
+        }
+
+        /**
+         * Applies {@code $select} and {@code $filter} to JSON and CSV bodies; without it those parameters are
+         * forwarded to the upstream like any other.
+         */
+        Builder queryPushdown(QueryPushdown queryPushdown) {
+            this.queryPushdown = queryPushdown;
+            return this;
+        }
+
+        /**
+         * Executor the proxy handlers run on, so Jetty threads are released right after the request was accepted;
+         * without it each request is handled on the Jetty thread that received it.
+         */
+        Builder handlerExecutor(Executor handlerExecutor) {
+            this.handlerExecutor = handlerExecutor;
+            return this;
+        }
+
+        /**
+         * Size of the buffer bodies are streamed through, 64 KiB unless set.
+         */
+        Builder streamBufferSize(int streamBufferSize) {
+            this.streamBufferSize = streamBufferSize;
+            return this;
+        }
+
+        /**
+         * Largest request body that is forwarded, larger ones are answered with 413 as soon as their declared length
+         * or the bytes streamed so far exceed it; {@code 0}, the default, for no limit.
+         */
+        Builder maxUploadBytes(long maxUploadBytes) {
+            this.maxUploadBytes = maxUploadBytes;
+            return this;
+        }
+
+        DataPlanePublicApiController build() {
+            return new DataPlanePublicApiController(this);
+        }
+    }
 }
@@ -1,11 +1,13 @@
 package org.eclipse.edc.extension;
 
 import org.eclipse.edc.connector.dataplane.spi.Endpoint;
+import org.eclipse.edc.connector.dataplane.spi.iam.DataPlaneAccessControlService;
 import org.eclipse.edc.connector.dataplane.spi.iam.DataPlaneAuthorizationService;
 import org.eclipse.edc.connector.dataplane.spi.iam.PublicEndpointGeneratorService;
+import org.eclipse.edc.connector.dataplane.spi.store.AccessTokenDataStore;
 import org.eclipse.edc.runtime.metamodel.annotation.Extension;
 import org.eclipse.edc.runtime.metamodel.annotation.Inject;
-import org.eclipse.edc.spi.security.Vault;
+import org.eclipse.edc.runtime.metamodel.annotation.Setting;
 import org.eclipse.edc.spi.system.ServiceExtension;
 import org.eclipse.edc.spi.system.ServiceExtensionContext;
 import org.eclipse.edc.web.spi.WebService;
@@ -13,8 +15,15 @@ import org.eclipse.edc.web.spi.configuration.PortMapping;
 import org.eclipse.edc.web.spi.configuration.PortMappingRegistry;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.net.URI;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.eclipse.edc.extension.DataPlanePublicEndpointExtension.NAME;
 
@@ -23,18 +32,237 @@ public class DataPlanePublicEndpointExtension implements ServiceExtension {
 
     public static final String NAME = "Data Plane Public Endpoint Registration";
     private static final String PUBLIC_API_URL_KEY = "edc.dataplane.api.public.baseurl";
-    private static final String PRIVATE_KEY_PATH_KEY = "edc.transfer.proxy.token.signer.privatekey.path";
-    private static final String PUBLIC_KEY_PATH_KEY = "edc.transfer.proxy.token.verifier.publickey.path";
 
     private static final String PUBLIC_CONTEXT = "public";
     private static final int DEFAULT_PUBLIC_PORT = 38185;
     private static final String DEFAULT_PUBLIC_PATH = "/public";
 
-    @Inject
-    private PublicEndpointGeneratorService generatorService;
+    @Setting(value = "Size in bytes of the buffer used to stream each proxied body", defaultValue = "65536")
+    private static final String STREAM_BUFFER_SIZE_KEY = "edc.dataplane.proxy.stream.buffer.size";
+    private static final int DEFAULT_STREAM_BUFFER_SIZE = 64 * 1024;
+
+    @Setting(value = "Largest request body in bytes forwarded for POST, PUT and PATCH, enforced on the declared length and while streaming; 0 for no limit", defaultValue = "1073741824")
+    private static final String UPLOAD_MAX_SIZE_KEY = "edc.dataplane.proxy.upload.max.size";
+    private static final long DEFAULT_UPLOAD_MAX_SIZE = 1024L * 1024 * 1024;
+
+    @Setting(value = "Maximum number of authorized EDR tokens kept in the authorization cache, 0 disables the cache", defaultValue = "10000")
+    private static final String AUTH_CACHE_MAX_ENTRIES_KEY = "edc.dataplane.proxy.authcache.max.entries";
+    private static final long DEFAULT_AUTH_CACHE_MAX_ENTRIES = 10_000;
+
+    @Setting(value = "Upper bound in seconds for how long an authorization result is reused, tokens expiring earlier are evicted at their 'exp'", defaultValue = "300")
+    private static final String AUTH_CACHE_MAX_TTL_KEY = "edc.dataplane.proxy.authcache.max.ttl";
+    private static final long DEFAULT_AUTH_CACHE_MAX_TTL = 300;
+
+    @Setting(value = "Interval in seconds at which the cached authorizations used since the last check are checked for revoked EDRs (terminated or suspended transfers)", defaultValue = "5")
+    private static final String AUTH_CACHE_REVOCATION_INTERVAL_KEY = "edc.dataplane.proxy.authcache.revocation.interval";
+    private static final long DEFAULT_AUTH_CACHE_REVOCATION_INTERVAL = 5;
+
+    @Setting(value = "Timeout in milliseconds for establishing a connection to an upstream", defaultValue = "10000")
+    private static final String CONNECT_TIMEOUT_KEY = "edc.dataplane.proxy.connect.timeout";
+    private static final long DEFAULT_CONNECT_TIMEOUT = 10_000;
+
+    @Setting(value = "Timeout in milliseconds for receiving the response headers of an upstream", defaultValue = "60000")
+    private static final String RESPONSE_TIMEOUT_KEY = "edc.dataplane.proxy.response.timeout";
+    private static final long DEFAULT_RESPONSE_TIMEOUT = 60_000;
+
+    @Setting(value = "Whether to prefer HTTP/2 when talking to https upstreams, cleartext upstreams always get HTTP/1.1", defaultValue = "true")
+    private static final String HTTP2_KEY = "edc.dataplane.proxy.http2";
+
+    @Setting(value = "Maximum number of concurrent exchanges per upstream origin", defaultValue = "64")
+    private static final String MAX_CONNECTIONS_PER_ORIGIN_KEY = "edc.dataplane.proxy.max.connections.per.origin";
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ORIGIN = 64;
+
+    @Setting(value = "Time in milliseconds a request waits for a free upstream connection before it is rejected with 503", defaultValue = "5000")
+    private static final String ACQUIRE_TIMEOUT_KEY = "edc.dataplane.proxy.acquire.timeout";
+    private static final long DEFAULT_ACQUIRE_TIMEOUT = 5_000;
+
+    @Setting(value = "Number of threads of each upstream client executor, 0 for a cached pool", defaultValue = "0")
+    private static final String EXECUTOR_THREADS_KEY = "edc.dataplane.proxy.executor.threads";
+
+    @Setting(value = "Comma-separated origins (scheme://host:port) that get a dedicated client, connection pool and executor")
+    private static final String ISOLATED_ORIGINS_KEY = "edc.dataplane.proxy.isolated.origins";
+
+    @Setting(value = "How proxied requests are executed: 'blocking' keeps each request on its Jetty thread, 'async' suspends it and runs the handler on a virtual thread", defaultValue = "blocking")
+    private static final String EXECUTION_MODE_KEY = "edc.dataplane.proxy.execution.mode";
+    private static final String EXECUTION_MODE_ASYNC = "async";
+
+    @Setting(value = "Whether idempotent GETs are answered from a response cache that follows the upstream caching headers", defaultValue = "false")
+    private static final String CACHE_ENABLED_KEY = "edc.dataplane.proxy.cache.enabled";
+
+    @Setting(value = "Total bytes of response bodies kept on the heap", defaultValue = "67108864")
+    private static final String CACHE_HEAP_BUDGET_KEY = "edc.dataplane.proxy.cache.heap.budget";
+    private static final long DEFAULT_CACHE_HEAP_BUDGET = 64L * 1024 * 1024;
+
+    @Setting(value = "Largest response body in bytes kept on the heap, larger bodies are cached on disk", defaultValue = "262144")
+    private static final String CACHE_HEAP_ENTRY_MAX_KEY = "edc.dataplane.proxy.cache.heap.entry.max";
+    private static final long DEFAULT_CACHE_HEAP_ENTRY_MAX = 256L * 1024;
+
+    @Setting(value = "Total bytes of response bodies kept on disk", defaultValue = "1073741824")
+    private static final String CACHE_DISK_BUDGET_KEY = "edc.dataplane.proxy.cache.disk.budget";
+    private static final long DEFAULT_CACHE_DISK_BUDGET = 1024L * 1024 * 1024;
+
+    @Setting(value = "Largest response body in bytes that is cached at all", defaultValue = "268435456")
+    private static final String CACHE_DISK_ENTRY_MAX_KEY = "edc.dataplane.proxy.cache.disk.entry.max";
+    private static final long DEFAULT_CACHE_DISK_ENTRY_MAX = 256L * 1024 * 1024;
+
+    @Setting(value = "Directory of the on-disk response cache tier, wiped on startup", defaultValue = "<java.io.tmpdir>/edc-proxy-cache")
+    private static final String CACHE_DIRECTORY_KEY = "edc.dataplane.proxy.cache.dir";
+
+    @Setting(value = "Attribute of the authorized EDR the request limits apply to: 'agreement', 'participant' or 'asset'", defaultValue = "agreement")
+    private static final String LIMITS_KEY_TYPE_KEY = "edc.dataplane.proxy.limits.key";
+
+    @Setting(value = "Sustained requests per second admitted per limit key, 0 disables rate limiting", defaultValue = "0")
+    private static final String LIMITS_RATE_KEY = "edc.dataplane.proxy.limits.rate";
+    private static final double DEFAULT_LIMITS_RATE = 0;
+
+    @Setting(value = "Requests per limit key admitted in a burst on top of the sustained rate", defaultValue = "200")
+    private static final String LIMITS_BURST_KEY = "edc.dataplane.proxy.limits.burst";
+    private static final int DEFAULT_LIMITS_BURST = 200;
+
+    @Setting(value = "Requests per limit key that may be in flight at the same time, 0 disables the bulkhead", defaultValue = "0")
+    private static final String LIMITS_MAX_CONCURRENT_KEY = "edc.dataplane.proxy.limits.max.concurrent";
+    private static final int DEFAULT_LIMITS_MAX_CONCURRENT = 0;
+
+    @Setting(value = "Base URL of an OTLP/HTTP collector receiving proxy spans and latency histograms, e.g. http://otel-collector:4318; nothing is exported if unset")
+    private static final String TRACING_OTLP_ENDPOINT_KEY = "edc.dataplane.proxy.tracing.otlp.endpoint";
+
+    @Setting(value = "Interval in seconds at which spans and histograms are exported to the OTLP collector", defaultValue = "5")
+    private static final String TRACING_OTLP_INTERVAL_KEY = "edc.dataplane.proxy.tracing.otlp.interval";
+    private static final long DEFAULT_TRACING_OTLP_INTERVAL = 5;
+
+    @Setting(value = "Maximum number of finished traces waiting for export, further traces are dropped", defaultValue = "2048")
+    private static final String TRACING_QUEUE_SIZE_KEY = "edc.dataplane.proxy.tracing.queue.size";
+    private static final int DEFAULT_TRACING_QUEUE_SIZE = 2048;
+
+    @Setting(value = "Fraction of requests without an incoming 'traceparent' whose spans are exported", defaultValue = "1.0")
+    private static final String TRACING_SAMPLE_RATIO_KEY = "edc.dataplane.proxy.tracing.sample.ratio";
+
+    @Setting(value = "Service name reported to the OTLP collector", defaultValue = "edc-dataplane")
+    private static final String TRACING_SERVICE_NAME_KEY = "edc.dataplane.proxy.tracing.service.name";
+
+    @Setting(value = "Whether uncompressed upstream bodies are compressed with gzip or deflate for clients that accept it", defaultValue = "true")
+    private static final String COMPRESSION_ENABLED_KEY = "edc.dataplane.proxy.compression.enabled";
+
+    @Setting(value = "Smallest body in bytes that is compressed, bodies of unknown length are always compressed", defaultValue = "1024")
+    private static final String COMPRESSION_MIN_SIZE_KEY = "edc.dataplane.proxy.compression.min.size";
+    private static final long DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+
+    @Setting(value = "Comma-separated media types that are compressed, 'type/*' matches every subtype",
+            defaultValue = "text/*,application/json,application/ld+json,application/x-ndjson,application/xml")
+    private static final String COMPRESSION_TYPES_KEY = "edc.dataplane.proxy.compression.types";
+    private static final String DEFAULT_COMPRESSION_TYPES = "text/*,application/json,application/ld+json,application/x-ndjson,application/xml";
+
+    @Setting(value = "Deflate compression level from 1 (fastest) to 9 (smallest)", defaultValue = "6")
+    private static final String COMPRESSION_LEVEL_KEY = "edc.dataplane.proxy.compression.level";
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+    @Setting(value = "Whether concurrent identical GETs of assets whose data address sets 'proxyCoalesce=true' share one upstream exchange", defaultValue = "false")
+    private static final String COALESCE_ENABLED_KEY = "edc.dataplane.proxy.coalesce.enabled";
+
+    @Setting(value = "Directory of the spool files shared upstream bodies are fanned out from", defaultValue = "<java.io.tmpdir>/edc-proxy-coalesce")
+    private static final String COALESCE_DIRECTORY_KEY = "edc.dataplane.proxy.coalesce.dir";
+
+    @Setting(value = "Largest upstream body in bytes that is spooled to be shared, larger ones are streamed to one request and the others call the upstream themselves; 0 for no limit", defaultValue = "268435456")
+    private static final String COALESCE_FLIGHT_MAX_SIZE_KEY = "edc.dataplane.proxy.coalesce.flight.max.size";
+    private static final long DEFAULT_COALESCE_FLIGHT_MAX_SIZE = 256L * 1024 * 1024;
+
+    @Setting(value = "Bytes all spool files may take together, bodies that do not fit are not shared; 0 for no limit", defaultValue = "1073741824")
+    private static final String COALESCE_SPOOL_MAX_SIZE_KEY = "edc.dataplane.proxy.coalesce.spool.max.size";
+    private static final long DEFAULT_COALESCE_SPOOL_MAX_SIZE = 1024L * 1024 * 1024;
+
+    @Setting(value = "Largest number of sub-requests accepted in one POST /$batch call", defaultValue = "100")
+    private static final String BATCH_MAX_ITEMS_KEY = "edc.dataplane.proxy.batch.max.items";
+    private static final int DEFAULT_BATCH_MAX_ITEMS = 100;
+
+    @Setting(value = "Number of sub-requests of one batch that run against the upstream at the same time", defaultValue = "8")
+    private static final String BATCH_CONCURRENCY_KEY = "edc.dataplane.proxy.batch.concurrency";
+    private static final int DEFAULT_BATCH_CONCURRENCY = 8;
+
+    @Setting(value = "Largest response body in bytes returned for a batch sub-request", defaultValue = "1048576")
+    private static final String BATCH_ITEM_MAX_SIZE_KEY = "edc.dataplane.proxy.batch.item.max.size";
+    private static final long DEFAULT_BATCH_ITEM_MAX_SIZE = 1024L * 1024;
+
+    @Setting(value = "Largest POST /$batch request body in bytes, larger ones are rejected with 413", defaultValue = "10485760")
+    private static final String BATCH_MAX_SIZE_KEY = "edc.dataplane.proxy.batch.max.size";
+    private static final long DEFAULT_BATCH_MAX_SIZE = 10L * 1024 * 1024;
+
+    @Setting(value = "Share of failed exchanges among the recent ones of an origin that opens its circuit, 0 disables the circuit breaker", defaultValue = "0.5")
+    private static final String BREAKER_FAILURE_RATIO_KEY = "edc.dataplane.proxy.breaker.failure.ratio";
+
+    @Setting(value = "Number of recent exchanges per origin the failure ratio is computed over", defaultValue = "20")
+    private static final String BREAKER_WINDOW_KEY = "edc.dataplane.proxy.breaker.window";
+    private static final int DEFAULT_BREAKER_WINDOW = 20;
+
+    @Setting(value = "Exchanges that must have been observed before the circuit of an origin may open", defaultValue = "10")
+    private static final String BREAKER_MIN_CALLS_KEY = "edc.dataplane.proxy.breaker.min.calls";
+    private static final int DEFAULT_BREAKER_MIN_CALLS = 10;
+
+    @Setting(value = "Time in milliseconds an open circuit fails requests with 503 before it lets probes through", defaultValue = "10000")
+    private static final String BREAKER_OPEN_DURATION_KEY = "edc.dataplane.proxy.breaker.open.duration";
+    private static final long DEFAULT_BREAKER_OPEN_DURATION = 10_000;
+
+    @Setting(value = "Number of probe requests let through at a time while a circuit is half open", defaultValue = "1")
+    private static final String BREAKER_HALF_OPEN_PROBES_KEY = "edc.dataplane.proxy.breaker.half.open.probes";
+
+    @Setting(value = "Whether response timeouts adapt to the observed p99 latency of each origin, bounded by 'edc.dataplane.proxy.response.timeout'", defaultValue = "false")
+    private static final String ADAPTIVE_TIMEOUT_KEY = "edc.dataplane.proxy.timeout.adaptive";
+
+    @Setting(value = "Factor applied to the observed p99 latency to get the adaptive response timeout", defaultValue = "3")
+    private static final String ADAPTIVE_TIMEOUT_MULTIPLIER_KEY = "edc.dataplane.proxy.timeout.adaptive.multiplier";
+
+    @Setting(value = "Lower bound in milliseconds of the adaptive response timeout", defaultValue = "1000")
+    private static final String ADAPTIVE_TIMEOUT_MIN_KEY = "edc.dataplane.proxy.timeout.adaptive.min";
+    private static final long DEFAULT_ADAPTIVE_TIMEOUT_MIN = 1_000;
+
+    @Setting(value = "Whether GETs and HEADs not answered within the observed p95 latency get a second, hedged attempt", defaultValue = "false")
+    private static final String HEDGING_KEY = "edc.dataplane.proxy.hedging.enabled";
+
+    @Setting(value = "Lower bound in milliseconds of the delay after which a hedged attempt is sent", defaultValue = "50")
+    private static final String HEDGING_MIN_DELAY_KEY = "edc.dataplane.proxy.hedging.min.delay";
+    private static final long DEFAULT_HEDGING_MIN_DELAY = 50;
+
+    @Setting(value = "Whether proxied requests are written as JSON lines to an asynchronous access log instead of being logged through the monitor", defaultValue = "false")
+    private static final String ACCESS_LOG_ENABLED_KEY = "edc.dataplane.proxy.accesslog.enabled";
+
+    @Setting(value = "Least severe access log records written: 'info' for every request, 'warning' for requests answered with a 4xx or 5xx status", defaultValue = "info")
+    private static final String ACCESS_LOG_LEVEL_KEY = "edc.dataplane.proxy.accesslog.level";
+
+    @Setting(value = "Fraction of 'info' access log records written, 'warning' records are never sampled", defaultValue = "1.0")
+    private static final String ACCESS_LOG_SAMPLE_RATIO_KEY = "edc.dataplane.proxy.accesslog.sample.ratio";
+
+    @Setting(value = "Number of access log records buffered for the writer, further records are dropped and counted", defaultValue = "16384")
+    private static final String ACCESS_LOG_BUFFER_SIZE_KEY = "edc.dataplane.proxy.accesslog.buffer.size";
+    private static final int DEFAULT_ACCESS_LOG_BUFFER_SIZE = 16384;
+
+    @Setting(value = "File the access log is appended to; written to stdout if unset")
+    private static final String ACCESS_LOG_FILE_KEY = "edc.dataplane.proxy.accesslog.file";
+
+    @Setting(value = "How a replica of a data address listing several 'baseUrls' is picked: 'p2c' (less loaded of two random replicas) or 'least_outstanding'", defaultValue = "p2c")
+    private static final String REPLICAS_STRATEGY_KEY = "edc.dataplane.proxy.replicas.strategy";
+
+    @Setting(value = "Failed exchanges in a row (connection errors, timeouts, 502, 503, 504) that take a replica out of rotation, 0 never ejects", defaultValue = "5")
+    private static final String REPLICAS_CONSECUTIVE_FAILURES_KEY = "edc.dataplane.proxy.replicas.consecutive.failures";
+    private static final int DEFAULT_REPLICAS_CONSECUTIVE_FAILURES = 5;
+
+    @Setting(value = "Time in milliseconds an ejected replica stays out of rotation, multiplied by the number of ejections since its last success", defaultValue = "30000")
+    private static final String REPLICAS_EJECTION_DURATION_KEY = "edc.dataplane.proxy.replicas.ejection.duration";
+    private static final long DEFAULT_REPLICAS_EJECTION_DURATION = 30_000;
+
+    @Setting(value = "Upper bound in milliseconds of the time an ejected replica stays out of rotation", defaultValue = "300000")
+    private static final String REPLICAS_MAX_EJECTION_DURATION_KEY = "edc.dataplane.proxy.replicas.max.ejection.duration";
+    private static final long DEFAULT_REPLICAS_MAX_EJECTION_DURATION = 300_000;
+
+    @Setting(value = "Whether the proxy evaluates the $select and $filter query parameters on JSON and CSV responses itself instead of forwarding them to the upstream", defaultValue = "false")
+    private static final String PUSHDOWN_ENABLED_KEY = "edc.dataplane.proxy.pushdown.enabled";
+
+    @Setting(value = "API key required in the 'X-Api-Key' header of GET /v1/proxy/metrics on the default web context; falls back to 'edc.api.auth.key', and the endpoint is not registered if neither is set")
+    private static final String METRICS_API_KEY_KEY = "edc.dataplane.proxy.metrics.api.key";
+    private static final String API_AUTH_KEY_KEY = "edc.api.auth.key";
+
+    private static final String DEFAULT_CONTEXT = "default";
 
     @Inject
-    private Vault vault;
+    private PublicEndpointGeneratorService generatorService;
 
     @Inject
     private PortMappingRegistry portMappingRegistry;
@@ -45,6 +273,32 @@ public class DataPlanePublicEndpointExtension implements ServiceExtension {
     @Inject
     private DataPlaneAuthorizationService authorizationService;
 
+    @Inject
+    private AccessTokenDataStore accessTokenDataStore;
+
+    @Inject
+    private DataPlaneAccessControlService accessControlService;
+
+    @Inject
+    private KeyMaterialService keyMaterial;
+
+    private final ProxyMetricsRegistry metricsRegistry = new ProxyMetricsRegistry();
+    private ScheduledExecutorService scheduler;
+    private TokenAuthorizer authorizer;
+    private UpstreamClient upstreamClient;
+    private ReplicaBalancer balancer;
+    private ExecutorService handlerExecutor;
+    private ExecutorService coalescingExecutor;
+    private ExecutorService batchExecutor;
+    private ExecutorService webSocketExecutor;
+    private LiveStreams liveStreams;
+    private AdmissionController admissionController;
+    private ProxyTracer tracer;
+    private AccessLog accessLog;
+    private OtlpExporter otlpExporter;
+    private long otlpInterval;
+    private long revocationInterval;
+
     @Override
     public String name() {
         return NAME;
@@ -67,27 +321,236 @@ public class DataPlanePublicEndpointExtension implements ServiceExtension {
             context.getMonitor().warning("No '%s' configured — HttpData PULL transfers will not work".formatted(PUBLIC_API_URL_KEY));
         }
 
+        // Per-key rate limits and bulkheads, applied after authorization
+        var admissionConfiguration = new AdmissionConfiguration(
+                AdmissionConfiguration.KeyType.valueOf(context.getSetting(LIMITS_KEY_TYPE_KEY, "agreement").trim().toUpperCase()),
+                Double.parseDouble(context.getSetting(LIMITS_RATE_KEY, String.valueOf(DEFAULT_LIMITS_RATE))),
+                context.getSetting(LIMITS_BURST_KEY, DEFAULT_LIMITS_BURST),
+                context.getSetting(LIMITS_MAX_CONCURRENT_KEY, DEFAULT_LIMITS_MAX_CONCURRENT));
+        if (admissionConfiguration.enabled()) {
+            admissionController = new AdmissionController(admissionConfiguration);
+            metricsRegistry.register("admission", admissionController::stats);
+        }
+
+        // Authorize EDR tokens through a bounded result cache; the transfer details are only looked up for limits keyed by them
+        authorizer = new TokenAuthorizer(authorizationService, accessTokenDataStore, accessControlService, keyMaterial, context.getMonitor(),
+                context.getSetting(AUTH_CACHE_MAX_ENTRIES_KEY, DEFAULT_AUTH_CACHE_MAX_ENTRIES),
+                Duration.ofSeconds(context.getSetting(AUTH_CACHE_MAX_TTL_KEY, DEFAULT_AUTH_CACHE_MAX_TTL)),
+                admissionConfiguration.enabled() && admissionConfiguration.keyType() != AdmissionConfiguration.KeyType.PARTICIPANT);
+        revocationInterval = context.getSetting(AUTH_CACHE_REVOCATION_INTERVAL_KEY, DEFAULT_AUTH_CACHE_REVOCATION_INTERVAL);
+        metricsRegistry.register("authorizationCache", authorizer::stats);
+        metricsRegistry.register("tokenKeys", keyMaterial::stats);
+
+        // Pooled upstream client, its idle connection timeout is the JVM-wide 'jdk.httpclient.keepalive.timeout'
+        var async = EXECUTION_MODE_ASYNC.equalsIgnoreCase(context.getSetting(EXECUTION_MODE_KEY, "blocking"));
+        var upstreamConfiguration = upstreamClientConfiguration(context, async);
+        upstreamClient = new UpstreamClient(upstreamConfiguration, resilienceConfiguration(context));
+        metricsRegistry.register("upstreamOrigins", upstreamClient::stats);
+
+        // Spreads data addresses with several upstream replicas over them, ejecting failing ones for a while
+        balancer = new ReplicaBalancer(new ReplicaBalancerConfiguration(
+                ReplicaBalancerConfiguration.Strategy.valueOf(context.getSetting(REPLICAS_STRATEGY_KEY, "p2c").trim().toUpperCase()),
+                context.getSetting(REPLICAS_CONSECUTIVE_FAILURES_KEY, DEFAULT_REPLICAS_CONSECUTIVE_FAILURES),
+                Duration.ofMillis(context.getSetting(REPLICAS_EJECTION_DURATION_KEY, DEFAULT_REPLICAS_EJECTION_DURATION)),
+                Duration.ofMillis(context.getSetting(REPLICAS_MAX_EJECTION_DURATION_KEY, DEFAULT_REPLICAS_MAX_EJECTION_DURATION))));
+        metricsRegistry.register("upstreamReplicas", balancer::stats);
+
+        ResponseCache responseCache = null;
+        if (context.getSetting(CACHE_ENABLED_KEY, false)) {
+            responseCache = new ResponseCache(new ResponseCacheConfiguration(
+                    context.getSetting(CACHE_HEAP_BUDGET_KEY, DEFAULT_CACHE_HEAP_BUDGET),
+                    context.getSetting(CACHE_HEAP_ENTRY_MAX_KEY, DEFAULT_CACHE_HEAP_ENTRY_MAX),
+                    context.getSetting(CACHE_DISK_BUDGET_KEY, DEFAULT_CACHE_DISK_BUDGET),
+                    context.getSetting(CACHE_DISK_ENTRY_MAX_KEY, DEFAULT_CACHE_DISK_ENTRY_MAX),
+                    Path.of(context.getSetting(CACHE_DIRECTORY_KEY, Path.of(System.getProperty("java.io.tmpdir"), "edc-proxy-cache").toString()))),
+                    context.getMonitor());
+            metricsRegistry.register("responseCache", responseCache::stats);
+        }
+
+        // Per-phase latency histograms, optionally exported with the sampled spans to an OTLP collector
+        var otlpEndpoint = context.getSetting(TRACING_OTLP_ENDPOINT_KEY, null);
+        if (otlpEndpoint != null && !otlpEndpoint.isBlank()) {
+            otlpExporter = new OtlpExporter(URI.create(otlpEndpoint.trim()),
+                    context.getSetting(TRACING_SERVICE_NAME_KEY, "edc-dataplane"),
+                    context.getSetting(TRACING_QUEUE_SIZE_KEY, DEFAULT_TRACING_QUEUE_SIZE),
+                    context.getMonitor());
+            otlpInterval = context.getSetting(TRACING_OTLP_INTERVAL_KEY, DEFAULT_TRACING_OTLP_INTERVAL);
+            metricsRegistry.register("otlpExport", otlpExporter::stats);
+        }
+        tracer = new ProxyTracer(Double.parseDouble(context.getSetting(TRACING_SAMPLE_RATIO_KEY, "1.0")), otlpExporter);
+        metricsRegistry.register("latency", tracer::stats);
+
+        // Structured access log, written off the request threads
+        if (context.getSetting(ACCESS_LOG_ENABLED_KEY, false)) {
+            var file = context.getSetting(ACCESS_LOG_FILE_KEY, null);
+            try {
+                accessLog = new AccessLog(new AccessLogConfiguration(
+                        AccessLogConfiguration.Level.valueOf(context.getSetting(ACCESS_LOG_LEVEL_KEY, "info").trim().toUpperCase()),
+                        Double.parseDouble(context.getSetting(ACCESS_LOG_SAMPLE_RATIO_KEY, "1.0")),
+                        context.getSetting(ACCESS_LOG_BUFFER_SIZE_KEY, DEFAULT_ACCESS_LOG_BUFFER_SIZE),
+                        file != null && !file.isBlank() ? Path.of(file.trim()) : null),
+                        context.getMonitor());
+                metricsRegistry.register("accessLog", accessLog::stats);
+            } catch (IOException e) {
+                context.getMonitor().warning("Public API: access log disabled, cannot open %s: %s".formatted(file, e.getMessage()));
+            }
+        }
+
         // Register the public API controller on the "public" web context
-        webService.registerResource(PUBLIC_CONTEXT, new DataPlanePublicApiController(authorizationService, context.getMonitor()));
+        var streamBufferSize = context.getSetting(STREAM_BUFFER_SIZE_KEY, DEFAULT_STREAM_BUFFER_SIZE);
+        ResponseCompression compression = null;
+        if (context.getSetting(COMPRESSION_ENABLED_KEY, true)) {
+            compression = new ResponseCompression(
+                    context.getSetting(COMPRESSION_MIN_SIZE_KEY, DEFAULT_COMPRESSION_MIN_SIZE),
+                    Arrays.asList(context.getSetting(COMPRESSION_TYPES_KEY, DEFAULT_COMPRESSION_TYPES).split(",")),
+                    context.getSetting(COMPRESSION_LEVEL_KEY, DEFAULT_COMPRESSION_LEVEL),
+                    // the compressor writes through a buffer of its own, a fraction of the stream buffer is plenty
+                    Math.max(512, streamBufferSize / 8));
+        }
+        if (async) {
+            handlerExecutor = ProxyThreads.virtualOrCached("public-proxy-handler");
+            if (!ProxyThreads.virtualThreadsAvailable()) {
+                context.getMonitor().warning("Virtual threads are not available on this JVM, async proxy handlers run on a cached thread pool");
+            }
+        }
+        RequestCoalescer coalescer = null;
+        if (context.getSetting(COALESCE_ENABLED_KEY, false)) {
+            var directory = Path.of(context.getSetting(COALESCE_DIRECTORY_KEY, Path.of(System.getProperty("java.io.tmpdir"), "edc-proxy-coalesce").toString()));
+            try {
+                coalescingExecutor = ProxyThreads.virtualOrCached("public-proxy-coalesce");
+                coalescer = new RequestCoalescer(coalescingExecutor,
+                        upstreamConfiguration.acquireTimeout().plus(upstreamConfiguration.responseTimeout()), streamBufferSize, directory,
+                        context.getSetting(COALESCE_FLIGHT_MAX_SIZE_KEY, DEFAULT_COALESCE_FLIGHT_MAX_SIZE),
+                        context.getSetting(COALESCE_SPOOL_MAX_SIZE_KEY, DEFAULT_COALESCE_SPOOL_MAX_SIZE));
+                metricsRegistry.register("coalescing", coalescer::stats);
+            } catch (IOException e) {
+                context.getMonitor().warning("Public API: request coalescing disabled, cannot create spool directory %s: %s".formatted(directory, e.getMessage()));
+            }
+        }
+        batchExecutor = ProxyThreads.virtualOrCached("public-proxy-batch");
+        var batchProcessor = new BatchProcessor(authorizer, admissionController, upstreamClient, balancer, batchExecutor,
+                new BatchConfiguration(
+                        context.getSetting(BATCH_MAX_ITEMS_KEY, DEFAULT_BATCH_MAX_ITEMS),
+                        context.getSetting(BATCH_CONCURRENCY_KEY, DEFAULT_BATCH_CONCURRENCY),
+                        context.getSetting(BATCH_ITEM_MAX_SIZE_KEY, DEFAULT_BATCH_ITEM_MAX_SIZE),
+                        context.getSetting(BATCH_MAX_SIZE_KEY, DEFAULT_BATCH_MAX_SIZE)),
+                context.getMonitor());
+        // Event streams and WebSockets are authorized once per connection and closed when their EDR is revoked
+        liveStreams = new LiveStreams();
+        metricsRegistry.register("liveStreams", liveStreams::stats);
+        webSocketExecutor = ProxyThreads.virtualOrCached("public-proxy-websocket");
+        var webSocketRelay = new WebSocketRelay(balancer, liveStreams, webSocketExecutor,
+                upstreamConfiguration.connectTimeout(), upstreamConfiguration.responseTimeout(), context.getMonitor());
+        webService.registerResource(PUBLIC_CONTEXT, new WebSocketUpgradeFilter());
+        // Off by default: upstreams speaking OData evaluate $select and $filter themselves
+        QueryPushdown queryPushdown = null;
+        if (context.getSetting(PUSHDOWN_ENABLED_KEY, false)) {
+            queryPushdown = new QueryPushdown();
+            metricsRegistry.register("pushdown", queryPushdown::stats);
+        }
+        webService.registerResource(PUBLIC_CONTEXT, DataPlanePublicApiController.Builder.newInstance()
+                .authorizer(authorizer)
+                .upstreamClient(upstreamClient)
+                .tracer(tracer)
+                .batchProcessor(batchProcessor)
+                .liveStreams(liveStreams)
+                .webSocketRelay(webSocketRelay)
+                .monitor(context.getMonitor())
+                .balancer(balancer)
+                .responseCache(responseCache)
+                .admissionController(admissionController)
+                .accessLog(accessLog)
+                .compression(compression)
+                .coalescer(coalescer)
+                .queryPushdown(queryPushdown)
+                .handlerExecutor(handlerExecutor)
+                .streamBufferSize(streamBufferSize)
+                .maxUploadBytes(context.getSetting(UPLOAD_MAX_SIZE_KEY, DEFAULT_UPLOAD_MAX_SIZE))
+                .build());
 
-        // Load token signing keys from PEM files into the vault
-        loadKeyIntoVault(context, PRIVATE_KEY_PATH_KEY,
-                context.getSetting("edc.transfer.proxy.token.signer.privatekey.alias", "private-key"));
-        loadKeyIntoVault(context, PUBLIC_KEY_PATH_KEY,
-                context.getSetting("edc.transfer.proxy.token.verifier.publickey.alias", "public-key"));
+        // Expose the proxy statistics on the default web context, behind an API key
+        var metricsApiKey = context.getSetting(METRICS_API_KEY_KEY, context.getSetting(API_AUTH_KEY_KEY, null));
+        if (metricsApiKey != null && !metricsApiKey.isBlank()) {
+            webService.registerResource(DEFAULT_CONTEXT, new ProxyMetricsApiController(metricsRegistry, metricsApiKey));
+        } else {
+            context.getMonitor().warning("No '%s' or '%s' configured — the proxy metrics endpoint is not registered".formatted(METRICS_API_KEY_KEY, API_AUTH_KEY_KEY));
+        }
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(ProxyThreads.platform("public-proxy-maintenance"));
+        scheduler.scheduleWithFixedDelay(authorizer::evictRevoked, revocationInterval, revocationInterval, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(() -> liveStreams.closeRevoked(authorizer::isRevoked), revocationInterval, revocationInterval, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(balancer::evictIdle, 1, 1, TimeUnit.MINUTES);
+        scheduler.scheduleWithFixedDelay(upstreamClient::evictIdle, 1, 1, TimeUnit.MINUTES);
+        if (admissionController != null) {
+            scheduler.scheduleWithFixedDelay(admissionController::evictIdle, 1, 1, TimeUnit.MINUTES);
+        }
+        if (otlpExporter != null) {
+            scheduler.scheduleWithFixedDelay(() -> otlpExporter.export(tracer.snapshots()), otlpInterval, otlpInterval, TimeUnit.SECONDS);
+        }
+        if (accessLog != null) {
+            accessLog.start();
+        }
     }
 
-    private void loadKeyIntoVault(ServiceExtensionContext context, String pathSettingKey, String alias) {
-        var keyPath = context.getSetting(pathSettingKey, null);
-        if (keyPath == null) {
-            return;
+    @Override
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (handlerExecutor != null) {
+            handlerExecutor.shutdownNow();
+        }
+        if (coalescingExecutor != null) {
+            coalescingExecutor.shutdownNow();
+        }
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+        }
+        if (webSocketExecutor != null) {
+            webSocketExecutor.shutdownNow();
         }
-        try {
-            var pem = Files.readString(Path.of(keyPath));
-            vault.storeSecret(alias, pem);
-            context.getMonitor().info("Loaded key '%s' from %s".formatted(alias, keyPath));
-        } catch (IOException e) {
-            context.getMonitor().warning("Failed to load key from %s: %s".formatted(keyPath, e.getMessage()));
+        if (upstreamClient != null) {
+            upstreamClient.close();
         }
+        if (otlpExporter != null) {
+            otlpExporter.export(tracer.snapshots());
+        }
+        if (accessLog != null) {
+            accessLog.close();
+        }
+    }
+
+    private UpstreamClientConfiguration upstreamClientConfiguration(ServiceExtensionContext context, boolean virtualThreads) {
+        var isolatedOrigins = Arrays.stream(context.getSetting(ISOLATED_ORIGINS_KEY, "").split(","))
+                .map(String::trim)
+                .filter(origin -> !origin.isEmpty())
+                .map(origin -> UpstreamClient.originKey(URI.create(origin)))
+                .collect(Collectors.toSet());
+        return new UpstreamClientConfiguration(
+                Duration.ofMillis(context.getSetting(CONNECT_TIMEOUT_KEY, DEFAULT_CONNECT_TIMEOUT)),
+                Duration.ofMillis(context.getSetting(RESPONSE_TIMEOUT_KEY, DEFAULT_RESPONSE_TIMEOUT)),
+                context.getSetting(HTTP2_KEY, true),
+                context.getSetting(MAX_CONNECTIONS_PER_ORIGIN_KEY, DEFAULT_MAX_CONNECTIONS_PER_ORIGIN),
+                Duration.ofMillis(context.getSetting(ACQUIRE_TIMEOUT_KEY, DEFAULT_ACQUIRE_TIMEOUT)),
+                context.getSetting(EXECUTOR_THREADS_KEY, 0),
+                virtualThreads,
+                isolatedOrigins);
+    }
+
+    private ResilienceConfiguration resilienceConfiguration(ServiceExtensionContext context) {
+        return new ResilienceConfiguration(
+                Double.parseDouble(context.getSetting(BREAKER_FAILURE_RATIO_KEY, "0.5")),
+                context.getSetting(BREAKER_WINDOW_KEY, DEFAULT_BREAKER_WINDOW),
+                context.getSetting(BREAKER_MIN_CALLS_KEY, DEFAULT_BREAKER_MIN_CALLS),
+                Duration.ofMillis(context.getSetting(BREAKER_OPEN_DURATION_KEY, DEFAULT_BREAKER_OPEN_DURATION)),
+                context.getSetting(BREAKER_HALF_OPEN_PROBES_KEY, 1),
+                context.getSetting(ADAPTIVE_TIMEOUT_KEY, false),
+                Double.parseDouble(context.getSetting(ADAPTIVE_TIMEOUT_MULTIPLIER_KEY, "3")),
+                Duration.ofMillis(context.getSetting(ADAPTIVE_TIMEOUT_MIN_KEY, DEFAULT_ADAPTIVE_TIMEOUT_MIN)),
+                context.getSetting(HEDGING_KEY, false),
+                Duration.ofMillis(context.getSetting(HEDGING_MIN_DELAY_KEY, DEFAULT_HEDGING_MIN_DELAY)));
     }
 }
@@ -0,0 +1,74 @@
+package org.eclipse.edc.extension;
+
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Pipes an upstream {@code text/event-stream} body to the client, flushing at the end of every event.
+ * <p>
+ * Events end with a blank line; as soon as one has been read, everything up to it is written and flushed, so each
+ * event reaches the client as soon as the upstream sent it even while further events are queued behind it. The
+ * stream stays open as long as the upstream keeps it open. {@link #close()} ends it from another thread: the
+ * upstream exchange is cancelled, the pending read fails and the client connection is closed.
+ */
+class EventStreamProxyBody implements StreamingOutput, Closeable {
+
+    static final String MEDIA_TYPE = "text/event-stream";
+
+    private final InputStream upstream;
+    private final int bufferSize;
+
+    EventStreamProxyBody(InputStream upstream, int bufferSize) {
+        this.upstream = upstream;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Whether a response of the given content type is an event stream.
+     */
+    static boolean isEventStream(String contentType) {
+        return contentType != null && contentType.trim().toLowerCase().startsWith(MEDIA_TYPE);
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        try (var in = upstream) {
+            var buffer = new byte[bufferSize];
+            // whether nothing but a CR has been read since the last LF, i.e. the next LF ends an event
+            var atLineStart = false;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                var start = 0;
+                for (var i = 0; i < read; i++) {
+                    var b = buffer[i];
+                    if (b == '\n') {
+                        if (atLineStart) {
+                            output.write(buffer, start, i + 1 - start);
+                            output.flush();
+                            start = i + 1;
+                        }
+                        atLineStart = true;
+                    } else if (b != '\r') {
+                        atLineStart = false;
+                    }
+                }
+                if (start < read) {
+                    output.write(buffer, start, read - start);
+                    if (in.available() == 0) {
+                        output.flush();
+                    }
+                }
+            }
+            output.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        upstream.close();
+    }
+}
@@ -0,0 +1,129 @@
+package org.eclipse.edc.extension;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies a {@link QueryPushdown.Query} to a JSON array (or newline-delimited JSON) while it streams from the
+ * upstream. Elements are read one at a time with a streaming parser, matched against the filter, projected to the
+ * selected fields and written out, so memory use is bounded by the largest single element.
+ */
+class JsonPushdownBody implements StreamingOutput {
+
+    private final ObjectMapper objectMapper;
+    private final InputStream upstream;
+    private final JsonParser parser;
+    private final boolean delimited;
+    private final QueryPushdown.Query query;
+    private final QueryPushdown pushdown;
+    private final Map<String, JsonPointer> pointers = new HashMap<>();
+
+    private JsonPushdownBody(ObjectMapper objectMapper, InputStream upstream, JsonParser parser, boolean delimited,
+                             QueryPushdown.Query query, QueryPushdown pushdown) {
+        this.objectMapper = objectMapper;
+        this.upstream = upstream;
+        this.parser = parser;
+        this.delimited = delimited;
+        this.query = query;
+        this.pushdown = pushdown;
+        query.select().forEach(field -> pointers.put(field, pointer(field)));
+        if (query.filter() != null) {
+            query.filter().fields().forEach(field -> pointers.computeIfAbsent(field, JsonPushdownBody::pointer));
+        }
+    }
+
+    /**
+     * Starts parsing a body.
+     *
+     * @param delimited whether the body is a sequence of JSON values (one per line) rather than one array
+     * @throws IllegalArgumentException if a body that is not delimited is not an array
+     */
+    static JsonPushdownBody open(ObjectMapper objectMapper, InputStream upstream, boolean delimited,
+                                 QueryPushdown.Query query, QueryPushdown pushdown) throws IOException {
+        var parser = objectMapper.getFactory().createParser(upstream);
+        if (!delimited && parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IllegalArgumentException("$select and $filter apply to JSON arrays only");
+        }
+        return new JsonPushdownBody(objectMapper, upstream, parser, delimited, query, pushdown);
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        long scanned = 0;
+        long emitted = 0;
+        try (parser; var generator = objectMapper.getFactory().createGenerator(output)) {
+            // the client connection is Jersey's to close
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // delimited values are separated by the newlines written below
+            generator.setRootValueSeparator(null);
+            if (!delimited) {
+                generator.writeStartArray();
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                JsonNode element = parser.readValueAsTree();
+                scanned++;
+                if (query.filter() == null || query.filter().matches(field -> element.at(pointers.get(field)))) {
+                    generator.writeTree(project(element));
+                    if (delimited) {
+                        generator.writeRaw('\n');
+                    }
+                    emitted++;
+                }
+                // matches go out as soon as the upstream pauses, rather than when the buffer is full
+                if (upstream.available() == 0) {
+                    generator.flush();
+                }
+            }
+            if (!delimited) {
+                generator.writeEndArray();
+            }
+            generator.flush();
+        } finally {
+            pushdown.count(scanned, emitted);
+        }
+    }
+
+    private JsonNode project(JsonNode element) {
+        List<String> select = query.select();
+        if (select.isEmpty() || !element.isObject()) {
+            return element;
+        }
+        var projection = objectMapper.createObjectNode();
+        for (var field : select) {
+            var value = element.at(pointers.get(field));
+            if (value.isMissingNode()) {
+                continue;
+            }
+            var segments = field.split("\\.");
+            ObjectNode parent = projection;
+            for (var i = 0; i < segments.length - 1; i++) {
+                parent = parent.get(segments[i]) instanceof ObjectNode child ? child : parent.putObject(segments[i]);
+            }
+            parent.set(segments[segments.length - 1], value);
+        }
+        return projection;
+    }
+
+    private static JsonPointer pointer(String field) {
+        var path = new StringBuilder();
+        for (var segment : field.split("\\.")) {
+            path.append('/').append(segment.replace("~", "~0").replace("/", "~1"));
+        }
+        return JsonPointer.compile(path.toString());
+    }
+}
@@ -0,0 +1,19 @@
+package org.eclipse.edc.extension;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the {@link KeyMaterialService}.
+ *
+ * @param privateKeyAlias alias the EDR signing key is resolved by
+ * @param privateKeyPath  PEM file of the signing key, {@code null} to resolve it from the vault
+ * @param publicKeyAlias  alias the EDR verification key is resolved by
+ * @param publicKeyPath   PEM file of the verification key, {@code null} to resolve it from the vault
+ * @param gracePeriod     how long the previous verification key is still accepted after it was replaced
+ * @param settleDelay     quiet time after the last change to a key file before the files are reloaded, so that
+ *                        both halves of a rotated key pair are picked up together
+ */
+record KeyMaterialConfiguration(String privateKeyAlias, Path privateKeyPath, String publicKeyAlias, Path publicKeyPath,
+                                Duration gracePeriod, Duration settleDelay) {
+}
@@ -0,0 +1,101 @@
+package org.eclipse.edc.extension;
+
+import org.eclipse.edc.keys.spi.KeyParserRegistry;
+import org.eclipse.edc.runtime.metamodel.annotation.Extension;
+import org.eclipse.edc.runtime.metamodel.annotation.Inject;
+import org.eclipse.edc.runtime.metamodel.annotation.Provider;
+import org.eclipse.edc.runtime.metamodel.annotation.Setting;
+import org.eclipse.edc.spi.security.Vault;
+import org.eclipse.edc.spi.system.ServiceExtension;
+import org.eclipse.edc.spi.system.ServiceExtensionContext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.eclipse.edc.extension.KeyMaterialExtension.NAME;
+
+/**
+ * Provides the {@link KeyMaterialService} that loads the EDR signing and verification keys into the vault and reloads
+ * them when their PEM files change. The runtime's default key resolvers stay in place and read the keys from the
+ * vault; the public endpoint extension uses the service to accept tokens of the previous key after a rotation.
+ */
+@Extension(NAME)
+public class KeyMaterialExtension implements ServiceExtension {
+
+    public static final String NAME = "Data Plane Token Key Material";
+
+    private static final String PRIVATE_KEY_PATH_KEY = "edc.transfer.proxy.token.signer.privatekey.path";
+    private static final String PUBLIC_KEY_PATH_KEY = "edc.transfer.proxy.token.verifier.publickey.path";
+    private static final String PRIVATE_KEY_ALIAS_KEY = "edc.transfer.proxy.token.signer.privatekey.alias";
+    private static final String PUBLIC_KEY_ALIAS_KEY = "edc.transfer.proxy.token.verifier.publickey.alias";
+
+    @Setting(value = "Whether the token key files are watched and reloaded when they change", defaultValue = "true")
+    private static final String KEYS_WATCH_KEY = "edc.dataplane.proxy.keys.watch";
+
+    @Setting(value = "Time in seconds the previous verification key is still accepted after a key rotation, so EDRs issued before it stay valid; 0 drops it right away", defaultValue = "3600")
+    private static final String KEYS_GRACE_PERIOD_KEY = "edc.dataplane.proxy.keys.grace.period";
+    private static final long DEFAULT_KEYS_GRACE_PERIOD = 3600;
+
+    @Setting(value = "Quiet time in milliseconds after the last change to a key file before the keys are reloaded", defaultValue = "500")
+    private static final String KEYS_SETTLE_DELAY_KEY = "edc.dataplane.proxy.keys.settle.delay";
+    private static final long DEFAULT_KEYS_SETTLE_DELAY = 500;
+
+    @Inject
+    private Vault vault;
+
+    @Inject
+    private KeyParserRegistry keyParserRegistry;
+
+    private KeyMaterialService keyMaterial;
+    private boolean watch;
+    private ServiceExtensionContext context;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void initialize(ServiceExtensionContext context) {
+        this.context = context;
+        var privateKeyPath = context.getSetting(PRIVATE_KEY_PATH_KEY, null);
+        var publicKeyPath = context.getSetting(PUBLIC_KEY_PATH_KEY, null);
+        keyMaterial = new KeyMaterialService(vault, keyParserRegistry, new KeyMaterialConfiguration(
+                context.getSetting(PRIVATE_KEY_ALIAS_KEY, "private-key"),
+                privateKeyPath != null ? Path.of(privateKeyPath) : null,
+                context.getSetting(PUBLIC_KEY_ALIAS_KEY, "public-key"),
+                publicKeyPath != null ? Path.of(publicKeyPath) : null,
+                Duration.ofSeconds(context.getSetting(KEYS_GRACE_PERIOD_KEY, DEFAULT_KEYS_GRACE_PERIOD)),
+                Duration.ofMillis(context.getSetting(KEYS_SETTLE_DELAY_KEY, DEFAULT_KEYS_SETTLE_DELAY))),
+                Clock.systemUTC(), context.getMonitor());
+        watch = context.getSetting(KEYS_WATCH_KEY, true);
+
+        // Load token signing keys from PEM files, copying them into the vault
+        keyMaterial.reload();
+    }
+
+    @Override
+    public void start() {
+        if (watch) {
+            try {
+                keyMaterial.watch();
+            } catch (IOException e) {
+                context.getMonitor().warning("Key files are not watched, rotated keys need a restart: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (keyMaterial != null) {
+            keyMaterial.close();
+        }
+    }
+
+    @Provider
+    public KeyMaterialService keyMaterialService() {
+        return keyMaterial;
+    }
+}
@@ -0,0 +1,318 @@
+package org.eclipse.edc.extension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.edc.keys.spi.KeyParserRegistry;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.security.Vault;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the keys EDR tokens are signed and verified with in step with their PEM files.
+ * <p>
+ * The configured PEM files are parsed, copied to the vault under their aliases and reloaded when they change
+ * ({@link #watch()}); the runtime's own key resolvers read them from there. A reload replaces both keys at once, and
+ * only once the signing key and the verification key belong together again, so a rotation written file by file
+ * never signs with one generation and verifies with the other. The replaced verification key is kept for
+ * {@link KeyMaterialConfiguration#gracePeriod()}: EDRs issued before a rotation carry signatures of the previous key,
+ * which {@link #verifiesWithPreviousKey(String)} checks so that they stay valid until they expire.
+ * <p>
+ * The parsed keys serve only this service: to check that a rotated pair matches and to verify tokens of the previous
+ * key. Tokens are signed and verified with the current key by the runtime's own resolvers, which still parse the PEM
+ * they read from the vault on every use. What the service adds is hot reload, not faster signing or verification.
+ */
+class KeyMaterialService {
+
+    private static final byte[] CHALLENGE = new byte[32];
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        new SecureRandom().nextBytes(CHALLENGE);
+    }
+
+    private final Vault vault;
+    private final KeyParserRegistry keyParserRegistry;
+    private final KeyMaterialConfiguration configuration;
+    private final Clock clock;
+    private final Monitor monitor;
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder failedReloads = new LongAdder();
+    private final LongAdder previousKeyVerifications = new LongAdder();
+
+    private volatile KeyMaterial current = KeyMaterial.NONE;
+    private WatchService watchService;
+
+    /**
+     * The parsed keys of the configured files and the PEM text they were parsed from.
+     */
+    private record KeyMaterial(String privatePem, PrivateKey privateKey, String publicPem, PublicKey publicKey,
+                               PublicKey previousPublicKey, Instant previousUntil, Instant loadedAt) {
+        static final KeyMaterial NONE = new KeyMaterial(null, null, null, null, null, null, null);
+    }
+
+    KeyMaterialService(Vault vault, KeyParserRegistry keyParserRegistry, KeyMaterialConfiguration configuration, Clock clock, Monitor monitor) {
+        this.vault = vault;
+        this.keyParserRegistry = keyParserRegistry;
+        this.configuration = configuration;
+        this.clock = clock;
+        this.monitor = monitor;
+    }
+
+    /**
+     * Whether a replaced verification key is still accepted.
+     */
+    boolean inGracePeriod() {
+        var material = current;
+        return material.previousPublicKey() != null && clock.instant().isBefore(material.previousUntil());
+    }
+
+    /**
+     * Whether the signature of a compact JWS was made with the replaced key, while that is still accepted. Only the
+     * signature is checked, the claims are left to the caller.
+     */
+    boolean verifiesWithPreviousKey(String token) {
+        var material = current;
+        if (!inGracePeriod()) {
+            return false;
+        }
+        previousKeyVerifications.increment();
+        return verifies(token, material.previousPublicKey());
+    }
+
+    /**
+     * Reads and parses the configured key files and publishes them if they changed. Keys that cannot be read or
+     * parsed, or a key pair that does not match, leave the keys in use untouched.
+     *
+     * @return whether new keys were published
+     */
+    synchronized boolean reload() {
+        var previous = current;
+        String privatePem;
+        String publicPem;
+        try {
+            privatePem = read(configuration.privateKeyPath());
+            publicPem = read(configuration.publicKeyPath());
+        } catch (IOException e) {
+            failedReloads.increment();
+            monitor.warning("Failed to read key files, keeping the keys in use: " + e.getMessage());
+            return false;
+        }
+        if (Objects.equals(privatePem, previous.privatePem()) && Objects.equals(publicPem, previous.publicPem())) {
+            return false;
+        }
+
+        var privateKey = Objects.equals(privatePem, previous.privatePem()) ? previous.privateKey() : parse(privatePem, PrivateKey.class, configuration.privateKeyPath());
+        var publicKey = Objects.equals(publicPem, previous.publicPem()) ? previous.publicKey() : parse(publicPem, PublicKey.class, configuration.publicKeyPath());
+        if ((privatePem != null && privateKey == null) || (publicPem != null && publicKey == null)) {
+            failedReloads.increment();
+            return false;
+        }
+        if (privateKey != null && publicKey != null && !isPair(privateKey, publicKey)) {
+            // one half of a rotated pair has been written, the other one will follow
+            failedReloads.increment();
+            monitor.warning("Key files %s and %s do not hold a matching key pair, keeping the keys in use"
+                    .formatted(configuration.privateKeyPath(), configuration.publicKeyPath()));
+            return false;
+        }
+
+        var now = clock.instant();
+        var previousPublicKey = previous.previousPublicKey();
+        var previousUntil = previous.previousUntil();
+        if (previous.publicKey() != null && !Objects.equals(publicPem, previous.publicPem()) && !configuration.gracePeriod().isZero()) {
+            previousPublicKey = previous.publicKey();
+            previousUntil = now.plus(configuration.gracePeriod());
+        }
+        current = new KeyMaterial(privatePem, privateKey, publicPem, publicKey, previousPublicKey, previousUntil, now);
+        reloads.increment();
+
+        // keep the vault in step for everything that reads the keys from there
+        if (privatePem != null && !privatePem.equals(previous.privatePem())) {
+            storeInVault(configuration.privateKeyAlias(), privatePem, configuration.privateKeyPath());
+        }
+        if (publicPem != null && !publicPem.equals(previous.publicPem())) {
+            storeInVault(configuration.publicKeyAlias(), publicPem, configuration.publicKeyPath());
+        }
+        return true;
+    }
+
+    /**
+     * Starts watching the directories of the configured key files, reloading the keys after each burst of changes.
+     * Directories rather than files are watched, so that files replaced by a rename (or a symlink swap, as with
+     * mounted Kubernetes secrets) are noticed too.
+     */
+    synchronized void watch() throws IOException {
+        var directories = new LinkedHashSet<Path>();
+        for (var path : new Path[]{ configuration.privateKeyPath(), configuration.publicKeyPath() }) {
+            if (path != null) {
+                directories.add(path.toAbsolutePath().getParent());
+            }
+        }
+        if (directories.isEmpty() || watchService != null) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        for (var directory : directories) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        }
+        ProxyThreads.platform("key-material-watch").newThread(() -> watchLoop(watchService)).start();
+    }
+
+    /**
+     * Stops watching the key files.
+     */
+    synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+            watchService = null;
+        }
+    }
+
+    Map<String, Object> stats() {
+        var material = current;
+        var stats = new LinkedHashMap<String, Object>();
+        stats.put("signingKeyLoaded", material.privateKey() != null);
+        stats.put("verificationKeyLoaded", material.publicKey() != null);
+        stats.put("loadedAt", material.loadedAt() != null ? material.loadedAt().toString() : null);
+        stats.put("reloads", reloads.sum());
+        stats.put("failedReloads", failedReloads.sum());
+        stats.put("previousKeyAcceptedUntil", inGracePeriod() ? material.previousUntil().toString() : null);
+        stats.put("previousKeyVerifications", previousKeyVerifications.sum());
+        return stats;
+    }
+
+    private void watchLoop(WatchService service) {
+        var settleMillis = configuration.settleDelay().toMillis();
+        try {
+            while (true) {
+                var key = service.take();
+                key.pollEvents();
+                key.reset();
+                // wait for the burst of writes to settle, a rotation usually touches both files
+                while ((key = service.poll(settleMillis, TimeUnit.MILLISECONDS)) != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+                if (reload()) {
+                    monitor.info("Reloaded token keys from %s and %s".formatted(configuration.privateKeyPath(), configuration.publicKeyPath()));
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // stopped
+        } catch (RuntimeException e) {
+            monitor.severe("Stopped watching key files: " + e.getMessage(), e);
+        }
+    }
+
+    private <K> K parse(String pem, Class<K> type, Path path) {
+        if (pem == null) {
+            return null;
+        }
+        var result = keyParserRegistry.parse(pem);
+        if (result.failed() || !type.isInstance(result.getContent())) {
+            monitor.warning("Failed to parse %s from %s, keeping the keys in use: %s".formatted(type.getSimpleName(), path,
+                    result.failed() ? result.getFailureDetail() : "not a " + type.getSimpleName()));
+            return null;
+        }
+        return type.cast(result.getContent());
+    }
+
+    private void storeInVault(String alias, String pem, Path path) {
+        var result = vault.storeSecret(alias, pem);
+        if (result.failed()) {
+            monitor.warning("Failed to store key '%s' from %s in the vault: %s".formatted(alias, path, result.getFailureDetail()));
+        } else {
+            monitor.info("Loaded key '%s' from %s".formatted(alias, path));
+        }
+    }
+
+    private static String read(Path path) throws IOException {
+        return path != null ? Files.readString(path, StandardCharsets.UTF_8) : null;
+    }
+
+    private static boolean verifies(String token, PublicKey publicKey) {
+        var firstDot = token.indexOf('.');
+        var secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (secondDot < 0) {
+            return false;
+        }
+        try {
+            var header = MAPPER.readTree(Base64.getUrlDecoder().decode(token.substring(0, firstDot)));
+            var algorithm = switch (header.path("alg").asText()) {
+                case "ES256" -> "SHA256withECDSAinP1363Format";
+                case "ES384" -> "SHA384withECDSAinP1363Format";
+                case "ES512" -> "SHA512withECDSAinP1363Format";
+                case "RS256" -> "SHA256withRSA";
+                case "RS384" -> "SHA384withRSA";
+                case "RS512" -> "SHA512withRSA";
+                case "EdDSA" -> "Ed25519";
+                default -> null;
+            };
+            if (algorithm == null) {
+                return false;
+            }
+            var verifier = Signature.getInstance(algorithm);
+            verifier.initVerify(publicKey);
+            verifier.update(token.substring(0, secondDot).getBytes(StandardCharsets.US_ASCII));
+            return verifier.verify(Base64.getUrlDecoder().decode(token.substring(secondDot + 1)));
+        } catch (IOException | IllegalArgumentException | GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Whether the public key verifies a signature of the private key. Key types without a known signature
+     * algorithm are assumed to match.
+     */
+    private static boolean isPair(PrivateKey privateKey, PublicKey publicKey) {
+        if (!privateKey.getAlgorithm().equals(publicKey.getAlgorithm())) {
+            return false;
+        }
+        var algorithm = switch (privateKey.getAlgorithm()) {
+            case "EC" -> "SHA256withECDSA";
+            case "RSA" -> "SHA256withRSA";
+            case "Ed25519", "EdDSA" -> "Ed25519";
+            default -> null;
+        };
+        if (algorithm == null) {
+            return true;
+        }
+        try {
+            var signer = Signature.getInstance(algorithm);
+            signer.initSign(privateKey);
+            signer.update(CHALLENGE);
+            var signature = signer.sign();
+            var verifier = Signature.getInstance(algorithm);
+            verifier.initVerify(publicKey);
+            verifier.update(CHALLENGE);
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+}
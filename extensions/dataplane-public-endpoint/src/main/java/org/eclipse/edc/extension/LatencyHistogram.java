@@ -0,0 +1,105 @@
+package org.eclipse.edc.extension;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with a bounded relative error, in the spirit of HdrHistogram.
+ * <p>
+ * Values are microseconds, bucketed on a base-2 exponential scale with {@code 2^SCALE} buckets per power of two, so
+ * every recorded value is within 4.4% of its bucket bounds from one microsecond up to twelve days. The layout is
+ * exactly that of an OTLP exponential histogram at {@link #SCALE}, so buckets can be exported without re-binning.
+ */
+class LatencyHistogram {
+
+    static final int SCALE = 4;
+    /**
+     * OTLP index of the first bucket, which holds every value of at most one microsecond.
+     */
+    static final int OFFSET = -1;
+
+    private static final int SUB_BUCKETS = 1 << SCALE;
+    private static final int BUCKETS = 40 * SUB_BUCKETS + 1;
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long micros) {
+        var value = Math.max(1, micros);
+        counts.incrementAndGet(Math.min(BUCKETS - 1, indexOf(value) - OFFSET));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    Snapshot snapshot() {
+        var copy = new long[BUCKETS];
+        var last = -1;
+        for (var i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            if (copy[i] != 0) {
+                last = i;
+            }
+        }
+        var trimmed = new long[last + 1];
+        System.arraycopy(copy, 0, trimmed, 0, trimmed.length);
+        return new Snapshot(count.sum(), sum.sum(), max.get(), trimmed);
+    }
+
+    private static int indexOf(long value) {
+        return (int) Math.ceil(Math.log(value) / LN2 * SUB_BUCKETS) - 1;
+    }
+
+    private static double upperBound(int position) {
+        return Math.pow(2, (double) (position + OFFSET + 1) / SUB_BUCKETS);
+    }
+
+    /**
+     * Point-in-time copy of a histogram; bucket {@code i} counts values in {@code (2^((i + OFFSET) / 16), 2^((i + OFFSET + 1) / 16)]}.
+     */
+    record Snapshot(long count, long sum, long max, long[] bucketCounts) {
+
+        /**
+         * The value at the given quantile, reported as the upper bound of its bucket.
+         */
+        double quantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            var rank = Math.max(1, (long) Math.ceil(quantile * count));
+            var seen = 0L;
+            for (var i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Summary in milliseconds, as served on the metrics endpoint.
+         */
+        Map<String, Object> summary() {
+            var summary = new LinkedHashMap<String, Object>();
+            summary.put("count", count);
+            summary.put("meanMs", count > 0 ? millis((double) sum / count) : 0);
+            summary.put("p50Ms", millis(quantile(0.5)));
+            summary.put("p90Ms", millis(quantile(0.9)));
+            summary.put("p99Ms", millis(quantile(0.99)));
+            summary.put("p999Ms", millis(quantile(0.999)));
+            summary.put("maxMs", millis(max));
+            return summary;
+        }
+
+        private static double millis(double micros) {
+            return Math.round(micros) / 1000.0;
+        }
+    }
+}
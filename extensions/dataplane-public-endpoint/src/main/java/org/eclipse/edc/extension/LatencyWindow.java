@@ -0,0 +1,53 @@
+package org.eclipse.edc.extension;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of the most recent upstream latencies of one origin, from which the percentiles driving adaptive
+ * timeouts and hedging are derived.
+ * <p>
+ * Percentiles are recomputed every few samples rather than on each read, so reading them on the request path is a
+ * volatile read.
+ */
+class LatencyWindow {
+
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final long[] samples;
+    private final int minSamples;
+    private int next;
+    private long count;
+    private volatile long p95Nanos;
+    private volatile long p99Nanos;
+
+    LatencyWindow(int size, int minSamples) {
+        this.samples = new long[size];
+        this.minSamples = minSamples;
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count++;
+        if (count >= minSamples && (count % RECOMPUTE_EVERY == 0 || count == minSamples)) {
+            var sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+            Arrays.sort(sorted);
+            p95Nanos = sorted[(int) Math.ceil(0.95 * sorted.length) - 1];
+            p99Nanos = sorted[(int) Math.ceil(0.99 * sorted.length) - 1];
+        }
+    }
+
+    /**
+     * The observed p95 latency, {@code 0} until enough samples have been recorded.
+     */
+    long p95Nanos() {
+        return p95Nanos;
+    }
+
+    /**
+     * The observed p99 latency, {@code 0} until enough samples have been recorded.
+     */
+    long p99Nanos() {
+        return p99Nanos;
+    }
+}
@@ -0,0 +1,101 @@
+package org.eclipse.edc.extension;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * The long-lived connections of the public proxy (event streams and WebSocket tunnels), by the EDR token they were
+ * authorized with.
+ * <p>
+ * Such a connection is authorized once when it is opened, so it would outlive a terminated or suspended transfer.
+ * {@link #closeRevoked(Predicate)} closes every connection whose token has been revoked since. Connections opened
+ * with a token without {@code jti} are tracked for the statistics only, their revocation cannot be detected.
+ */
+class LiveStreams {
+
+    enum Kind {
+        EVENT_STREAM,
+        WEBSOCKET
+    }
+
+    private final Set<Registration> registrations = ConcurrentHashMap.newKeySet();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder revoked = new LongAdder();
+
+    /**
+     * Tracks a connection until the returned registration is closed.
+     *
+     * @param connection closed when the token is revoked
+     */
+    Registration register(AuthorizedGrant grant, Kind kind, Closeable connection) {
+        var registration = new Registration(grant.tokenId(), kind, connection);
+        registrations.add(registration);
+        opened.increment();
+        return registration;
+    }
+
+    /**
+     * Closes the connections of all tokens the predicate reports as revoked, each token is checked once.
+     */
+    void closeRevoked(Predicate<String> isRevoked) {
+        var checked = new HashMap<String, Boolean>();
+        for (var registration : registrations) {
+            if (registration.tokenId != null && checked.computeIfAbsent(registration.tokenId, isRevoked::test)) {
+                revoked.increment();
+                registration.closeConnection();
+            }
+        }
+    }
+
+    Map<String, Object> stats() {
+        var open = new LinkedHashMap<String, Object>();
+        for (var kind : Kind.values()) {
+            open.put(kind.name().toLowerCase(), registrations.stream().filter(registration -> registration.kind == kind).count());
+        }
+        var stats = new LinkedHashMap<String, Object>();
+        stats.put("open", open);
+        stats.put("opened", opened.sum());
+        stats.put("closedOnRevocation", revoked.sum());
+        return stats;
+    }
+
+    /**
+     * A tracked connection; closing the registration stops tracking it, the connection itself is left alone.
+     */
+    class Registration implements AutoCloseable {
+        private final String tokenId;
+        private final Kind kind;
+        private final Closeable connection;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Registration(String tokenId, Kind kind, Closeable connection) {
+            this.tokenId = tokenId;
+            this.kind = kind;
+            this.connection = connection;
+        }
+
+        @Override
+        public void close() {
+            registrations.remove(this);
+        }
+
+        private void closeConnection() {
+            if (closed.compareAndSet(false, true)) {
+                registrations.remove(this);
+                try {
+                    connection.close();
+                } catch (IOException ignored) {
+                    // the connection is going away either way
+                }
+            }
+        }
+    }
+}
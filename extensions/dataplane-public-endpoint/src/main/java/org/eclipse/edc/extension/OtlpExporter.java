@@ -0,0 +1,209 @@
+package org.eclipse.edc.extension;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.edc.spi.monitor.Monitor;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exports proxy spans and latency histograms to an OpenTelemetry collector with OTLP/HTTP and JSON encoding.
+ * <p>
+ * Finished traces are queued without blocking (and dropped once the queue is full) and sent in batches by
+ * {@link #export}, which the extension runs periodically on its maintenance scheduler. Histograms are exported as
+ * cumulative exponential histograms. Any OTLP/HTTP receiver, e.g. a local stub in tests, can stand in for the collector.
+ */
+class OtlpExporter {
+
+    private static final String SCOPE = "org.eclipse.edc.extension.dataplane-public-endpoint";
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int SPAN_KIND_SERVER = 2;
+    private static final int SPAN_KIND_CLIENT = 3;
+    private static final int STATUS_UNSET = 0;
+    private static final int STATUS_ERROR = 2;
+    private static final int TEMPORALITY_CUMULATIVE = 2;
+
+    private final URI tracesEndpoint;
+    private final URI metricsEndpoint;
+    private final String serviceName;
+    private final Monitor monitor;
+    private final BlockingQueue<ProxyTrace> queue;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long startEpochNanos;
+    private final LongAdder exported = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Creates the exporter.
+     *
+     * @param endpoint base URL of the collector's OTLP/HTTP receiver, e.g. {@code http://otel-collector:4318}
+     */
+    OtlpExporter(URI endpoint, String serviceName, int queueSize, Monitor monitor) {
+        var base = endpoint.toString().endsWith("/") ? endpoint.toString() : endpoint + "/";
+        this.tracesEndpoint = URI.create(base + "v1/traces");
+        this.metricsEndpoint = URI.create(base + "v1/metrics");
+        this.serviceName = serviceName;
+        this.monitor = monitor;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        var now = Instant.now();
+        this.startEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    void enqueue(ProxyTrace trace) {
+        if (!queue.offer(trace)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Sends the queued spans and the current histograms to the collector.
+     */
+    void export(Map<ProxyTracer.PhaseKey, LatencyHistogram.Snapshot> histograms) {
+        try {
+            var traces = new ArrayList<ProxyTrace>();
+            queue.drainTo(traces);
+            if (!traces.isEmpty() && post(tracesEndpoint, tracesRequest(traces))) {
+                exported.add(traces.size());
+            }
+            if (!histograms.isEmpty()) {
+                post(metricsEndpoint, metricsRequest(histograms));
+            }
+        } catch (Exception e) {
+            failures.increment();
+            monitor.warning("Public API: failed to export traces: " + e.getMessage());
+        }
+    }
+
+    Map<String, Object> stats() {
+        var stats = new LinkedHashMap<String, Object>();
+        stats.put("endpoint", tracesEndpoint.resolve("/").toString());
+        stats.put("queued", queue.size());
+        stats.put("exported", exported.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    private boolean post(URI uri, Map<String, Object> body) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json(body)))
+                .build();
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() >= 300) {
+            failures.increment();
+            monitor.warning("Public API: collector rejected export to %s with status %d".formatted(uri, response.statusCode()));
+            return false;
+        }
+        return true;
+    }
+
+    private byte[] json(Map<String, Object> body) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    private Map<String, Object> tracesRequest(List<ProxyTrace> traces) {
+        var spans = new ArrayList<Map<String, Object>>();
+        for (var trace : traces) {
+            var attributes = new ArrayList<>(List.of(
+                    attribute("http.request.method", trace.method()),
+                    attribute("http.response.status_code", trace.statusCode()),
+                    attribute("edc.proxy.upstream.origin", trace.origin())));
+            if (trace.error() != null) {
+                attributes.add(attribute("error.type", trace.error()));
+            }
+            spans.add(span(trace, trace.spanId(), trace.parentSpanId(), trace.method(), SPAN_KIND_SERVER,
+                    trace.startNanos(), trace.endNanos(), attributes, trace.statusCode() >= 500 ? STATUS_ERROR : STATUS_UNSET));
+            for (var phase : trace.phases()) {
+                var kind = ProxyTrace.UPSTREAM_FIRST_BYTE.equals(phase.name()) ? SPAN_KIND_CLIENT : SPAN_KIND_INTERNAL;
+                spans.add(span(trace, phase.spanId(), trace.spanId(), phase.name(), kind,
+                        phase.startNanos(), phase.startNanos() + phase.durationNanos(), List.of(), STATUS_UNSET));
+            }
+        }
+        return Map.of("resourceSpans", List.of(Map.of(
+                "resource", resource(),
+                "scopeSpans", List.of(Map.of("scope", Map.of("name", SCOPE), "spans", spans)))));
+    }
+
+    private Map<String, Object> span(ProxyTrace trace, String spanId, String parentSpanId, String name, int kind,
+                                     long startNanos, long endNanos, List<Map<String, Object>> attributes, int status) {
+        var span = new LinkedHashMap<String, Object>();
+        span.put("traceId", trace.traceId());
+        span.put("spanId", spanId);
+        if (parentSpanId != null) {
+            span.put("parentSpanId", parentSpanId);
+        }
+        if (trace.traceState() != null) {
+            span.put("traceState", trace.traceState());
+        }
+        span.put("name", name);
+        span.put("kind", kind);
+        span.put("startTimeUnixNano", String.valueOf(trace.epochNanos(startNanos)));
+        span.put("endTimeUnixNano", String.valueOf(trace.epochNanos(endNanos)));
+        span.put("attributes", attributes);
+        span.put("status", Map.of("code", status));
+        return span;
+    }
+
+    private Map<String, Object> metricsRequest(Map<ProxyTracer.PhaseKey, LatencyHistogram.Snapshot> histograms) {
+        var now = Instant.now();
+        var timestamp = String.valueOf(now.getEpochSecond() * 1_000_000_000L + now.getNano());
+        var dataPoints = new ArrayList<Map<String, Object>>();
+        histograms.forEach((key, snapshot) -> {
+            var dataPoint = new LinkedHashMap<String, Object>();
+            dataPoint.put("attributes", List.of(
+                    attribute("edc.proxy.phase", key.phase()),
+                    attribute("http.request.method", key.method()),
+                    attribute("edc.proxy.upstream.origin", key.origin())));
+            dataPoint.put("startTimeUnixNano", String.valueOf(startEpochNanos));
+            dataPoint.put("timeUnixNano", timestamp);
+            dataPoint.put("count", String.valueOf(snapshot.count()));
+            dataPoint.put("sum", (double) snapshot.sum());
+            dataPoint.put("max", (double) snapshot.max());
+            dataPoint.put("scale", LatencyHistogram.SCALE);
+            dataPoint.put("zeroCount", "0");
+            dataPoint.put("positive", Map.of(
+                    "offset", LatencyHistogram.OFFSET,
+                    "bucketCounts", Arrays.stream(snapshot.bucketCounts()).mapToObj(String::valueOf).toList()));
+            dataPoints.add(dataPoint);
+        });
+        var metric = Map.of(
+                "name", "edc.proxy.phase.duration",
+                "unit", "us",
+                "exponentialHistogram", Map.of(
+                        "aggregationTemporality", TEMPORALITY_CUMULATIVE,
+                        "dataPoints", dataPoints));
+        return Map.of("resourceMetrics", List.of(Map.of(
+                "resource", resource(),
+                "scopeMetrics", List.of(Map.of("scope", Map.of("name", SCOPE), "metrics", List.of(metric))))));
+    }
+
+    private Map<String, Object> resource() {
+        return Map.of("attributes", List.of(attribute("service.name", serviceName)));
+    }
+
+    private static Map<String, Object> attribute(String key, String value) {
+        return Map.of("key", key, "value", Map.of("stringValue", value));
+    }
+
+    private static Map<String, Object> attribute(String key, long value) {
+        return Map.of("key", key, "value", Map.of("intValue", String.valueOf(value)));
+    }
+}
@@ -0,0 +1,102 @@
+package org.eclipse.edc.extension;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import java.net.http.HttpRequest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Allowlists of the headers the public proxy passes between clients and upstreams.
+ * <p>
+ * Everything else, in particular the consumer's {@code Authorization} header carrying the EDR token, hop-by-hop
+ * headers and headers the JDK client manages itself, is never forwarded.
+ */
+final class ProxyHeaders {
+
+    /**
+     * Conditional request headers, which are replaced by the cache's own validators when it revalidates an entry.
+     */
+    static final Set<String> CONDITIONAL_REQUEST_HEADERS = Set.of("If-None-Match", "If-Modified-Since");
+
+    private static final List<String> REQUEST_HEADERS = List.of(
+            "Accept",
+            "Accept-Encoding",
+            "Accept-Language",
+            "Content-Type",
+            "If-Match",
+            "If-None-Match",
+            "If-Modified-Since",
+            "If-Unmodified-Since",
+            "If-Range",
+            "Range");
+
+    private static final List<String> RESPONSE_HEADERS = List.of(
+            "Accept-Ranges",
+            "Cache-Control",
+            "Content-Disposition",
+            "Content-Encoding",
+            "Content-Language",
+            "Content-Length",
+            "Content-Range",
+            "ETag",
+            "Expires",
+            "Last-Modified",
+            "Vary");
+
+    private ProxyHeaders() {
+    }
+
+    /**
+     * Copies the allowlisted client headers to the upstream request.
+     *
+     * @param skipped headers to leave out, such as {@link #CONDITIONAL_REQUEST_HEADERS}
+     */
+    static void copyRequestHeaders(HttpHeaders from, HttpRequest.Builder to, Set<String> skipped) {
+        for (var name : REQUEST_HEADERS) {
+            if (skipped.contains(name)) {
+                continue;
+            }
+            var values = from.getRequestHeader(name);
+            if (values != null) {
+                values.forEach(value -> to.header(name, value));
+            }
+        }
+    }
+
+    /**
+     * Copies the allowlisted headers of a batch entry to the upstream request.
+     */
+    static void copyRequestHeaders(Map<String, String> from, HttpRequest.Builder to) {
+        from.forEach((name, value) -> REQUEST_HEADERS.stream()
+                .filter(allowed -> allowed.equalsIgnoreCase(name))
+                .findFirst()
+                .ifPresent(allowed -> to.header(allowed, value)));
+    }
+
+    /**
+     * The allowlisted upstream response headers, repeated headers joined into one comma-separated value.
+     */
+    static Map<String, String> responseHeaders(java.net.http.HttpHeaders from) {
+        var headers = new LinkedHashMap<String, String>();
+        for (var name : RESPONSE_HEADERS) {
+            var values = from.allValues(name);
+            if (!values.isEmpty()) {
+                headers.put(name, String.join(", ", values));
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Copies the allowlisted upstream response headers to the client response.
+     */
+    static void copyResponseHeaders(java.net.http.HttpHeaders from, Response.ResponseBuilder to) {
+        for (var name : RESPONSE_HEADERS) {
+            from.allValues(name).forEach(value -> to.header(name, value));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.eclipse.edc.extension;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * Exposes the statistics of the public proxy on the data plane's default web context.
+ * <p>
+ * The statistics name upstream origins, replica URLs and the tracing collector, so every request must present the
+ * configured API key in the {@code X-Api-Key} header.
+ */
+@Path("/v1/proxy/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class ProxyMetricsApiController {
+
+    private final ProxyMetricsRegistry registry;
+    private final byte[] apiKey;
+
+    ProxyMetricsApiController(ProxyMetricsRegistry registry, String apiKey) {
+        this.registry = registry;
+        this.apiKey = apiKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @GET
+    public Response getMetrics(@HeaderParam("X-Api-Key") String presentedKey) {
+        // compared in constant time, so the key cannot be guessed byte by byte
+        if (presentedKey == null || !MessageDigest.isEqual(apiKey, presentedKey.getBytes(StandardCharsets.UTF_8))) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity(Map.of("error", "invalid or missing X-Api-Key")).build();
+        }
+        return Response.ok(registry.snapshot()).build();
+    }
+}
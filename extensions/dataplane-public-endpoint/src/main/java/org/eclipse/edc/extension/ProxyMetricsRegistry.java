@@ -0,0 +1,24 @@
+package org.eclipse.edc.extension;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collects the named statistics sources of the public proxy so they can be served from a single endpoint.
+ */
+class ProxyMetricsRegistry {
+
+    private final Map<String, Supplier<Map<String, Object>>> sources = new ConcurrentHashMap<>();
+
+    void register(String name, Supplier<Map<String, Object>> source) {
+        sources.put(name, source);
+    }
+
+    Map<String, Object> snapshot() {
+        var snapshot = new TreeMap<String, Object>();
+        sources.forEach((name, source) -> snapshot.put(name, source.get()));
+        return snapshot;
+    }
+}
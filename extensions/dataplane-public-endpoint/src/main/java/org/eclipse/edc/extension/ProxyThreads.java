@@ -0,0 +1,58 @@
+package org.eclipse.edc.extension;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread and executor factories of the public proxy.
+ */
+final class ProxyThreads {
+
+    private ProxyThreads() {
+    }
+
+    /**
+     * Creates a factory for named daemon platform threads.
+     */
+    static ThreadFactory platform(String prefix) {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread per task.
+     * <p>
+     * The modules are compiled for Java 17, so virtual threads are looked up reflectively. When the runtime does
+     * not offer them, an unbounded cached pool of platform threads is returned instead.
+     */
+    static ExecutorService virtualOrCached(String prefix) {
+        try {
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = Class.forName("java.lang.Thread$Builder$OfVirtual")
+                    .getMethod("name", String.class, long.class)
+                    .invoke(builder, prefix + "-", 1L);
+            var factory = (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(platform(prefix));
+        }
+    }
+
+    /**
+     * Whether the running JVM supports virtual threads.
+     */
+    static boolean virtualThreadsAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
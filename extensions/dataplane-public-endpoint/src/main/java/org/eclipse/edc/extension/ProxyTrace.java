@@ -0,0 +1,196 @@
+package org.eclipse.edc.extension;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Timing of one proxied request, split into phases that become child spans of the request's server span.
+ * <p>
+ * The trace continues the W3C trace context of an incoming {@code traceparent} header, or starts a new one, and
+ * provides the {@code traceparent} to send upstream, whose parent is the span of the upstream exchange.
+ */
+class ProxyTrace {
+
+    static final String AUTHORIZE = "authorize";
+    static final String RESOLVE = "resolve";
+    static final String UPSTREAM_ACQUIRE = "upstream.acquire";
+    static final String UPSTREAM_FIRST_BYTE = "upstream.first_byte";
+    static final String TRANSFER = "transfer";
+    static final String TOTAL = "total";
+
+    private static final Pattern TRACEPARENT = Pattern.compile("^([0-9a-f]{2})-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})(-.*)?$");
+    private static final String INVALID_TRACE_ID = "0".repeat(32);
+    private static final String INVALID_SPAN_ID = "0".repeat(16);
+
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String traceState;
+    private final boolean sampled;
+    private final String method;
+    private final long startEpochNanos;
+    private final long startNanos;
+    private final String upstreamSpanId = randomHex(8);
+    private final List<Phase> phases = new ArrayList<>();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile String origin = "unknown";
+    private volatile int statusCode;
+    private volatile long endNanos;
+    private volatile String error;
+    private volatile String errorDetail;
+
+    private ProxyTrace(String traceId, String parentSpanId, String traceState, boolean sampled, String method) {
+        var now = Instant.now();
+        this.traceId = traceId;
+        this.spanId = randomHex(8);
+        this.parentSpanId = parentSpanId;
+        this.traceState = traceState;
+        this.sampled = sampled;
+        this.method = method;
+        this.startEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Continues the trace context of the given {@code traceparent} header, or starts a new trace sampled with the
+     * given probability if the header is missing or malformed.
+     */
+    static ProxyTrace start(String method, String traceparent, String traceState, double sampleRatio) {
+        if (traceparent != null) {
+            var matcher = TRACEPARENT.matcher(traceparent.trim());
+            if (matcher.matches() && !"ff".equals(matcher.group(1))
+                    && !INVALID_TRACE_ID.equals(matcher.group(2)) && !INVALID_SPAN_ID.equals(matcher.group(3))) {
+                var sampled = (HexFormat.fromHexDigits(matcher.group(4)) & 1) == 1;
+                return new ProxyTrace(matcher.group(2), matcher.group(3), traceState, sampled, method);
+            }
+        }
+        var sampled = sampleRatio >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRatio;
+        return new ProxyTrace(randomHex(16), null, null, sampled, method);
+    }
+
+    /**
+     * Records a phase that started at the given {@link System#nanoTime()} and ends now.
+     */
+    void end(String phase, long startNanos) {
+        var now = System.nanoTime();
+        var id = UPSTREAM_FIRST_BYTE.equals(phase) ? upstreamSpanId : randomHex(8);
+        synchronized (phases) {
+            phases.add(new Phase(phase, id, startNanos, now - startNanos));
+        }
+    }
+
+    void origin(String origin) {
+        this.origin = origin;
+    }
+
+    /**
+     * Records why the request failed.
+     *
+     * @param error  short, fixed identifier of the failure, e.g. {@code upstream_timeout}
+     * @param detail the message of the underlying failure, may be {@code null}
+     */
+    void fail(String error, String detail) {
+        this.error = error;
+        this.errorDetail = detail;
+    }
+
+    /**
+     * Marks the request as complete.
+     *
+     * @return {@code false} if it had already been completed
+     */
+    boolean finish(int statusCode) {
+        if (!finished.compareAndSet(false, true)) {
+            return false;
+        }
+        this.statusCode = statusCode;
+        this.endNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * The {@code traceparent} header for the upstream request.
+     */
+    String upstreamTraceparent() {
+        return "00-" + traceId + "-" + upstreamSpanId + "-" + (sampled ? "01" : "00");
+    }
+
+    String traceState() {
+        return traceState;
+    }
+
+    String traceId() {
+        return traceId;
+    }
+
+    String spanId() {
+        return spanId;
+    }
+
+    String parentSpanId() {
+        return parentSpanId;
+    }
+
+    boolean sampled() {
+        return sampled;
+    }
+
+    String method() {
+        return method;
+    }
+
+    String origin() {
+        return origin;
+    }
+
+    int statusCode() {
+        return statusCode;
+    }
+
+    String error() {
+        return error;
+    }
+
+    String errorDetail() {
+        return errorDetail;
+    }
+
+    long durationNanos() {
+        return endNanos - startNanos;
+    }
+
+    /**
+     * Converts a {@link System#nanoTime()} reading taken during this request to epoch nanoseconds.
+     */
+    long epochNanos(long nanoTime) {
+        return startEpochNanos + (nanoTime - startNanos);
+    }
+
+    long startNanos() {
+        return startNanos;
+    }
+
+    long endNanos() {
+        return endNanos;
+    }
+
+    List<Phase> phases() {
+        synchronized (phases) {
+            return List.copyOf(phases);
+        }
+    }
+
+    private static String randomHex(int bytes) {
+        var random = new byte[bytes];
+        ThreadLocalRandom.current().nextBytes(random);
+        return HexFormat.of().formatHex(random);
+    }
+
+    record Phase(String name, String spanId, long startNanos, long durationNanos) {
+    }
+}
@@ -0,0 +1,86 @@
+package org.eclipse.edc.extension;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts and completes the {@link ProxyTrace}s of the public proxy.
+ * <p>
+ * Every completed trace feeds one {@link LatencyHistogram} per phase, method and upstream origin; sampled traces are
+ * additionally handed to the {@link OtlpExporter}, if one is configured.
+ */
+class ProxyTracer {
+
+    private final double sampleRatio;
+    private final OtlpExporter exporter;
+    private final Map<PhaseKey, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the tracer.
+     *
+     * @param sampleRatio probability with which requests without an incoming trace context are exported
+     * @param exporter    OTLP exporter of spans and histograms, {@code null} to keep the histograms local
+     */
+    ProxyTracer(double sampleRatio, OtlpExporter exporter) {
+        this.sampleRatio = sampleRatio;
+        this.exporter = exporter;
+    }
+
+    ProxyTrace start(String method, String traceparent, String traceState) {
+        return ProxyTrace.start(method, traceparent, traceState, sampleRatio);
+    }
+
+    void finish(ProxyTrace trace, int statusCode) {
+        if (!trace.finish(statusCode)) {
+            return;
+        }
+        for (var phase : trace.phases()) {
+            histogram(phase.name(), trace).record(TimeUnit.NANOSECONDS.toMicros(phase.durationNanos()));
+        }
+        histogram(ProxyTrace.TOTAL, trace).record(TimeUnit.NANOSECONDS.toMicros(trace.durationNanos()));
+        if (exporter != null && trace.sampled()) {
+            exporter.enqueue(trace);
+        }
+    }
+
+    /**
+     * Histogram snapshots, keyed by phase, method and origin.
+     */
+    Map<PhaseKey, LatencyHistogram.Snapshot> snapshots() {
+        var snapshots = new TreeMap<PhaseKey, LatencyHistogram.Snapshot>();
+        histograms.forEach((key, histogram) -> snapshots.put(key, histogram.snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * Latency summaries nested by phase, method and origin, as served on the metrics endpoint.
+     */
+    Map<String, Object> stats() {
+        var stats = new TreeMap<String, Object>();
+        snapshots().forEach((key, snapshot) -> nested(nested(stats, key.phase()), key.method()).put(key.origin(), snapshot.summary()));
+        return stats;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> nested(Map<String, Object> map, String key) {
+        return (Map<String, Object>) map.computeIfAbsent(key, k -> new TreeMap<String, Object>());
+    }
+
+    private LatencyHistogram histogram(String phase, ProxyTrace trace) {
+        return histograms.computeIfAbsent(new PhaseKey(phase, trace.method(), trace.origin()), key -> new LatencyHistogram());
+    }
+
+    record PhaseKey(String phase, String method, String origin) implements Comparable<PhaseKey> {
+
+        @Override
+        public int compareTo(PhaseKey other) {
+            var result = phase.compareTo(other.phase);
+            if (result == 0) {
+                result = method.compareTo(other.method);
+            }
+            return result != 0 ? result : origin.compareTo(other.origin);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package org.eclipse.edc.extension;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A parsed {@code $filter} expression of the {@link QueryPushdown}.
+ * <p>
+ * The syntax follows OData: comparisons {@code <field> eq|ne|gt|ge|lt|le <literal>} combined with {@code and},
+ * {@code or}, {@code not} and parentheses, where {@code and} binds tighter than {@code or}. Fields are dot-separated
+ * paths into a JSON record or CSV column names; literals are single-quoted strings ({@code ''} escapes a quote),
+ * numbers, {@code true}, {@code false} and {@code null}. Numbers compare numerically, also against numeric text such
+ * as CSV cells; a missing field is {@code null}.
+ */
+final class PushdownFilter {
+
+    private final Node root;
+    private final Set<String> fields;
+
+    private PushdownFilter(Node root, Set<String> fields) {
+        this.root = root;
+        this.fields = fields;
+    }
+
+    /**
+     * Parses an expression.
+     *
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    static PushdownFilter parse(String expression) {
+        var parser = new Parser(tokenize(expression));
+        var root = parser.or();
+        if (!parser.atEnd()) {
+            throw new IllegalArgumentException("unexpected '%s' in $filter".formatted(parser.peek().text()));
+        }
+        return new PushdownFilter(root, parser.fields);
+    }
+
+    /**
+     * The fields the expression refers to.
+     */
+    Set<String> fields() {
+        return fields;
+    }
+
+    /**
+     * Evaluates the expression against one record.
+     *
+     * @param values the value of a field of the record, {@code null} or a missing node if it has none
+     */
+    boolean matches(Function<String, JsonNode> values) {
+        return root.matches(values);
+    }
+
+    private interface Node {
+        boolean matches(Function<String, JsonNode> values);
+    }
+
+    private record And(Node left, Node right) implements Node {
+        @Override
+        public boolean matches(Function<String, JsonNode> values) {
+            return left.matches(values) && right.matches(values);
+        }
+    }
+
+    private record Or(Node left, Node right) implements Node {
+        @Override
+        public boolean matches(Function<String, JsonNode> values) {
+            return left.matches(values) || right.matches(values);
+        }
+    }
+
+    private record Not(Node operand) implements Node {
+        @Override
+        public boolean matches(Function<String, JsonNode> values) {
+            return !operand.matches(values);
+        }
+    }
+
+    private record Comparison(String field, String operator, Object literal) implements Node {
+        @Override
+        public boolean matches(Function<String, JsonNode> values) {
+            var value = values.apply(field);
+            var absent = value == null || value.isMissingNode() || value.isNull();
+            if (literal == null || absent) {
+                var equal = literal == null && absent;
+                return "eq".equals(operator) ? equal : "ne".equals(operator) && !equal;
+            }
+            Integer order = null;
+            if (literal instanceof BigDecimal number) {
+                var decimal = decimal(value);
+                order = decimal != null ? decimal.compareTo(number) : null;
+            } else if (literal instanceof Boolean bool) {
+                order = value.isBoolean() && value.booleanValue() == bool ? 0 : null;
+            } else if (value.isValueNode()) {
+                order = value.asText().compareTo((String) literal);
+            }
+            if (order == null) {
+                // not comparable, so only unequal
+                return "ne".equals(operator);
+            }
+            return switch (operator) {
+                case "eq" -> order == 0;
+                case "ne" -> order != 0;
+                case "gt" -> order > 0;
+                case "ge" -> order >= 0;
+                case "lt" -> order < 0;
+                default -> order <= 0;
+            };
+        }
+
+        private static BigDecimal decimal(JsonNode value) {
+            if (value.isNumber()) {
+                return value.decimalValue();
+            }
+            if (value.isTextual()) {
+                try {
+                    return new BigDecimal(value.asText().trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+    }
+
+    private enum TokenType {
+        WORD, STRING, NUMBER, OPEN, CLOSE
+    }
+
+    private record Token(TokenType type, String text) {
+    }
+
+    private static List<Token> tokenize(String expression) {
+        var tokens = new ArrayList<Token>();
+        var i = 0;
+        while (i < expression.length()) {
+            var c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(c == '(' ? TokenType.OPEN : TokenType.CLOSE, String.valueOf(c)));
+                i++;
+            } else if (c == '\'') {
+                var text = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= expression.length()) {
+                        throw new IllegalArgumentException("unterminated string in $filter");
+                    }
+                    if (expression.charAt(i) == '\'') {
+                        if (i + 1 < expression.length() && expression.charAt(i + 1) == '\'') {
+                            text.append('\'');
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    text.append(expression.charAt(i++));
+                }
+                tokens.add(new Token(TokenType.STRING, text.toString()));
+            } else {
+                var start = i;
+                while (i < expression.length() && !Character.isWhitespace(expression.charAt(i))
+                        && "()'".indexOf(expression.charAt(i)) < 0) {
+                    i++;
+                }
+                var text = expression.substring(start, i);
+                var numeric = Character.isDigit(c) || ((c == '-' || c == '+' || c == '.') && text.length() > 1);
+                tokens.add(new Token(numeric ? TokenType.NUMBER : TokenType.WORD, text));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Recursive descent over {@code or := and ('or' and)*}, {@code and := unary ('and' unary)*},
+     * {@code unary := 'not' unary | '(' or ')' | comparison}.
+     */
+    private static class Parser {
+        private static final Set<String> OPERATORS = Set.of("eq", "ne", "gt", "ge", "lt", "le");
+
+        private final List<Token> tokens;
+        private final Set<String> fields = new LinkedHashSet<>();
+        private int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean atEnd() {
+            return position >= tokens.size();
+        }
+
+        Token peek() {
+            return tokens.get(position);
+        }
+
+        Node or() {
+            var node = and();
+            while (keyword("or")) {
+                node = new Or(node, and());
+            }
+            return node;
+        }
+
+        private Node and() {
+            var node = unary();
+            while (keyword("and")) {
+                node = new And(node, unary());
+            }
+            return node;
+        }
+
+        private Node unary() {
+            if (keyword("not")) {
+                return new Not(unary());
+            }
+            if (!atEnd() && peek().type() == TokenType.OPEN) {
+                position++;
+                var node = or();
+                if (atEnd() || peek().type() != TokenType.CLOSE) {
+                    throw new IllegalArgumentException("missing ')' in $filter");
+                }
+                position++;
+                return node;
+            }
+            return comparison();
+        }
+
+        private Node comparison() {
+            var field = next("field");
+            if (field.type() != TokenType.WORD) {
+                throw new IllegalArgumentException("expected a field in $filter, got '%s'".formatted(field.text()));
+            }
+            var operator = next("operator").text().toLowerCase(Locale.ROOT);
+            if (!OPERATORS.contains(operator)) {
+                throw new IllegalArgumentException("unknown operator '%s' in $filter".formatted(operator));
+            }
+            var literal = literal(next("value"));
+            if ((literal == null || literal instanceof Boolean) && !"eq".equals(operator) && !"ne".equals(operator)) {
+                throw new IllegalArgumentException("'%s' cannot be compared with '%s' in $filter".formatted(literal, operator));
+            }
+            fields.add(field.text());
+            return new Comparison(field.text(), operator, literal);
+        }
+
+        private static Object literal(Token token) {
+            if (token.type() == TokenType.STRING) {
+                return token.text();
+            }
+            if (token.type() == TokenType.NUMBER) {
+                try {
+                    return new BigDecimal(token.text());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("invalid number '%s' in $filter".formatted(token.text()));
+                }
+            }
+            if (token.type() == TokenType.WORD) {
+                var word = token.text().toLowerCase(Locale.ROOT);
+                if ("true".equals(word) || "false".equals(word)) {
+                    return Boolean.valueOf(word);
+                }
+                if ("null".equals(word)) {
+                    return null;
+                }
+            }
+            throw new IllegalArgumentException("expected a value in $filter, got '%s'".formatted(token.text()));
+        }
+
+        private boolean keyword(String keyword) {
+            if (!atEnd() && peek().type() == TokenType.WORD && peek().text().equalsIgnoreCase(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private Token next(String expected) {
+            if (atEnd()) {
+                throw new IllegalArgumentException("expected a %s at the end of $filter".formatted(expected));
+            }
+            return tokens.get(position++);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.eclipse.edc.extension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Projection and filtering of JSON and CSV response bodies in the proxy, requested with the reserved query
+ * parameters {@code $select} and {@code $filter}.
+ * <p>
+ * {@code $select} is a comma-separated list of dot-separated JSON field paths or CSV column names to keep;
+ * {@code $filter} is a {@link PushdownFilter} expression records must match. Both are stripped from the query
+ * forwarded to the upstream. The upstream body is parsed as it streams in and only matching records are written to
+ * the client, one record in memory at a time: JSON arrays ({@link JsonPushdownBody}), newline-delimited JSON and CSV
+ * with a header row ({@link CsvPushdownBody}).
+ */
+class QueryPushdown {
+
+    static final String SELECT = "$select";
+    static final String FILTER = "$filter";
+
+    /**
+     * Client headers not forwarded when a query is pushed down: the body must come back whole and unencoded to be
+     * parsed.
+     */
+    static final Set<String> UNFORWARDED_REQUEST_HEADERS = Set.of("Accept-Encoding", "Range", "If-Range");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder emitted = new LongAdder();
+
+    /**
+     * A {@code $select} and {@code $filter} pair.
+     *
+     * @param select the fields to keep, empty to keep whole records
+     * @param filter the filter records must match, {@code null} to keep all
+     */
+    record Query(List<String> select, PushdownFilter filter) {
+    }
+
+    /**
+     * Reads the reserved parameters of a raw query string.
+     *
+     * @return the query, {@code null} if the query string holds neither parameter
+     * @throws IllegalArgumentException if a parameter is malformed
+     */
+    static Query parse(String rawQuery) {
+        List<String> select = null;
+        PushdownFilter filter = null;
+        for (var parameter : parameters(rawQuery)) {
+            var separator = parameter.indexOf('=');
+            var name = decode(separator >= 0 ? parameter.substring(0, separator) : parameter);
+            var value = separator >= 0 ? decode(parameter.substring(separator + 1)) : "";
+            if (SELECT.equals(name)) {
+                var fields = new LinkedHashSet<String>();
+                for (var field : value.split(",")) {
+                    if (!field.isBlank()) {
+                        fields.add(field.trim());
+                    }
+                }
+                if (fields.isEmpty()) {
+                    throw new IllegalArgumentException("$select names no fields");
+                }
+                select = List.copyOf(fields);
+            } else if (FILTER.equals(name)) {
+                if (value.isBlank()) {
+                    throw new IllegalArgumentException("$filter is empty");
+                }
+                filter = PushdownFilter.parse(value);
+            }
+        }
+        return select != null || filter != null ? new Query(select != null ? select : List.of(), filter) : null;
+    }
+
+    /**
+     * The raw query string without the reserved parameters, {@code null} if nothing is left.
+     */
+    static String stripReserved(String rawQuery) {
+        var kept = new ArrayList<String>();
+        for (var parameter : parameters(rawQuery)) {
+            var separator = parameter.indexOf('=');
+            var name = decode(separator >= 0 ? parameter.substring(0, separator) : parameter);
+            if (!SELECT.equals(name) && !FILTER.equals(name)) {
+                kept.add(parameter);
+            }
+        }
+        return kept.isEmpty() ? null : String.join("&", kept);
+    }
+
+    /**
+     * Starts applying a query to an upstream body. The start of the body is read right away, so that a body that
+     * cannot be processed is reported before the response is committed.
+     *
+     * @throws IllegalArgumentException if the body's type or encoding is not supported or it does not have the
+     *                                  fields the query refers to; the body is closed
+     * @throws IOException              if reading the start of the body failed; the body is closed
+     */
+    StreamingOutput open(Query query, String contentType, String contentEncoding, InputStream body) throws IOException {
+        requests.increment();
+        try {
+            var mediaType = contentType != null ? contentType.split(";")[0].trim().toLowerCase(Locale.ROOT) : "";
+            if (mediaType.equals("application/json") || mediaType.endsWith("+json")) {
+                return JsonPushdownBody.open(objectMapper, decoded(body, contentEncoding), false, query, this);
+            }
+            if (Set.of("application/x-ndjson", "application/ndjson", "application/jsonl", "application/x-jsonlines").contains(mediaType)) {
+                return JsonPushdownBody.open(objectMapper, decoded(body, contentEncoding), true, query, this);
+            }
+            if (mediaType.equals("text/csv")) {
+                return CsvPushdownBody.open(decoded(body, contentEncoding), charset(contentType), query, this);
+            }
+            throw new IllegalArgumentException("$select and $filter apply to JSON and CSV bodies, not '%s'".formatted(mediaType));
+        } catch (IllegalArgumentException | IOException e) {
+            rejected.increment();
+            try {
+                body.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the records a finished (or aborted) body went through to the statistics.
+     */
+    void count(long scannedRecords, long emittedRecords) {
+        scanned.add(scannedRecords);
+        emitted.add(emittedRecords);
+    }
+
+    Map<String, Object> stats() {
+        var stats = new LinkedHashMap<String, Object>();
+        stats.put("requests", requests.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("recordsScanned", scanned.sum());
+        stats.put("recordsEmitted", emitted.sum());
+        return stats;
+    }
+
+    private static InputStream decoded(InputStream body, String contentEncoding) throws IOException {
+        var encoding = contentEncoding != null ? contentEncoding.trim().toLowerCase(Locale.ROOT) : "identity";
+        return switch (encoding) {
+            case "identity", "" -> body;
+            case "gzip", "x-gzip" -> new GZIPInputStream(body, 8192);
+            case "deflate" -> new InflaterInputStream(body);
+            default -> throw new IllegalArgumentException("$select and $filter cannot read '%s' encoded bodies".formatted(encoding));
+        };
+    }
+
+    private static Charset charset(String contentType) {
+        for (var parameter : contentType.split(";")) {
+            var pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+                try {
+                    return Charset.forName(pair[1].trim().replace("\"", ""));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("unsupported charset '%s'".formatted(pair[1].trim()));
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static List<String> parameters(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return List.of();
+        }
+        return List.of(rawQuery.split("&"));
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,254 @@
+package org.eclipse.edc.extension;
+
+import org.eclipse.edc.spi.types.domain.DataAddress;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spreads the requests of data addresses that list several upstream replicas in {@link #BASE_URLS_PROPERTY} over
+ * those replicas.
+ * <p>
+ * A replica is picked among the ones in rotation by the configured {@link ReplicaBalancerConfiguration.Strategy},
+ * weighed by its outstanding requests, which last until the proxied body has been written. Health is tracked
+ * passively: a replica whose exchanges fail {@link ReplicaBalancerConfiguration#consecutiveFailures()} times in a row
+ * (connection errors, timeouts, 502, 503 or 504) is taken out of rotation and re-admitted once its ejection expires.
+ * If every replica of a data address is out of rotation, requests are spread over all of them rather than failed.
+ * Replicas are keyed by their base URL, so data addresses sharing a replica share its state; replicas that saw no
+ * traffic for a while are dropped by {@link #evictIdle()}.
+ */
+class ReplicaBalancer {
+
+    /**
+     * Data address property listing the base URLs of the upstream replicas, either as a comma-separated string or
+     * as a list. Takes precedence over {@code baseUrl}.
+     */
+    static final String BASE_URLS_PROPERTY = "baseUrls";
+
+    private static final long IDLE_NANOS = Duration.ofMinutes(10).toNanos();
+
+    private final ReplicaBalancerConfiguration configuration;
+    private final Map<String, Replica> replicas = new ConcurrentHashMap<>();
+
+    ReplicaBalancer(ReplicaBalancerConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * The upstream base URLs of a data address: the entries of {@link #BASE_URLS_PROPERTY} if set, else its
+     * {@code baseUrl}. Empty if it has neither.
+     */
+    static List<String> baseUrls(DataAddress dataAddress) {
+        var property = dataAddress.getProperty(BASE_URLS_PROPERTY);
+        Collection<?> entries = property instanceof Collection<?> collection ? collection
+                : property instanceof String string ? Arrays.asList(string.split(","))
+                : List.of();
+        var baseUrls = new ArrayList<String>(entries.size());
+        for (var entry : entries) {
+            var baseUrl = entry != null ? entry.toString().trim() : "";
+            if (!baseUrl.isEmpty() && !baseUrls.contains(baseUrl)) {
+                baseUrls.add(baseUrl);
+            }
+        }
+        if (baseUrls.isEmpty()) {
+            var baseUrl = dataAddress.getStringProperty("baseUrl");
+            if (baseUrl != null && !baseUrl.isBlank()) {
+                baseUrls.add(baseUrl);
+            }
+        }
+        return baseUrls;
+    }
+
+    /**
+     * Picks one of the given replicas. The returned lease counts as outstanding on the replica until it is
+     * {@link Lease#release() released}.
+     */
+    Lease select(List<String> baseUrls) {
+        var now = System.nanoTime();
+        var candidates = new ArrayList<Replica>(baseUrls.size());
+        for (var baseUrl : baseUrls) {
+            var replica = replicas.computeIfAbsent(baseUrl, Replica::new);
+            if (!replica.isEjected(now)) {
+                candidates.add(replica);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // all of them are failing, keep spreading the load rather than failing every request
+            baseUrls.forEach(baseUrl -> candidates.add(replicas.computeIfAbsent(baseUrl, Replica::new)));
+        }
+        var replica = switch (configuration.strategy()) {
+            case LEAST_OUTSTANDING -> leastOutstanding(candidates);
+            case P2C -> powerOfTwoChoices(candidates);
+        };
+        return replica.lease(now);
+    }
+
+    /**
+     * Drops the state of replicas without outstanding requests that have not been picked for a while.
+     */
+    void evictIdle() {
+        var threshold = System.nanoTime() - IDLE_NANOS;
+        replicas.values().removeIf(replica -> replica.outstanding.get() == 0 && replica.lastUsed - threshold < 0);
+    }
+
+    Map<String, Object> stats() {
+        var now = System.nanoTime();
+        var stats = new TreeMap<String, Object>();
+        replicas.forEach((baseUrl, replica) -> stats.put(baseUrl, replica.stats(now)));
+        return stats;
+    }
+
+    private static Replica leastOutstanding(List<Replica> candidates) {
+        var random = ThreadLocalRandom.current();
+        var offset = random.nextInt(candidates.size());
+        Replica best = null;
+        for (var i = 0; i < candidates.size(); i++) {
+            var candidate = candidates.get((offset + i) % candidates.size());
+            if (best == null || candidate.outstanding.get() < best.outstanding.get()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static Replica powerOfTwoChoices(List<Replica> candidates) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        var random = ThreadLocalRandom.current();
+        var first = random.nextInt(candidates.size());
+        var second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        var a = candidates.get(first);
+        var b = candidates.get(second);
+        return b.outstanding.get() < a.outstanding.get() ? b : a;
+    }
+
+    /**
+     * One pick of a replica. {@link #responded(int)} or {@link #failed()} record the outcome of the exchange,
+     * {@link #release()} ends it once the body has been written; a lease released without an outcome (e.g. answered
+     * from the response cache) does not count towards the replica's statistics.
+     */
+    class Lease {
+        private final Replica replica;
+        private final long start;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Replica replica, long start) {
+            this.replica = replica;
+            this.start = start;
+        }
+
+        String baseUrl() {
+            return replica.baseUrl;
+        }
+
+        /**
+         * Records the status of the upstream response, 502, 503 and 504 count as failures.
+         */
+        void responded(int status) {
+            if (recorded.compareAndSet(false, true)) {
+                replica.record(System.nanoTime() - start, UpstreamClient.isFailure(status));
+            }
+        }
+
+        /**
+         * Records an exchange that produced no response (connection error, timeout).
+         */
+        void failed() {
+            if (recorded.compareAndSet(false, true)) {
+                replica.record(System.nanoTime() - start, true);
+            }
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                replica.outstanding.decrementAndGet();
+            }
+        }
+    }
+
+    private class Replica {
+        private final String baseUrl;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicInteger ejectionStreak = new AtomicInteger();
+        private final AtomicLong ejectedUntil = new AtomicLong();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder ejections = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private volatile boolean ejected;
+        private volatile long lastUsed = System.nanoTime();
+
+        Replica(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        Lease lease(long now) {
+            lastUsed = now;
+            outstanding.incrementAndGet();
+            requests.increment();
+            return new Lease(this, now);
+        }
+
+        boolean isEjected(long now) {
+            // re-admitted passively: an expired ejection puts the replica back into rotation
+            return ejected && ejectedUntil.get() - now > 0;
+        }
+
+        void record(long nanos, boolean failure) {
+            latency.record(nanos / 1_000);
+            if (!failure) {
+                consecutiveFailures.set(0);
+                ejectionStreak.set(0);
+                ejected = false;
+                return;
+            }
+            failures.increment();
+            var threshold = configuration.consecutiveFailures();
+            if (threshold > 0 && consecutiveFailures.incrementAndGet() >= threshold) {
+                consecutiveFailures.set(0);
+                eject();
+            }
+        }
+
+        private void eject() {
+            var now = System.nanoTime();
+            if (isEjected(now)) {
+                return;
+            }
+            var duration = Math.min(configuration.ejectionDuration().toNanos() * ejectionStreak.incrementAndGet(),
+                    configuration.maxEjectionDuration().toNanos());
+            ejectedUntil.set(now + duration);
+            ejected = true;
+            ejections.increment();
+        }
+
+        Map<String, Object> stats(long now) {
+            var stats = new LinkedHashMap<String, Object>();
+            stats.put("inRotation", !isEjected(now));
+            stats.put("outstanding", outstanding.get());
+            stats.put("requests", requests.sum());
+            stats.put("failures", failures.sum());
+            stats.put("ejections", ejections.sum());
+            stats.put("latency", latency.snapshot().summary());
+            return stats;
+        }
+    }
+}
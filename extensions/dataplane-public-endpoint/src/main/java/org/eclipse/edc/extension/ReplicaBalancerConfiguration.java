@@ -0,0 +1,29 @@
+package org.eclipse.edc.extension;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link ReplicaBalancer}.
+ *
+ * @param strategy            how a replica is picked among the ones in rotation
+ * @param consecutiveFailures failed exchanges in a row that take a replica out of rotation, {@code 0} never ejects
+ * @param ejectionDuration    how long a replica stays out of rotation after its first ejection; every further
+ *                            ejection without a success in between adds the same duration again
+ * @param maxEjectionDuration upper bound of the time a replica stays out of rotation
+ */
+record ReplicaBalancerConfiguration(Strategy strategy,
+                                    int consecutiveFailures,
+                                    Duration ejectionDuration,
+                                    Duration maxEjectionDuration) {
+
+    enum Strategy {
+        /**
+         * The replica with the fewest outstanding requests, ties broken at random.
+         */
+        LEAST_OUTSTANDING,
+        /**
+         * The less loaded of two replicas picked at random ("power of two choices").
+         */
+        P2C
+    }
+}
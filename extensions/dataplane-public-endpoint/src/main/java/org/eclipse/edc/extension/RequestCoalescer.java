@@ -0,0 +1,470 @@
+package org.eclipse.edc.extension;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Lets concurrent identical GETs share a single upstream exchange ("single flight").
+ * <p>
+ * The first request for a key performs the upstream call; requests arriving for the same key while it is in flight
+ * wait for its response headers instead of calling the upstream themselves. If nobody has joined by the time the
+ * headers arrive, the first request streams the body straight through and later requests start a flight of their
+ * own. Otherwise the upstream body is pumped into a spool file by a background task as fast as the upstream delivers
+ * it, and every participant, the first one included, reads the spool at its own pace, so a slow client never holds
+ * back the others or the upstream. The spool is deleted once the body is complete and the last participant is done;
+ * if every participant leaves early the upstream exchange is cancelled.
+ * <p>
+ * Only bodies of a declared length are spooled, and only if they fit the per-flight limit and the space left of the
+ * limit on all spool files together. Event streams, bodies of unknown length and bodies over the limits are streamed
+ * to the first request directly, and the requests that joined call the upstream themselves.
+ */
+class RequestCoalescer {
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final Executor pumpExecutor;
+    private final Duration headersTimeout;
+    private final int bufferSize;
+    private final Path directory;
+    private final long maxFlightBytes;
+    private final long maxSpoolBytes;
+    private final AtomicLong spoolBytes = new AtomicLong();
+    private final LongAdder upstreamCalls = new LongAdder();
+    private final LongAdder upstreamCallsSaved = new LongAdder();
+    private final LongAdder streamedThrough = new LongAdder();
+    private final LongAdder notShareable = new LongAdder();
+
+    /**
+     * Creates the coalescer.
+     *
+     * @param headersTimeout how long a joining request waits for the response headers of the shared exchange
+     * @param directory      directory of the spool files
+     * @param maxFlightBytes largest body in bytes that is spooled for sharing, {@code 0} for no limit
+     * @param maxSpoolBytes  bytes all spool files may take together, {@code 0} for no limit
+     */
+    RequestCoalescer(Executor pumpExecutor, Duration headersTimeout, int bufferSize, Path directory,
+                     long maxFlightBytes, long maxSpoolBytes) throws IOException {
+        this.pumpExecutor = pumpExecutor;
+        this.headersTimeout = headersTimeout;
+        this.bufferSize = bufferSize;
+        this.directory = Files.createDirectories(directory);
+        this.maxFlightBytes = maxFlightBytes;
+        this.maxSpoolBytes = maxSpoolBytes;
+    }
+
+    /**
+     * Returns the response of the exchange in flight for the key, or performs the upstream call if there is none.
+     *
+     * @param call performs the upstream exchange
+     * @param body yields the stream the shared body is read from, e.g. wrapped for the response cache
+     */
+    HttpResponse<InputStream> send(String key, Callable<HttpResponse<InputStream>> call,
+                                   Function<HttpResponse<InputStream>, InputStream> body) throws IOException, InterruptedException {
+        while (true) {
+            var flight = new Flight(key);
+            var existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                upstreamCalls.increment();
+                return flight.lead(call, body);
+            }
+            var response = existing.join();
+            if (response != null) {
+                upstreamCallsSaved.increment();
+                return response;
+            }
+            if (existing.unshareable) {
+                // the response cannot be shared, another flight for the key would not be either
+                upstreamCalls.increment();
+                return direct(call, body);
+            }
+            // the flight was just closed to newcomers, start a new one
+            flights.remove(key, existing);
+        }
+    }
+
+    Map<String, Object> stats() {
+        var stats = new LinkedHashMap<String, Object>();
+        stats.put("inFlight", flights.size());
+        stats.put("upstreamCalls", upstreamCalls.sum());
+        stats.put("upstreamCallsSaved", upstreamCallsSaved.sum());
+        stats.put("streamedThrough", streamedThrough.sum());
+        stats.put("notShareable", notShareable.sum());
+        stats.put("spoolBytes", spoolBytes.get());
+        return stats;
+    }
+
+    private static HttpResponse<InputStream> direct(Callable<HttpResponse<InputStream>> call,
+                                                    Function<HttpResponse<InputStream>, InputStream> body) throws IOException, InterruptedException {
+        try {
+            var response = call.call();
+            return new SharedResponse(response, body.apply(response));
+        } catch (Exception e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Whether the response may be spooled for sharing, reserving its length of the spool limit if so.
+     */
+    private boolean reserve(HttpResponse<InputStream> response) {
+        if (EventStreamProxyBody.isEventStream(response.headers().firstValue("Content-Type").orElse(null))) {
+            return false;
+        }
+        var length = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if (length < 0 || maxFlightBytes > 0 && length > maxFlightBytes) {
+            return false;
+        }
+        while (true) {
+            var current = spoolBytes.get();
+            if (maxSpoolBytes > 0 && current + length > maxSpoolBytes) {
+                return false;
+            }
+            if (spoolBytes.compareAndSet(current, current + length)) {
+                return true;
+            }
+        }
+    }
+
+    private class Flight {
+        private final String key;
+        private final CompletableFuture<HttpResponse<InputStream>> headers = new CompletableFuture<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition progress = lock.newCondition();
+        private Path spool;
+        private long reserved;
+        private long written;
+        private boolean done;
+        private IOException failure;
+        // the leader, and every request that joined
+        private int readers = 1;
+        // set once the headers are in: whether the body is spooled, or streamed to the leader alone
+        private boolean spooled;
+        private boolean streamed;
+        private boolean closed;
+        // set before the headers complete, tells joiners to call the upstream themselves
+        private volatile boolean unshareable;
+
+        Flight(String key) {
+            this.key = key;
+        }
+
+        HttpResponse<InputStream> lead(Callable<HttpResponse<InputStream>> call,
+                                       Function<HttpResponse<InputStream>, InputStream> bodyFunction) throws IOException, InterruptedException {
+            HttpResponse<InputStream> response;
+            InputStream body;
+            try {
+                response = call.call();
+                body = bodyFunction.apply(response);
+            } catch (Exception e) {
+                lock.lock();
+                try {
+                    streamed = true;
+                } finally {
+                    lock.unlock();
+                }
+                flights.remove(key, this);
+                headers.completeExceptionally(e);
+                throw rethrow(e);
+            }
+
+            FileChannel out = null;
+            lock.lock();
+            try {
+                if (readers > 1 && reserve(response)) {
+                    reserved = response.headers().firstValueAsLong("Content-Length").orElse(0);
+                    try {
+                        spool = Files.createTempFile(directory, "flight-", ".body");
+                        out = FileChannel.open(spool, StandardOpenOption.WRITE);
+                        spooled = true;
+                    } catch (IOException e) {
+                        deleteSpool();
+                    }
+                }
+                if (!spooled) {
+                    // nobody to share with, or nothing that can be shared: closed to newcomers from now on
+                    streamed = true;
+                    unshareable = readers > 1;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (!spooled) {
+                flights.remove(key, this);
+                (unshareable ? notShareable : streamedThrough).increment();
+                headers.complete(response);
+                return new SharedResponse(response, body);
+            }
+            var spoolOut = out;
+            headers.complete(response);
+            pumpExecutor.execute(() -> pump(body, spoolOut));
+            return reader(response);
+        }
+
+        /**
+         * Joins the flight, or returns {@code null} if it no longer accepts participants or its response cannot be
+         * shared.
+         */
+        HttpResponse<InputStream> join() throws IOException, InterruptedException {
+            lock.lock();
+            try {
+                if (streamed || closed) {
+                    return null;
+                }
+                readers++;
+            } finally {
+                lock.unlock();
+            }
+            HttpResponse<InputStream> response;
+            try {
+                response = headers.get(headersTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                leave();
+                throw new HttpTimeoutException("Shared upstream exchange did not respond in time");
+            } catch (ExecutionException e) {
+                leave();
+                throw rethrow(e.getCause());
+            } catch (InterruptedException e) {
+                leave();
+                throw e;
+            }
+            if (!spooled) {
+                leave();
+                return null;
+            }
+            return reader(response);
+        }
+
+        private HttpResponse<InputStream> reader(HttpResponse<InputStream> response) throws IOException {
+            try {
+                return new SharedResponse(response, new SpoolInputStream(FileChannel.open(spool, StandardOpenOption.READ)));
+            } catch (IOException e) {
+                leave();
+                throw e;
+            }
+        }
+
+        private void pump(InputStream body, FileChannel out) {
+            try (body; out) {
+                var buffer = new byte[bufferSize];
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    out.write(ByteBuffer.wrap(buffer, 0, read));
+                    lock.lock();
+                    try {
+                        if (closed) {
+                            // every participant left, cancel the upstream exchange
+                            return;
+                        }
+                        written += read;
+                        progress.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                flights.remove(key, this);
+                lock.lock();
+                try {
+                    done = true;
+                    progress.signalAll();
+                    closeIfUnused();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        private void leave() {
+            lock.lock();
+            try {
+                readers--;
+                if (readers == 0 && !done) {
+                    flights.remove(key, this);
+                }
+                closeIfUnused();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void closeIfUnused() {
+            if (readers == 0 && spooled && !closed) {
+                closed = true;
+                deleteSpool();
+            }
+        }
+
+        private void deleteSpool() {
+            spoolBytes.addAndGet(-reserved);
+            reserved = 0;
+            if (spool == null) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(spool);
+            } catch (IOException ignored) {
+                // spool files live in a temporary directory
+            }
+        }
+
+        /**
+         * Reads the spool behind the pump, waiting for more bytes while the upstream body is still arriving.
+         */
+        private class SpoolInputStream extends InputStream {
+            private final FileChannel channel;
+            private long position;
+            private boolean left;
+
+            SpoolInputStream(FileChannel channel) {
+                this.channel = channel;
+            }
+
+            @Override
+            public int read() throws IOException {
+                var single = new byte[1];
+                var read = read(single, 0, 1);
+                return read == -1 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                long available;
+                lock.lock();
+                try {
+                    while (position >= written && !done) {
+                        progress.await();
+                    }
+                    available = written - position;
+                    if (available == 0) {
+                        if (failure != null) {
+                            throw new IOException("Shared upstream exchange failed: " + failure.getMessage(), failure);
+                        }
+                        return -1;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the shared upstream body", e);
+                } finally {
+                    lock.unlock();
+                }
+                var read = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, available)), position);
+                if (read > 0) {
+                    position += read;
+                }
+                return read;
+            }
+
+            @Override
+            public int available() {
+                lock.lock();
+                try {
+                    return (int) Math.min(Integer.MAX_VALUE, written - position);
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (left) {
+                    return;
+                }
+                left = true;
+                try {
+                    channel.close();
+                } finally {
+                    leave();
+                }
+            }
+        }
+    }
+
+    private static IOException rethrow(Throwable e) throws InterruptedException {
+        if (e instanceof InterruptedException interrupted) {
+            throw interrupted;
+        }
+        if (e instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        return e instanceof IOException io ? io : new IOException(e);
+    }
+
+    /**
+     * The shared response headers with a body of its own, read from the spool.
+     */
+    private record SharedResponse(HttpResponse<InputStream> delegate, InputStream body) implements HttpResponse<InputStream> {
+
+        @Override
+        public int statusCode() {
+            return delegate.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return delegate.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<InputStream>> previousResponse() {
+            return delegate.previousResponse();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return delegate.headers();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return delegate.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return delegate.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return delegate.version();
+        }
+    }
+}
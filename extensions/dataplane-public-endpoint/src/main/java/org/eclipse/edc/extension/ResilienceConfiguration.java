@@ -0,0 +1,29 @@
+package org.eclipse.edc.extension;
+
+import java.time.Duration;
+
+/**
+ * Per-origin resilience settings of the {@link UpstreamClient}.
+ *
+ * @param failureRatio      share of failed exchanges in the window that opens the circuit, {@code 0} disables the breaker
+ * @param window            number of recent exchanges the failure ratio is computed over
+ * @param minCalls          exchanges that must be in the window before the circuit may open
+ * @param openDuration      how long an open circuit rejects requests before it lets probes through
+ * @param halfOpenProbes    number of probe exchanges let through at a time while the circuit is half open
+ * @param adaptiveTimeouts  whether response timeouts follow the observed latency of each origin
+ * @param timeoutMultiplier factor applied to the observed p99 latency to get the adaptive timeout
+ * @param minTimeout        lower bound of the adaptive timeout; the configured response timeout is the upper bound
+ * @param hedging           whether GETs and HEADs that exceed the observed p95 latency get a second, hedged attempt
+ * @param minHedgeDelay     lower bound of the delay after which a hedged attempt is sent
+ */
+record ResilienceConfiguration(double failureRatio,
+                               int window,
+                               int minCalls,
+                               Duration openDuration,
+                               int halfOpenProbes,
+                               boolean adaptiveTimeouts,
+                               double timeoutMultiplier,
+                               Duration minTimeout,
+                               boolean hedging,
+                               Duration minHedgeDelay) {
+}
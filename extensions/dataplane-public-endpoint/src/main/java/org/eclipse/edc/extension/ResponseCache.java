@@ -0,0 +1,374 @@
+package org.eclipse.edc.extension;
+
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.types.domain.DataAddress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier cache of upstream GET responses of the public proxy.
+ * <p>
+ * Entries are keyed by a digest of the authorized {@link DataAddress}, the sub-path and the query, so consumers of
+ * one agreement can never be served another agreement's entries. Freshness follows the upstream
+ * {@code Cache-Control}/{@code Expires} headers; stale entries with an {@code ETag} or {@code Last-Modified}
+ * validator are revalidated with a conditional upstream request. Bodies up to {@link ResponseCacheConfiguration#heapEntryMaxBytes()}
+ * live on the heap, larger ones in files of the disk tier; each tier evicts least recently used entries once its
+ * byte budget is exceeded.
+ * <p>
+ * Bodies are captured while they are streamed to the first client ({@link #capture}), so caching never delays or
+ * buffers a response.
+ */
+class ResponseCache {
+
+    static final String AUTH_KEY_PROPERTY = "authKey";
+    static final String AUTH_CODE_PROPERTY = "authCode";
+
+    private final ResponseCacheConfiguration configuration;
+    private final Monitor monitor;
+    private final ByteBudgetLru<CachedResponse> heapTier;
+    private final ByteBudgetLru<CachedResponse> diskTier;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    ResponseCache(ResponseCacheConfiguration configuration, Monitor monitor) {
+        this.configuration = configuration;
+        this.monitor = monitor;
+        this.heapTier = new ByteBudgetLru<>(configuration.heapBudgetBytes(), CachedResponse::size, CachedResponse::delete);
+        this.diskTier = new ByteBudgetLru<>(configuration.diskBudgetBytes(), CachedResponse::size, CachedResponse::delete);
+        resetDirectory();
+    }
+
+    /**
+     * Computes the cache key of a request against the given authorized data address.
+     */
+    static String key(DataAddress dataAddress, String subPath, String rawQuery) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            new TreeMap<>(dataAddress.getProperties()).forEach((name, value) ->
+                    digest.update((name + "=" + value + "\n").getBytes(StandardCharsets.UTF_8)));
+            digest.update(("\n" + subPath + "?" + (rawQuery != null ? rawQuery : "")).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    CachedResponse lookup(String key) {
+        var entry = heapTier.get(key);
+        if (entry == null) {
+            entry = diskTier.get(key);
+        }
+        if (entry == null) {
+            misses.increment();
+        }
+        return entry;
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordRevalidation(boolean wasNotModified) {
+        revalidations.increment();
+        if (wasNotModified) {
+            notModified.increment();
+        }
+    }
+
+    /**
+     * Extends the freshness of an entry that the upstream confirmed with a 304.
+     */
+    void refresh(CachedResponse entry, HttpHeaders upstreamHeaders) {
+        entry.extendFreshness(freshUntil(upstreamHeaders));
+    }
+
+    void invalidate(String key) {
+        heapTier.remove(key);
+        diskTier.remove(key);
+    }
+
+    /**
+     * Whether an upstream response to a GET may be stored at all. This is a shared cache, so responses marked
+     * {@code private} are never stored, and neither are responses to authenticated requests unless they are explicitly
+     * allowed to be shared ({@code public}, {@code s-maxage} or {@code must-revalidate}, RFC 9111 section 3.5).
+     *
+     * @param authenticated whether the upstream request carried credentials, see {@link #authenticatesUpstream}
+     */
+    boolean isCacheable(int statusCode, HttpHeaders headers, boolean authenticated) {
+        if (statusCode != 200) {
+            return false;
+        }
+        var cacheControl = headers.firstValue("Cache-Control").orElse("").toLowerCase(Locale.ROOT);
+        if (hasDirective(cacheControl, "no-store") || hasDirective(cacheControl, "private")) {
+            return false;
+        }
+        if (authenticated && !hasDirective(cacheControl, "public") && !hasDirective(cacheControl, "s-maxage")
+                && !hasDirective(cacheControl, "must-revalidate")) {
+            return false;
+        }
+        // responses varying on request headers other than the encoding would need a secondary key
+        var vary = headers.firstValue("Vary").orElse("").toLowerCase(Locale.ROOT).replace("accept-encoding", "").replace(",", "").trim();
+        if (!vary.isEmpty()) {
+            return false;
+        }
+        var contentLength = headers.firstValueAsLong("Content-Length").orElse(-1);
+        if (contentLength > configuration.diskEntryMaxBytes()) {
+            return false;
+        }
+        return freshUntil(headers) > System.currentTimeMillis()
+                || headers.firstValue("ETag").isPresent()
+                || headers.firstValue("Last-Modified").isPresent();
+    }
+
+    /**
+     * Whether requests to the upstream of a data address are authenticated, which is the case when it carries
+     * credentials ({@code authKey} and {@code authCode}).
+     */
+    static boolean authenticatesUpstream(DataAddress dataAddress) {
+        return dataAddress.getStringProperty(AUTH_KEY_PROPERTY) != null || dataAddress.getStringProperty(AUTH_CODE_PROPERTY) != null;
+    }
+
+    /**
+     * Wraps an upstream body so that its bytes are stored under the given key once it has been read to the end.
+     * Bodies that exceed the maximum entry size or are not read completely are discarded.
+     */
+    InputStream capture(String key, HttpHeaders headers, InputStream body) {
+        return new CapturingInputStream(body, key, headers);
+    }
+
+    Map<String, Object> stats() {
+        var stats = new LinkedHashMap<String, Object>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("revalidations", revalidations.sum());
+        stats.put("notModified", notModified.sum());
+        stats.put("stores", stores.sum());
+        stats.put("heapEntries", heapTier.size());
+        stats.put("heapBytes", heapTier.usedBytes());
+        stats.put("heapEvictions", heapTier.evictions());
+        stats.put("diskEntries", diskTier.size());
+        stats.put("diskBytes", diskTier.usedBytes());
+        stats.put("diskEvictions", diskTier.evictions());
+        return stats;
+    }
+
+    private long freshUntil(HttpHeaders headers) {
+        var now = System.currentTimeMillis();
+        var cacheControl = headers.firstValue("Cache-Control").orElse("").toLowerCase(Locale.ROOT);
+        if (hasDirective(cacheControl, "no-cache")) {
+            return 0;
+        }
+        var sharedMaxAge = directive(cacheControl, "s-maxage");
+        var maxAge = sharedMaxAge >= 0 ? sharedMaxAge : directive(cacheControl, "max-age");
+        if (maxAge >= 0) {
+            return now + maxAge * 1000;
+        }
+        var expires = headers.firstValue("Expires");
+        if (expires.isPresent()) {
+            try {
+                return ZonedDateTime.parse(expires.get(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (Exception e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean hasDirective(String cacheControl, String name) {
+        for (var part : cacheControl.split(",")) {
+            var directive = part.trim();
+            if (directive.equals(name) || directive.startsWith(name + "=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long directive(String cacheControl, String name) {
+        for (var part : cacheControl.split(",")) {
+            var directive = part.trim();
+            if (directive.startsWith(name + "=")) {
+                try {
+                    return Long.parseLong(directive.substring(name.length() + 1).replace("\"", "").trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void store(String key, HttpHeaders headers, byte[] heapBody, Path file, long size) {
+        var entry = new CachedResponse(
+                headers.firstValue("Content-Type").orElse("application/octet-stream"),
+                headers.firstValue("Content-Encoding").filter(encoding -> !"identity".equalsIgnoreCase(encoding)).orElse(null),
+                headers.firstValue("ETag").orElse(null),
+                headers.firstValue("Last-Modified").orElse(null),
+                headers.firstValue("Cache-Control").orElse(null),
+                freshUntil(headers), heapBody, file, size);
+        // an entry only ever lives in one tier
+        if (file == null) {
+            diskTier.remove(key);
+            heapTier.put(key, entry);
+        } else {
+            heapTier.remove(key);
+            diskTier.put(key, entry);
+        }
+        stores.increment();
+    }
+
+    private void resetDirectory() {
+        var directory = configuration.directory();
+        try {
+            if (Files.exists(directory)) {
+                try (var files = Files.walk(directory)) {
+                    files.sorted(Comparator.reverseOrder())
+                            .filter(path -> !path.equals(directory))
+                            .forEach(path -> path.toFile().delete());
+                }
+            }
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            monitor.warning("Public API: failed to prepare response cache directory %s: %s".formatted(directory, e.getMessage()));
+        }
+    }
+
+    /**
+     * Tees the bytes read from the upstream body into a heap buffer, spilling to a file of the disk tier once the
+     * body outgrows the heap tier's entry limit.
+     */
+    private class CapturingInputStream extends FilterInputStream {
+        private final String key;
+        private final HttpHeaders headers;
+        private ByteArrayOutputStream heapBuffer = new ByteArrayOutputStream();
+        private Path file;
+        private OutputStream fileOut;
+        private long size;
+        private boolean finished;
+
+        CapturingInputStream(InputStream in, String key, HttpHeaders headers) {
+            super(in);
+            this.key = key;
+            this.headers = headers;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var value = super.read();
+            if (value == -1) {
+                complete();
+            } else {
+                append(new byte[]{ (byte) value }, 0, 1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            var read = super.read(buffer, offset, length);
+            if (read == -1) {
+                complete();
+            } else {
+                append(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                abandon();
+            }
+        }
+
+        private void append(byte[] buffer, int offset, int length) {
+            if (finished) {
+                return;
+            }
+            size += length;
+            try {
+                if (size > configuration.diskEntryMaxBytes()) {
+                    abandon();
+                } else if (fileOut != null) {
+                    fileOut.write(buffer, offset, length);
+                } else if (size > configuration.heapEntryMaxBytes()) {
+                    file = Files.createTempFile(configuration.directory(), "entry-", ".body");
+                    fileOut = Files.newOutputStream(file);
+                    heapBuffer.writeTo(fileOut);
+                    heapBuffer = null;
+                    fileOut.write(buffer, offset, length);
+                } else {
+                    heapBuffer.write(buffer, offset, length);
+                }
+            } catch (IOException e) {
+                monitor.debug("Public API: failed to spool response for caching: " + e.getMessage());
+                abandon();
+            }
+        }
+
+        private void complete() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            try {
+                if (fileOut != null) {
+                    fileOut.close();
+                    store(key, headers, null, file, size);
+                } else {
+                    store(key, headers, heapBuffer.toByteArray(), null, size);
+                }
+            } catch (IOException e) {
+                monitor.debug("Public API: failed to store cached response: " + e.getMessage());
+                deleteFile();
+            }
+            heapBuffer = null;
+        }
+
+        private void abandon() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            heapBuffer = null;
+            if (fileOut != null) {
+                try {
+                    fileOut.close();
+                } catch (IOException ignored) {
+                    // the file is deleted below
+                }
+            }
+            deleteFile();
+        }
+
+        private void deleteFile() {
+            if (file != null) {
+                file.toFile().delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.eclipse.edc.extension;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of the {@link ResponseCache}.
+ *
+ * @param heapBudgetBytes   total size of the bodies kept on the heap
+ * @param heapEntryMaxBytes largest body kept on the heap, larger bodies go to the disk tier
+ * @param diskBudgetBytes   total size of the bodies kept in files
+ * @param diskEntryMaxBytes largest body that is cached at all
+ * @param directory         directory of the disk tier, wiped on startup
+ */
+record ResponseCacheConfiguration(long heapBudgetBytes,
+                                  long heapEntryMaxBytes,
+                                  long diskBudgetBytes,
+                                  long diskEntryMaxBytes,
+                                  Path directory) {
+}
@@ -0,0 +1,206 @@
+package org.eclipse.edc.extension;
+
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses uncompressed response bodies on the fly for clients that accept {@code gzip} or {@code deflate}.
+ * <p>
+ * Compression is applied while the body is streamed, through the compressor's own small window, so bodies are never
+ * buffered as a whole. Flushes of the proxy are passed through as sync flushes, so clients still receive data as
+ * soon as the upstream sends it. Bodies the upstream already encoded, partial responses and content types outside
+ * the allowlist are passed through untouched.
+ */
+class ResponseCompression {
+
+    private static final List<String> ENCODINGS = List.of("gzip", "deflate");
+
+    private final long minSize;
+    private final List<String> contentTypes;
+    private final int level;
+    private final int bufferSize;
+
+    /**
+     * Creates the compression policy.
+     *
+     * @param minSize      smallest body with a known length that is compressed
+     * @param contentTypes media types that are compressed, {@code type/*} matches every subtype
+     * @param level        deflate compression level, 1 (fastest) to 9 (smallest)
+     */
+    ResponseCompression(long minSize, List<String> contentTypes, int level, int bufferSize) {
+        this.minSize = minSize;
+        this.contentTypes = contentTypes.stream().map(type -> type.trim().toLowerCase(Locale.ROOT)).toList();
+        this.level = level;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Chooses the encoding to compress a response with.
+     *
+     * @param contentEncoding the encoding the body already has, if any
+     * @param contentLength   the length of the uncompressed body, {@code -1} if unknown
+     * @return {@code gzip} or {@code deflate}, or {@code null} to send the body as it is
+     */
+    String select(String acceptEncoding, int statusCode, String contentType, String contentEncoding, long contentLength) {
+        if (statusCode != 200 || (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding.trim()))) {
+            return null;
+        }
+        if (contentLength >= 0 && contentLength < minSize) {
+            return null;
+        }
+        if (!compressible(contentType)) {
+            return null;
+        }
+        return negotiate(acceptEncoding);
+    }
+
+    /**
+     * Wraps a body so that it is written in the given encoding, and adjusts the response headers accordingly.
+     */
+    StreamingOutput compress(StreamingOutput body, String encoding, Response.ResponseBuilder builder, String etag) {
+        builder.header("Content-Encoding", encoding)
+                .header("Content-Length", null)
+                .header("Accept-Ranges", null)
+                .header("Content-Range", null)
+                // added next to any Vary of the upstream, repeated Vary headers combine
+                .header("Vary", "Accept-Encoding");
+        // the compressed representation is not byte-identical to the one the upstream tagged
+        if (etag != null && !etag.startsWith("W/")) {
+            builder.header("ETag", null).header("ETag", "W/" + etag);
+        }
+        return output -> {
+            try (var compressor = "gzip".equals(encoding) ? new GzipStream(output) : new ZlibStream(output)) {
+                body.write(new FilterOutputStream(compressor) {
+                    @Override
+                    public void write(byte[] buffer, int offset, int length) throws IOException {
+                        out.write(buffer, offset, length);
+                    }
+
+                    @Override
+                    public void close() {
+                        // the compressor is finished when the body has been written
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Whether a client accepting the given encodings can be served a body in the given encoding.
+     */
+    static boolean accepts(String acceptEncoding, String encoding) {
+        if (encoding == null || "identity".equalsIgnoreCase(encoding)) {
+            return true;
+        }
+        return quality(acceptEncoding, encoding.trim().toLowerCase(Locale.ROOT)) > 0;
+    }
+
+    private String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        String best = null;
+        var bestQuality = 0.0;
+        for (var encoding : ENCODINGS) {
+            var quality = quality(acceptEncoding, encoding);
+            if (quality > bestQuality) {
+                best = encoding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    private boolean compressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        var mediaType = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        for (var allowed : contentTypes) {
+            if (allowed.endsWith("/*") ? mediaType.startsWith(allowed.substring(0, allowed.length() - 1)) : mediaType.equals(allowed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double quality(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return 0;
+        }
+        var wildcard = 0.0;
+        for (var part : acceptEncoding.split(",")) {
+            var tokens = part.split(";");
+            var name = tokens[0].trim().toLowerCase(Locale.ROOT);
+            var quality = 1.0;
+            for (var i = 1; i < tokens.length; i++) {
+                var parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals(encoding)) {
+                return quality;
+            }
+            if (name.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        return wildcard;
+    }
+
+    /**
+     * Gzip stream whose {@code close} finishes the compressed stream and frees the deflater, but leaves the client
+     * stream, which belongs to Jersey, open.
+     */
+    private class GzipStream extends GZIPOutputStream {
+
+        GzipStream(OutputStream output) throws IOException {
+            super(output, bufferSize, true);
+            def.setLevel(level);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+                flush();
+            } finally {
+                def.end();
+            }
+        }
+    }
+
+    /**
+     * The {@code deflate} content coding, i.e. a zlib stream, with the same closing behaviour as {@link GzipStream}.
+     */
+    private class ZlibStream extends DeflaterOutputStream {
+
+        ZlibStream(OutputStream output) {
+            super(output, new Deflater(level), bufferSize, true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+                flush();
+            } finally {
+                def.end();
+            }
+        }
+    }
+}
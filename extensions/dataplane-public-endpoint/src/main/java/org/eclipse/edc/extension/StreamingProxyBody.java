@@ -0,0 +1,44 @@
+package org.eclipse.edc.extension;
+
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Pipes an upstream response body to the Jetty output stream through a single fixed-size buffer.
+ * <p>
+ * Memory use per request is bounded by the buffer size, regardless of the payload size. Backpressure is
+ * applied in both directions: a slow client blocks the write, which stops us from reading, which in turn
+ * stops the upstream {@link java.net.http.HttpClient} from requesting more data.
+ * <p>
+ * The output is flushed whenever the upstream has no more bytes immediately available, so clients receive
+ * the first byte as soon as the upstream sends it, while bursts of data are still written in large chunks.
+ */
+class StreamingProxyBody implements StreamingOutput {
+
+    private final InputStream upstream;
+    private final int bufferSize;
+
+    StreamingProxyBody(InputStream upstream, int bufferSize) {
+        this.upstream = upstream;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        // closing the upstream stream also cancels the upstream exchange if the client went away
+        try (var in = upstream) {
+            var buffer = new byte[bufferSize];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+                if (in.available() == 0) {
+                    output.flush();
+                }
+            }
+            output.flush();
+        }
+    }
+}
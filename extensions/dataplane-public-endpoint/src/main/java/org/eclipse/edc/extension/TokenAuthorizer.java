@@ -0,0 +1,269 @@
+package org.eclipse.edc.extension;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.eclipse.edc.connector.dataplane.spi.iam.DataPlaneAccessControlService;
+import org.eclipse.edc.connector.dataplane.spi.iam.DataPlaneAuthorizationService;
+import org.eclipse.edc.connector.dataplane.spi.store.AccessTokenDataStore;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.result.Result;
+import org.eclipse.edc.spi.types.domain.DataAddress;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Authorizes EDR tokens against the {@link DataPlaneAuthorizationService} and caches successful results.
+ * <p>
+ * Entries are keyed by a SHA-256 digest of the token (never the token itself) plus the HTTP method, bounded in
+ * size (Caffeine's W-TinyLFU eviction) and expire no later than the token's {@code exp} claim. Terminating or
+ * suspending a transfer revokes its EDR, which removes the backing access token data; {@link #evictRevoked()}
+ * drops cached grants whose token data has disappeared. Only tokens served from the cache since the previous sweep
+ * are checked, at most {@code MAX_REVOCATION_CHECKS} per sweep, so the store sees a load proportional to the traffic
+ * rather than to the size of the cache. Tokens without a {@code jti} are never cached because their revocation
+ * could not be detected.
+ * <p>
+ * The consumer participant of a grant is read from the token's {@code aud} claim. The transfer process, agreement
+ * and asset are only known from the access token data, which is looked up on a cache miss if the authorizer is
+ * asked to resolve them.
+ */
+class TokenAuthorizer {
+
+    private static final int MAX_REVOCATION_CHECKS = 512;
+
+    private final DataPlaneAuthorizationService authorizationService;
+    private final AccessTokenDataStore accessTokenDataStore;
+    private final DataPlaneAccessControlService accessControlService;
+    private final KeyMaterialService keyMaterial;
+    private final Monitor monitor;
+    private final Duration maxTtl;
+    private final boolean transferDetails;
+    private final Cache<String, AuthorizedGrant> cache;
+    // token ids served from the cache since the last revocation sweep
+    private final Set<String> usedSinceSweep = ConcurrentHashMap.newKeySet();
+    private final LongAdder revocations = new LongAdder();
+
+    /**
+     * Creates the authorizer.
+     *
+     * @param accessControlService checks the requests of tokens verified with the previous key
+     * @param keyMaterial the token keys, to verify tokens issued before a key rotation with the previous key;
+     *                    {@code null} to only ever use the current one
+     * @param transferDetails whether grants carry the transfer process, agreement and asset, which costs a lookup of
+     *                    the access token data per authorization that misses the cache
+     */
+    TokenAuthorizer(DataPlaneAuthorizationService authorizationService, AccessTokenDataStore accessTokenDataStore,
+                    DataPlaneAccessControlService accessControlService, KeyMaterialService keyMaterial, Monitor monitor, long maxEntries, Duration maxTtl, boolean transferDetails) {
+        this.authorizationService = authorizationService;
+        this.accessTokenDataStore = accessTokenDataStore;
+        this.accessControlService = accessControlService;
+        this.keyMaterial = keyMaterial;
+        this.monitor = monitor;
+        this.maxTtl = maxTtl;
+        this.transferDetails = transferDetails;
+        this.cache = maxEntries > 0 ? Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new GrantExpiry())
+                .recordStats()
+                .build() : null;
+    }
+
+    Result<AuthorizedGrant> authorize(String token, String method) {
+        var key = cache != null ? cacheKey(token, method) : null;
+        if (key != null) {
+            var cached = cache.getIfPresent(key);
+            if (cached != null) {
+                usedSinceSweep.add(cached.tokenId());
+                return Result.success(cached);
+            }
+        }
+
+        var result = authorizationService.authorize(token, Map.of("method", method));
+        if (result.failed() && keyMaterial != null && keyMaterial.inGracePeriod()) {
+            // tokens issued before the last key rotation are signed with the previous key
+            var previous = authorizeWithPreviousKey(token, method);
+            result = previous.succeeded() ? previous : result;
+        }
+        if (result.failed()) {
+            return Result.failure(result.getFailureDetail());
+        }
+
+        var claims = TokenClaims.parse(token);
+        var grant = grant(result.getContent(), claims);
+        if (key != null && grant.tokenId() != null) {
+            cache.put(key, grant);
+        }
+        return Result.success(grant);
+    }
+
+    /**
+     * Authorizes a token signed with the key replaced by the last rotation the way the
+     * {@link DataPlaneAuthorizationService} does with the current one: the signature and validity period of the
+     * token, the access token data it was issued with, and the access control of the data plane.
+     */
+    private Result<DataAddress> authorizeWithPreviousKey(String token, String method) {
+        var claims = TokenClaims.parse(token);
+        if (claims.tokenId() == null || !keyMaterial.verifiesWithPreviousKey(token)) {
+            return Result.failure("Token is not signed with the previous key");
+        }
+        var period = checkValidityPeriod(claims, System.currentTimeMillis());
+        if (period.failed()) {
+            return Result.failure(period.getFailureDetail());
+        }
+        var tokenData = accessTokenDataStore.getById(claims.tokenId());
+        if (tokenData == null) {
+            return Result.failure("No access token data found for token %s".formatted(claims.tokenId()));
+        }
+        var access = accessControlService.checkAccess(tokenData.claimToken(), tokenData.dataAddress(), Map.of("method", method),
+                tokenData.additionalProperties() != null ? tokenData.additionalProperties() : Map.of());
+        return access.succeeded() ? Result.success(tokenData.dataAddress()) : Result.failure(access.getFailureDetail());
+    }
+
+    /**
+     * Checks the validity period of a token with the rules the data plane's token validation applies to EDRs: an
+     * {@code exp} claim is required and must lie ahead, and {@code iat} and {@code nbf}, if present, must have
+     * passed.
+     */
+    static Result<Void> checkValidityPeriod(TokenClaims claims, long now) {
+        if (claims.expiresAt() <= 0) {
+            return Result.failure("Token has no expiry");
+        }
+        if (claims.expiresAt() <= now) {
+            return Result.failure("Token has expired");
+        }
+        if (claims.issuedAt() > now) {
+            return Result.failure("Token is issued in the future");
+        }
+        if (claims.notBefore() > now) {
+            return Result.failure("Token is not valid yet");
+        }
+        return Result.success();
+    }
+
+    /**
+     * Removes the cached grants of revoked EDRs, checking the tokens served from the cache since the last call.
+     * Tokens left over once {@code MAX_REVOCATION_CHECKS} have been checked are checked by the next call.
+     */
+    void evictRevoked() {
+        if (cache == null) {
+            return;
+        }
+        var revoked = new HashSet<String>();
+        var checks = 0;
+        for (var iterator = usedSinceSweep.iterator(); iterator.hasNext() && checks < MAX_REVOCATION_CHECKS; checks++) {
+            var tokenId = iterator.next();
+            iterator.remove();
+            try {
+                if (accessTokenDataStore.getById(tokenId) == null) {
+                    revoked.add(tokenId);
+                }
+            } catch (Exception e) {
+                monitor.warning("Public API: failed to check cached token %s for revocation: %s".formatted(tokenId, e.getMessage()));
+                return;
+            }
+        }
+        if (!revoked.isEmpty()) {
+            cache.asMap().values().removeIf(grant -> {
+                var isRevoked = revoked.contains(grant.tokenId());
+                if (isRevoked) {
+                    revocations.increment();
+                }
+                return isRevoked;
+            });
+        }
+    }
+
+    /**
+     * Whether the EDR of the given token id has been revoked since it was authorized. Errors of the store count as
+     * not revoked, the next check will tell.
+     */
+    boolean isRevoked(String tokenId) {
+        try {
+            return accessTokenDataStore.getById(tokenId) == null;
+        } catch (Exception e) {
+            monitor.warning("Public API: failed to check token %s for revocation: %s".formatted(tokenId, e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Enriches the authorized data address with the consumer from the token and, if asked for, the transfer details
+     * recorded when the EDR was issued.
+     */
+    private AuthorizedGrant grant(DataAddress dataAddress, TokenClaims claims) {
+        var tokenData = transferDetails && claims.tokenId() != null ? accessTokenDataStore.getById(claims.tokenId()) : null;
+        if (tokenData == null) {
+            return new AuthorizedGrant(dataAddress, claims.tokenId(), claims.expiresAt(), null, null, null, claims.audience());
+        }
+        var properties = tokenData.additionalProperties() != null ? tokenData.additionalProperties() : Map.<String, Object>of();
+        var participantId = stringValue(properties.get("participant_id"));
+        return new AuthorizedGrant(dataAddress, claims.tokenId(), claims.expiresAt(),
+                stringValue(properties.get("process_id")),
+                stringValue(properties.get("agreement_id")),
+                stringValue(properties.get("asset_id")),
+                participantId != null ? participantId : claims.audience());
+    }
+
+    private static String stringValue(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return collection.isEmpty() ? null : String.valueOf(collection.iterator().next());
+        }
+        return value != null ? value.toString() : null;
+    }
+
+    Map<String, Object> stats() {
+        var stats = new LinkedHashMap<String, Object>();
+        stats.put("enabled", cache != null);
+        if (cache != null) {
+            var cacheStats = cache.stats();
+            stats.put("size", cache.estimatedSize());
+            stats.put("hits", cacheStats.hitCount());
+            stats.put("misses", cacheStats.missCount());
+            stats.put("evictions", cacheStats.evictionCount());
+            stats.put("revocations", revocations.sum());
+        }
+        return stats;
+    }
+
+    private static String cacheKey(String token, String method) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return method + " " + Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private class GrantExpiry implements Expiry<String, AuthorizedGrant> {
+
+        @Override
+        public long expireAfterCreate(String key, AuthorizedGrant grant, long currentTime) {
+            var ttl = maxTtl.toMillis();
+            if (grant.expiresAt() > 0) {
+                ttl = Math.min(ttl, grant.expiresAt() - System.currentTimeMillis());
+            }
+            return Duration.ofMillis(Math.max(0, ttl)).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, AuthorizedGrant grant, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, grant, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, AuthorizedGrant grant, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.eclipse.edc.extension;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Base64;
+
+/**
+ * Reads the {@code jti}, {@code exp}, {@code nbf}, {@code iat} and {@code aud} claims from the payload of a compact JWS
+ * without verifying it.
+ * <p>
+ * Only ever used on tokens whose signature has been verified, by the
+ * {@link org.eclipse.edc.connector.dataplane.spi.iam.DataPlaneAuthorizationService} or against the previous key, to
+ * check their validity period and to decide how long the authorization result may be reused.
+ */
+final class TokenClaims {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String tokenId;
+    private final long expiresAt;
+    private final long notBefore;
+    private final long issuedAt;
+    private final String audience;
+
+    private TokenClaims(String tokenId, long expiresAt, long notBefore, long issuedAt, String audience) {
+        this.tokenId = tokenId;
+        this.expiresAt = expiresAt;
+        this.notBefore = notBefore;
+        this.issuedAt = issuedAt;
+        this.audience = audience;
+    }
+
+    static TokenClaims parse(String token) {
+        var firstDot = token.indexOf('.');
+        var secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (secondDot < 0) {
+            return new TokenClaims(null, 0, 0, 0, null);
+        }
+        try {
+            var payload = Base64.getUrlDecoder().decode(token.substring(firstDot + 1, secondDot));
+            var claims = MAPPER.readTree(payload);
+            var jti = claims.path("jti");
+            // 'aud' is a string or an array of them, the EDR's consumer comes first
+            var aud = claims.path("aud").isArray() ? claims.path("aud").path(0) : claims.path("aud");
+            return new TokenClaims(jti.isTextual() ? jti.asText() : null,
+                    epochMillis(claims.path("exp")), epochMillis(claims.path("nbf")), epochMillis(claims.path("iat")),
+                    aud.isTextual() ? aud.asText() : null);
+        } catch (Exception e) {
+            return new TokenClaims(null, 0, 0, 0, null);
+        }
+    }
+
+    private static long epochMillis(JsonNode seconds) {
+        return seconds.isNumber() && seconds.canConvertToLong() ? seconds.asLong() * 1000 : 0;
+    }
+
+    String tokenId() {
+        return tokenId;
+    }
+
+    long expiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * The {@code nbf} claim in epoch milliseconds, {@code 0} if the token carries none.
+     */
+    long notBefore() {
+        return notBefore;
+    }
+
+    /**
+     * The {@code iat} claim in epoch milliseconds, {@code 0} if the token carries none.
+     */
+    long issuedAt() {
+        return issuedAt;
+    }
+
+    String audience() {
+        return audience;
+    }
+}
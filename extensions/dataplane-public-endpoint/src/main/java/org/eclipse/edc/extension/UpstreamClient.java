@@ -0,0 +1,478 @@
+package org.eclipse.edc.extension;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Sends proxied requests to upstream data sources.
+ * <p>
+ * All origins share one pooled {@link HttpClient} with a dedicated executor, except the configured isolated
+ * origins which each get a client of their own, so a slow or heavy upstream cannot exhaust the connections and
+ * threads used for the others. HTTP/2 is only negotiated with https origins: over cleartext the JDK client would
+ * send every request as an h2c upgrade, which many servers and proxies reject. Each origin may run at most
+ * {@code maxConnectionsPerOrigin} exchanges at a time; an exchange holds its slot until the response body has been
+ * closed. The state of shared origins that have been idle for a while is dropped by {@link #evictIdle()}.
+ * <p>
+ * Each origin also has a {@link CircuitBreaker} that fails requests fast while the upstream keeps failing, a
+ * {@link LatencyWindow} from which response timeouts adapt to the observed p99 latency (exchanges cut short by the
+ * adaptive timeout count with the time they were given), and optionally hedges GETs
+ * and HEADs: if no response arrived once the observed p95 latency has passed, a second attempt is sent and whichever
+ * answers first is used.
+ */
+class UpstreamClient {
+
+    private static final long IDLE_NANOS = Duration.ofMinutes(10).toNanos();
+
+    private final UpstreamClientConfiguration configuration;
+    private final ResilienceConfiguration resilience;
+    private final ExecutorService sharedExecutor;
+    private final HttpClient sharedClient;
+    private final HttpClient sharedPlainClient;
+    private final Map<String, Origin> origins = new ConcurrentHashMap<>();
+
+    UpstreamClient(UpstreamClientConfiguration configuration, ResilienceConfiguration resilience) {
+        this.configuration = configuration;
+        this.resilience = resilience;
+        this.sharedExecutor = newExecutor("shared");
+        this.sharedClient = newClient(sharedExecutor, configuration.preferHttp2());
+        this.sharedPlainClient = newClient(sharedExecutor, false);
+    }
+
+    /**
+     * Sends the request once a slot of the target origin is free, returning as soon as the response headers arrived.
+     *
+     * @throws UpstreamSaturatedException if no slot became free within the configured acquire timeout
+     */
+    HttpResponse<InputStream> send(HttpRequest request) throws IOException, InterruptedException {
+        return send(request, null);
+    }
+
+    /**
+     * Like {@link #send(HttpRequest)}, recording the wait for a free slot and for the response headers in the given
+     * trace.
+     */
+    HttpResponse<InputStream> send(HttpRequest request, ProxyTrace trace) throws IOException, InterruptedException {
+        var origin = origin(request.uri());
+        origin.breaker.acquirePermission();
+        var acquireStart = System.nanoTime();
+        try {
+            origin.acquire();
+        } catch (IOException | InterruptedException e) {
+            origin.breaker.onIgnored();
+            throw e;
+        }
+        if (trace != null) {
+            trace.end(ProxyTrace.UPSTREAM_ACQUIRE, acquireStart);
+        }
+        var timedRequest = origin.withAdaptiveTimeout(request);
+        var sendStart = System.nanoTime();
+        try {
+            var response = origin.hedgeable(timedRequest)
+                    ? origin.sendHedged(timedRequest)
+                    : origin.client.send(timedRequest, HttpResponse.BodyHandlers.ofInputStream());
+            if (isFailure(response.statusCode())) {
+                origin.breaker.onFailure();
+            } else {
+                origin.breaker.onSuccess();
+                origin.latency.record(System.nanoTime() - sendStart);
+            }
+            if (trace != null) {
+                trace.end(ProxyTrace.UPSTREAM_FIRST_BYTE, sendStart);
+            }
+            return new ReleasingResponse(response, new ReleasingInputStream(response.body(), origin));
+        } catch (InterruptedException e) {
+            origin.breaker.onIgnored();
+            origin.release();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            if (BoundedInputStream.isLimitExceeded(e)) {
+                // an oversized upload says nothing about the health of the upstream
+                origin.breaker.onIgnored();
+            } else if (timedRequest != request && e instanceof HttpTimeoutException && !(e instanceof HttpConnectTimeoutException)) {
+                // cut short by the adaptive timeout, the upstream may still have answered within the configured one
+                origin.breaker.onIgnored();
+                // it took at least this long: without the sample, an upstream that slows down would never raise the
+                // timeout again and every request to it would be cut short
+                origin.latency.record(System.nanoTime() - sendStart);
+            } else {
+                origin.breaker.onFailure();
+            }
+            origin.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a request builder for the given target with the configured response timeout applied.
+     */
+    HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder().uri(uri).timeout(configuration.responseTimeout());
+    }
+
+    Map<String, Object> stats() {
+        var stats = new TreeMap<String, Object>();
+        origins.forEach((key, origin) -> stats.put(key, origin.stats()));
+        return stats;
+    }
+
+    /**
+     * Drops the state of shared origins that have neither exchanges in flight nor been used recently, so that
+     * proxying to ever new hosts does not grow the client without bound. Their circuit and latency window start
+     * over once they are used again.
+     */
+    void evictIdle() {
+        var threshold = System.nanoTime() - IDLE_NANOS;
+        for (var key : origins.keySet()) {
+            // atomic per key with the removal, see origin()
+            origins.computeIfPresent(key, (k, origin) -> !origin.isolated && origin.idleSince(threshold) ? null : origin);
+        }
+    }
+
+    void close() {
+        sharedExecutor.shutdownNow();
+        origins.values().stream()
+                .filter(origin -> origin.executor != null)
+                .forEach(origin -> origin.executor.shutdownNow());
+    }
+
+    private Origin origin(URI uri) {
+        var key = originKey(uri);
+        var https = "https".equalsIgnoreCase(uri.getScheme());
+        while (true) {
+            var origin = origins.computeIfAbsent(key, k -> {
+                if (configuration.isolatedOrigins().contains(k)) {
+                    var executor = newExecutor(k);
+                    return new Origin(newClient(executor, https && configuration.preferHttp2()), executor, true);
+                }
+                return new Origin(https ? sharedClient : sharedPlainClient, null, false);
+            });
+            origin.lastUsed = System.nanoTime();
+            // either evictIdle() sees the new lastUsed and keeps the origin, or the origin is gone from the map by now
+            // and is looked up again, rather than used while the next request creates a second one for the same key
+            if (origins.get(key) == origin) {
+                return origin;
+            }
+        }
+    }
+
+    private HttpClient newClient(ExecutorService executor, boolean http2) {
+        return HttpClient.newBuilder()
+                .connectTimeout(configuration.connectTimeout())
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .executor(executor)
+                .build();
+    }
+
+    private ExecutorService newExecutor(String name) {
+        var prefix = "public-proxy-upstream-" + name;
+        if (configuration.executorThreads() > 0) {
+            return Executors.newFixedThreadPool(configuration.executorThreads(), ProxyThreads.platform(prefix));
+        }
+        return configuration.virtualThreads()
+                ? ProxyThreads.virtualOrCached(prefix)
+                : Executors.newCachedThreadPool(ProxyThreads.platform(prefix));
+    }
+
+    /**
+     * Whether a response status tells of an unhealthy upstream: a bad gateway, unavailable or timed out behind it.
+     * Other server errors are answers of a working upstream and do not count against it.
+     */
+    static boolean isFailure(int status) {
+        return status == 502 || status == 503 || status == 504;
+    }
+
+    static String originKey(URI uri) {
+        var port = uri.getPort();
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getScheme().toLowerCase() + "://" + uri.getHost().toLowerCase() + ":" + port;
+    }
+
+    /**
+     * Thrown while the circuit of an origin is open.
+     */
+    static class UpstreamUnavailableException extends IOException {
+        private final Duration retryAfter;
+
+        UpstreamUnavailableException(String message, Duration retryAfter) {
+            super(message);
+            this.retryAfter = retryAfter;
+        }
+
+        /**
+         * Time after which the circuit lets requests through again, rounded up to whole seconds for {@code Retry-After}.
+         */
+        long retryAfterSeconds() {
+            return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        }
+    }
+
+    /**
+     * Thrown when an origin has no free slot within the acquire timeout.
+     */
+    static class UpstreamSaturatedException extends IOException {
+        UpstreamSaturatedException(String message) {
+            super(message);
+        }
+    }
+
+    private class Origin {
+        private final HttpClient client;
+        private final ExecutorService executor;
+        private final boolean isolated;
+        private final Semaphore slots = new Semaphore(configuration.maxConnectionsPerOrigin());
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        private final CircuitBreaker breaker = new CircuitBreaker(resilience);
+        private final LatencyWindow latency = new LatencyWindow(512, 50);
+        private volatile long lastUsed = System.nanoTime();
+
+        Origin(HttpClient client, ExecutorService executor, boolean isolated) {
+            this.client = client;
+            this.executor = executor;
+            this.isolated = isolated;
+        }
+
+        void acquire() throws InterruptedException, UpstreamSaturatedException {
+            requests.increment();
+            if (slots.tryAcquire()) {
+                return;
+            }
+            waiting.incrementAndGet();
+            try {
+                if (!slots.tryAcquire(configuration.acquireTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                    rejected.increment();
+                    throw new UpstreamSaturatedException("All %d connections to the upstream are busy".formatted(configuration.maxConnectionsPerOrigin()));
+                }
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+
+        void release() {
+            slots.release();
+        }
+
+        boolean idleSince(long threshold) {
+            return slots.availablePermits() == configuration.maxConnectionsPerOrigin() && waiting.get() == 0 && lastUsed - threshold < 0;
+        }
+
+        /**
+         * Bounds the response timeout of the request by a multiple of the observed p99 latency.
+         */
+        HttpRequest withAdaptiveTimeout(HttpRequest request) {
+            var p99 = latency.p99Nanos();
+            if (!resilience.adaptiveTimeouts() || p99 == 0) {
+                return request;
+            }
+            var configured = request.timeout().orElse(configuration.responseTimeout());
+            var adaptive = Duration.ofNanos((long) (p99 * resilience.timeoutMultiplier()));
+            if (adaptive.compareTo(resilience.minTimeout()) < 0) {
+                adaptive = resilience.minTimeout();
+            }
+            if (adaptive.compareTo(configured) >= 0) {
+                return request;
+            }
+            return HttpRequest.newBuilder(request, (name, value) -> true).timeout(adaptive).build();
+        }
+
+        boolean hedgeable(HttpRequest request) {
+            return resilience.hedging() && latency.p95Nanos() > 0
+                    && ("GET".equals(request.method()) || "HEAD".equals(request.method()));
+        }
+
+        /**
+         * Sends the request and, if it has not been answered after the observed p95 latency, a second attempt with a
+         * slot of its own. The first successful response wins, the other attempt is cancelled.
+         * <p>
+         * Each attempt holds a slot: the winner's is released with its body, the loser's when it completes, except
+         * for the last of two failed attempts, whose slot the caller releases.
+         */
+        HttpResponse<InputStream> sendHedged(HttpRequest request) throws IOException, InterruptedException {
+            var primary = client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+            var delay = Math.max(resilience.minHedgeDelay().toNanos(), latency.p95Nanos());
+            try {
+                return primary.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // the primary is slow, hedge below
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+            if (!slots.tryAcquire()) {
+                return await(primary, primary);
+            }
+            hedges.increment();
+            var hedge = client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+            var winner = new CompletableFuture<HttpResponse<InputStream>>();
+            var outstanding = new AtomicInteger(2);
+            settle(primary, hedge, winner, outstanding, false);
+            settle(hedge, primary, winner, outstanding, true);
+            try {
+                return await(winner, primary, hedge);
+            } catch (InterruptedException e) {
+                primary.cancel(true);
+                hedge.cancel(true);
+                throw e;
+            }
+        }
+
+        private void settle(CompletableFuture<HttpResponse<InputStream>> attempt, CompletableFuture<HttpResponse<InputStream>> other,
+                            CompletableFuture<HttpResponse<InputStream>> winner, AtomicInteger outstanding, boolean isHedge) {
+            attempt.whenComplete((response, failure) -> {
+                if (failure == null && winner.complete(response)) {
+                    if (isHedge) {
+                        hedgeWins.increment();
+                    }
+                    other.cancel(true);
+                    return;
+                }
+                if (response != null) {
+                    try {
+                        response.body().close();
+                    } catch (IOException ignored) {
+                        // the losing exchange is discarded anyway
+                    }
+                }
+                if (outstanding.decrementAndGet() == 0 && !winner.isDone()) {
+                    winner.completeExceptionally(failure);
+                } else {
+                    release();
+                }
+            });
+        }
+
+        @SafeVarargs
+        private HttpResponse<InputStream> await(CompletableFuture<HttpResponse<InputStream>> future,
+                                                CompletableFuture<HttpResponse<InputStream>>... attempts) throws IOException, InterruptedException {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } catch (InterruptedException e) {
+                for (var attempt : attempts) {
+                    attempt.cancel(true);
+                }
+                throw e;
+            }
+        }
+
+        private IOException unwrap(ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof IOException io) {
+                return io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            return new IOException(cause);
+        }
+
+        Map<String, Object> stats() {
+            var stats = new LinkedHashMap<String, Object>();
+            stats.put("isolated", isolated);
+            stats.put("maxConnections", configuration.maxConnectionsPerOrigin());
+            stats.put("inFlight", configuration.maxConnectionsPerOrigin() - slots.availablePermits());
+            stats.put("waiting", waiting.get());
+            stats.put("requests", requests.sum());
+            stats.put("rejected", rejected.sum());
+            stats.put("circuit", breaker.state().name().toLowerCase());
+            stats.put("circuitRejected", breaker.rejected());
+            stats.put("p95Ms", TimeUnit.NANOSECONDS.toMillis(latency.p95Nanos()));
+            stats.put("p99Ms", TimeUnit.NANOSECONDS.toMillis(latency.p99Nanos()));
+            stats.put("hedges", hedges.sum());
+            stats.put("hedgeWins", hedgeWins.sum());
+            return stats;
+        }
+    }
+
+    /**
+     * Frees the origin slot exactly once, when the body is closed after being streamed or abandoned.
+     */
+    private static class ReleasingInputStream extends FilterInputStream {
+        private final Origin origin;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleasingInputStream(InputStream in, Origin origin) {
+            super(in);
+            this.origin = origin;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    origin.release();
+                }
+            }
+        }
+    }
+
+    private record ReleasingResponse(HttpResponse<InputStream> delegate, InputStream body) implements HttpResponse<InputStream> {
+
+        @Override
+        public int statusCode() {
+            return delegate.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return delegate.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<InputStream>> previousResponse() {
+            return delegate.previousResponse();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return delegate.headers();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return delegate.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return delegate.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return delegate.version();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.eclipse.edc.extension;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Settings of the HTTP client the public proxy uses to reach upstream data sources.
+ *
+ * @param connectTimeout          maximum time to establish a connection to an upstream
+ * @param responseTimeout         maximum time to wait for the response headers of an upstream
+ * @param preferHttp2             whether to negotiate HTTP/2 with https upstreams, falling back to HTTP/1.1 where the upstream does not
+ *                                support it; cleartext upstreams always get HTTP/1.1
+ * @param maxConnectionsPerOrigin maximum number of concurrent exchanges per upstream origin
+ * @param acquireTimeout          maximum time a request waits for a free slot of its origin before it is rejected
+ * @param executorThreads         size of the dedicated executor of each client, {@code 0} for an unbounded pool
+ * @param virtualThreads          whether an unbounded executor starts virtual threads instead of caching platform threads
+ * @param isolatedOrigins         origins ({@code scheme://host:port}) that get a client, connection pool and executor of their own
+ */
+record UpstreamClientConfiguration(Duration connectTimeout,
+                                   Duration responseTimeout,
+                                   boolean preferHttp2,
+                                   int maxConnectionsPerOrigin,
+                                   Duration acquireTimeout,
+                                   int executorThreads,
+                                   boolean virtualThreads,
+                                   Set<String> isolatedOrigins) {
+}
@@ -0,0 +1,272 @@
+package org.eclipse.edc.extension;
+
+import jakarta.servlet.ServletException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.edc.spi.monitor.Monitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Relays WebSocket upgrades of authorized requests to the upstream of their data address.
+ * <p>
+ * The client's handshake is replayed against the upstream over a plain socket (TLS for {@code https} and
+ * {@code wss} base URLs), with the client's key, version, subprotocols and extensions, so the upstream's answer can
+ * be handed back unchanged. Once the upstream switched protocols, the client connection is upgraded through the
+ * servlet container and a {@link WebSocketTunnel} relays the bytes in both directions. The token is authorized once
+ * for the whole connection; the tunnel is registered with {@link LiveStreams} so that it is closed when the EDR is
+ * revoked.
+ */
+class WebSocketRelay {
+
+    private static final List<String> HANDSHAKE_REQUEST_HEADERS = List.of(
+            "Sec-WebSocket-Key",
+            "Sec-WebSocket-Version",
+            "Sec-WebSocket-Protocol",
+            "Sec-WebSocket-Extensions",
+            "Origin");
+
+    private static final List<String> HANDSHAKE_RESPONSE_HEADERS = List.of(
+            "Sec-WebSocket-Accept",
+            "Sec-WebSocket-Protocol",
+            "Sec-WebSocket-Extensions");
+
+    private static final int MAX_HANDSHAKE_BYTES = 16 * 1024;
+
+    private final ReplicaBalancer balancer;
+    private final LiveStreams liveStreams;
+    private final Executor executor;
+    private final Duration connectTimeout;
+    private final Duration handshakeTimeout;
+    private final Monitor monitor;
+
+    /**
+     * Creates the relay.
+     *
+     * @param balancer         picks the replica of data addresses listing several base URLs, {@code null} to always
+     *                         use the first one
+     * @param executor         executor the tunnels pump their bytes on, two tasks per open tunnel
+     * @param handshakeTimeout how long the upstream may take to answer the handshake
+     */
+    WebSocketRelay(ReplicaBalancer balancer, LiveStreams liveStreams, Executor executor,
+                   Duration connectTimeout, Duration handshakeTimeout, Monitor monitor) {
+        this.balancer = balancer;
+        this.liveStreams = liveStreams;
+        this.executor = executor;
+        this.connectTimeout = connectTimeout;
+        this.handshakeTimeout = handshakeTimeout;
+        this.monitor = monitor;
+    }
+
+    /**
+     * Opens the upstream WebSocket of an authorized upgrade request and upgrades the client connection to it.
+     *
+     * @param upgrade  upgrades the client connection once the upstream switched protocols
+     * @param onClosed runs once when the tunnel closes, or right away if none could be opened
+     * @return the {@code 101} response completing the client's handshake, or the error to answer it with
+     */
+    Response open(AuthorizedGrant grant, String subPath, String rawQuery, HttpHeaders headers,
+                  ClientUpgrade upgrade, Runnable onClosed) {
+        var baseUrls = ReplicaBalancer.baseUrls(grant.dataAddress());
+        if (baseUrls.isEmpty()) {
+            monitor.warning("Public API: no baseUrl in DataAddress");
+            onClosed.run();
+            return error(Response.Status.BAD_GATEWAY, "No source URL configured for this data address");
+        }
+        var lease = balancer != null && baseUrls.size() > 1 ? balancer.select(baseUrls) : null;
+        var released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                if (lease != null) {
+                    lease.release();
+                }
+                onClosed.run();
+            }
+        };
+
+        var targetUrl = DataPlanePublicApiController.targetUrl(lease != null ? lease.baseUrl() : baseUrls.get(0), subPath, rawQuery);
+        Socket socket = null;
+        try {
+            var target = URI.create(targetUrl);
+            socket = connect(target);
+            var handshake = handshake(socket, target, headers);
+            if (lease != null) {
+                lease.responded(handshake.status());
+            }
+            if (handshake.status() != 101) {
+                socket.close();
+                release.run();
+                return error(Response.Status.BAD_GATEWAY, "Upstream refused the WebSocket upgrade with status " + handshake.status());
+            }
+            socket.setSoTimeout(0);
+
+            var tunnel = upgrade.upgrade();
+            var registration = liveStreams.register(grant, LiveStreams.Kind.WEBSOCKET, tunnel);
+            tunnel.attach(socket, handshake.pending(), executor, () -> {
+                registration.close();
+                release.run();
+            });
+
+            var response = Response.status(101)
+                    .header("Upgrade", "websocket")
+                    .header("Connection", "Upgrade");
+            for (var name : HANDSHAKE_RESPONSE_HEADERS) {
+                var value = handshake.headers().get(name.toLowerCase(Locale.ROOT));
+                if (value != null) {
+                    response.header(name, value);
+                }
+            }
+            return response.build();
+        } catch (SocketTimeoutException e) {
+            closeQuietly(socket, lease, release);
+            return error(Response.Status.GATEWAY_TIMEOUT, "Upstream did not answer the WebSocket handshake in time");
+        } catch (IOException | ServletException | RuntimeException e) {
+            monitor.warning("Public API: failed to open WebSocket to %s: %s".formatted(targetUrl, e.getMessage()));
+            closeQuietly(socket, lease, release);
+            return error(Response.Status.BAD_GATEWAY, "Failed to open WebSocket: " + e.getMessage());
+        }
+    }
+
+    private Socket connect(URI target) throws IOException {
+        var scheme = target.getScheme() != null ? target.getScheme().toLowerCase(Locale.ROOT) : "";
+        var secure = "https".equals(scheme) || "wss".equals(scheme);
+        if (!secure && !"http".equals(scheme) && !"ws".equals(scheme)) {
+            throw new IOException("unsupported scheme '%s'".formatted(scheme));
+        }
+        var port = target.getPort() != -1 ? target.getPort() : secure ? 443 : 80;
+        var socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(target.getHost(), port), (int) connectTimeout.toMillis());
+            socket.setSoTimeout((int) handshakeTimeout.toMillis());
+            if (!secure) {
+                return socket;
+            }
+            var tls = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket, target.getHost(), port, true);
+            var parameters = tls.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            tls.setSSLParameters(parameters);
+            tls.startHandshake();
+            return tls;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private static Handshake handshake(Socket socket, URI target, HttpHeaders headers) throws IOException {
+        var path = target.getRawPath() == null || target.getRawPath().isEmpty() ? "/" : target.getRawPath();
+        var request = new StringBuilder()
+                .append("GET ").append(path).append(target.getRawQuery() != null ? "?" + target.getRawQuery() : "").append(" HTTP/1.1\r\n")
+                .append("Host: ").append(target.getHost()).append(target.getPort() != -1 ? ":" + target.getPort() : "").append("\r\n")
+                .append("Upgrade: websocket\r\n")
+                .append("Connection: Upgrade\r\n");
+        for (var name : HANDSHAKE_REQUEST_HEADERS) {
+            var value = headers.getHeaderString(name);
+            if (value != null) {
+                request.append(name).append(": ").append(value).append("\r\n");
+            }
+        }
+        var out = socket.getOutputStream();
+        out.write(request.append("\r\n").toString().getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        return readHandshake(socket.getInputStream());
+    }
+
+    /**
+     * Reads the upstream's handshake response up to the blank line ending its headers, keeping whatever was
+     * received beyond it.
+     */
+    private static Handshake readHandshake(InputStream in) throws IOException {
+        var buffer = new byte[MAX_HANDSHAKE_BYTES];
+        var length = 0;
+        var end = -1;
+        while (end < 0) {
+            if (length == buffer.length) {
+                throw new IOException("handshake response exceeds %d bytes".formatted(MAX_HANDSHAKE_BYTES));
+            }
+            var read = in.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                throw new IOException("upstream closed the connection during the handshake");
+            }
+            var from = Math.max(0, length - 3);
+            length += read;
+            for (var i = from; i + 3 < length; i++) {
+                if (buffer[i] == '\r' && buffer[i + 1] == '\n' && buffer[i + 2] == '\r' && buffer[i + 3] == '\n') {
+                    end = i;
+                    break;
+                }
+            }
+        }
+
+        var lines = new String(buffer, 0, end, StandardCharsets.ISO_8859_1).split("\r\n");
+        var statusLine = lines[0].split(" ", 3);
+        int status;
+        try {
+            status = statusLine.length > 1 ? Integer.parseInt(statusLine[1]) : -1;
+        } catch (NumberFormatException e) {
+            throw new IOException("malformed status line '%s'".formatted(lines[0]));
+        }
+        var responseHeaders = new HashMap<String, String>();
+        for (var i = 1; i < lines.length; i++) {
+            var colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                responseHeaders.putIfAbsent(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+            }
+        }
+        return new Handshake(status, responseHeaders, Arrays.copyOfRange(buffer, end + 4, length));
+    }
+
+    private static void closeQuietly(Socket socket, ReplicaBalancer.Lease lease, Runnable release) {
+        if (lease != null) {
+            lease.failed();
+        }
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+        }
+        release.run();
+    }
+
+    private static Response error(Response.Status status, String message) {
+        return Response.status(status)
+                .entity("{\"error\": \"" + message + "\"}")
+                .build();
+    }
+
+    /**
+     * The upstream's answer to the handshake.
+     *
+     * @param headers response headers by lower-case name
+     * @param pending bytes received after the headers, already part of the WebSocket stream
+     */
+    private record Handshake(int status, Map<String, String> headers, byte[] pending) {
+    }
+
+    /**
+     * Upgrades the client connection, as {@code HttpServletRequest.upgrade(WebSocketTunnel.class)} does in the
+     * servlet container.
+     */
+    @FunctionalInterface
+    interface ClientUpgrade {
+        WebSocketTunnel upgrade() throws IOException, ServletException;
+    }
+}
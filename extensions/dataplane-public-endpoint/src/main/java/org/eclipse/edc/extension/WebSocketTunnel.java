@@ -0,0 +1,126 @@
+package org.eclipse.edc.extension;
+
+import jakarta.servlet.http.HttpUpgradeHandler;
+import jakarta.servlet.http.WebConnection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Relays the bytes of an upgraded client connection to and from the upstream WebSocket connection, in both
+ * directions, until either side closes.
+ * <p>
+ * Frames are not parsed: the handshake was negotiated end to end by {@link WebSocketRelay}, so whatever extensions
+ * and subprotocols client and upstream agreed on pass through untouched. Each direction is pumped by its own task
+ * on the relay executor and flushed after every read.
+ * <p>
+ * The servlet container instantiates this class when the connection is upgraded, hence it is public.
+ */
+public class WebSocketTunnel implements HttpUpgradeHandler, Closeable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private Socket upstream;
+    private byte[] pending;
+    private Executor executor;
+    private Runnable onClosed;
+    private volatile WebConnection connection;
+
+    /**
+     * Hands over the upstream connection, called before the container calls {@link #init(WebConnection)}.
+     *
+     * @param pending  bytes the upstream sent right after its handshake response
+     * @param onClosed runs once when the tunnel closes
+     */
+    void attach(Socket upstream, byte[] pending, Executor executor, Runnable onClosed) {
+        this.upstream = upstream;
+        this.pending = pending;
+        this.executor = executor;
+        this.onClosed = onClosed;
+    }
+
+    @Override
+    public void init(WebConnection connection) {
+        this.connection = connection;
+        if (closed.get()) {
+            closeConnection();
+            return;
+        }
+        try {
+            executor.execute(this::upstreamToClient);
+            executor.execute(this::clientToUpstream);
+        } catch (RejectedExecutionException e) {
+            close();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        close();
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                upstream.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+            closeConnection();
+            onClosed.run();
+        }
+    }
+
+    private void upstreamToClient() {
+        try {
+            var out = connection.getOutputStream();
+            if (pending.length > 0) {
+                out.write(pending);
+                out.flush();
+            }
+            pump(upstream.getInputStream(), out);
+        } catch (IOException ignored) {
+            // either side went away
+        } finally {
+            close();
+        }
+    }
+
+    private void clientToUpstream() {
+        try {
+            pump(connection.getInputStream(), upstream.getOutputStream());
+        } catch (IOException ignored) {
+            // either side went away
+        } finally {
+            close();
+        }
+    }
+
+    private static void pump(InputStream in, OutputStream out) throws IOException {
+        var buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            out.flush();
+        }
+    }
+
+    private void closeConnection() {
+        var current = connection;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (Exception ignored) {
+                // nothing to do
+            }
+        }
+    }
+}
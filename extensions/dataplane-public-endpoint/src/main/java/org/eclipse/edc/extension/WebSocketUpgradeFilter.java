@@ -0,0 +1,36 @@
+package org.eclipse.edc.extension;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.PreMatching;
+
+import java.net.URI;
+
+/**
+ * Routes WebSocket upgrade requests of the public API to the controller's upgrade handler.
+ * <p>
+ * Clients open WebSockets on the same URL they would GET. JAX-RS cannot tell the two apart by a header, so the
+ * path of upgrade requests is prefixed with {@link #PATH} before resources are matched. The prefix is reserved: a
+ * plain GET of an upstream path starting with it matches the upgrade handler too, and is rejected there.
+ */
+@PreMatching
+class WebSocketUpgradeFilter implements ContainerRequestFilter {
+
+    static final String PATH = "$websocket";
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (!"GET".equals(requestContext.getMethod()) || !"websocket".equalsIgnoreCase(requestContext.getHeaderString("Upgrade"))) {
+            return;
+        }
+        var uriInfo = requestContext.getUriInfo();
+        var path = uriInfo.getPath(false);
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        var query = uriInfo.getRequestUri().getRawQuery();
+        var baseUri = uriInfo.getBaseUri();
+        var base = baseUri.toString().endsWith("/") ? baseUri.toString() : baseUri + "/";
+        requestContext.setRequestUri(baseUri, URI.create(base + PATH + "/" + path + (query != null ? "?" + query : "")));
+    }
+}
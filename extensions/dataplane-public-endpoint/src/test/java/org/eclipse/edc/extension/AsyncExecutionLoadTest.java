@@ -0,0 +1,162 @@
+package org.eclipse.edc.extension;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.eclipse.edc.extension.ProxyFixtures.asyncResponse;
+import static org.eclipse.edc.extension.ProxyFixtures.authorization;
+import static org.eclipse.edc.extension.ProxyFixtures.baseUrl;
+import static org.eclipse.edc.extension.ProxyFixtures.controllerBuilder;
+import static org.eclipse.edc.extension.ProxyFixtures.dataAddress;
+import static org.eclipse.edc.extension.ProxyFixtures.headers;
+import static org.eclipse.edc.extension.ProxyFixtures.upstream;
+import static org.eclipse.edc.extension.ProxyFixtures.upstreamClient;
+import static org.eclipse.edc.extension.ProxyFixtures.uriInfo;
+import static org.eclipse.edc.extension.ProxyFixtures.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Puts 10k concurrent requests against a slow upstream through the proxy in the async execution mode, dispatched by
+ * a fixed pool of four platform threads standing in for the Jetty request threads. Handled one per request thread,
+ * they would take {@code 10k * 200 ms / 4}, more than eight minutes.
+ * <p>
+ * Without virtual threads (Java 17) the handlers run on the cached pool the proxy falls back to. The request threads
+ * are still handed back at once, but starting a platform thread per waiting request makes dispatching slower, so
+ * the bounds on dispatch time, upstream concurrency and thread count only hold on virtual threads.
+ */
+class AsyncExecutionLoadTest {
+
+    private static final int REQUESTS = 10_000;
+    private static final int REQUEST_THREADS = 4;
+    private static final long UPSTREAM_DELAY_MILLIS = 200;
+    // bounded by the file descriptors of the sandbox, the proxy and the upstream each hold one per connection
+    private static final int MAX_CONNECTIONS = 500;
+    private static final String BODY = "slow answer";
+
+    private final AtomicInteger upstreamInFlight = new AtomicInteger();
+    private final AtomicInteger upstreamPeak = new AtomicInteger();
+    private final AtomicInteger proxyInFlight = new AtomicInteger();
+    private final AtomicInteger proxyPeak = new AtomicInteger();
+    private final LongAdder dispatchNanos = new LongAdder();
+    private ExecutorService upstreamExecutor;
+    private ExecutorService handlerExecutor;
+    private ExecutorService requestThreads;
+    private HttpServer upstream;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        upstreamExecutor = ProxyThreads.virtualOrCached("upstream");
+        handlerExecutor = ProxyThreads.virtualOrCached("public-proxy-handler");
+        requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS, ProxyThreads.platform("request"));
+        upstream = upstream(exchange -> {
+            upstreamPeak.accumulateAndGet(upstreamInFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(UPSTREAM_DELAY_MILLIS);
+                var body = BODY.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (var output = exchange.getResponseBody()) {
+                    output.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                upstreamInFlight.decrementAndGet();
+                exchange.close();
+            }
+        }, upstreamExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (upstream != null) {
+            upstream.stop(0);
+            requestThreads.shutdownNow();
+            handlerExecutor.shutdownNow();
+            upstreamExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Timeout(value = 3, unit = TimeUnit.MINUTES)
+    void slowUpstream_requestThreadsNotHeld() throws Exception {
+        var controller = controllerBuilder(dataAddress(baseUrl(upstream)), upstreamClient(MAX_CONNECTIONS))
+                .handlerExecutor(handlerExecutor)
+                .streamBufferSize(8 * 1024)
+                .build();
+        var threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        var platformThreadsBefore = threads.getThreadCount();
+
+        var responses = new ArrayList<CompletableFuture<String>>(REQUESTS);
+        var start = System.nanoTime();
+        for (var i = 0; i < REQUESTS; i++) {
+            var resumed = new CompletableFuture<Response>();
+            // Jersey writes the entity on the thread resuming the request
+            responses.add(resumed.thenApply(response -> {
+                proxyInFlight.decrementAndGet();
+                return entity(response);
+            }));
+            requestThreads.execute(() -> {
+                proxyPeak.accumulateAndGet(proxyInFlight.incrementAndGet(), Math::max);
+                var dispatchStart = System.nanoTime();
+                controller.getSubPath(authorization("load"), "slow", headers(Map.of()), uriInfo("slow"), asyncResponse(resumed));
+                dispatchNanos.add(System.nanoTime() - dispatchStart);
+            });
+        }
+        requestThreads.shutdown();
+        assertTrue(requestThreads.awaitTermination(1, TimeUnit.MINUTES));
+        var dispatchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        for (var response : responses) {
+            assertEquals("200 " + BODY, response.join());
+        }
+        var totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // a request thread is handed back long before the upstream answers, rather than held for the whole delay
+        var meanDispatchMillis = TimeUnit.NANOSECONDS.toMillis(dispatchNanos.sum()) / (double) REQUESTS;
+        assertTrue(meanDispatchMillis < UPSTREAM_DELAY_MILLIS / 10.0, "request threads were held for " + meanDispatchMillis + " ms on average");
+        var blockingMillis = REQUESTS / REQUEST_THREADS * UPSTREAM_DELAY_MILLIS;
+        assertTrue(totalMillis < blockingMillis / 4, "the requests took " + totalMillis + " ms");
+        assertTrue(proxyPeak.get() > 100 * REQUEST_THREADS, "at most " + proxyPeak.get() + " requests were in flight at once");
+        assertTrue(upstreamPeak.get() > 10 * REQUEST_THREADS, "at most " + upstreamPeak.get() + " upstream calls were in flight at once");
+        assertTrue(upstreamPeak.get() <= MAX_CONNECTIONS, upstreamPeak.get() + " upstream calls exceed the connection limit");
+        if (!ProxyThreads.virtualThreadsAvailable()) {
+            return;
+        }
+        // the request threads were handed back long before the upstream could have answered every request
+        var upstreamMillis = REQUESTS / MAX_CONNECTIONS * UPSTREAM_DELAY_MILLIS;
+        assertTrue(dispatchMillis < upstreamMillis, "dispatching took " + dispatchMillis + " ms");
+        assertTrue(upstreamPeak.get() > 100 * REQUEST_THREADS, "at most " + upstreamPeak.get() + " upstream calls were in flight at once");
+        // the waiting is done by virtual threads, not by a platform thread per request
+        var platformThreadsAdded = threads.getPeakThreadCount() - platformThreadsBefore;
+        assertTrue(platformThreadsAdded < 100, platformThreadsAdded + " platform threads were started");
+    }
+
+    private static String entity(Response response) {
+        var body = new ByteArrayOutputStream();
+        try {
+            write(response, body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return response.getStatus() + " " + body.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,182 @@
+package org.eclipse.edc.extension;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.edc.spi.types.domain.DataAddress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.eclipse.edc.extension.ProxyFixtures.authorization;
+import static org.eclipse.edc.extension.ProxyFixtures.authorizer;
+import static org.eclipse.edc.extension.ProxyFixtures.baseUrl;
+import static org.eclipse.edc.extension.ProxyFixtures.dataAddress;
+import static org.eclipse.edc.extension.ProxyFixtures.monitor;
+import static org.eclipse.edc.extension.ProxyFixtures.upstream;
+import static org.eclipse.edc.extension.ProxyFixtures.upstreamClient;
+import static org.eclipse.edc.extension.ProxyFixtures.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs batches against a stub upstream that records the targets it was asked for, checking that no entry can reach a
+ * URL outside the data address's base URL.
+ */
+class BatchProcessorTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ConcurrentLinkedQueue<String> received = new ConcurrentLinkedQueue<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private HttpServer upstream;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        upstream = upstream(exchange -> {
+            var uri = exchange.getRequestURI();
+            received.add(uri.getRawPath() + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : ""));
+            var body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, body.length);
+            try (var output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void traversalPaths_rejectedPerEntry() throws IOException {
+        var results = run(baseUrl(upstream) + "/base", """
+                {"requests": [
+                  {"id": "ok", "path": "data/a"},
+                  {"id": "dotdot", "path": "../secret"},
+                  {"id": "nested", "path": "data/../../secret"},
+                  {"id": "dot", "path": "data/./a"},
+                  {"id": "encoded", "path": "data/%2e%2e/%2E%2E/secret"},
+                  {"id": "encodedSlash", "path": "data/..%2F..%2Fsecret"},
+                  {"id": "backslash", "path": "data\\\\..\\\\..\\\\secret"},
+                  {"id": "question", "path": "data/a?admin=true"},
+                  {"id": "encodedQuestion", "path": "data/a%3Fadmin=true"},
+                  {"id": "fragment", "path": "data/a#x"},
+                  {"id": "encodedFragment", "path": "data/a%23x"},
+                  {"id": "malformed", "path": "data/%zz"}
+                ]}
+                """);
+
+        assertEquals(200, results.get("ok").get("status").asInt());
+        for (var id : List.of("dotdot", "nested", "dot", "encoded", "encodedSlash", "backslash", "question", "encodedQuestion",
+                "fragment", "encodedFragment", "malformed")) {
+            assertEquals(400, results.get(id).get("status").asInt(), id);
+            assertTrue(results.get(id).get("error").asText().startsWith("Invalid request"), id);
+        }
+        assertEquals(List.of("/base/data/a"), List.copyOf(received));
+    }
+
+    @Test
+    void query_percentEncodedByTheProxy() throws IOException {
+        var results = run(baseUrl(upstream), """
+                {"requests": [
+                  {"id": "object", "path": "a", "query": {"q": "a b&admin=true", "tag": ["x", "y#z"]}},
+                  {"id": "string", "path": "b", "query": "q=a b&r=%26&flag"},
+                  {"id": "fragment", "path": "c", "query": "q=1#x"},
+                  {"id": "malformed", "path": "d", "query": "q=%zz"}
+                ]}
+                """);
+
+        assertEquals(200, results.get("object").get("status").asInt());
+        assertEquals(200, results.get("string").get("status").asInt());
+        assertEquals(400, results.get("fragment").get("status").asInt());
+        assertEquals(400, results.get("malformed").get("status").asInt());
+        assertEquals(2, received.size());
+        assertTrue(received.contains("/a?q=a%20b%26admin%3Dtrue&tag=x&tag=y%23z"), received.toString());
+        assertTrue(received.contains("/b?q=a%20b&r=%26&flag"), received.toString());
+    }
+
+    @Test
+    void invalidUri_notCountedAgainstTheReplica() throws IOException {
+        var balancer = new ReplicaBalancer(new ReplicaBalancerConfiguration(ReplicaBalancerConfiguration.Strategy.LEAST_OUTSTANDING,
+                1, Duration.ofMinutes(1), Duration.ofMinutes(1)));
+        var port = upstream.getAddress().getPort();
+        var replicas = List.of("http://127.0.0.1:" + port, "http://localhost:" + port);
+        var dataAddress = DataAddress.Builder.newInstance()
+                .type("HttpData")
+                .property(ReplicaBalancer.BASE_URLS_PROPERTY, replicas)
+                .build();
+
+        // a space is not rejected as a traversal, but makes the target URL unparseable
+        var results = run(balancer, dataAddress, """
+                {"requests": [
+                  {"id": "space1", "path": "a b"},
+                  {"id": "space2", "path": "c d"},
+                  {"id": "space3", "path": "e f"},
+                  {"id": "space4", "path": "g h"}
+                ]}
+                """);
+
+        for (var result : results.values()) {
+            assertEquals(400, result.get("status").asInt());
+        }
+        assertFalse(balancer.stats().isEmpty(), "the entries must have been given a replica");
+        for (var replica : balancer.stats().values()) {
+            var stats = (Map<?, ?>) replica;
+            assertEquals(0L, stats.get("failures"));
+            assertEquals(true, stats.get("inRotation"));
+        }
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void withinBase_staysBelowTheBasePath() {
+        var base = URI.create("http://upstream/base");
+        assertTrue(BatchProcessor.withinBase(base, URI.create("http://upstream/base/a/b")));
+        assertTrue(BatchProcessor.withinBase(URI.create("http://upstream/base/"), URI.create("http://upstream/base")));
+        assertFalse(BatchProcessor.withinBase(base, URI.create("http://upstream/base/../secret")));
+        assertFalse(BatchProcessor.withinBase(base, URI.create("http://upstream/basement")));
+        assertFalse(BatchProcessor.withinBase(base, URI.create("http://other/base/a")));
+        assertFalse(BatchProcessor.withinBase(base, URI.create("https://upstream/base/a")));
+    }
+
+    private Map<String, JsonNode> run(String baseUrl, String batch) throws IOException {
+        return run(null, dataAddress(baseUrl), batch);
+    }
+
+    /**
+     * Runs a batch for the data address and returns the result lines by entry id.
+     */
+    private Map<String, JsonNode> run(ReplicaBalancer balancer, DataAddress dataAddress, String batch) throws IOException {
+        var processor = new BatchProcessor(authorizer(dataAddress), null, upstreamClient(16), balancer, executor,
+                new BatchConfiguration(100, 4, 1024 * 1024, 10 * 1024 * 1024), monitor());
+        var response = processor.process(authorization("batch").substring("Bearer ".length()),
+                new ByteArrayInputStream(batch.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(200, response.getStatus());
+        var output = new ByteArrayOutputStream();
+        write(response, output);
+        var results = new HashMap<String, JsonNode>();
+        for (var line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            var result = MAPPER.readTree(line);
+            results.put(result.get("id").asText(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,94 @@
+package org.eclipse.edc.extension;
+
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.TimeoutHandler;
+import jakarta.ws.rs.core.Response;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A suspended request, completing a future with whatever it is resumed with. Callbacks are not supported, the proxy
+ * registers none.
+ */
+final class FakeAsyncResponse implements AsyncResponse {
+
+    private final CompletableFuture<Response> resumed;
+
+    FakeAsyncResponse(CompletableFuture<Response> resumed) {
+        this.resumed = resumed;
+    }
+
+    @Override
+    public boolean resume(Object response) {
+        return resumed.complete((Response) response);
+    }
+
+    @Override
+    public boolean resume(Throwable response) {
+        return resumed.completeExceptionally(response);
+    }
+
+    @Override
+    public boolean cancel() {
+        return resumed.cancel(false);
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+        return cancel();
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+        return cancel();
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return !resumed.isDone();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return resumed.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return resumed.isDone();
+    }
+
+    @Override
+    public boolean setTimeout(long time, TimeUnit unit) {
+        return !resumed.isDone();
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {
+        throw new UnsupportedOperationException("setTimeoutHandler");
+    }
+
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+        throw new UnsupportedOperationException("register");
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+        throw new UnsupportedOperationException("register");
+    }
+
+    @Override
+    public Collection<Class<?>> register(Object callback) {
+        throw new UnsupportedOperationException("register");
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+        throw new UnsupportedOperationException("register");
+    }
+}
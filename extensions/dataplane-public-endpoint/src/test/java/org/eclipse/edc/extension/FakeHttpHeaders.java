@@ -0,0 +1,76 @@
+package org.eclipse.edc.extension;
+
+import jakarta.ws.rs.core.Cookie;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Request headers, looked up ignoring case like the container does. What the proxy never reads throws, so that a
+ * new use shows up as a failing test rather than as a missing header.
+ */
+final class FakeHttpHeaders implements HttpHeaders {
+
+    private final Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    FakeHttpHeaders(Map<String, String> values) {
+        this.values.putAll(values);
+    }
+
+    @Override
+    public List<String> getRequestHeader(String name) {
+        return values.containsKey(name) ? List.of(values.get(name)) : null;
+    }
+
+    @Override
+    public String getHeaderString(String name) {
+        return values.get(name);
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getRequestHeaders() {
+        throw new UnsupportedOperationException("getRequestHeaders");
+    }
+
+    @Override
+    public List<MediaType> getAcceptableMediaTypes() {
+        throw new UnsupportedOperationException("getAcceptableMediaTypes");
+    }
+
+    @Override
+    public List<Locale> getAcceptableLanguages() {
+        throw new UnsupportedOperationException("getAcceptableLanguages");
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        throw new UnsupportedOperationException("getMediaType");
+    }
+
+    @Override
+    public Locale getLanguage() {
+        throw new UnsupportedOperationException("getLanguage");
+    }
+
+    @Override
+    public Map<String, Cookie> getCookies() {
+        throw new UnsupportedOperationException("getCookies");
+    }
+
+    @Override
+    public Date getDate() {
+        throw new UnsupportedOperationException("getDate");
+    }
+
+    @Override
+    public int getLength() {
+        var length = values.get("Content-Length");
+        return length != null ? Integer.parseInt(length) : -1;
+    }
+}
@@ -0,0 +1,34 @@
+package org.eclipse.edc.extension;
+
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.result.Result;
+import org.eclipse.edc.spi.types.domain.DataAddress;
+
+import java.time.Duration;
+
+/**
+ * Authorizes every token for a fixed data address, with the token id, expiry and consumer read from the token's
+ * claims like {@link TokenAuthorizer} does. No EDR is ever revoked, the tests revoke live streams through
+ * {@link LiveStreams} directly.
+ */
+final class FakeTokenAuthorizer extends TokenAuthorizer {
+
+    private final DataAddress dataAddress;
+
+    FakeTokenAuthorizer(DataAddress dataAddress) {
+        super(null, null, null, null, new Monitor() {
+        }, 0, Duration.ZERO, false);
+        this.dataAddress = dataAddress;
+    }
+
+    @Override
+    Result<AuthorizedGrant> authorize(String token, String method) {
+        var claims = TokenClaims.parse(token);
+        return Result.success(new AuthorizedGrant(dataAddress, claims.tokenId(), claims.expiresAt(), null, null, null, claims.audience()));
+    }
+
+    @Override
+    boolean isRevoked(String tokenId) {
+        return false;
+    }
+}
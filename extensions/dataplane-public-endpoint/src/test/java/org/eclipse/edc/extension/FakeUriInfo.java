@@ -0,0 +1,129 @@
+package org.eclipse.edc.extension;
+
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.PathSegment;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * The URI of a request to the public API mounted at {@code /public}. What the proxy never reads throws, like in
+ * {@link FakeHttpHeaders}.
+ */
+final class FakeUriInfo implements UriInfo {
+
+    private static final URI BASE_URI = URI.create("http://localhost/public/");
+
+    private final String path;
+    private final URI requestUri;
+
+    /**
+     * @param path the path below the base URI, with the query if there is one
+     */
+    FakeUriInfo(String path) {
+        this.requestUri = BASE_URI.resolve(path);
+        this.path = requestUri.getPath().substring(BASE_URI.getPath().length());
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public String getPath(boolean decode) {
+        return decode ? path : requestUri.getRawPath().substring(BASE_URI.getRawPath().length());
+    }
+
+    @Override
+    public List<PathSegment> getPathSegments() {
+        throw new UnsupportedOperationException("getPathSegments");
+    }
+
+    @Override
+    public List<PathSegment> getPathSegments(boolean decode) {
+        throw new UnsupportedOperationException("getPathSegments");
+    }
+
+    @Override
+    public URI getRequestUri() {
+        return requestUri;
+    }
+
+    @Override
+    public UriBuilder getRequestUriBuilder() {
+        throw new UnsupportedOperationException("getRequestUriBuilder");
+    }
+
+    @Override
+    public URI getAbsolutePath() {
+        return URI.create(requestUri.getScheme() + "://" + requestUri.getRawAuthority() + requestUri.getRawPath());
+    }
+
+    @Override
+    public UriBuilder getAbsolutePathBuilder() {
+        throw new UnsupportedOperationException("getAbsolutePathBuilder");
+    }
+
+    @Override
+    public URI getBaseUri() {
+        return BASE_URI;
+    }
+
+    @Override
+    public UriBuilder getBaseUriBuilder() {
+        throw new UnsupportedOperationException("getBaseUriBuilder");
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getPathParameters() {
+        throw new UnsupportedOperationException("getPathParameters");
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getPathParameters(boolean decode) {
+        throw new UnsupportedOperationException("getPathParameters");
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getQueryParameters() {
+        throw new UnsupportedOperationException("getQueryParameters");
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getQueryParameters(boolean decode) {
+        throw new UnsupportedOperationException("getQueryParameters");
+    }
+
+    @Override
+    public List<String> getMatchedURIs() {
+        throw new UnsupportedOperationException("getMatchedURIs");
+    }
+
+    @Override
+    public List<String> getMatchedURIs(boolean decode) {
+        throw new UnsupportedOperationException("getMatchedURIs");
+    }
+
+    @Override
+    public List<Object> getMatchedResources() {
+        throw new UnsupportedOperationException("getMatchedResources");
+    }
+
+    @Override
+    public URI resolve(URI uri) {
+        return BASE_URI.resolve(uri);
+    }
+
+    @Override
+    public URI relativize(URI uri) {
+        throw new UnsupportedOperationException("relativize");
+    }
+
+    @Override
+    public String getMatchedResourceTemplate() {
+        throw new UnsupportedOperationException("getMatchedResourceTemplate");
+    }
+}
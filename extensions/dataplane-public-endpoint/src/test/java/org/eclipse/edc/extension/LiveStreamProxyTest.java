@@ -0,0 +1,404 @@
+package org.eclipse.edc.extension;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.WebConnection;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.eclipse.edc.extension.ProxyFixtures.asyncResponse;
+import static org.eclipse.edc.extension.ProxyFixtures.authorization;
+import static org.eclipse.edc.extension.ProxyFixtures.baseUrl;
+import static org.eclipse.edc.extension.ProxyFixtures.controllerBuilder;
+import static org.eclipse.edc.extension.ProxyFixtures.dataAddress;
+import static org.eclipse.edc.extension.ProxyFixtures.headers;
+import static org.eclipse.edc.extension.ProxyFixtures.monitor;
+import static org.eclipse.edc.extension.ProxyFixtures.upstream;
+import static org.eclipse.edc.extension.ProxyFixtures.upstreamClient;
+import static org.eclipse.edc.extension.ProxyFixtures.uriInfo;
+import static org.eclipse.edc.extension.ProxyFixtures.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Long-lived connections through the proxy: an upstream event stream that only sends its next event once the client
+ * received the previous one, and a WebSocket upstream that greets and echoes. Both are closed when their EDR token is
+ * revoked.
+ */
+class LiveStreamProxyTest {
+
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final String[] EVENTS = {
+            "data: one\n\n",
+            "event: tick\ndata: two\nid: 2\n\n",
+            "data: three\r\n\r\n"
+    };
+
+    private final LiveStreams liveStreams = new LiveStreams();
+    private final Semaphore nextEvent = new Semaphore(1);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private HttpServer eventUpstream;
+    private ServerSocket webSocketUpstream;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        eventUpstream = upstream(exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (var body = exchange.getResponseBody()) {
+                for (var event : EVENTS) {
+                    if (!nextEvent.tryAcquire(10, TimeUnit.SECONDS)) {
+                        return;
+                    }
+                    body.write(event.getBytes(StandardCharsets.UTF_8));
+                    body.flush();
+                }
+                // a live stream does not end on its own
+                finished.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, executor);
+        webSocketUpstream = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        finished.countDown();
+        eventUpstream.stop(0);
+        webSocketUpstream.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    @Timeout(value = 1, unit = TimeUnit.MINUTES)
+    void eventStream_flushedPerEvent_closedOnRevocation() throws Exception {
+        var resumed = new CompletableFuture<Response>();
+        proxy(baseUrl(eventUpstream)).getSubPath(authorization("events"), "events", headers(Map.of()), uriInfo("events"), asyncResponse(resumed));
+        var response = resumed.join();
+        assertEquals(200, response.getStatus());
+        assertEquals("text/event-stream", response.getHeaderString("Content-Type"));
+
+        var client = new FlushRecordingOutputStream();
+        var streaming = CompletableFuture.runAsync(() -> {
+            try {
+                write(response, client);
+            } catch (IOException e) {
+                // the proxy ends the stream by failing the pending read
+            }
+        }, executor);
+
+        // the upstream holds back each event until the previous one reached the client
+        for (var event : EVENTS) {
+            assertEquals(event, client.flushed.poll(10, TimeUnit.SECONDS));
+            nextEvent.release();
+        }
+
+        liveStreams.closeRevoked("other"::equals);
+        assertStillOpen(streaming);
+
+        liveStreams.closeRevoked("events"::equals);
+        streaming.get(10, TimeUnit.SECONDS);
+        assertEquals(1L, liveStreams.stats().get("closedOnRevocation"));
+    }
+
+    @Test
+    @Timeout(value = 1, unit = TimeUnit.MINUTES)
+    void webSocket_relayedBothWays_closedOnRevocation() throws Exception {
+        var upstreamClosed = new CountDownLatch(1);
+        executor.execute(() -> serveWebSocket(upstreamClosed));
+
+        var nonce = new byte[16];
+        new Random().nextBytes(nonce);
+        var key = Base64.getEncoder().encodeToString(nonce);
+        var tunnel = new AtomicReference<WebSocketTunnel>();
+        WebSocketRelay.ClientUpgrade upgrade = () -> {
+            tunnel.set(new WebSocketTunnel());
+            return tunnel.get();
+        };
+        var requestHeaders = headers(Map.of("Upgrade", "websocket", "Connection", "Upgrade",
+                "Sec-WebSocket-Key", key, "Sec-WebSocket-Version", "13"));
+
+        var controller = proxy("http://127.0.0.1:" + webSocketUpstream.getLocalPort());
+        var response = controller.websocket(authorization("socket"), "socket", requestHeaders, uriInfo("socket"), upgrade);
+
+        assertEquals(101, response.getStatus());
+        assertEquals(accept(key), response.getHeaderString("Sec-WebSocket-Accept"));
+        assertNotNull(tunnel.get());
+
+        // the container hands the upgraded client connection to the tunnel, here one end of a loopback socket pair
+        try (var listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             var client = new Socket(listener.getInetAddress(), listener.getLocalPort());
+             var upgraded = listener.accept()) {
+            tunnel.get().init(webConnection(upgraded));
+            client.setSoTimeout(10_000);
+            var fromProxy = client.getInputStream();
+            var toProxy = client.getOutputStream();
+
+            assertEquals("welcome", readFrame(fromProxy));
+            writeFrame(toProxy, "hello", true);
+            assertEquals("echo: hello", readFrame(fromProxy));
+            writeFrame(toProxy, "again", true);
+            assertEquals("echo: again", readFrame(fromProxy));
+
+            liveStreams.closeRevoked("socket"::equals);
+            assertNull(readFrame(fromProxy), "the client connection must be closed");
+            assertTrue(upstreamClosed.await(10, TimeUnit.SECONDS), "the upstream connection must be closed");
+            assertEquals(0L, ((Map<?, ?>) liveStreams.stats().get("open")).get("websocket"));
+        }
+    }
+
+    private DataPlanePublicApiController proxy(String baseUrl) {
+        var relay = new WebSocketRelay(null, liveStreams, executor, Duration.ofSeconds(5), Duration.ofSeconds(5), monitor());
+        return controllerBuilder(dataAddress(baseUrl), upstreamClient(64))
+                .liveStreams(liveStreams)
+                .webSocketRelay(relay)
+                .build();
+    }
+
+    private static void assertStillOpen(CompletableFuture<Void> streaming) throws InterruptedException, ExecutionException {
+        try {
+            streaming.get(500, TimeUnit.MILLISECONDS);
+            fail("the stream must stay open while its token is valid");
+        } catch (TimeoutException expected) {
+            // still streaming
+        }
+        assertFalse(streaming.isDone());
+    }
+
+    /**
+     * Answers one WebSocket handshake, sends a greeting right behind it and echoes text frames until the connection
+     * closes.
+     */
+    private void serveWebSocket(CountDownLatch closed) {
+        try (var socket = webSocketUpstream.accept()) {
+            var in = socket.getInputStream();
+            var out = socket.getOutputStream();
+            var key = handshakeKey(in);
+            var handshake = new ByteArrayOutputStream();
+            handshake.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n" +
+                    "Sec-WebSocket-Accept: " + accept(key) + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            // in the same packet as the handshake, so the proxy has to pass on bytes read along with it
+            writeFrame(handshake, "welcome", false);
+            out.write(handshake.toByteArray());
+            out.flush();
+
+            String text;
+            while ((text = readFrame(in)) != null) {
+                writeFrame(out, "echo: " + text, false);
+            }
+        } catch (IOException e) {
+            // closed by the proxy
+        } finally {
+            closed.countDown();
+        }
+    }
+
+    private static String handshakeKey(InputStream in) throws IOException {
+        var head = new StringBuilder();
+        while (!head.toString().endsWith("\r\n\r\n")) {
+            var b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            head.append((char) b);
+        }
+        for (var line : head.toString().split("\r\n")) {
+            if (line.toLowerCase().startsWith("sec-websocket-key:")) {
+                return line.substring(line.indexOf(':') + 1).trim();
+            }
+        }
+        throw new IOException("handshake without key");
+    }
+
+    private static String accept(String key) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-1").digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // every JDK provides SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes a short, final text frame; clients mask their frames, servers do not.
+     */
+    private static void writeFrame(OutputStream out, String text, boolean masked) throws IOException {
+        var payload = text.getBytes(StandardCharsets.UTF_8);
+        var frame = new ByteArrayOutputStream();
+        frame.write(0x81);
+        frame.write((masked ? 0x80 : 0) | payload.length);
+        if (masked) {
+            var mask = new byte[]{ 0x1f, 0x2e, 0x3d, 0x4c };
+            frame.write(mask);
+            for (var i = 0; i < payload.length; i++) {
+                payload[i] ^= mask[i % 4];
+            }
+        }
+        frame.write(payload);
+        out.write(frame.toByteArray());
+        out.flush();
+    }
+
+    /**
+     * Reads a short text frame, {@code null} if the connection was closed instead.
+     */
+    private static String readFrame(InputStream in) throws IOException {
+        if (in.read() == -1) {
+            return null;
+        }
+        var second = in.read();
+        if (second == -1) {
+            return null;
+        }
+        var mask = (second & 0x80) != 0 ? in.readNBytes(4) : null;
+        var payload = in.readNBytes(second & 0x7f);
+        if (mask != null) {
+            for (var i = 0; i < payload.length; i++) {
+                payload[i] ^= mask[i % 4];
+            }
+        }
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The upgraded connection as the container hands it to the upgrade handler, in blocking mode.
+     */
+    private static WebConnection webConnection(Socket socket) throws IOException {
+        var in = socket.getInputStream();
+        var out = socket.getOutputStream();
+        var servletIn = new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return in.read(b, off, len);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return false;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        var servletOut = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        return new WebConnection() {
+            @Override
+            public ServletInputStream getInputStream() {
+                return servletIn;
+            }
+
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return servletOut;
+            }
+
+            @Override
+            public void close() throws IOException {
+                socket.close();
+            }
+        };
+    }
+
+    /**
+     * Records what the client received at every flush.
+     */
+    private static final class FlushRecordingOutputStream extends OutputStream {
+        private final BlockingQueue<String> flushed = new LinkedBlockingQueue<>();
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(int b) {
+            pending.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            pending.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void flush() {
+            if (pending.size() > 0) {
+                flushed.add(pending.toString(StandardCharsets.UTF_8));
+                pending.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.eclipse.edc.extension;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.eclipse.edc.extension.ProxyFixtures.asyncResponse;
+import static org.eclipse.edc.extension.ProxyFixtures.authorization;
+import static org.eclipse.edc.extension.ProxyFixtures.baseUrl;
+import static org.eclipse.edc.extension.ProxyFixtures.controllerBuilder;
+import static org.eclipse.edc.extension.ProxyFixtures.dataAddress;
+import static org.eclipse.edc.extension.ProxyFixtures.headers;
+import static org.eclipse.edc.extension.ProxyFixtures.monitor;
+import static org.eclipse.edc.extension.ProxyFixtures.upstream;
+import static org.eclipse.edc.extension.ProxyFixtures.upstreamClient;
+import static org.eclipse.edc.extension.ProxyFixtures.uriInfo;
+import static org.eclipse.edc.extension.ProxyFixtures.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Proxies requests carrying a W3C trace context and exports their traces to a stub OTLP/HTTP collector, checking
+ * what reaches the upstream and what reaches the collector.
+ */
+class OtlpExportTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+    private static final String PARENT_SPAN_ID = "00f067aa0ba902b7";
+
+    // the traceparent and tracestate headers of each upstream request
+    private final ConcurrentLinkedQueue<List<String>> upstreamContexts = new ConcurrentLinkedQueue<>();
+    // the request bodies the collector received, by path
+    private final Map<String, ConcurrentLinkedQueue<JsonNode>> exports = new ConcurrentHashMap<>();
+    private HttpServer upstream;
+    private HttpServer collector;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        upstream = upstream(exchange -> {
+            var headers = exchange.getRequestHeaders();
+            upstreamContexts.add(List.of(String.valueOf(headers.getFirst("traceparent")), String.valueOf(headers.getFirst("tracestate"))));
+            var body = "traced".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, body.length);
+            try (var output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        collector = upstream(exchange -> {
+            var body = exchange.getRequestBody().readAllBytes();
+            exports.computeIfAbsent(exchange.getRequestURI().getPath(), p -> new ConcurrentLinkedQueue<>()).add(MAPPER.readTree(body));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.stop(0);
+        collector.stop(0);
+    }
+
+    @Test
+    void incomingTraceContext_propagatedAndExported() throws Exception {
+        var exporter = new OtlpExporter(URI.create(baseUrl(collector)), "test-proxy", 16, monitor());
+        var tracer = new ProxyTracer(0, exporter);
+        var proxy = controllerBuilder(dataAddress(baseUrl(upstream)), upstreamClient(16)).tracer(tracer).build();
+
+        get(proxy, Map.of("traceparent", "00-%s-%s-01".formatted(TRACE_ID, PARENT_SPAN_ID), "tracestate", "vendor=value"));
+        exporter.export(tracer.snapshots());
+
+        // the upstream continues the incoming trace, as a child of the proxy's upstream exchange
+        var context = upstreamContexts.poll();
+        assertNotNull(context);
+        var traceparent = context.get(0).split("-");
+        assertEquals("00", traceparent[0]);
+        assertEquals(TRACE_ID, traceparent[1]);
+        assertNotEquals(PARENT_SPAN_ID, traceparent[2]);
+        assertEquals("01", traceparent[3]);
+        assertEquals("vendor=value", context.get(1));
+
+        var spans = spans();
+        var server = spans.stream().filter(span -> span.get("kind").asInt() == 2).findFirst().orElseThrow();
+        assertEquals(TRACE_ID, server.get("traceId").asText());
+        assertEquals(PARENT_SPAN_ID, server.get("parentSpanId").asText());
+        assertEquals("vendor=value", server.get("traceState").asText());
+        assertEquals("GET", server.get("name").asText());
+        assertEquals("200", attribute(server, "http.response.status_code").get("intValue").asText());
+        var client = spans.stream().filter(span -> span.get("kind").asInt() == 3).findFirst().orElseThrow();
+        assertEquals(ProxyTrace.UPSTREAM_FIRST_BYTE, client.get("name").asText());
+        assertEquals(traceparent[2], client.get("spanId").asText(), "the upstream's parent is the exported client span");
+        assertEquals(server.get("spanId").asText(), client.get("parentSpanId").asText());
+        for (var span : spans) {
+            assertEquals(TRACE_ID, span.get("traceId").asText());
+        }
+
+        var dataPoints = dataPoints();
+        var total = dataPoints.stream()
+                .filter(point -> ProxyTrace.TOTAL.equals(attribute(point, "edc.proxy.phase").get("stringValue").asText()))
+                .findFirst().orElseThrow();
+        assertEquals("1", total.get("count").asText());
+        assertEquals("GET", attribute(total, "http.request.method").get("stringValue").asText());
+        var bucketTotal = 0L;
+        for (var bucket : total.get("positive").get("bucketCounts")) {
+            bucketTotal += bucket.asLong();
+        }
+        assertEquals(1, bucketTotal);
+        assertTrue(dataPoints.stream().anyMatch(point ->
+                ProxyTrace.UPSTREAM_FIRST_BYTE.equals(attribute(point, "edc.proxy.phase").get("stringValue").asText())));
+        assertEquals(1L, exporter.stats().get("exported"));
+    }
+
+    @Test
+    void unsampledTraceContext_propagatedButNotExported() throws Exception {
+        var exporter = new OtlpExporter(URI.create(baseUrl(collector)), "test-proxy", 16, monitor());
+        var tracer = new ProxyTracer(1, exporter);
+        var proxy = controllerBuilder(dataAddress(baseUrl(upstream)), upstreamClient(16)).tracer(tracer).build();
+
+        get(proxy, Map.of("traceparent", "00-%s-%s-00".formatted(TRACE_ID, PARENT_SPAN_ID)));
+        exporter.export(tracer.snapshots());
+
+        var traceparent = upstreamContexts.poll().get(0).split("-");
+        assertEquals(TRACE_ID, traceparent[1]);
+        assertEquals("00", traceparent[3]);
+        assertFalse(exports.containsKey("/v1/traces"), "the caller decided against sampling");
+        assertFalse(dataPoints().isEmpty(), "the histograms are exported regardless");
+    }
+
+    private static void get(DataPlanePublicApiController proxy, Map<String, String> headers) throws Exception {
+        var resumed = new CompletableFuture<Response>();
+        proxy.getSubPath(authorization("traced"), "data", headers(headers), uriInfo("data"), asyncResponse(resumed));
+        var response = resumed.join();
+        assertEquals(200, response.getStatus());
+        write(response);
+    }
+
+    private List<JsonNode> spans() {
+        var spans = new ArrayList<JsonNode>();
+        for (var export : exports.getOrDefault("/v1/traces", new ConcurrentLinkedQueue<>())) {
+            assertEquals("test-proxy", attribute(export.get("resourceSpans").get(0).get("resource"), "service.name").get("stringValue").asText());
+            export.get("resourceSpans").get(0).get("scopeSpans").get(0).get("spans").forEach(spans::add);
+        }
+        return spans;
+    }
+
+    private List<JsonNode> dataPoints() {
+        var dataPoints = new ArrayList<JsonNode>();
+        for (var export : exports.getOrDefault("/v1/metrics", new ConcurrentLinkedQueue<>())) {
+            var metric = export.get("resourceMetrics").get(0).get("scopeMetrics").get(0).get("metrics").get(0);
+            assertEquals("edc.proxy.phase.duration", metric.get("name").asText());
+            assertEquals(2, metric.get("exponentialHistogram").get("aggregationTemporality").asInt());
+            metric.get("exponentialHistogram").get("dataPoints").forEach(dataPoints::add);
+        }
+        return dataPoints;
+    }
+
+    private static JsonNode attribute(JsonNode node, String key) {
+        for (var attribute : node.get("attributes")) {
+            if (key.equals(attribute.get("key").asText())) {
+                return attribute.get("value");
+            }
+        }
+        throw new AssertionError("no attribute " + key + " in " + node);
+    }
+}
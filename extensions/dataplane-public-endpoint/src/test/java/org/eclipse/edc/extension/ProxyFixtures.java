@@ -0,0 +1,182 @@
+package org.eclipse.edc.extension;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriInfo;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.types.domain.DataAddress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stand-ins for what the public proxy is wired with at runtime: a local {@link HttpServer} as the upstream, an
+ * authorizer accepting every token for a fixed data address, and the JAX-RS context objects of a request. As in
+ * {@code DataPlanePublicApiBenchmark}, the proxy is called directly, without Jetty or Jersey.
+ */
+final class ProxyFixtures {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(ProxyThreads.platform("proxy-fixture"));
+
+    private ProxyFixtures() {
+    }
+
+    /**
+     * Starts an upstream on a free loopback port, with a backlog deep enough for bursts of connections.
+     *
+     * @param executor runs the handler, one task per exchange
+     */
+    static HttpServer upstream(HttpHandler handler, Executor executor) throws IOException {
+        var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", handler);
+        server.start();
+        return server;
+    }
+
+    static HttpServer upstream(HttpHandler handler) throws IOException {
+        return upstream(handler, Executors.newCachedThreadPool());
+    }
+
+    static String baseUrl(HttpServer upstream) {
+        return "http://127.0.0.1:" + upstream.getAddress().getPort();
+    }
+
+    static DataAddress dataAddress(String baseUrl) {
+        return DataAddress.Builder.newInstance()
+                .type("HttpData")
+                .property("baseUrl", baseUrl)
+                .build();
+    }
+
+    /**
+     * An authorizer accepting every token for the data address.
+     */
+    static TokenAuthorizer authorizer(DataAddress dataAddress) {
+        return new FakeTokenAuthorizer(dataAddress);
+    }
+
+    static UpstreamClient upstreamClient(int maxConnectionsPerOrigin) {
+        return new UpstreamClient(
+                new UpstreamClientConfiguration(Duration.ofSeconds(5), Duration.ofSeconds(60), false, maxConnectionsPerOrigin,
+                        Duration.ofSeconds(60), 0, true, Set.of()),
+                new ResilienceConfiguration(0, 20, 10, Duration.ofSeconds(10), 1, false, 3,
+                        Duration.ofSeconds(1), false, Duration.ofMillis(50)));
+    }
+
+    /**
+     * A proxy with every optional feature switched off, for the tests to switch on what they cover.
+     */
+    static DataPlanePublicApiController.Builder controllerBuilder(DataAddress dataAddress, UpstreamClient upstreamClient) {
+        var authorizer = authorizer(dataAddress);
+        var liveStreams = new LiveStreams();
+        return DataPlanePublicApiController.Builder.newInstance()
+                .authorizer(authorizer)
+                .upstreamClient(upstreamClient)
+                .tracer(new ProxyTracer(0, null))
+                .batchProcessor(new BatchProcessor(authorizer, null, upstreamClient, null, EXECUTOR,
+                        new BatchConfiguration(100, 8, 1024 * 1024, 10 * 1024 * 1024), monitor()))
+                .liveStreams(liveStreams)
+                .webSocketRelay(new WebSocketRelay(null, liveStreams, EXECUTOR, Duration.ofSeconds(5), Duration.ofSeconds(5), monitor()))
+                .monitor(monitor());
+    }
+
+    static DataPlanePublicApiController controller(DataAddress dataAddress) {
+        return controllerBuilder(dataAddress, upstreamClient(64)).build();
+    }
+
+    static Monitor monitor() {
+        return new Monitor() {
+        };
+    }
+
+    /**
+     * The {@code Authorization} header of an unsigned token carrying {@code jti} and {@code exp}, so its
+     * authorization is cached like that of a real EDR.
+     */
+    static String authorization(String tokenId) {
+        var encoder = Base64.getUrlEncoder().withoutPadding();
+        var header = encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8));
+        var claims = encoder.encodeToString("{\"jti\":\"%s\",\"exp\":%d}"
+                .formatted(tokenId, Instant.now().plus(Duration.ofHours(1)).getEpochSecond())
+                .getBytes(StandardCharsets.UTF_8));
+        return "Bearer " + header + "." + claims + ".signature";
+    }
+
+    static HttpHeaders headers(Map<String, String> values) {
+        return new FakeHttpHeaders(values);
+    }
+
+    static UriInfo uriInfo(String path) {
+        return new FakeUriInfo(path);
+    }
+
+    static AsyncResponse asyncResponse(CompletableFuture<Response> resumed) {
+        return new FakeAsyncResponse(resumed);
+    }
+
+    /**
+     * Writes the entity of a response the way Jersey does, returning the number of bytes written.
+     */
+    static long write(Response response, OutputStream output) throws IOException {
+        var counting = new CountingOutputStream(output);
+        if (response.getEntity() instanceof StreamingOutput entity) {
+            entity.write(counting);
+        } else if (response.getEntity() != null) {
+            counting.write(response.getEntity().toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return counting.count;
+    }
+
+    static long write(Response response) throws IOException {
+        return write(response, OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Passes bytes on while counting them.
+     */
+    static final class CountingOutputStream extends OutputStream {
+        private final OutputStream delegate;
+        private volatile long count;
+
+        CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+    }
+}
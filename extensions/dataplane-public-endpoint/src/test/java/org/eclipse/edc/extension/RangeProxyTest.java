@@ -0,0 +1,293 @@
+package org.eclipse.edc.extension;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static org.eclipse.edc.extension.ProxyFixtures.asyncResponse;
+import static org.eclipse.edc.extension.ProxyFixtures.authorization;
+import static org.eclipse.edc.extension.ProxyFixtures.baseUrl;
+import static org.eclipse.edc.extension.ProxyFixtures.controller;
+import static org.eclipse.edc.extension.ProxyFixtures.dataAddress;
+import static org.eclipse.edc.extension.ProxyFixtures.headers;
+import static org.eclipse.edc.extension.ProxyFixtures.upstream;
+import static org.eclipse.edc.extension.ProxyFixtures.uriInfo;
+import static org.eclipse.edc.extension.ProxyFixtures.write;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Byte range requests through the proxy against an upstream that serves ranges of a fixed asset the way a file server
+ * does: single ranges as {@code 206} with {@code Content-Range}, several as a {@code multipart/byteranges} body,
+ * honouring {@code If-Range} and answering unsatisfiable ranges with {@code 416}.
+ */
+class RangeProxyTest {
+
+    private static final byte[] ASSET = new byte[1024 * 1024 + 17];
+    private static final String ETAG = "\"asset-v1\"";
+    private static final String BOUNDARY = "RANGE_BOUNDARY";
+    private static final Pattern RANGE = Pattern.compile("(\\d*)-(\\d*)");
+
+    static {
+        new Random(42).nextBytes(ASSET);
+    }
+
+    private final List<String> forwardedRanges = new ArrayList<>();
+    private HttpServer upstream;
+    private DataPlanePublicApiController controller;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        upstream = upstream(this::serveAsset);
+        controller = controller(dataAddress(baseUrl(upstream)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void head_advertisesLengthAndRanges() {
+        var resumed = new CompletableFuture<Response>();
+        controller.headSubPath(authorization("head"), "asset", headers(Map.of()), uriInfo("asset"), asyncResponse(resumed));
+
+        var response = resumed.join();
+        assertEquals(200, response.getStatus());
+        assertEquals(Integer.toString(ASSET.length), response.getHeaderString("Content-Length"));
+        assertEquals("bytes", response.getHeaderString("Accept-Ranges"));
+        assertEquals(ETAG, response.getHeaderString("ETag"));
+        assertNull(response.getEntity());
+    }
+
+    @Test
+    void singleRange_partialContent() throws IOException {
+        var response = get("single", Map.of("Range", "bytes=1000-1999"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 1000-1999/" + ASSET.length, response.getHeaderString("Content-Range"));
+        assertEquals("1000", response.getHeaderString("Content-Length"));
+        assertArrayEquals(Arrays.copyOfRange(ASSET, 1000, 2000), body(response));
+        assertEquals(List.of("bytes=1000-1999"), forwardedRanges);
+    }
+
+    @Test
+    void resume_openEndedRangeIfUnchanged() throws IOException {
+        var received = 300_000;
+        var response = get("resume", Map.of("Range", "bytes=" + received + "-", "If-Range", ETAG));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes %d-%d/%d".formatted(received, ASSET.length - 1, ASSET.length), response.getHeaderString("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(ASSET, received, ASSET.length), body(response));
+    }
+
+    @Test
+    void resume_fullBodyIfChanged() throws IOException {
+        var response = get("changed", Map.of("Range", "bytes=300000-", "If-Range", "\"asset-v0\""));
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeaderString("Content-Range"));
+        assertArrayEquals(ASSET, body(response));
+    }
+
+    @Test
+    void multiRange_multipartByteranges() throws IOException {
+        var response = get("multi", Map.of("Range", "bytes=0-99,5000-5099,-50"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("multipart/byteranges; boundary=" + BOUNDARY, response.getHeaderString("Content-Type"));
+        var parts = parts(body(response));
+        assertEquals(3, parts.size());
+        assertPart(parts.get(0), 0, 99);
+        assertPart(parts.get(1), 5000, 5099);
+        assertPart(parts.get(2), ASSET.length - 50, ASSET.length - 1);
+    }
+
+    @Test
+    void unsatisfiableRange_passedThrough() throws IOException {
+        var response = get("unsatisfiable", Map.of("Range", "bytes=" + ASSET.length + "-"));
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + ASSET.length, response.getHeaderString("Content-Range"));
+    }
+
+    @Test
+    @Timeout(value = 1, unit = TimeUnit.MINUTES)
+    void parallelRanges_oneToken_reassembleAsset() throws Exception {
+        var slices = 8;
+        var sliceSize = ASSET.length / slices + 1;
+        var executor = Executors.newFixedThreadPool(slices);
+        try {
+            var futures = new ArrayList<CompletableFuture<byte[]>>();
+            for (var i = 0; i < slices; i++) {
+                var first = i * sliceSize;
+                var last = Math.min(first + sliceSize, ASSET.length) - 1;
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        var response = get("parallel", Map.of("Range", "bytes=" + first + "-" + last));
+                        assertEquals(206, response.getStatus());
+                        assertEquals("bytes %d-%d/%d".formatted(first, last, ASSET.length), response.getHeaderString("Content-Range"));
+                        return body(response);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, executor));
+            }
+
+            var reassembled = new ByteArrayOutputStream();
+            for (var future : futures) {
+                reassembled.write(future.join());
+            }
+            assertArrayEquals(ASSET, reassembled.toByteArray());
+            assertEquals(slices, forwardedRanges.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Response get(String tokenId, Map<String, String> requestHeaders) {
+        var resumed = new CompletableFuture<Response>();
+        controller.getSubPath(authorization(tokenId), "asset", headers(requestHeaders), uriInfo("asset"), asyncResponse(resumed));
+        return resumed.join();
+    }
+
+    private static byte[] body(Response response) throws IOException {
+        var body = new ByteArrayOutputStream();
+        write(response, body);
+        return body.toByteArray();
+    }
+
+    private static void assertPart(Part part, int first, int last) {
+        assertEquals("bytes %d-%d/%d".formatted(first, last, ASSET.length), part.headers().get("content-range"));
+        assertArrayEquals(Arrays.copyOfRange(ASSET, first, last + 1), part.body());
+    }
+
+    /**
+     * Splits a {@code multipart/byteranges} body into its parts.
+     */
+    private static List<Part> parts(byte[] multipart) {
+        // ISO-8859-1 maps every byte to one char and back, so binary part bodies survive the detour
+        var text = new String(multipart, StandardCharsets.ISO_8859_1);
+        var delimiter = "\r\n--" + BOUNDARY;
+        var parts = new ArrayList<Part>();
+        var position = text.indexOf("--" + BOUNDARY);
+        while (position >= 0 && !text.startsWith("--", position + 2 + BOUNDARY.length())) {
+            var headersStart = text.indexOf("\r\n", position) + 2;
+            var headersEnd = text.indexOf("\r\n\r\n", headersStart);
+            var partHeaders = new HashMap<String, String>();
+            for (var line : text.substring(headersStart, headersEnd).split("\r\n")) {
+                var colon = line.indexOf(':');
+                partHeaders.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+            }
+            var next = text.indexOf(delimiter, headersEnd + 4);
+            parts.add(new Part(partHeaders, text.substring(headersEnd + 4, next).getBytes(StandardCharsets.ISO_8859_1)));
+            position = next + 2;
+        }
+        return parts;
+    }
+
+    private record Part(Map<String, String> headers, byte[] body) {
+    }
+
+    /**
+     * Serves {@link #ASSET} with range support, as described in RFC 9110, section 14.
+     */
+    private void serveAsset(HttpExchange exchange) throws IOException {
+        var responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.set("Accept-Ranges", "bytes");
+        responseHeaders.set("ETag", ETAG);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            responseHeaders.set("Content-Length", Integer.toString(ASSET.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+
+        var range = exchange.getRequestHeaders().getFirst("Range");
+        var ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (range != null) {
+            synchronized (forwardedRanges) {
+                forwardedRanges.add(range);
+            }
+        }
+        if (range == null || !range.startsWith("bytes=") || (ifRange != null && !ifRange.equals(ETAG))) {
+            responseHeaders.set("Content-Type", "application/octet-stream");
+            send(exchange, 200, ASSET);
+            return;
+        }
+
+        var ranges = new ArrayList<int[]>();
+        for (var spec : range.substring("bytes=".length()).split(",")) {
+            var matcher = RANGE.matcher(spec.trim());
+            if (!matcher.matches() || matcher.group(1).isEmpty() && matcher.group(2).isEmpty()) {
+                send(exchange, 400, new byte[0]);
+                return;
+            }
+            int first;
+            int last;
+            if (matcher.group(1).isEmpty()) {
+                first = Math.max(0, ASSET.length - Integer.parseInt(matcher.group(2)));
+                last = ASSET.length - 1;
+            } else {
+                first = Integer.parseInt(matcher.group(1));
+                last = matcher.group(2).isEmpty() ? ASSET.length - 1 : Math.min(Integer.parseInt(matcher.group(2)), ASSET.length - 1);
+            }
+            if (first < ASSET.length && first <= last) {
+                ranges.add(new int[]{ first, last });
+            }
+        }
+
+        if (ranges.isEmpty()) {
+            responseHeaders.set("Content-Range", "bytes */" + ASSET.length);
+            send(exchange, 416, new byte[0]);
+        } else if (ranges.size() == 1) {
+            var only = ranges.get(0);
+            responseHeaders.set("Content-Type", "application/octet-stream");
+            responseHeaders.set("Content-Range", contentRange(only));
+            send(exchange, 206, Arrays.copyOfRange(ASSET, only[0], only[1] + 1));
+        } else {
+            var body = new ByteArrayOutputStream();
+            for (var part : ranges) {
+                body.write(("--" + BOUNDARY + "\r\nContent-Type: application/octet-stream\r\nContent-Range: " + contentRange(part) + "\r\n\r\n")
+                        .getBytes(StandardCharsets.ISO_8859_1));
+                body.write(ASSET, part[0], part[1] - part[0] + 1);
+                body.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            }
+            body.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            responseHeaders.set("Content-Type", "multipart/byteranges; boundary=" + BOUNDARY);
+            send(exchange, 206, body.toByteArray());
+        }
+    }
+
+    private static String contentRange(int[] range) {
+        return "bytes %d-%d/%d".formatted(range[0], range[1], ASSET.length);
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (var output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.eclipse.edc.extension;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.edc.spi.types.domain.DataAddress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.eclipse.edc.extension.ProxyFixtures.asyncResponse;
+import static org.eclipse.edc.extension.ProxyFixtures.authorization;
+import static org.eclipse.edc.extension.ProxyFixtures.baseUrl;
+import static org.eclipse.edc.extension.ProxyFixtures.controllerBuilder;
+import static org.eclipse.edc.extension.ProxyFixtures.dataAddress;
+import static org.eclipse.edc.extension.ProxyFixtures.headers;
+import static org.eclipse.edc.extension.ProxyFixtures.monitor;
+import static org.eclipse.edc.extension.ProxyFixtures.upstream;
+import static org.eclipse.edc.extension.ProxyFixtures.upstreamClient;
+import static org.eclipse.edc.extension.ProxyFixtures.uriInfo;
+import static org.eclipse.edc.extension.ProxyFixtures.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks which upstream responses the shared response cache stores, fetching each path twice through the proxy and
+ * counting how often the stub upstream is asked.
+ */
+class ResponseCacheTest {
+
+    // path of the stub upstream -> the Cache-Control header it answers with
+    private static final Map<String, String> CACHE_CONTROL = Map.of(
+            "/private", "private, max-age=60",
+            "/shared", "max-age=60",
+            "/public", "public, max-age=60",
+            "/revalidate", "must-revalidate, max-age=60",
+            "/smaxage", "s-maxage=60");
+
+    private final Map<String, AtomicInteger> upstreamRequests = new ConcurrentHashMap<>();
+    @TempDir
+    private Path directory;
+    private HttpServer upstream;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        upstream = upstream(exchange -> {
+            var path = exchange.getRequestURI().getPath();
+            upstreamRequests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            var body = ("body of " + path).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.getResponseHeaders().add("Cache-Control", CACHE_CONTROL.get(path));
+            exchange.sendResponseHeaders(200, body.length);
+            try (var output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void privateResponses_neverStored() throws IOException {
+        var proxy = proxy(dataAddress(baseUrl(upstream)));
+
+        fetchTwice(proxy, "private");
+        fetchTwice(proxy, "shared");
+
+        assertEquals(2, upstreamRequests.get("/private").get());
+        assertEquals(1, upstreamRequests.get("/shared").get());
+    }
+
+    @Test
+    void authenticatedUpstream_storedOnlyIfExplicitlyShared() throws IOException {
+        var proxy = proxy(DataAddress.Builder.newInstance()
+                .type("HttpData")
+                .property("baseUrl", baseUrl(upstream))
+                .property(ResponseCache.AUTH_KEY_PROPERTY, "X-Api-Key")
+                .property(ResponseCache.AUTH_CODE_PROPERTY, "secret")
+                .build());
+
+        for (var path : List.of("shared", "public", "revalidate", "smaxage")) {
+            fetchTwice(proxy, path);
+        }
+
+        assertEquals(2, upstreamRequests.get("/shared").get());
+        assertEquals(1, upstreamRequests.get("/public").get());
+        assertEquals(1, upstreamRequests.get("/revalidate").get());
+        assertEquals(1, upstreamRequests.get("/smaxage").get());
+    }
+
+    @Test
+    void directives_matchedAsTokens() {
+        var cache = new ResponseCache(configuration(), monitor());
+
+        assertTrue(cache.isCacheable(200, cacheControl("x-private-extension, max-age=60"), false));
+        assertTrue(cache.isCacheable(200, cacheControl("x-public-extension, public, max-age=60"), true));
+        assertFalse(cache.isCacheable(200, cacheControl("x-public-extension, max-age=60"), true));
+        assertFalse(cache.isCacheable(200, cacheControl("max-age=60, PRIVATE"), false));
+        assertFalse(cache.isCacheable(200, cacheControl("private=\"Set-Cookie\", max-age=60"), false));
+        assertFalse(cache.isCacheable(200, cacheControl("no-store"), false));
+    }
+
+    private DataPlanePublicApiController proxy(DataAddress dataAddress) {
+        return controllerBuilder(dataAddress, upstreamClient(16))
+                .responseCache(new ResponseCache(configuration(), monitor()))
+                .build();
+    }
+
+    private ResponseCacheConfiguration configuration() {
+        return new ResponseCacheConfiguration(1024 * 1024, 64 * 1024, 1024 * 1024, 512 * 1024, directory.resolve("cache"));
+    }
+
+    /**
+     * Fetches a path twice, reading each body to the end so that a cacheable one is stored.
+     */
+    private static void fetchTwice(DataPlanePublicApiController proxy, String path) throws IOException {
+        for (var i = 0; i < 2; i++) {
+            var resumed = new CompletableFuture<Response>();
+            proxy.getSubPath(authorization("cache"), path, headers(Map.of()), uriInfo(path), asyncResponse(resumed));
+            var response = resumed.join();
+            assertEquals(200, response.getStatus());
+            write(response);
+        }
+    }
+
+    private static HttpHeaders cacheControl(String value) {
+        return HttpHeaders.of(Map.of("Cache-Control", List.of(value), "ETag", List.of("\"v1\"")), (name, v) -> true);
+    }
+}
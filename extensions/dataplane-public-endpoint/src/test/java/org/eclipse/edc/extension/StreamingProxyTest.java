@@ -0,0 +1,204 @@
+package org.eclipse.edc.extension;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.eclipse.edc.extension.ProxyFixtures.asyncResponse;
+import static org.eclipse.edc.extension.ProxyFixtures.authorization;
+import static org.eclipse.edc.extension.ProxyFixtures.baseUrl;
+import static org.eclipse.edc.extension.ProxyFixtures.controller;
+import static org.eclipse.edc.extension.ProxyFixtures.dataAddress;
+import static org.eclipse.edc.extension.ProxyFixtures.headers;
+import static org.eclipse.edc.extension.ProxyFixtures.upstream;
+import static org.eclipse.edc.extension.ProxyFixtures.uriInfo;
+import static org.eclipse.edc.extension.ProxyFixtures.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Moves payloads larger than the heap (the test JVM runs with a small {@code -Xmx}, see the build file) through the
+ * proxy in both directions, which only works if neither body is ever held as a whole.
+ */
+class StreamingProxyTest {
+
+    private static final long PAYLOAD_SIZE = (2L << 30) + 1;
+    // a period that does not divide any buffer size, so misplaced or repeated chunks are noticed
+    private static final int PATTERN_PERIOD = 251;
+
+    private final AtomicLong uploaded = new AtomicLong(-1);
+    private final CountDownLatch firstBytesReceived = new CountDownLatch(1);
+    private final AtomicBoolean firstBytesReceivedInTime = new AtomicBoolean();
+    private HttpServer upstream;
+    private DataPlanePublicApiController controller;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        upstream = upstream(exchange -> {
+            switch (exchange.getRequestURI().getPath()) {
+                case "/download" -> {
+                    exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+                    exchange.sendResponseHeaders(200, PAYLOAD_SIZE);
+                    try (var body = exchange.getResponseBody()) {
+                        new PatternInputStream(PAYLOAD_SIZE).transferTo(body);
+                    }
+                }
+                case "/upload" -> {
+                    var received = new PatternVerifyingOutputStream();
+                    try (var body = exchange.getRequestBody()) {
+                        body.transferTo(received);
+                    }
+                    uploaded.set(received.position);
+                    var answer = Long.toString(received.position).getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(200, answer.length);
+                    try (var body = exchange.getResponseBody()) {
+                        body.write(answer);
+                    }
+                }
+                case "/slow" -> {
+                    exchange.sendResponseHeaders(200, 0);
+                    try (var body = exchange.getResponseBody()) {
+                        body.write("first".getBytes(StandardCharsets.UTF_8));
+                        body.flush();
+                        // the rest only follows once the client has seen the first bytes
+                        firstBytesReceivedInTime.set(firstBytesReceived.await(10, TimeUnit.SECONDS));
+                        body.write("last".getBytes(StandardCharsets.UTF_8));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                default -> {
+                    exchange.sendResponseHeaders(404, -1);
+                    exchange.close();
+                }
+            }
+        });
+        controller = controller(dataAddress(baseUrl(upstream)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.stop(0);
+    }
+
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.MINUTES)
+    void download_largerThanHeap() throws IOException {
+        assumeTrue(Runtime.getRuntime().maxMemory() < PAYLOAD_SIZE, "the heap must be smaller than the payload");
+
+        var resumed = new CompletableFuture<Response>();
+        controller.getSubPath(authorization("download"), "download", headers(Map.of()), uriInfo("download"), asyncResponse(resumed));
+
+        var response = resumed.join();
+        assertEquals(200, response.getStatus());
+        assertEquals(Long.toString(PAYLOAD_SIZE), response.getHeaderString("Content-Length"));
+        var received = new PatternVerifyingOutputStream();
+        assertEquals(PAYLOAD_SIZE, write(response, received));
+        assertEquals(PAYLOAD_SIZE, received.position);
+    }
+
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.MINUTES)
+    void upload_largerThanHeap() throws IOException {
+        assumeTrue(Runtime.getRuntime().maxMemory() < PAYLOAD_SIZE, "the heap must be smaller than the payload");
+
+        var resumed = new CompletableFuture<Response>();
+        var headers = headers(Map.of("Content-Type", "application/octet-stream", "Content-Length", Long.toString(PAYLOAD_SIZE)));
+        controller.postSubPath(authorization("upload"), "upload", headers, new PatternInputStream(PAYLOAD_SIZE), uriInfo("upload"),
+                asyncResponse(resumed));
+
+        var response = resumed.join();
+        assertEquals(200, response.getStatus());
+        var body = new ByteArrayOutputStream();
+        write(response, body);
+        assertEquals(Long.toString(PAYLOAD_SIZE), body.toString(StandardCharsets.UTF_8));
+        assertEquals(PAYLOAD_SIZE, uploaded.get());
+    }
+
+    @Test
+    @Timeout(value = 1, unit = TimeUnit.MINUTES)
+    void download_firstBytesBeforeUpstreamFinished() throws IOException {
+        var resumed = new CompletableFuture<Response>();
+        controller.getSubPath(authorization("slow"), "slow", headers(Map.of()), uriInfo("slow"), asyncResponse(resumed));
+
+        var response = resumed.join();
+        var body = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                super.write(b, off, len);
+                firstBytesReceived.countDown();
+            }
+        };
+        write(response, body);
+
+        assertTrue(firstBytesReceivedInTime.get(), "the first bytes must reach the client while the upstream is still sending");
+        assertEquals("firstlast", body.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Generates {@code size} bytes of the test pattern without holding them.
+     */
+    private static final class PatternInputStream extends InputStream {
+        private final long size;
+        private long position;
+
+        PatternInputStream(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            return position < size ? (int) (position++ % PATTERN_PERIOD) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= size) {
+                return -1;
+            }
+            var count = (int) Math.min(len, size - position);
+            for (var i = 0; i < count; i++) {
+                b[off + i] = (byte) (position++ % PATTERN_PERIOD);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Checks that the bytes written follow the test pattern, counting them.
+     */
+    private static final class PatternVerifyingOutputStream extends OutputStream {
+        private long position;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{ (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (var i = 0; i < len; i++) {
+                if (b[off + i] != (byte) (position % PATTERN_PERIOD)) {
+                    throw new IOException("unexpected byte at position " + position);
+                }
+                position++;
+            }
+        }
+    }
+}
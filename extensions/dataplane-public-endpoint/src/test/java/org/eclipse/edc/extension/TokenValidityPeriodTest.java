@@ -0,0 +1,60 @@
+package org.eclipse.edc.extension;
+
+import org.eclipse.edc.spi.result.Result;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The validity period checks that tokens verified with the previous key go through, with the claims read by
+ * {@link TokenClaims}.
+ */
+class TokenValidityPeriodTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long NOW_SECONDS = NOW / 1000;
+
+    @Test
+    void validToken_accepted() {
+        assertTrue(check("{\"jti\": \"t\", \"iat\": %d, \"nbf\": %d, \"exp\": %d}"
+                .formatted(NOW_SECONDS - 60, NOW_SECONDS - 60, NOW_SECONDS + 60)).succeeded());
+        assertTrue(check("{\"jti\": \"t\", \"exp\": %d}".formatted(NOW_SECONDS + 60)).succeeded());
+    }
+
+    @Test
+    void missingExpiry_rejected() {
+        assertEquals("Token has no expiry", check("{\"jti\": \"t\", \"iat\": %d}".formatted(NOW_SECONDS)).getFailureDetail());
+        assertEquals("Token has no expiry", check("{\"jti\": \"t\", \"exp\": \"%d\"}".formatted(NOW_SECONDS + 60)).getFailureDetail());
+    }
+
+    @Test
+    void expired_rejected() {
+        assertEquals("Token has expired", check("{\"jti\": \"t\", \"exp\": %d}".formatted(NOW_SECONDS)).getFailureDetail());
+    }
+
+    @Test
+    void notBeforeAhead_rejected() {
+        assertEquals("Token is not valid yet", check("{\"jti\": \"t\", \"nbf\": %d, \"exp\": %d}"
+                .formatted(NOW_SECONDS + 10, NOW_SECONDS + 60)).getFailureDetail());
+    }
+
+    @Test
+    void issuedInTheFuture_rejected() {
+        assertEquals("Token is issued in the future", check("{\"jti\": \"t\", \"iat\": %d, \"exp\": %d}"
+                .formatted(NOW_SECONDS + 10, NOW_SECONDS + 60)).getFailureDetail());
+    }
+
+    private static Result<Void> check(String claims) {
+        return TokenAuthorizer.checkValidityPeriod(TokenClaims.parse(token(claims)), NOW);
+    }
+
+    private static String token(String claims) {
+        var encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"ES256\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(claims.getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+}
@@ -0,0 +1,219 @@
+package org.eclipse.edc.extension;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.eclipse.edc.extension.ProxyFixtures.asyncResponse;
+import static org.eclipse.edc.extension.ProxyFixtures.authorization;
+import static org.eclipse.edc.extension.ProxyFixtures.baseUrl;
+import static org.eclipse.edc.extension.ProxyFixtures.controllerBuilder;
+import static org.eclipse.edc.extension.ProxyFixtures.dataAddress;
+import static org.eclipse.edc.extension.ProxyFixtures.headers;
+import static org.eclipse.edc.extension.ProxyFixtures.upstream;
+import static org.eclipse.edc.extension.ProxyFixtures.uriInfo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the circuit breaker, adaptive timeouts and hedging of the {@link UpstreamClient} against a stub upstream
+ * whose paths fail ({@code /fail}), hang until the test ends ({@code /hang}), answer after a delay
+ * ({@code /delay/<ms>}) or answer slowly only the first time they are asked ({@code /slow-first/<name>}).
+ */
+@Timeout(60)
+class UpstreamClientResilienceTest {
+
+    private final Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private HttpServer upstream;
+    private UpstreamClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        upstream = upstream(exchange -> {
+            var path = exchange.getRequestURI().getPath();
+            received.computeIfAbsent(exchange.getRequestMethod() + " " + path, k -> new AtomicInteger()).incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                if (path.startsWith("/hang")) {
+                    released.await();
+                } else if (path.startsWith("/delay/")) {
+                    Thread.sleep(Long.parseLong(path.substring("/delay/".length())));
+                } else if (path.startsWith("/slow-first/") && seen.add(path)) {
+                    Thread.sleep(1000);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(path.startsWith("/fail") ? 503 : 200, -1);
+            exchange.close();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        released.countDown();
+        if (client != null) {
+            client.close();
+        }
+        upstream.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void breaker_opensFailsFastProbesAndCloses() throws Exception {
+        client = client(new ResilienceConfiguration(0.5, 4, 4, Duration.ofSeconds(2), 1, false, 3,
+                Duration.ofMillis(100), false, Duration.ofMillis(50)));
+        var proxy = controllerBuilder(dataAddress(baseUrl(upstream)), client).build();
+
+        for (var i = 0; i < 4; i++) {
+            assertEquals(503, get("/fail"));
+        }
+        assertEquals("open", stats().get("circuit"));
+
+        // open: rejected without reaching the upstream, and answered with 503 by the proxy
+        assertThrows(UpstreamClient.UpstreamUnavailableException.class, () -> get("/ok"));
+        var resumed = new CompletableFuture<Response>();
+        proxy.getSubPath(authorization("breaker"), "ok", headers(Map.of()), uriInfo("ok"), asyncResponse(resumed));
+        var response = resumed.get(5, TimeUnit.SECONDS);
+        assertEquals(503, response.getStatus());
+        assertNotNull(response.getHeaderString("Retry-After"));
+        assertNull(received.get("GET /ok"));
+
+        // half open once the open duration has passed: one probe goes through, the others are still rejected
+        Thread.sleep(2100);
+        var probe = CompletableFuture.supplyAsync(() -> {
+            try {
+                return get("/hang");
+            } catch (IOException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }, executor);
+        awaitReceived("GET /hang");
+        assertEquals("half_open", stats().get("circuit"));
+        assertThrows(UpstreamClient.UpstreamUnavailableException.class, () -> get("/ok"));
+
+        // a successful probe closes the circuit
+        released.countDown();
+        assertEquals(200, (int) probe.get(5, TimeUnit.SECONDS));
+        assertEquals("closed", stats().get("circuit"));
+        assertEquals(200, get("/ok"));
+        assertEquals(3L, stats().get("circuitRejected"));
+    }
+
+    @Test
+    void adaptiveTimeout_followsObservedPercentiles() throws Exception {
+        client = client(new ResilienceConfiguration(0.5, 4, 4, Duration.ofSeconds(10), 1, true, 3,
+                Duration.ofMillis(100), false, Duration.ofMillis(50)));
+
+        // fast answers: the timeout drops to its 100 ms lower bound, far below the configured 10 s
+        for (var i = 0; i < 50; i++) {
+            assertEquals(200, get("/ok"));
+        }
+        assertTrue((Long) stats().get("p99Ms") < 100, stats().toString());
+        for (var i = 0; i < 4; i++) {
+            var start = System.nanoTime();
+            assertThrows(HttpTimeoutException.class, () -> get("/delay/400"));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        }
+        assertEquals("closed", stats().get("circuit"), "requests cut short by the adaptive timeout do not open the circuit");
+
+        // an upstream that slows down: its requests time out at first, but count with the time they were given, so
+        // the p99 and with it the timeout rise until they get through
+        var timedOut = 0;
+        for (var i = 0; i < 60 && (Long) stats().get("p99Ms") < 200; i++) {
+            try {
+                assertEquals(200, get("/delay/200"));
+            } catch (HttpTimeoutException e) {
+                timedOut++;
+            }
+        }
+        assertTrue(timedOut > 0);
+        assertTrue((Long) stats().get("p99Ms") >= 200, stats().toString());
+        assertEquals(200, get("/delay/200"));
+        assertEquals(200, get("/delay/400"));
+    }
+
+    @Test
+    void hedging_onlyForSlowIdempotentRequests() throws Exception {
+        client = client(new ResilienceConfiguration(0, 4, 4, Duration.ofSeconds(10), 1, false, 3,
+                Duration.ofMillis(100), true, Duration.ofMillis(50)));
+        for (var i = 0; i < 70; i++) {
+            assertEquals(200, get("/ok"));
+        }
+        assertEquals(0L, stats().get("hedges"), "requests answered within the p95 are not hedged");
+
+        var start = System.nanoTime();
+        assertEquals(200, get("/slow-first/get"));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500), "the hedge answered first");
+        assertEquals(2, received.get("GET /slow-first/get").get());
+        assertEquals(1L, stats().get("hedges"));
+        assertEquals(1L, stats().get("hedgeWins"));
+
+        start = System.nanoTime();
+        assertEquals(200, send(HttpRequest.newBuilder(uri("/slow-first/post")).POST(HttpRequest.BodyPublishers.ofString("x")).build()));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(1, received.get("POST /slow-first/post").get());
+        assertEquals(1L, stats().get("hedges"), "a POST is never hedged");
+    }
+
+    private UpstreamClient client(ResilienceConfiguration resilience) {
+        return new UpstreamClient(new UpstreamClientConfiguration(Duration.ofSeconds(5), Duration.ofSeconds(10), false, 16,
+                Duration.ofSeconds(10), 0, true, Set.of()), resilience);
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        return send(client.newRequest(uri(path)).GET().build());
+    }
+
+    // the body is closed right away, which frees the slot of the origin
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = client.send(request);
+        try (var body = response.body()) {
+            body.readAllBytes();
+        }
+        return response.statusCode();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl(upstream) + path);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> stats() {
+        return (Map<String, Object>) client.stats().get(UpstreamClient.originKey(uri("/")));
+    }
+
+    private void awaitReceived(String request) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!received.containsKey(request)) {
+            assertTrue(System.nanoTime() < deadline, request + " never arrived");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -8,6 +8,16 @@ dependencies {
     implementation("org.eclipse.edc:web-spi:${libs.versions.edc.get()}")
     implementation("org.eclipse.edc:verifiable-credentials-spi:${libs.versions.edc.get()}")
     implementation("jakarta.ws.rs:jakarta.ws.rs-api:3.1.0")
+
+    testImplementation(libs.edc.junit)
+    testImplementation(libs.junit.jupiter)
+    // the JSON-P implementation is provided by the runtime, the tests that read and write JSON need one of their own
+    testRuntimeOnly("org.eclipse.parsson:parsson:1.1.7")
+    testRuntimeOnly(libs.junit.platform.launcher)
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 edcBuild {
@@ -1,136 +1,293 @@
 package org.eclipse.edc.demo.dcp.issuer;
 
-import jakarta.json.Json;
-import jakarta.json.JsonObject;
-import jakarta.json.JsonString;
 import org.eclipse.edc.iam.verifiablecredentials.spi.model.Issuer;
 import org.eclipse.edc.iam.verifiablecredentials.spi.validation.TrustedIssuerRegistry;
 import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.persistence.EdcPersistenceException;
 
 import java.io.IOException;
-import java.io.StringReader;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * The trusted issuers, changeable at runtime and persisted through a {@link TrustedIssuerJournal}.
+ * <p>
+ * The issuers are published as immutable {@link TrustedIssuerSnapshot}s, indexed by credential type and by
+ * organization, and every change publishes a new one. Lookups read the current snapshot without locking and never
+ * see a change half made. Changes are made one at a time.
+ * <p>
+ * With synchronous persistence, a change returns once it is written to the journal; if it cannot be written, the
+ * change stays in effect and is persisted by the next compaction, but the caller gets an
+ * {@link EdcPersistenceException}.
+ */
 public class DynamicTrustedIssuerRegistry implements TrustedIssuerRegistry {
 
-    private final ConcurrentHashMap<String, TrustedIssuerRecord> issuers = new ConcurrentHashMap<>();
+    // held while a change is made, and by compaction of the journal to see the snapshot and queue consistently
+    private final Lock changeLock = new ReentrantLock();
+    // tells entity tags of earlier runs, whose versions start over, from the current ones
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private volatile TrustedIssuerSnapshot snapshot = TrustedIssuerSnapshot.EMPTY;
+    private volatile TrustedIssuerListing listing;
     private Path persistencePath;
+    private TrustedIssuerJournal journal;
     private Monitor monitor;
 
+    /**
+     * A change of a bulk operation: the issuer to add or update, or {@code null} to remove the DID.
+     */
+    public record Change(String did, TrustedIssuerRecord record) {
+    }
+
     @Override
     public void register(Issuer issuer, String credentialType) {
-        issuers.computeIfAbsent(issuer.id(), k -> new TrustedIssuerRecord(issuer.id(), null, null, null, null, null))
-                .getCredentialTypes().add(credentialType);
-        save();
+        CompletableFuture<Void> persisted = null;
+        changeLock.lock();
+        try {
+            var existing = snapshot.get(issuer.id());
+            if (existing != null && existing.getCredentialTypes().contains(credentialType)) {
+                return;
+            }
+            var credentialTypes = mergedTypes(existing, Set.of(credentialType));
+            var record = existing != null
+                    ? new TrustedIssuerRecord(existing.getDid(), existing.getName(), existing.getOrganization(), existing.getEmail(),
+                            existing.getDspEndpoint(), existing.getParticipantDid(), credentialTypes)
+                    : new TrustedIssuerRecord(issuer.id(), null, null, null, null, null, credentialTypes);
+            persisted = publish(Map.of(record.getDid(), record));
+        } finally {
+            changeLock.unlock();
+        }
+        awaitPersisted(persisted);
     }
 
     @Override
     public Set<String> getSupportedTypes(Issuer issuer) {
-        var record = issuers.get(issuer.id());
+        var record = snapshot.get(issuer.id());
         return record != null ? record.getCredentialTypes() : Set.of();
     }
 
     public void registerWithMetadata(String did, String name, String organization, String email, String dspEndpoint, String participantDid) {
-        issuers.compute(did, (k, existing) -> {
-            if (existing != null) {
-                var updated = new TrustedIssuerRecord(did, name, organization, email, dspEndpoint, participantDid);
-                updated.getCredentialTypes().addAll(existing.getCredentialTypes());
-                return updated;
+        registerWithMetadata(did, name, organization, email, dspEndpoint, participantDid, Set.of());
+    }
+
+    /**
+     * Replaces the metadata of an issuer, keeping its credential types and adding the given ones, as one change. An
+     * issuer left as it was is not changed.
+     */
+    public void registerWithMetadata(String did, String name, String organization, String email, String dspEndpoint, String participantDid,
+                                     Set<String> credentialTypes) {
+        CompletableFuture<Void> persisted = null;
+        changeLock.lock();
+        try {
+            var existing = snapshot.get(did);
+            var record = new TrustedIssuerRecord(did, name, organization, email, dspEndpoint, participantDid,
+                    mergedTypes(existing, credentialTypes));
+            if (sameAs(existing, record)) {
+                return;
             }
-            return new TrustedIssuerRecord(did, name, organization, email, dspEndpoint, participantDid);
-        });
-        save();
+            persisted = publish(Map.of(did, record));
+        } finally {
+            changeLock.unlock();
+        }
+        awaitPersisted(persisted);
     }
 
     public Map<String, TrustedIssuerRecord> getAll() {
-        return Collections.unmodifiableMap(issuers);
+        return snapshot.issuers();
     }
 
-    public boolean unregister(String issuerId) {
-        var removed = issuers.remove(issuerId) != null;
-        if (removed) {
-            save();
-        }
-        return removed;
+    /**
+     * The issuers trusted for the credential type, explicitly or as a wildcard, sorted by DID.
+     */
+    public List<TrustedIssuerRecord> getTrustedFor(String credentialType) {
+        return find(null, credentialType);
     }
 
-    public void configurePersistence(Path path, Monitor mon) {
-        this.persistencePath = path;
-        this.monitor = mon;
+    /**
+     * The issuers of the organization, sorted by DID.
+     */
+    public List<TrustedIssuerRecord> getByOrganization(String organization) {
+        return find(organization, null);
     }
 
-    public void load() {
-        if (persistencePath == null || !Files.exists(persistencePath)) {
-            return;
+    /**
+     * The issuers matching both filters, sorted by DID; a {@code null} filter matches all issuers.
+     */
+    public List<TrustedIssuerRecord> find(String organization, String credentialType) {
+        var current = snapshot;
+        var found = new ArrayList<TrustedIssuerRecord>();
+        current.query(organization, credentialType, null).forEachRemaining(did -> found.add(current.get(did)));
+        return Collections.unmodifiableList(found);
+    }
+
+    public boolean unregister(String issuerId) {
+        CompletableFuture<Void> persisted = null;
+        changeLock.lock();
+        try {
+            if (snapshot.get(issuerId) == null) {
+                return false;
+            }
+            var removal = new LinkedHashMap<String, TrustedIssuerRecord>();
+            removal.put(issuerId, null);
+            persisted = publish(removal);
+        } finally {
+            changeLock.unlock();
         }
+        awaitPersisted(persisted);
+        return true;
+    }
+
+    /**
+     * Applies the changes in order as one: they are published as a single snapshot and persisted as a single journal
+     * entry. Like {@link #registerWithMetadata}, an update keeps the issuer's credential types.
+     *
+     * @return for each change, whether the issuer was "added", "updated", "removed" or "not_found"
+     */
+    public List<String> applyAll(List<Change> changes) {
+        var outcomes = new ArrayList<String>(changes.size());
+        CompletableFuture<Void> persisted = null;
+        changeLock.lock();
         try {
-            var content = Files.readString(persistencePath);
-            var reader = Json.createReader(new StringReader(content));
-            var array = reader.readArray();
-            for (var item : array) {
-                var obj = item.asJsonObject();
-                var did = obj.getString("did");
-                var name = getStringOrNull(obj, "name");
-                var organization = getStringOrNull(obj, "organization");
-                var email = getStringOrNull(obj, "email");
-                var dspEndpoint = getStringOrNull(obj, "dspEndpoint");
-                var participantDid = getStringOrNull(obj, "participantDid");
-                var record = new TrustedIssuerRecord(did, name, organization, email, dspEndpoint, participantDid);
-                if (obj.containsKey("credentialTypes")) {
-                    for (var ct : obj.getJsonArray("credentialTypes")) {
-                        record.getCredentialTypes().add(((JsonString) ct).getString());
+            var current = snapshot;
+            var pending = new LinkedHashMap<String, TrustedIssuerRecord>();
+            for (var change : changes) {
+                var existing = pending.containsKey(change.did()) ? pending.get(change.did()) : current.get(change.did());
+                if (change.record() == null) {
+                    if (existing == null) {
+                        outcomes.add("not_found");
+                        continue;
                     }
+                    pending.put(change.did(), null);
+                    outcomes.add("removed");
+                } else {
+                    var record = change.record();
+                    pending.put(change.did(), new TrustedIssuerRecord(change.did(), record.getName(), record.getOrganization(), record.getEmail(),
+                            record.getDspEndpoint(), record.getParticipantDid(), mergedTypes(existing, record.getCredentialTypes())));
+                    outcomes.add(existing != null ? "updated" : "added");
                 }
-                issuers.put(did, record);
             }
-            if (monitor != null) {
-                monitor.info("Loaded %d trusted issuers from %s".formatted(array.size(), persistencePath));
+            // updates that leave an issuer as it was are not changes, and leave the version and entity tag alone
+            pending.entrySet().removeIf(change -> sameAs(current.get(change.getKey()), change.getValue()));
+            if (!pending.isEmpty()) {
+                persisted = publish(pending);
             }
-        } catch (IOException e) {
-            if (monitor != null) {
-                monitor.warning("Failed to load trusted issuers from %s: %s".formatted(persistencePath, e.getMessage()));
+        } finally {
+            changeLock.unlock();
+        }
+        awaitPersisted(persisted);
+        return outcomes;
+    }
+
+    /**
+     * The issuers as of the latest change, rebuilt only if there has been one since the last call.
+     */
+    TrustedIssuerListing listing() {
+        var current = snapshot;
+        var cached = listing;
+        if (cached != null && cached.version() == current.version()) {
+            return cached;
+        }
+        synchronized (this) {
+            current = snapshot;
+            cached = listing;
+            if (cached == null || cached.version() != current.version()) {
+                cached = new TrustedIssuerListing(current, epoch, cached);
+                listing = cached;
             }
+            return cached;
         }
     }
 
-    private void save() {
-        if (persistencePath == null) {
+    /**
+     * The issuers and their indexes as of the latest change.
+     */
+    TrustedIssuerSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public void configurePersistence(Path path, Monitor mon, boolean syncWrites, int compactionThreshold, Duration compactionInterval) {
+        this.persistencePath = path;
+        this.monitor = mon;
+        this.journal = new TrustedIssuerJournal(path, mon, syncWrites, compactionThreshold, compactionInterval);
+    }
+
+    /**
+     * Loads the persisted issuers and starts persisting changes.
+     *
+     * @throws EdcPersistenceException if the persisted issuers cannot be read, rather than starting without them
+     *                                 and overwriting them with the next compaction
+     */
+    public void load() {
+        if (journal == null) {
             return;
         }
         try {
-            var array = Json.createArrayBuilder();
-            for (var entry : issuers.entrySet()) {
-                var record = entry.getValue();
-                var typesArray = Json.createArrayBuilder();
-                record.getCredentialTypes().forEach(typesArray::add);
-                array.add(Json.createObjectBuilder()
-                        .add("did", record.getDid())
-                        .add("name", record.getName() != null ? record.getName() : "")
-                        .add("organization", record.getOrganization() != null ? record.getOrganization() : "")
-                        .add("email", record.getEmail() != null ? record.getEmail() : "")
-                        .add("dspEndpoint", record.getDspEndpoint() != null ? record.getDspEndpoint() : "")
-                        .add("participantDid", record.getParticipantDid() != null ? record.getParticipantDid() : "")
-                        .add("credentialTypes", typesArray));
-            }
-            Files.createDirectories(persistencePath.getParent());
-            Files.writeString(persistencePath, array.build().toString());
-        } catch (IOException e) {
-            if (monitor != null) {
-                monitor.warning("Failed to save trusted issuers to %s: %s".formatted(persistencePath, e.getMessage()));
-            }
+            snapshot = snapshot.with(journal.load());
+            journal.start(() -> snapshot.issuers().values(), changeLock);
+        } catch (IOException | RuntimeException e) {
+            throw new EdcPersistenceException("Failed to load trusted issuers from %s, fix or remove the files to start: %s"
+                    .formatted(persistencePath, e.getMessage()), e);
+        }
+        if (monitor != null) {
+            monitor.info("Loaded %d trusted issuers from %s".formatted(snapshot.issuers().size(), persistencePath));
         }
     }
 
-    private static String getStringOrNull(JsonObject obj, String key) {
-        if (!obj.containsKey(key) || obj.isNull(key)) {
+    /**
+     * Flushes pending changes and stops persisting.
+     */
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private static Set<String> mergedTypes(TrustedIssuerRecord existing, Collection<String> credentialTypes) {
+        var merged = new HashSet<>(credentialTypes);
+        if (existing != null) {
+            merged.addAll(existing.getCredentialTypes());
+        }
+        return merged;
+    }
+
+    private static boolean sameAs(TrustedIssuerRecord existing, TrustedIssuerRecord record) {
+        return existing != null && record != null
+                && Objects.equals(existing.getName(), record.getName())
+                && Objects.equals(existing.getOrganization(), record.getOrganization())
+                && Objects.equals(existing.getEmail(), record.getEmail())
+                && Objects.equals(existing.getDspEndpoint(), record.getDspEndpoint())
+                && Objects.equals(existing.getParticipantDid(), record.getParticipantDid())
+                && existing.getCredentialTypes().equals(record.getCredentialTypes());
+    }
+
+    // called with the change lock held, so the journal gets the changes in the order they were published
+    private CompletableFuture<Void> publish(Map<String, TrustedIssuerRecord> changes) {
+        snapshot = snapshot.with(changes);
+        if (journal == null) {
             return null;
         }
-        var value = obj.getString(key, "");
-        return value.isEmpty() ? null : value;
+        if (changes.size() > 1) {
+            return journal.putAll(changes);
+        }
+        var change = changes.entrySet().iterator().next();
+        return change.getValue() != null ? journal.put(change.getValue()) : journal.remove(change.getKey());
+    }
+
+    private void awaitPersisted(CompletableFuture<Void> persisted) {
+        if (journal != null && persisted != null) {
+            journal.await(persisted);
+        }
     }
 }
@@ -0,0 +1,250 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map sorted by key, changed by deriving a new map from it.
+ * <p>
+ * The map is an AVL tree, and {@link #with} and {@link #without} copy only the nodes on the path to the changed key:
+ * a change takes O(log n) time and space, and the derived map shares all other nodes with the one it was derived from.
+ * Iteration is in key order.
+ */
+final class PersistentSortedMap<K extends Comparable<? super K>, V> extends AbstractMap<K, V> {
+
+    private static final PersistentSortedMap<?, ?> EMPTY = new PersistentSortedMap<>(null);
+
+    private final Node<K, V> root;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    private static final class Node<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+        final Node<K, V> left;
+        final Node<K, V> right;
+        final int height;
+        final int size;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            super(key, value);
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    private PersistentSortedMap(Node<K, V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+        return (PersistentSortedMap<K, V>) EMPTY;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public V get(Object key) {
+        var node = find(key);
+        return node != null ? node.getValue() : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return entriesAfter(null);
+                }
+
+                @Override
+                public int size() {
+                    return PersistentSortedMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * A map with the key mapped to the value, this map itself if it already is.
+     */
+    PersistentSortedMap<K, V> with(K key, V value) {
+        var next = put(root, key, value);
+        return next == root ? this : new PersistentSortedMap<>(next);
+    }
+
+    /**
+     * A map without the key, this map itself if it does not hold the key.
+     */
+    PersistentSortedMap<K, V> without(K key) {
+        var next = remove(root, key);
+        return next == root ? this : next == null ? empty() : new PersistentSortedMap<>(next);
+    }
+
+    /**
+     * The entries with keys greater than the given one, in key order.
+     *
+     * @param key where to start, or {@code null} for all entries
+     */
+    Iterator<Map.Entry<K, V>> entriesAfter(K key) {
+        var path = new ArrayDeque<Node<K, V>>();
+        var node = root;
+        while (node != null) {
+            if (key == null || node.getKey().compareTo(key) > 0) {
+                path.push(node);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                var next = path.pop();
+                for (var descendant = next.right; descendant != null; descendant = descendant.left) {
+                    path.push(descendant);
+                }
+                return next;
+            }
+        };
+    }
+
+    /**
+     * The keys greater than the given one, in order.
+     *
+     * @param key where to start, or {@code null} for all keys
+     */
+    Iterator<K> keysAfter(K key) {
+        var entries = entriesAfter(key);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public K next() {
+                return entries.next().getKey();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<K, V> find(Object key) {
+        if (key == null) {
+            return null;
+        }
+        var node = root;
+        while (node != null) {
+            var comparison = ((Comparable<Object>) key).compareTo(node.getKey());
+            if (comparison == 0) {
+                return node;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> put(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Node<>(key, value, null, null);
+        }
+        var comparison = key.compareTo(node.getKey());
+        if (comparison == 0) {
+            return node.getValue() == value ? node : new Node<>(node.getKey(), value, node.left, node.right);
+        }
+        if (comparison < 0) {
+            var left = put(node.left, key, value);
+            return left == node.left ? node : balance(node, left, node.right);
+        }
+        var right = put(node.right, key, value);
+        return right == node.right ? node : balance(node, node.left, right);
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> remove(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        var comparison = key.compareTo(node.getKey());
+        if (comparison < 0) {
+            var left = remove(node.left, key);
+            return left == node.left ? node : balance(node, left, node.right);
+        }
+        if (comparison > 0) {
+            var right = remove(node.right, key);
+            return right == node.right ? node : balance(node, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        var successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor, node.left, removeFirst(node.right));
+    }
+
+    private static <K, V> Node<K, V> removeFirst(Node<K, V> node) {
+        return node.left == null ? node.right : balance(node, removeFirst(node.left), node.right);
+    }
+
+    /**
+     * A node with the entry of {@code entry} and the given subtrees, whose heights differ by at most two, rotated
+     * back into balance.
+     */
+    private static <K, V> Node<K, V> balance(Node<K, V> entry, Node<K, V> left, Node<K, V> right) {
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.getKey(), left.getValue(), left.left, new Node<>(entry.getKey(), entry.getValue(), left.right, right));
+            }
+            var middle = left.right;
+            return new Node<>(middle.getKey(), middle.getValue(),
+                    new Node<>(left.getKey(), left.getValue(), left.left, middle.left),
+                    new Node<>(entry.getKey(), entry.getValue(), middle.right, right));
+        }
+        if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.getKey(), right.getValue(), new Node<>(entry.getKey(), entry.getValue(), left, right.left), right.right);
+            }
+            var middle = right.left;
+            return new Node<>(middle.getKey(), middle.getValue(),
+                    new Node<>(entry.getKey(), entry.getValue(), left, middle.left),
+                    new Node<>(right.getKey(), right.getValue(), middle.right, right.right));
+        }
+        return new Node<>(entry.getKey(), entry.getValue(), left, right);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node != null ? node.height : 0;
+    }
+
+    private static int size(Node<?, ?> node) {
+        return node != null ? node.size : 0;
+    }
+}
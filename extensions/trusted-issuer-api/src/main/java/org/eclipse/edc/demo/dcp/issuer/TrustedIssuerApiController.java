@@ -1,26 +1,33 @@
 package org.eclipse.edc.demo.dcp.issuer;
 
 import jakarta.json.Json;
+import jakarta.json.JsonException;
 import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.persistence.EdcPersistenceException;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
 
 import static jakarta.json.JsonValue.NULL;
 import static org.eclipse.edc.iam.verifiablecredentials.spi.validation.TrustedIssuerRegistry.WILDCARD;
@@ -30,43 +37,78 @@ import static org.eclipse.edc.iam.verifiablecredentials.spi.validation.TrustedIs
 @Path("/v1/trusted-issuers")
 public class TrustedIssuerApiController {
 
-    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(3);
-    private static final Duration CATALOG_TIMEOUT = Duration.ofSeconds(8);
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int MAX_PAGE_SIZE = 1000;
 
     private final DynamicTrustedIssuerRegistry registry;
+    private final TrustedIssuerHealthMonitor healthMonitor;
     private final Monitor monitor;
-    private final HttpClient httpClient;
-    private final String managementBaseUrl;
-    private final String apiKey;
+    private final int bulkMaxEntries;
+    private final Semaphore eventSubscribers;
 
-    public TrustedIssuerApiController(DynamicTrustedIssuerRegistry registry, Monitor monitor,
-                                      String managementBaseUrl, String apiKey) {
+    TrustedIssuerApiController(DynamicTrustedIssuerRegistry registry, TrustedIssuerHealthMonitor healthMonitor, Monitor monitor,
+                               int bulkMaxEntries, int maxEventSubscribers) {
         this.registry = registry;
+        this.healthMonitor = healthMonitor;
         this.monitor = monitor;
-        this.managementBaseUrl = managementBaseUrl;
-        this.apiKey = apiKey;
-        this.httpClient = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+        this.bulkMaxEntries = bulkMaxEntries;
+        this.eventSubscribers = new Semaphore(maxEventSubscribers);
     }
 
+    /**
+     * Lists the issuers sorted by DID, optionally filtered by organization and by credential type (issuers trusted for
+     * all types included). With {@code limit}, returns {@code {"items": [...], "nextCursor": ...}} and the next page is
+     * requested with {@code cursor}. Responses carry an {@code ETag} that changes with the registry, and
+     * {@code If-None-Match} is answered with 304.
+     */
     @GET
-    public Response listIssuers() {
-        var issuers = registry.getAll();
-        var array = Json.createArrayBuilder();
-        for (Map.Entry<String, TrustedIssuerRecord> entry : issuers.entrySet()) {
-            var record = entry.getValue();
-            var typesArray = Json.createArrayBuilder();
-            record.getCredentialTypes().forEach(typesArray::add);
-            var obj = Json.createObjectBuilder()
-                    .add("did", entry.getKey())
-                    .add("credentialTypes", typesArray);
-            obj.add("name", record.getName() != null ? record.getName() : "");
-            obj.add("organization", record.getOrganization() != null ? record.getOrganization() : "");
-            obj.add("email", record.getEmail() != null ? record.getEmail() : "");
-            obj.add("dspEndpoint", record.getDspEndpoint() != null ? record.getDspEndpoint() : "");
-            obj.add("participantDid", record.getParticipantDid() != null ? record.getParticipantDid() : "");
-            array.add(obj);
-        }
-        return Response.ok(array.build().toString()).build();
+    public Response listIssuers(@QueryParam("organization") String organization, @QueryParam("credentialType") String credentialType,
+                                @QueryParam("cursor") String cursor, @QueryParam("limit") Integer limit,
+                                @HeaderParam("If-None-Match") String ifNoneMatch) {
+        if (limit != null && (limit < 1 || limit > MAX_PAGE_SIZE)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"'limit' must be between 1 and %d\"}".formatted(MAX_PAGE_SIZE))
+                    .build();
+        }
+        var listing = registry.listing();
+        if (ifNoneMatch != null && matchesEtag(ifNoneMatch, listing.etag())) {
+            return Response.status(Response.Status.NOT_MODIFIED).header("ETag", listing.etag()).build();
+        }
+        if (organization == null && credentialType == null && cursor == null && limit == null) {
+            return Response.ok(listing.json()).header("ETag", listing.etag()).build();
+        }
+        TrustedIssuerListing.Page page;
+        try {
+            page = listing.page(organization, credentialType, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Invalid cursor\"}")
+                    .build();
+        }
+        var body = page.json();
+        if (limit != null) {
+            body = "{\"items\":%s,\"nextCursor\":%s}".formatted(page.json(),
+                    page.nextCursor() != null ? "\"" + page.nextCursor() + "\"" : "null");
+        }
+        return Response.ok(body).header("ETag", listing.etag()).build();
+    }
+
+    /**
+     * The number of issuers per credential type and per organization, from the registry's indexes.
+     */
+    @GET
+    @Path("/facets")
+    public Response facets() {
+        var snapshot = registry.snapshot();
+        var credentialTypes = Json.createObjectBuilder();
+        snapshot.credentialTypeCounts().forEach(credentialTypes::add);
+        var organizations = Json.createObjectBuilder();
+        snapshot.organizationCounts().forEach(organizations::add);
+        return Response.ok(Json.createObjectBuilder()
+                .add("total", snapshot.issuers().size())
+                .add("credentialTypes", credentialTypes)
+                .add("organizations", organizations)
+                .build().toString()).build();
     }
 
     @POST
@@ -83,9 +125,11 @@ public class TrustedIssuerApiController {
         var dspEndpoint = body.containsKey("dspEndpoint") && body.get("dspEndpoint") != NULL ? body.getString("dspEndpoint", null) : null;
         var participantDid = body.containsKey("participantDid") && body.get("participantDid") != NULL ? body.getString("participantDid", null) : null;
 
-        registry.registerWithMetadata(did, name, organization, email, dspEndpoint, participantDid);
-        var issuer = new org.eclipse.edc.iam.verifiablecredentials.spi.model.Issuer(did, java.util.Map.of());
-        registry.register(issuer, WILDCARD);
+        try {
+            registry.registerWithMetadata(did, name, organization, email, dspEndpoint, participantDid, Set.of(WILDCARD));
+        } catch (EdcPersistenceException e) {
+            return notPersisted(e);
+        }
         monitor.info("Registered trusted issuer via API: %s".formatted(did));
         return Response.ok("{\"did\": \"%s\"}".formatted(did)).build();
     }
@@ -110,88 +154,166 @@ public class TrustedIssuerApiController {
         var dspEndpoint = body.containsKey("dspEndpoint") && body.get("dspEndpoint") != NULL ? body.getString("dspEndpoint", null) : null;
         var participantDid = body.containsKey("participantDid") && body.get("participantDid") != NULL ? body.getString("participantDid", null) : null;
 
-        registry.registerWithMetadata(did, name, organization, email, dspEndpoint, participantDid);
+        try {
+            registry.registerWithMetadata(did, name, organization, email, dspEndpoint, participantDid);
+        } catch (EdcPersistenceException e) {
+            return notPersisted(e);
+        }
         monitor.info("Updated trusted issuer metadata via API: %s".formatted(did));
         return Response.ok("{\"did\": \"%s\"}".formatted(did)).build();
     }
 
-    @GET
-    @Path("/health")
-    public Response checkHealth() {
-        var issuers = registry.getAll();
-        var futures = new ArrayList<CompletableFuture<Map.Entry<String, String>>>();
-
-        for (var entry : issuers.entrySet()) {
-            var record = entry.getValue();
-            if (record.getDspEndpoint() == null || record.getDspEndpoint().isBlank() ||
-                    record.getParticipantDid() == null || record.getParticipantDid().isBlank()) {
-                continue;
+    /**
+     * Adds, updates and removes many issuers at once, from a JSON array or NDJSON read as it arrives. If any entry is
+     * invalid nothing is applied; otherwise all entries are applied and persisted together. A request with more
+     * entries than allowed is answered with 413 without reading the rest of it.
+     */
+    @POST
+    @Path("/bulk")
+    @Consumes({MediaType.APPLICATION_JSON, NDJSON})
+    public Response bulkImport(InputStream body) {
+        List<TrustedIssuerBulkReader.Item> items;
+        try {
+            items = TrustedIssuerBulkReader.read(new InputStreamReader(body, StandardCharsets.UTF_8), bulkMaxEntries);
+        } catch (TrustedIssuerBulkReader.TooManyEntriesException e) {
+            return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE)
+                    .entity(Json.createObjectBuilder().add("error", "Bulk request has " + e.getMessage() + ", split it into smaller requests").build().toString())
+                    .build();
+        } catch (IOException | JsonException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Json.createObjectBuilder().add("error", "Malformed bulk request: " + e.getMessage()).build().toString())
+                    .build();
+        }
+
+        var results = Json.createArrayBuilder();
+        var invalid = items.stream().filter(item -> item.error() != null).count();
+        if (invalid > 0) {
+            for (var item : items) {
+                var result = result(item).add("status", item.error() != null ? "invalid" : "not_applied");
+                if (item.error() != null) {
+                    result.add("error", item.error());
+                }
+                results.add(result);
             }
-            var key = entry.getKey();
-            futures.add(CompletableFuture.supplyAsync(() ->
-                    Map.entry(key, checkTrustStatus(record))
-            ));
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Json.createObjectBuilder()
+                            .add("applied", false)
+                            .add("error", "%d of %d entries are invalid, none were applied".formatted(invalid, items.size()))
+                            .add("results", results)
+                            .build().toString())
+                    .build();
         }
 
+        List<String> outcomes;
+        try {
+            outcomes = registry.applyAll(items.stream().map(TrustedIssuerBulkReader.Item::change).toList());
+        } catch (EdcPersistenceException e) {
+            return notPersisted(e);
+        }
+        for (var i = 0; i < items.size(); i++) {
+            results.add(result(items.get(i)).add("status", outcomes.get(i)));
+        }
+        monitor.info("Applied %d trusted issuer changes via bulk API".formatted(items.size()));
+        return Response.ok(Json.createObjectBuilder()
+                .add("applied", true)
+                .add("results", results)
+                .build().toString()).build();
+    }
+
+    /**
+     * Streams all issuers as a JSON array, or as NDJSON with {@code format=ndjson} or when asked for by
+     * {@code Accept}, in the format {@code /bulk} reads back.
+     */
+    @GET
+    @Path("/export")
+    @Produces({MediaType.APPLICATION_JSON, NDJSON})
+    public Response exportIssuers(@QueryParam("format") String format, @HeaderParam("Accept") String accept) {
+        var ndjson = "ndjson".equalsIgnoreCase(format) || (format == null && accept != null && accept.contains(NDJSON));
+        StreamingOutput output = stream -> {
+            var issuers = registry.getAll().values();
+            if (ndjson) {
+                var writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+                for (var record : issuers) {
+                    writer.write(TrustedIssuerJournal.toJson(record).toString());
+                    writer.write('\n');
+                }
+                writer.flush();
+            } else {
+                var generator = Json.createGenerator(stream);
+                generator.writeStartArray();
+                issuers.forEach(record -> generator.write(TrustedIssuerJournal.toJson(record)));
+                generator.writeEnd();
+                generator.flush();
+            }
+        };
+        return Response.ok(output, ndjson ? NDJSON : MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * The latest status of every issuer probed so far, without probing; {@code details=true} adds when each issuer was
+     * checked and since when its status holds.
+     */
+    @GET
+    @Path("/health")
+    public Response checkHealth(@QueryParam("details") boolean details) {
         var result = Json.createObjectBuilder();
-        for (var future : futures) {
-            try {
-                var entry = future.join();
-                result.add(entry.getKey(), entry.getValue());
-            } catch (Exception e) {
-                monitor.debug("Health check future failed: %s".formatted(e.getMessage()));
+        healthMonitor.snapshot().forEach((did, status) -> {
+            if (details) {
+                result.add(did, status.toJson());
+            } else {
+                result.add(did, status.status());
             }
-        }
+        });
         return Response.ok(result.build().toString()).build();
     }
 
-    private String checkTrustStatus(TrustedIssuerRecord record) {
-        // Attempt a real catalog request via the local management API
-        try {
-            var context = Json.createObjectBuilder()
-                    .add("@vocab", "https://w3id.org/edc/v0.0.1/ns/")
-                    .build();
-            var catalogBody = Json.createObjectBuilder()
-                    .add("@context", context)
-                    .add("@type", "CatalogRequest")
-                    .add("counterPartyAddress", record.getDspEndpoint())
-                    .add("counterPartyId", record.getParticipantDid())
-                    .add("protocol", "dataspace-protocol-http")
-                    .build().toString();
-            var request = HttpRequest.newBuilder()
-                    .uri(URI.create(managementBaseUrl + "/v3/catalog/request"))
-                    .timeout(CATALOG_TIMEOUT)
-                    .header("Content-Type", "application/json")
-                    .header("x-api-key", apiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(catalogBody))
+    /**
+     * Streams the status of every issuer, then each change of it, as server-sent events. Every subscriber holds a
+     * request thread, so beyond the configured number of subscribers the request is answered with 503.
+     */
+    @GET
+    @Path("/health/events")
+    @Produces(TrustedIssuerHealthEvents.MEDIA_TYPE)
+    public Response healthEvents() {
+        if (!eventSubscribers.tryAcquire()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .type(MediaType.APPLICATION_JSON)
+                    .header("Retry-After", "30")
+                    .entity(Json.createObjectBuilder().add("error", "Too many health event subscribers, poll /v1/trusted-issuers/health instead").build().toString())
                     .build();
-            var response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
-            if (response.statusCode() == 200) {
-                return "mutual_trust";
-            }
-        } catch (Exception e) {
-            monitor.debug("Catalog probe failed for %s: %s".formatted(record.getDspEndpoint(), e.getMessage()));
         }
+        return Response.ok(new TrustedIssuerHealthEvents(healthMonitor, eventSubscribers::release), TrustedIssuerHealthEvents.MEDIA_TYPE)
+                .header("Cache-Control", "no-cache")
+                .build();
+    }
 
-        // Catalog failed — check if the DSP endpoint is at least reachable
-        if (isDspReachable(record.getDspEndpoint())) {
-            return "untrusted";
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        for (var candidate : ifNoneMatch.split(",")) {
+            var tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
         }
-        return "unreachable";
+        return false;
     }
 
-    private boolean isDspReachable(String url) {
-        try {
-            var request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(CONNECT_TIMEOUT)
-                    .GET()
-                    .build();
-            var response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
-            return response.statusCode() >= 200 && response.statusCode() < 500;
-        } catch (Exception e) {
-            return false;
+    // the change is in effect but may be lost on a restart, which the caller has to know
+    private Response notPersisted(EdcPersistenceException e) {
+        monitor.severe("Trusted issuer change not persisted: " + e.getMessage(), e);
+        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(Json.createObjectBuilder().add("error", e.getMessage()).build().toString())
+                .build();
+    }
+
+    private static JsonObjectBuilder result(TrustedIssuerBulkReader.Item item) {
+        var result = Json.createObjectBuilder().add("index", item.index());
+        if (item.did() != null) {
+            result.add("did", item.did());
         }
+        return result;
     }
 
     @DELETE
@@ -202,7 +324,12 @@ public class TrustedIssuerApiController {
                     .entity("{\"error\": \"'did' field is required\"}")
                     .build();
         }
-        var removed = registry.unregister(did);
+        boolean removed;
+        try {
+            removed = registry.unregister(did);
+        } catch (EdcPersistenceException e) {
+            return notPersisted(e);
+        }
         if (!removed) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity("{\"error\": \"Issuer not found: %s\"}".formatted(did))
@@ -10,6 +10,8 @@ import org.eclipse.edc.spi.system.ServiceExtensionContext;
 import org.eclipse.edc.web.spi.WebService;
 
 import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 
 @Extension("Trusted Issuer API Extension")
 public class TrustedIssuerApiExtension implements ServiceExtension {
@@ -17,7 +19,29 @@ public class TrustedIssuerApiExtension implements ServiceExtension {
     @Setting(value = "Path to persist trusted issuers as JSON", defaultValue = "/app/data/trusted-issuers.json")
     private static final String PERSISTENCE_PATH_SETTING = "edc.demo.trusted.issuer.persistence.path";
 
+    @Setting(value = "Whether changes wait until they are synced to the persistence journal before the API responds", defaultValue = "true")
+    private static final String PERSISTENCE_SYNC_SETTING = "edc.demo.trusted.issuer.persistence.sync";
+
+    @Setting(value = "Number of journal entries after which the trusted issuers are written to a new snapshot", defaultValue = "10000")
+    private static final String COMPACTION_THRESHOLD_SETTING = "edc.demo.trusted.issuer.persistence.compaction.threshold";
+
+    @Setting(value = "Interval in seconds after which a non-empty journal is compacted into a new snapshot", defaultValue = "300")
+    private static final String COMPACTION_INTERVAL_SETTING = "edc.demo.trusted.issuer.persistence.compaction.interval";
+
+    @Setting(value = "Interval in seconds at which each trusted issuer's connector is probed for mutual trust, varied by up to 20% either way", defaultValue = "60")
+    private static final String HEALTH_INTERVAL_SETTING = "edc.demo.trusted.issuer.health.interval";
+
+    @Setting(value = "Maximum number of trusted issuer health probes in flight at once", defaultValue = "16")
+    private static final String HEALTH_CONCURRENCY_SETTING = "edc.demo.trusted.issuer.health.concurrency";
+
+    @Setting(value = "Maximum number of entries in a single bulk request", defaultValue = "10000")
+    private static final String BULK_MAX_ENTRIES_SETTING = "edc.demo.trusted.issuer.bulk.max.entries";
+
+    @Setting(value = "Maximum number of clients streaming health events at once, each holding a request thread", defaultValue = "16")
+    private static final String HEALTH_EVENTS_MAX_SUBSCRIBERS_SETTING = "edc.demo.trusted.issuer.health.events.max.subscribers";
+
     private final DynamicTrustedIssuerRegistry registry = new DynamicTrustedIssuerRegistry();
+    private TrustedIssuerHealthMonitor healthMonitor;
 
     @Inject
     private WebService webService;
@@ -27,7 +51,10 @@ public class TrustedIssuerApiExtension implements ServiceExtension {
         var monitor = context.getMonitor().withPrefix("TrustedIssuerApi");
 
         var persistencePath = context.getSetting(PERSISTENCE_PATH_SETTING, "/app/data/trusted-issuers.json");
-        registry.configurePersistence(Path.of(persistencePath), monitor);
+        registry.configurePersistence(Path.of(persistencePath), monitor,
+                context.getSetting(PERSISTENCE_SYNC_SETTING, true),
+                context.getSetting(COMPACTION_THRESHOLD_SETTING, 10_000),
+                Duration.ofSeconds(context.getSetting(COMPACTION_INTERVAL_SETTING, 300)));
         registry.load();
 
         var mgmtPort = context.getSetting("web.http.management.port", "19193");
@@ -35,10 +62,29 @@ public class TrustedIssuerApiExtension implements ServiceExtension {
         var apiKey = context.getSetting("edc.api.auth.key", "password");
         var managementBaseUrl = "http://localhost:" + mgmtPort + mgmtPath;
 
-        webService.registerResource("management", new TrustedIssuerApiController(registry, monitor, managementBaseUrl, apiKey));
+        healthMonitor = new TrustedIssuerHealthMonitor(registry, monitor, managementBaseUrl, apiKey,
+                Duration.ofSeconds(context.getSetting(HEALTH_INTERVAL_SETTING, 60)),
+                context.getSetting(HEALTH_CONCURRENCY_SETTING, 16), Clock.systemUTC());
+
+        webService.registerResource("management", new TrustedIssuerApiController(registry, healthMonitor, monitor,
+                context.getSetting(BULK_MAX_ENTRIES_SETTING, 10_000),
+                context.getSetting(HEALTH_EVENTS_MAX_SUBSCRIBERS_SETTING, 16)));
         monitor.info("Trusted Issuer API registered on management context at /v1/trusted-issuers");
     }
 
+    @Override
+    public void start() {
+        healthMonitor.start();
+    }
+
+    @Override
+    public void shutdown() {
+        if (healthMonitor != null) {
+            healthMonitor.close();
+        }
+        registry.close();
+    }
+
     @Provider
     public TrustedIssuerRegistry trustedIssuerRegistry() {
         return registry;
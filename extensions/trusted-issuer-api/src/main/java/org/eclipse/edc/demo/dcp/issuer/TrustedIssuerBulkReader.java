@@ -0,0 +1,173 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.eclipse.edc.iam.verifiablecredentials.spi.validation.TrustedIssuerRegistry.WILDCARD;
+
+/**
+ * Reads the entries of a bulk request one at a time, either from a JSON array or from NDJSON (one object per line),
+ * so the request body is never held as a whole.
+ * <p>
+ * An entry is an issuer in the format of the export, added or updated like {@code POST /v1/trusted-issuers}, or
+ * {@code {"did": "...", "op": "remove"}}. Without {@code credentialTypes} an issuer is trusted for all types.
+ * <p>
+ * The entries are applied all at once, so they are kept until the request is read; a request with more entries than
+ * allowed is rejected as soon as the first surplus entry arrives.
+ */
+class TrustedIssuerBulkReader {
+
+    private static final Set<String> METADATA_FIELDS = Set.of("name", "organization", "email", "dspEndpoint", "participantDid");
+
+    /**
+     * An entry of the request, holding either the change it asks for or why it is invalid.
+     */
+    record Item(int index, String did, DynamicTrustedIssuerRegistry.Change change, String error) {
+    }
+
+    /**
+     * Thrown when a request holds more entries than allowed.
+     */
+    static class TooManyEntriesException extends IOException {
+        TooManyEntriesException(int maxEntries) {
+            super("more than %d entries".formatted(maxEntries));
+        }
+    }
+
+    private TrustedIssuerBulkReader() {
+    }
+
+    /**
+     * Reads all entries of the request.
+     *
+     * @param maxEntries the number of entries allowed
+     * @throws TooManyEntriesException if the request holds more than {@code maxEntries} entries
+     * @throws JsonException           if a JSON array is malformed, which leaves the entries after the error unknown
+     */
+    static List<Item> read(Reader body, int maxEntries) throws IOException {
+        var reader = new BufferedReader(body);
+        reader.mark(1);
+        var first = reader.read();
+        while (first != -1 && Character.isWhitespace(first)) {
+            reader.mark(1);
+            first = reader.read();
+        }
+        if (first == -1) {
+            return List.of();
+        }
+        reader.reset();
+        return first == '[' ? readArray(reader, maxEntries) : readLines(reader, maxEntries);
+    }
+
+    private static List<Item> readArray(Reader reader, int maxEntries) throws TooManyEntriesException {
+        var items = new ArrayList<Item>();
+        try (var parser = Json.createParser(reader)) {
+            parser.next();
+            while (parser.hasNext()) {
+                var event = parser.next();
+                if (event == JsonParser.Event.END_ARRAY) {
+                    break;
+                }
+                checkLimit(items, maxEntries);
+                items.add(item(items.size(), parser.getValue()));
+            }
+            if (parser.hasNext()) {
+                throw new JsonException("unexpected content after the array");
+            }
+        }
+        return items;
+    }
+
+    private static List<Item> readLines(BufferedReader reader, int maxEntries) throws IOException {
+        var items = new ArrayList<Item>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            checkLimit(items, maxEntries);
+            JsonValue value;
+            try {
+                value = Json.createReader(new StringReader(line)).readValue();
+            } catch (JsonException e) {
+                items.add(new Item(items.size(), null, null, "malformed JSON: " + e.getMessage()));
+                continue;
+            }
+            items.add(item(items.size(), value));
+        }
+        return items;
+    }
+
+    private static void checkLimit(List<Item> items, int maxEntries) throws TooManyEntriesException {
+        if (items.size() >= maxEntries) {
+            throw new TooManyEntriesException(maxEntries);
+        }
+    }
+
+    private static Item item(int index, JsonValue value) {
+        if (value.getValueType() != JsonValue.ValueType.OBJECT) {
+            return new Item(index, null, null, "entry must be a JSON object");
+        }
+        var entry = value.asJsonObject();
+        var did = string(entry, "did");
+        if (did == null) {
+            return new Item(index, null, null, "'did' field is required");
+        }
+        var op = entry.containsKey("op") ? string(entry, "op") : "put";
+        if ("remove".equals(op)) {
+            return new Item(index, did, new DynamicTrustedIssuerRegistry.Change(did, null), null);
+        }
+        if (!"put".equals(op)) {
+            return new Item(index, did, null, "'op' must be 'put' or 'remove'");
+        }
+        for (var field : METADATA_FIELDS) {
+            if (entry.containsKey(field) && !isStringOrNull(entry.get(field))) {
+                return new Item(index, did, null, "'%s' must be a string".formatted(field));
+            }
+        }
+        var credentialTypes = new HashSet<String>();
+        if (entry.containsKey("credentialTypes")) {
+            var types = entry.get("credentialTypes");
+            if (types.getValueType() != JsonValue.ValueType.ARRAY) {
+                return new Item(index, did, null, "'credentialTypes' must be an array of strings");
+            }
+            for (var type : types.asJsonArray()) {
+                if (!(type instanceof JsonString typeString) || typeString.getString().isBlank()) {
+                    return new Item(index, did, null, "'credentialTypes' must be an array of strings");
+                }
+                credentialTypes.add(typeString.getString());
+            }
+        } else {
+            credentialTypes.add(WILDCARD);
+        }
+        var record = new TrustedIssuerRecord(did, string(entry, "name"), string(entry, "organization"), string(entry, "email"),
+                string(entry, "dspEndpoint"), string(entry, "participantDid"), credentialTypes);
+        return new Item(index, did, new DynamicTrustedIssuerRegistry.Change(did, record), null);
+    }
+
+    private static boolean isStringOrNull(JsonValue value) {
+        return value.getValueType() == JsonValue.ValueType.STRING || value.getValueType() == JsonValue.ValueType.NULL;
+    }
+
+    // blank strings count as absent, as in the export
+    private static String string(JsonObject entry, String field) {
+        var value = entry.get(field);
+        if (!(value instanceof JsonString string) || string.getString().isBlank()) {
+            return null;
+        }
+        return string.getString();
+    }
+}
@@ -0,0 +1,93 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import jakarta.json.Json;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Streams the issuer health as server-sent events: first a {@code status} event per issuer probed so far, then one
+ * whenever an issuer's status changes, until the client goes away.
+ * <p>
+ * A client that falls more than {@code MAX_PENDING} changes behind is disconnected rather than buffered for; it gets
+ * the current statuses again when it reconnects. Each client holds a request thread for as long as it listens, which
+ * is why the controller limits how many listen at once.
+ */
+class TrustedIssuerHealthEvents implements StreamingOutput {
+
+    static final String MEDIA_TYPE = "text/event-stream";
+
+    private static final Duration KEEP_ALIVE = Duration.ofSeconds(15);
+    private static final int MAX_PENDING = 1024;
+
+    private final TrustedIssuerHealthMonitor healthMonitor;
+    private final Runnable onClose;
+
+    /**
+     * @param onClose run once the stream ends, however it ends
+     */
+    TrustedIssuerHealthEvents(TrustedIssuerHealthMonitor healthMonitor, Runnable onClose) {
+        this.healthMonitor = healthMonitor;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        var pending = new LinkedBlockingQueue<Map.Entry<String, TrustedIssuerHealthMonitor.Status>>(MAX_PENDING);
+        var overflowed = new AtomicBoolean();
+        BiConsumer<String, TrustedIssuerHealthMonitor.Status> listener = (did, status) -> {
+            if (!pending.offer(Map.entry(did, status))) {
+                overflowed.set(true);
+            }
+        };
+        // subscribed before the snapshot is taken, so a change made meanwhile may be sent twice but is never lost
+        healthMonitor.addListener(listener);
+        try {
+            var writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            for (var entry : healthMonitor.snapshot().entrySet()) {
+                writeEvent(writer, entry.getKey(), entry.getValue());
+            }
+            writer.flush();
+            while (!healthMonitor.isClosed() && !overflowed.get()) {
+                var change = pending.poll(KEEP_ALIVE.toMillis(), TimeUnit.MILLISECONDS);
+                if (change == null) {
+                    writer.write(": keep-alive\n\n");
+                } else {
+                    writeEvent(writer, change.getKey(), change.getValue());
+                    drain(pending, writer);
+                }
+                writer.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            healthMonitor.removeListener(listener);
+            onClose.run();
+        }
+    }
+
+    private static void drain(BlockingQueue<Map.Entry<String, TrustedIssuerHealthMonitor.Status>> pending, Writer writer) throws IOException {
+        Map.Entry<String, TrustedIssuerHealthMonitor.Status> change;
+        while ((change = pending.poll()) != null) {
+            writeEvent(writer, change.getKey(), change.getValue());
+        }
+    }
+
+    private static void writeEvent(Writer writer, String did, TrustedIssuerHealthMonitor.Status status) throws IOException {
+        var data = Json.createObjectBuilder(status.toJson()).add("did", did).build();
+        writer.write("event: status\ndata: ");
+        writer.write(data.toString());
+        writer.write("\n\n");
+    }
+}
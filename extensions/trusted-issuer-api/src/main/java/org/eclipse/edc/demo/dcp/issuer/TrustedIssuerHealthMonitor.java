@@ -0,0 +1,300 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import org.eclipse.edc.spi.monitor.Monitor;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Checks in the background whether the trusted issuers' connectors trust this one, so that the latest status of
+ * every issuer can be served at once.
+ * <p>
+ * An issuer with a DSP endpoint and participant DID is probed with a catalog request through the local management
+ * API: {@code mutual_trust} if it succeeds, otherwise a plain GET tells {@code untrusted} from {@code unreachable}.
+ * The first probe of an issuer is made shortly after it shows up in the registry, or after its endpoint changes, and
+ * it is probed again every refresh interval, varied by up to a fifth either way so that issuers added together do not
+ * stay in lockstep. Probes run on virtual threads where the JVM offers them, at most {@code concurrency} at a time.
+ * Listeners are told whenever the status of an issuer changes, and with {@link #REMOVED} when it is no longer probed.
+ */
+class TrustedIssuerHealthMonitor {
+
+    static final String REMOVED = "removed";
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(3);
+    private static final Duration CATALOG_TIMEOUT = Duration.ofSeconds(8);
+    private static final Duration SWEEP_INTERVAL = Duration.ofSeconds(1);
+    private static final double JITTER = 0.2;
+
+    private final DynamicTrustedIssuerRegistry registry;
+    private final Monitor monitor;
+    private final String managementBaseUrl;
+    private final String apiKey;
+    private final Duration interval;
+    private final int concurrency;
+    private final Clock clock;
+    private final HttpClient httpClient;
+    private final Semaphore permits;
+    private final Map<String, Status> statuses = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final CopyOnWriteArrayList<BiConsumer<String, Status>> listeners = new CopyOnWriteArrayList<>();
+    // only touched by the sweep thread
+    private final Map<String, Target> targets = new HashMap<>();
+
+    private ScheduledExecutorService sweeper;
+    private ExecutorService probes;
+    private volatile boolean closed;
+
+    /**
+     * The latest status of an issuer.
+     *
+     * @param checkedAt when it was last probed
+     * @param since     when the status became what it is
+     */
+    record Status(String status, Instant checkedAt, Instant since) {
+
+        JsonObject toJson() {
+            return Json.createObjectBuilder()
+                    .add("status", status)
+                    .add("checkedAt", checkedAt.toString())
+                    .add("since", since.toString())
+                    .build();
+        }
+    }
+
+    private static final class Target {
+        private final String dspEndpoint;
+        private final String participantDid;
+        private long due;
+
+        private Target(String dspEndpoint, String participantDid, long due) {
+            this.dspEndpoint = dspEndpoint;
+            this.participantDid = participantDid;
+            this.due = due;
+        }
+
+        private boolean matches(TrustedIssuerRecord record) {
+            return dspEndpoint.equals(record.getDspEndpoint()) && participantDid.equals(record.getParticipantDid());
+        }
+    }
+
+    TrustedIssuerHealthMonitor(DynamicTrustedIssuerRegistry registry, Monitor monitor, String managementBaseUrl, String apiKey,
+                               Duration interval, int concurrency, Clock clock) {
+        this.registry = registry;
+        this.monitor = monitor;
+        this.managementBaseUrl = managementBaseUrl;
+        this.apiKey = apiKey;
+        this.interval = interval;
+        this.concurrency = concurrency;
+        this.clock = clock;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+        this.permits = new Semaphore(concurrency);
+    }
+
+    void start() {
+        probes = probeExecutor();
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "trusted-issuer-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, 0, SWEEP_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void close() {
+        closed = true;
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        if (probes != null) {
+            probes.shutdownNow();
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * The latest status of every issuer probed so far, by DID.
+     */
+    Map<String, Status> snapshot() {
+        return new TreeMap<>(statuses);
+    }
+
+    void addListener(BiConsumer<String, Status> listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(BiConsumer<String, Status> listener) {
+        listeners.remove(listener);
+    }
+
+    private void sweep() {
+        try {
+            var issuers = registry.getAll();
+            targets.keySet().removeIf(did -> !isProbed(issuers.get(did)));
+            for (var did : statuses.keySet()) {
+                if (!isProbed(issuers.get(did)) && statuses.remove(did) != null) {
+                    var now = clock.instant();
+                    notifyListeners(did, new Status(REMOVED, now, now));
+                }
+            }
+            var now = System.nanoTime();
+            for (var record : issuers.values()) {
+                if (!isProbed(record)) {
+                    continue;
+                }
+                var target = targets.get(record.getDid());
+                if (target == null || !target.matches(record)) {
+                    var firstDelay = (long) (interval.toNanos() * JITTER * ThreadLocalRandom.current().nextDouble());
+                    targets.put(record.getDid(), new Target(record.getDspEndpoint(), record.getParticipantDid(), now + firstDelay));
+                } else if (now - target.due >= 0 && inFlight.add(record.getDid())) {
+                    var factor = 1 - JITTER + 2 * JITTER * ThreadLocalRandom.current().nextDouble();
+                    target.due = now + (long) (interval.toNanos() * factor);
+                    probes.execute(() -> probe(record.getDid(), target.dspEndpoint, target.participantDid));
+                }
+            }
+        } catch (RuntimeException e) {
+            // an exception would cancel the schedule
+            monitor.warning("Trusted issuer health sweep failed: %s".formatted(e.getMessage()));
+        }
+    }
+
+    private void probe(String did, String dspEndpoint, String participantDid) {
+        try {
+            permits.acquire();
+            String status;
+            try {
+                status = checkTrustStatus(dspEndpoint, participantDid);
+            } finally {
+                permits.release();
+            }
+            if (!closed && isProbed(registry.getAll().get(did))) {
+                update(did, status);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.remove(did);
+        }
+    }
+
+    private void update(String did, String status) {
+        var now = clock.instant();
+        var previous = statuses.get(did);
+        var changed = previous == null || !previous.status().equals(status);
+        var current = new Status(status, now, changed ? now : previous.since());
+        statuses.put(did, current);
+        if (changed) {
+            notifyListeners(did, current);
+        }
+    }
+
+    private void notifyListeners(String did, Status status) {
+        for (var listener : listeners) {
+            listener.accept(did, status);
+        }
+    }
+
+    private String checkTrustStatus(String dspEndpoint, String participantDid) throws InterruptedException {
+        // Attempt a real catalog request via the local management API
+        try {
+            var context = Json.createObjectBuilder()
+                    .add("@vocab", "https://w3id.org/edc/v0.0.1/ns/")
+                    .build();
+            var catalogBody = Json.createObjectBuilder()
+                    .add("@context", context)
+                    .add("@type", "CatalogRequest")
+                    .add("counterPartyAddress", dspEndpoint)
+                    .add("counterPartyId", participantDid)
+                    .add("protocol", "dataspace-protocol-http")
+                    .build().toString();
+            var request = HttpRequest.newBuilder()
+                    .uri(URI.create(managementBaseUrl + "/v3/catalog/request"))
+                    .timeout(CATALOG_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .header("x-api-key", apiKey)
+                    .POST(HttpRequest.BodyPublishers.ofString(catalogBody))
+                    .build();
+            var response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 200) {
+                return "mutual_trust";
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            monitor.debug("Catalog probe failed for %s: %s".formatted(dspEndpoint, e.getMessage()));
+        }
+
+        // Catalog failed — check if the DSP endpoint is at least reachable
+        if (isDspReachable(dspEndpoint)) {
+            return "untrusted";
+        }
+        return "unreachable";
+    }
+
+    private boolean isDspReachable(String url) throws InterruptedException {
+        try {
+            var request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .timeout(CONNECT_TIMEOUT)
+                    .GET()
+                    .build();
+            var response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() >= 200 && response.statusCode() < 500;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean isProbed(TrustedIssuerRecord record) {
+        return record != null && record.getDspEndpoint() != null && !record.getDspEndpoint().isBlank() &&
+                record.getParticipantDid() != null && !record.getParticipantDid().isBlank();
+    }
+
+    /**
+     * A virtual thread per probe; the modules are compiled for Java 17, so they are looked up reflectively, falling
+     * back to a pool of {@code concurrency} platform threads.
+     */
+    private ExecutorService probeExecutor() {
+        try {
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = Class.forName("java.lang.Thread$Builder$OfVirtual")
+                    .getMethod("name", String.class, long.class)
+                    .invoke(builder, "trusted-issuer-probe-", 1L);
+            var factory = (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            var counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(concurrency, runnable -> {
+                var thread = new Thread(runnable, "trusted-issuer-probe-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.persistence.EdcPersistenceException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * Persists the trusted issuer registry as a snapshot plus a write-ahead journal of the changes made since.
+ * <p>
+ * The snapshot is the JSON array of all issuers, kept at the configured persistence path. Every change appends one
+ * line to the journal next to it ({@code <path>.journal}): the full record of an added or updated issuer, or the DID
+ * of a removed one, so that replaying a line twice does no harm. A bulk change is one line holding all of its
+ * entries, so that it is replayed entirely or, if torn, not at all. A single writer thread appends whatever changes
+ * are queued and then syncs the file once for all of them (group commit). Once the journal holds enough entries, or
+ * periodically, the writer compacts it: the registry is written to a temporary file that atomically replaces the
+ * snapshot, and the journal starts over. Loading reads the snapshot and replays the journal on top of it; a last
+ * line torn by a crash is cut off, while an unreadable line followed by others means the journal is corrupt, and
+ * loading fails rather than dropping the changes after it.
+ * <p>
+ * A change whose entry cannot be written fails its {@link #await}; it stays in the registry and is persisted by the
+ * next successful compaction.
+ */
+class TrustedIssuerJournal {
+
+    private static final int MAX_BATCH = 1024;
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final Monitor monitor;
+    private final boolean syncWrites;
+    private final int compactionThreshold;
+    private final Duration compactionInterval;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean closed;
+    private FileChannel journal;
+    private int journalEntries;
+    private boolean compactionDue;
+    private long lastCompaction;
+    private Thread writer;
+
+    private record Entry(String line, int count, CompletableFuture<Void> written) {
+    }
+
+    TrustedIssuerJournal(Path snapshotPath, Monitor monitor, boolean syncWrites, int compactionThreshold, Duration compactionInterval) {
+        this.snapshotPath = snapshotPath;
+        this.journalPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".journal");
+        this.monitor = monitor;
+        this.syncWrites = syncWrites;
+        this.compactionThreshold = compactionThreshold;
+        this.compactionInterval = compactionInterval;
+    }
+
+    /**
+     * Reads the snapshot and replays the journal on top of it.
+     *
+     * @throws IOException if a file cannot be read, or holds an unreadable entry other than a torn last one
+     */
+    Map<String, TrustedIssuerRecord> load() throws IOException {
+        var issuers = new LinkedHashMap<String, TrustedIssuerRecord>();
+        if (Files.exists(snapshotPath)) {
+            var array = Json.createReader(new StringReader(Files.readString(snapshotPath))).readArray();
+            for (var item : array) {
+                var record = fromJson(item.asJsonObject());
+                issuers.put(record.getDid(), record);
+            }
+        }
+        if (Files.exists(journalPath)) {
+            var bytes = Files.readAllBytes(journalPath);
+            var start = 0;
+            var line = 0;
+            var replayed = 0;
+            while (start < bytes.length) {
+                var end = start;
+                while (end < bytes.length && bytes[end] != '\n') {
+                    end++;
+                }
+                line++;
+                var changes = new LinkedHashMap<String, TrustedIssuerRecord>();
+                try {
+                    var entry = Json.createReader(new StringReader(new String(bytes, start, end - start, StandardCharsets.UTF_8))).readObject();
+                    if (entry.containsKey("batch")) {
+                        for (var item : entry.getJsonArray("batch")) {
+                            read(item.asJsonObject(), changes);
+                        }
+                    } else {
+                        read(entry, changes);
+                    }
+                } catch (JsonException | ClassCastException | NullPointerException e) {
+                    if (end + 1 < bytes.length) {
+                        throw new IOException("Corrupt entry on line %d of %s: %s".formatted(line, journalPath, e.getMessage()), e);
+                    }
+                    // the last entry, torn by a crash while it was written
+                    break;
+                }
+                changes.forEach((did, record) -> {
+                    if (record != null) {
+                        issuers.put(did, record);
+                    } else {
+                        issuers.remove(did);
+                    }
+                });
+                replayed += changes.size();
+                start = end + 1;
+            }
+            if (start < bytes.length) {
+                monitor.warning("Discarding %d bytes of an incomplete entry at the end of %s".formatted(bytes.length - start, journalPath));
+                try (var channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                    channel.truncate(start);
+                    channel.force(true);
+                }
+            }
+            journalEntries = replayed;
+        }
+        return issuers;
+    }
+
+    /**
+     * Opens the journal for appending and starts the writer.
+     *
+     * @param state     the issuers currently in the registry, written out when the journal is compacted; the
+     *                  collection returned must not change afterwards
+     * @param exclusive held while the registry is read for compaction, keeps changes from being made meanwhile
+     */
+    void start(Supplier<Collection<TrustedIssuerRecord>> state, Lock exclusive) throws IOException {
+        Files.createDirectories(snapshotPath.toAbsolutePath().getParent());
+        journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        lastCompaction = System.nanoTime();
+        writer = new Thread(() -> run(state, exclusive), "trusted-issuer-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues an added or updated issuer. Must be called in the order the changes were made to the registry.
+     *
+     * @return completed once the entry is written, to {@link #await}
+     */
+    CompletableFuture<Void> put(TrustedIssuerRecord record) {
+        return append(putEntry(record).toString(), 1);
+    }
+
+    /**
+     * Queues a removed issuer.
+     *
+     * @return completed once the entry is written, to {@link #await}
+     */
+    CompletableFuture<Void> remove(String did) {
+        return append(removeEntry(did).toString(), 1);
+    }
+
+    /**
+     * Queues several changes as one entry, written and synced together. Each record is an added or updated issuer,
+     * each DID without a record a removed one.
+     *
+     * @return completed once the entry is written, to {@link #await}
+     */
+    CompletableFuture<Void> putAll(Map<String, TrustedIssuerRecord> changes) {
+        var batch = Json.createArrayBuilder();
+        changes.forEach((did, record) -> batch.add(record != null ? putEntry(record) : removeEntry(did)));
+        return append(Json.createObjectBuilder().add("batch", batch).build().toString(), changes.size());
+    }
+
+    /**
+     * Waits until the entry, and every one queued before it, has been written and synced, if writes are synchronous.
+     *
+     * @throws EdcPersistenceException if the entry could not be written
+     */
+    void await(CompletableFuture<Void> written) {
+        if (!syncWrites) {
+            return;
+        }
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new EdcPersistenceException("Change applied but not persisted: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Writes the remaining queued entries and stops the writer.
+     */
+    void close() {
+        closed = true;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            monitor.warning("Failed to close %s: %s".formatted(journalPath, e.getMessage()));
+        }
+        // entries the writer did not get to before it stopped
+        var rest = new ArrayList<Entry>();
+        queue.drainTo(rest);
+        rest.forEach(entry -> entry.written().completeExceptionally(new IOException("Journal closed")));
+    }
+
+    private CompletableFuture<Void> append(String line, int count) {
+        var written = new CompletableFuture<Void>();
+        queue.add(new Entry(line, count, written));
+        return written;
+    }
+
+    private void run(Supplier<Collection<TrustedIssuerRecord>> state, Lock exclusive) {
+        var batch = new ArrayList<Entry>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    write(batch);
+                    batch.clear();
+                }
+                var intervalElapsed = System.nanoTime() - lastCompaction >= compactionInterval.toNanos();
+                if (compactionDue || journalEntries >= compactionThreshold || (journalEntries > 0 && intervalElapsed)) {
+                    compact(state, exclusive);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        var text = new StringBuilder();
+        var count = 0;
+        for (var entry : batch) {
+            text.append(entry.line()).append('\n');
+            count += entry.count();
+        }
+        long position = -1;
+        try {
+            position = journal.size();
+            var buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journal.force(false);
+            journalEntries += count;
+        } catch (IOException e) {
+            // the changes are in memory, the next snapshot persists them
+            compactionDue = true;
+            monitor.warning("Failed to write %d trusted issuer changes to %s: %s".formatted(count, journalPath, e.getMessage()));
+            cutOff(position);
+            batch.forEach(entry -> entry.written().completeExceptionally(e));
+            return;
+        }
+        batch.forEach(entry -> entry.written().complete(null));
+    }
+
+    // drops what a failed write left behind, so that later entries do not follow a partial line
+    private void cutOff(long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            journal.truncate(position);
+        } catch (IOException e) {
+            monitor.warning("Failed to cut off a partial entry at the end of %s: %s".formatted(journalPath, e.getMessage()));
+        }
+    }
+
+    private void compact(Supplier<Collection<TrustedIssuerRecord>> state, Lock exclusive) {
+        Collection<TrustedIssuerRecord> records;
+        exclusive.lock();
+        try {
+            // every change made so far is either in the journal or still queued
+            var rest = new ArrayList<Entry>();
+            queue.drainTo(rest);
+            if (!rest.isEmpty()) {
+                write(rest);
+            }
+            records = state.get();
+        } finally {
+            exclusive.unlock();
+        }
+        var array = Json.createArrayBuilder();
+        records.forEach(record -> array.add(toJson(record)));
+        var snapshot = array.build().toString();
+        lastCompaction = System.nanoTime();
+        var temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try {
+            try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                var buffer = ByteBuffer.wrap(snapshot.getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            // a crash before this point replays the journal onto a snapshot that already contains it, which is harmless
+            journal.truncate(0);
+            journal.force(true);
+            journalEntries = 0;
+            compactionDue = false;
+        } catch (IOException e) {
+            compactionDue = true;
+            monitor.warning("Failed to write trusted issuer snapshot %s: %s".formatted(snapshotPath, e.getMessage()));
+        }
+    }
+
+    // the changes of an entry, a removed issuer as a null record
+    private static void read(JsonObject entry, Map<String, TrustedIssuerRecord> changes) {
+        if (entry.containsKey("issuer")) {
+            var record = fromJson(entry.getJsonObject("issuer"));
+            changes.put(record.getDid(), record);
+        } else {
+            changes.put(entry.getString("did"), null);
+        }
+    }
+
+    private static JsonObject putEntry(TrustedIssuerRecord record) {
+        return Json.createObjectBuilder().add("issuer", toJson(record)).build();
+    }
+
+    private static JsonObject removeEntry(String did) {
+        return Json.createObjectBuilder().add("did", did).build();
+    }
+
+    static JsonObject toJson(TrustedIssuerRecord record) {
+        var typesArray = Json.createArrayBuilder();
+        record.getCredentialTypes().forEach(typesArray::add);
+        return Json.createObjectBuilder()
+                .add("did", record.getDid())
+                .add("name", record.getName() != null ? record.getName() : "")
+                .add("organization", record.getOrganization() != null ? record.getOrganization() : "")
+                .add("email", record.getEmail() != null ? record.getEmail() : "")
+                .add("dspEndpoint", record.getDspEndpoint() != null ? record.getDspEndpoint() : "")
+                .add("participantDid", record.getParticipantDid() != null ? record.getParticipantDid() : "")
+                .add("credentialTypes", typesArray)
+                .build();
+    }
+
+    static TrustedIssuerRecord fromJson(JsonObject obj) {
+        var credentialTypes = new HashSet<String>();
+        if (obj.containsKey("credentialTypes")) {
+            for (var ct : obj.getJsonArray("credentialTypes")) {
+                credentialTypes.add(((JsonString) ct).getString());
+            }
+        }
+        return new TrustedIssuerRecord(obj.getString("did"), getStringOrNull(obj, "name"), getStringOrNull(obj, "organization"),
+                getStringOrNull(obj, "email"), getStringOrNull(obj, "dspEndpoint"), getStringOrNull(obj, "participantDid"), credentialTypes);
+    }
+
+    private static String getStringOrNull(JsonObject obj, String key) {
+        if (!obj.containsKey(key) || obj.isNull(key)) {
+            return null;
+        }
+        var value = obj.getString(key, "");
+        return value.isEmpty() ? null : value;
+    }
+}
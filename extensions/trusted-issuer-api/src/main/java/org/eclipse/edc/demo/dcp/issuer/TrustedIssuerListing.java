@@ -0,0 +1,134 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import jakarta.json.Json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.StringJoiner;
+
+/**
+ * The trusted issuers of one registry snapshot, sorted by DID, with every issuer already serialized.
+ * <p>
+ * A listing never changes once built, so the registry hands out the same one, and the full list as the same string,
+ * until its next change. Issuers whose record is the same as in the previous listing keep their JSON, so after a
+ * change only the changed issuers are serialized again. Filters are answered from the snapshot's indexes. Pages are
+ * cut by DID: a cursor names the last DID of the previous page, so pages stay consistent while issuers are added or
+ * removed between requests.
+ */
+final class TrustedIssuerListing {
+
+    private final TrustedIssuerSnapshot snapshot;
+    private final String etag;
+    // sorted by DID, at the same positions
+    private final String[] dids;
+    private final TrustedIssuerRecord[] records;
+    private final String[] json;
+    private final String all;
+
+    /**
+     * A page of issuers.
+     *
+     * @param nextCursor where the next page starts, {@code null} on the last page
+     */
+    record Page(String json, String nextCursor) {
+    }
+
+    /**
+     * @param previous the listing of an earlier snapshot, whose JSON is reused for the records still in this one, or
+     *                 {@code null}
+     */
+    TrustedIssuerListing(TrustedIssuerSnapshot snapshot, String epoch, TrustedIssuerListing previous) {
+        this.snapshot = snapshot;
+        this.etag = "\"%s-%d\"".formatted(epoch, snapshot.version());
+        var issuers = snapshot.issuers();
+        dids = new String[issuers.size()];
+        records = new TrustedIssuerRecord[dids.length];
+        json = new String[dids.length];
+        var joiner = new StringJoiner(",", "[", "]");
+        var i = 0;
+        // both listings are sorted by DID, so the previous one is walked alongside
+        var p = 0;
+        for (var entry : issuers.entrySet()) {
+            var did = entry.getKey();
+            var record = entry.getValue();
+            while (previous != null && p < previous.dids.length && previous.dids[p].compareTo(did) < 0) {
+                p++;
+            }
+            var reused = previous != null && p < previous.dids.length && previous.records[p] == record;
+            dids[i] = did;
+            records[i] = record;
+            json[i] = reused ? previous.json[p] : toJson(record);
+            joiner.add(json[i]);
+            i++;
+        }
+        this.all = joiner.toString();
+    }
+
+    long version() {
+        return snapshot.version();
+    }
+
+    /**
+     * The entity tag of every response built from this listing, quoted.
+     */
+    String etag() {
+        return etag;
+    }
+
+    /**
+     * All issuers as a JSON array.
+     */
+    String json() {
+        return all;
+    }
+
+    /**
+     * The issuers matching the filters, starting after the cursor.
+     *
+     * @param organization   only issuers of this organization, if not {@code null}
+     * @param credentialType only issuers trusted for this credential type, explicitly or as a wildcard, if not
+     *                       {@code null}
+     * @param cursor         the {@link Page#nextCursor()} of the previous page, or {@code null} for the first one
+     * @param limit          at most this many issuers, or all of them if {@code null}
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    Page page(String organization, String credentialType, String cursor, Integer limit) {
+        var matching = snapshot.query(organization, credentialType, cursor != null ? decodeCursor(cursor) : null);
+        var joiner = new StringJoiner(",", "[", "]");
+        var count = 0;
+        String last = null;
+        while (matching.hasNext()) {
+            var did = matching.next();
+            if (limit != null && count == limit) {
+                return new Page(joiner.toString(), encodeCursor(last));
+            }
+            joiner.add(json[Arrays.binarySearch(dids, did)]);
+            last = did;
+            count++;
+        }
+        return new Page(joiner.toString(), null);
+    }
+
+    private static String encodeCursor(String did) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(did.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    private static String toJson(TrustedIssuerRecord record) {
+        var typesArray = Json.createArrayBuilder();
+        record.getCredentialTypes().forEach(typesArray::add);
+        return Json.createObjectBuilder()
+                .add("did", record.getDid())
+                .add("credentialTypes", typesArray)
+                .add("name", record.getName() != null ? record.getName() : "")
+                .add("organization", record.getOrganization() != null ? record.getOrganization() : "")
+                .add("email", record.getEmail() != null ? record.getEmail() : "")
+                .add("dspEndpoint", record.getDspEndpoint() != null ? record.getDspEndpoint() : "")
+                .add("participantDid", record.getParticipantDid() != null ? record.getParticipantDid() : "")
+                .build().toString();
+    }
+}
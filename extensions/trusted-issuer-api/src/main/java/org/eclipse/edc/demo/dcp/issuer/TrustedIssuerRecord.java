@@ -1,8 +1,12 @@
 package org.eclipse.edc.demo.dcp.issuer;
 
+import java.util.Collections;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeSet;
 
+/**
+ * A trusted issuer. Records never change; the registry replaces them.
+ */
 public class TrustedIssuerRecord {
 
     private final String did;
@@ -14,13 +18,18 @@ public class TrustedIssuerRecord {
     private final Set<String> credentialTypes;
 
     public TrustedIssuerRecord(String did, String name, String organization, String email, String dspEndpoint, String participantDid) {
+        this(did, name, organization, email, dspEndpoint, participantDid, Set.of());
+    }
+
+    public TrustedIssuerRecord(String did, String name, String organization, String email, String dspEndpoint, String participantDid,
+                               Set<String> credentialTypes) {
         this.did = did;
         this.name = name;
         this.organization = organization;
         this.email = email;
         this.dspEndpoint = dspEndpoint;
         this.participantDid = participantDid;
-        this.credentialTypes = ConcurrentHashMap.newKeySet();
+        this.credentialTypes = Collections.unmodifiableSortedSet(new TreeSet<>(credentialTypes));
     }
 
     public String getDid() {
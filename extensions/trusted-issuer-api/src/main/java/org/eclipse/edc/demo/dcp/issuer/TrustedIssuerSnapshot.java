@@ -0,0 +1,231 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import static org.eclipse.edc.iam.verifiablecredentials.spi.validation.TrustedIssuerRegistry.WILDCARD;
+
+/**
+ * The trusted issuers at one registry version, with the DIDs indexed by credential type and by organization.
+ * <p>
+ * A snapshot never changes. The registry publishes a new one for every change, derived from the previous one: the
+ * issuers, the indexes and their DID sets are {@link PersistentSortedMap}s, so a change copies only the few nodes on
+ * the path to what it touches and shares everything else, in O(log n) per changed issuer. Readers therefore take no
+ * lock and always see the issuers, and both indexes, as of the same change. Issuers and index sets are sorted by DID.
+ */
+final class TrustedIssuerSnapshot {
+
+    static final TrustedIssuerSnapshot EMPTY = new TrustedIssuerSnapshot(0, PersistentSortedMap.empty(),
+            PersistentSortedMap.empty(), PersistentSortedMap.empty());
+
+    private final long version;
+    private final PersistentSortedMap<String, TrustedIssuerRecord> issuers;
+    // the DIDs of an index key, mapped to themselves
+    private final PersistentSortedMap<String, PersistentSortedMap<String, String>> byCredentialType;
+    private final PersistentSortedMap<String, PersistentSortedMap<String, String>> byOrganization;
+
+    private TrustedIssuerSnapshot(long version, PersistentSortedMap<String, TrustedIssuerRecord> issuers,
+                                  PersistentSortedMap<String, PersistentSortedMap<String, String>> byCredentialType,
+                                  PersistentSortedMap<String, PersistentSortedMap<String, String>> byOrganization) {
+        this.version = version;
+        this.issuers = issuers;
+        this.byCredentialType = byCredentialType;
+        this.byOrganization = byOrganization;
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * All issuers by DID, sorted by DID.
+     */
+    Map<String, TrustedIssuerRecord> issuers() {
+        return issuers;
+    }
+
+    TrustedIssuerRecord get(String did) {
+        return issuers.get(did);
+    }
+
+    /**
+     * The number of issuers per credential type.
+     */
+    Map<String, Integer> credentialTypeCounts() {
+        return counts(byCredentialType);
+    }
+
+    /**
+     * The number of issuers per organization.
+     */
+    Map<String, Integer> organizationCounts() {
+        return counts(byOrganization);
+    }
+
+    /**
+     * The DIDs of the issuers matching both filters, in order, found while iterating rather than collected upfront.
+     *
+     * @param organization   only issuers of this organization, if not {@code null}
+     * @param credentialType only issuers trusted for this credential type, explicitly or as a wildcard, if not
+     *                       {@code null}
+     * @param after          only DIDs greater than this one, if not {@code null}
+     * @return all DIDs if neither filter is given
+     */
+    Iterator<String> query(String organization, String credentialType, String after) {
+        if (organization == null && credentialType == null) {
+            return issuers.keysAfter(after);
+        }
+        var members = organization != null ? byOrganization.getOrDefault(organization, PersistentSortedMap.empty()) : null;
+        if (credentialType == null) {
+            return members.keysAfter(after);
+        }
+        var explicit = byCredentialType.getOrDefault(credentialType, PersistentSortedMap.empty());
+        var wildcard = WILDCARD.equals(credentialType) ? PersistentSortedMap.<String, String>empty()
+                : byCredentialType.getOrDefault(WILDCARD, PersistentSortedMap.empty());
+        if (members == null) {
+            return explicit.isEmpty() ? wildcard.keysAfter(after)
+                    : wildcard.isEmpty() ? explicit.keysAfter(after) : new Union(explicit.keysAfter(after), wildcard.keysAfter(after));
+        }
+        // walk the organization's DIDs if there are fewer of them, else the trusted ones
+        if (members.size() <= explicit.size() + wildcard.size()) {
+            return filter(members.keysAfter(after), did -> explicit.containsKey(did) || wildcard.containsKey(did));
+        }
+        return filter(new Union(explicit.keysAfter(after), wildcard.keysAfter(after)), members::containsKey);
+    }
+
+    /**
+     * A snapshot with the changes applied and the next version.
+     *
+     * @param changes the added or updated issuers by DID, {@code null} for removed ones
+     */
+    TrustedIssuerSnapshot with(Map<String, TrustedIssuerRecord> changes) {
+        var nextIssuers = issuers;
+        var nextByType = byCredentialType;
+        var nextByOrganization = byOrganization;
+        for (var change : changes.entrySet()) {
+            var did = change.getKey();
+            var updated = change.getValue();
+            var previous = nextIssuers.get(did);
+            nextIssuers = updated != null ? nextIssuers.with(did, updated) : nextIssuers.without(did);
+            if (previous != null) {
+                for (var type : previous.getCredentialTypes()) {
+                    if (updated == null || !updated.getCredentialTypes().contains(type)) {
+                        nextByType = unindex(nextByType, type, did);
+                    }
+                }
+                var organization = organization(previous);
+                if (organization != null && (updated == null || !organization.equals(organization(updated)))) {
+                    nextByOrganization = unindex(nextByOrganization, organization, did);
+                }
+            }
+            if (updated != null) {
+                for (var type : updated.getCredentialTypes()) {
+                    nextByType = index(nextByType, type, did);
+                }
+                if (organization(updated) != null) {
+                    nextByOrganization = index(nextByOrganization, organization(updated), did);
+                }
+            }
+        }
+        return new TrustedIssuerSnapshot(version + 1, nextIssuers, nextByType, nextByOrganization);
+    }
+
+    private static String organization(TrustedIssuerRecord record) {
+        var organization = record.getOrganization();
+        return organization != null && !organization.isBlank() ? organization : null;
+    }
+
+    private static PersistentSortedMap<String, PersistentSortedMap<String, String>> index(
+            PersistentSortedMap<String, PersistentSortedMap<String, String>> index, String key, String did) {
+        var dids = index.getOrDefault(key, PersistentSortedMap.empty());
+        return dids.containsKey(did) ? index : index.with(key, dids.with(did, did));
+    }
+
+    private static PersistentSortedMap<String, PersistentSortedMap<String, String>> unindex(
+            PersistentSortedMap<String, PersistentSortedMap<String, String>> index, String key, String did) {
+        var dids = index.get(key);
+        if (dids == null) {
+            return index;
+        }
+        var remaining = dids.without(did);
+        return remaining.isEmpty() ? index.without(key) : index.with(key, remaining);
+    }
+
+    private static Iterator<String> filter(Iterator<String> dids, Predicate<String> predicate) {
+        return new Iterator<>() {
+            private String next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                var current = next;
+                next = advance();
+                return current;
+            }
+
+            private String advance() {
+                while (dids.hasNext()) {
+                    var did = dids.next();
+                    if (predicate.test(did)) {
+                        return did;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private static Map<String, Integer> counts(PersistentSortedMap<String, PersistentSortedMap<String, String>> index) {
+        var counts = new TreeMap<String, Integer>();
+        index.forEach((key, dids) -> counts.put(key, dids.size()));
+        return counts;
+    }
+
+    /**
+     * The DIDs of two sorted iterators, in order and without duplicates.
+     */
+    private static final class Union implements Iterator<String> {
+        private final Iterator<String> first;
+        private final Iterator<String> second;
+        private String nextOfFirst;
+        private String nextOfSecond;
+
+        Union(Iterator<String> first, Iterator<String> second) {
+            this.first = first;
+            this.second = second;
+            this.nextOfFirst = first.hasNext() ? first.next() : null;
+            this.nextOfSecond = second.hasNext() ? second.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextOfFirst != null || nextOfSecond != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            var comparison = nextOfFirst == null ? 1 : nextOfSecond == null ? -1 : nextOfFirst.compareTo(nextOfSecond);
+            var next = comparison <= 0 ? nextOfFirst : nextOfSecond;
+            if (comparison <= 0) {
+                nextOfFirst = first.hasNext() ? first.next() : null;
+            }
+            if (comparison >= 0) {
+                nextOfSecond = second.hasNext() ? second.next() : null;
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks the map against a {@link TreeMap} that gets the same changes.
+ */
+class PersistentSortedMapTest {
+
+    @Test
+    void randomChanges_matchTreeMap() {
+        var random = new Random(42);
+        var map = PersistentSortedMap.<Integer, String>empty();
+        var oracle = new TreeMap<Integer, String>();
+        // earlier maps with what they held, which later changes must leave as they were
+        var earlier = new ArrayList<PersistentSortedMap<Integer, String>>();
+        var earlierContents = new ArrayList<TreeMap<Integer, String>>();
+        for (var i = 0; i < 20_000; i++) {
+            var key = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                map = map.without(key);
+                oracle.remove(key);
+            } else {
+                var value = "v" + random.nextInt(4);
+                map = map.with(key, value);
+                oracle.put(key, value);
+            }
+            assertEquals(oracle.size(), map.size());
+            assertEquals(oracle.get(key), map.get(key));
+            if (i % 1000 == 0) {
+                assertSameEntries(oracle, map);
+                earlier.add(map);
+                earlierContents.add(new TreeMap<>(oracle));
+            }
+        }
+        assertSameEntries(oracle, map);
+        for (var j = 0; j < earlier.size(); j++) {
+            assertSameEntries(earlierContents.get(j), earlier.get(j));
+        }
+    }
+
+    @Test
+    void removalOfNodesWithTwoChildren_matchesTreeMap() {
+        var map = PersistentSortedMap.<Integer, String>empty();
+        var oracle = new TreeMap<Integer, String>();
+        // inserted in this order, every inner node of the perfectly balanced tree has two children
+        for (var key : List.of(8, 4, 12, 2, 6, 10, 14, 1, 3, 5, 7, 9, 11, 13, 15)) {
+            map = map.with(key, "v" + key);
+            oracle.put(key, "v" + key);
+        }
+        // the root, then inner nodes whose successor is a leaf or has a right child of its own
+        for (var key : List.of(8, 4, 12, 9, 2, 6)) {
+            map = map.without(key);
+            oracle.remove(key);
+            assertSameEntries(oracle, map);
+        }
+        for (var key : List.copyOf(oracle.keySet())) {
+            map = map.without(key);
+        }
+        assertSame(PersistentSortedMap.empty(), map);
+    }
+
+    @Test
+    void keysAfter_matchTailOfTreeMap() {
+        var random = new Random(7);
+        var map = PersistentSortedMap.<Integer, String>empty();
+        var oracle = new TreeMap<Integer, String>();
+        for (var i = 0; i < 300; i++) {
+            var key = random.nextInt(1000) * 2;
+            map = map.with(key, "v");
+            oracle.put(key, "v");
+        }
+        assertEquals(List.copyOf(oracle.keySet()), toList(map.keysAfter(null)));
+        // present and absent keys, and keys below and above all of them
+        for (var after = -1; after <= 2001; after++) {
+            assertEquals(List.copyOf(oracle.tailMap(after, false).keySet()), toList(map.keysAfter(after)), "after " + after);
+        }
+    }
+
+    @Test
+    void unchangedMap_returnedItself() {
+        var value = "v";
+        var map = PersistentSortedMap.<String, String>empty().with("a", value).with("b", value);
+
+        assertSame(map, map.with("a", value));
+        assertSame(map, map.without("c"));
+        assertNull(map.get(null));
+        assertFalse(map.containsKey(null));
+    }
+
+    private static <K, V> void assertSameEntries(TreeMap<K, V> expected, Map<K, V> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()));
+        assertEquals(expected, actual);
+    }
+
+    private static <T> List<T> toList(Iterator<T> iterator) {
+        var list = new ArrayList<T>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,272 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Calls the controller directly, on a registry without persistence.
+ */
+class TrustedIssuerApiControllerTest {
+
+    private final DynamicTrustedIssuerRegistry registry = new DynamicTrustedIssuerRegistry();
+    private final TrustedIssuerApiController controller = new TrustedIssuerApiController(registry, null, new Monitor() {
+    }, 100, 1);
+
+    @Test
+    void etag_stableAcrossNoOpChanges() {
+        registry.registerWithMetadata("did:web:a", "A", "Org A", null, null, null, Set.of("MembershipCredential"));
+        var etag = list(null).getHeaderString("ETag");
+
+        registry.registerWithMetadata("did:web:a", "A", "Org A", null, null, null, Set.of("MembershipCredential"));
+        registry.registerWithMetadata("did:web:a", "A", "Org A", null, null, null);
+        registry.applyAll(List.of(new DynamicTrustedIssuerRegistry.Change("did:web:a",
+                new TrustedIssuerRecord("did:web:a", "A", "Org A", null, null, null, Set.of()))));
+        registry.unregister("did:web:unknown");
+
+        assertEquals(etag, list(null).getHeaderString("ETag"));
+        registry.registerWithMetadata("did:web:a", "A", "Org B", null, null, null);
+        assertNotEquals(etag, list(null).getHeaderString("ETag"));
+    }
+
+    @Test
+    void matchingEtag_answeredWith304() {
+        registry.registerWithMetadata("did:web:a", "A", "Org A", null, null, null);
+        var etag = list(null).getHeaderString("ETag");
+
+        for (var ifNoneMatch : List.of(etag, "W/" + etag, "\"other\", " + etag, "*")) {
+            var response = list(ifNoneMatch);
+            assertEquals(304, response.getStatus(), ifNoneMatch);
+            assertEquals(etag, response.getHeaderString("ETag"));
+            assertNull(response.getEntity());
+        }
+        var paged = controller.listIssuers("Org A", null, null, 10, etag);
+        assertEquals(304, paged.getStatus(), "the entity tag covers every page and filter");
+
+        registry.registerWithMetadata("did:web:b", "B", "Org A", null, null, null);
+        var changed = list(etag);
+        assertEquals(200, changed.getStatus());
+        assertNotEquals(etag, changed.getHeaderString("ETag"));
+    }
+
+    @Test
+    void lastPage_hasNoNextCursor() {
+        for (var did : List.of("did:web:a", "did:web:b", "did:web:c", "did:web:d")) {
+            registry.registerWithMetadata(did, null, "Org A", null, null, null);
+        }
+
+        // a last page cut short, and a last page that is exactly full
+        assertEquals(List.of(List.of("did:web:a", "did:web:b", "did:web:c"), List.of("did:web:d")), pages(3));
+        assertEquals(List.of(List.of("did:web:a", "did:web:b"), List.of("did:web:c", "did:web:d")), pages(2));
+
+        var empty = page("Org Z", null, 2);
+        assertEquals(0, empty.getJsonArray("items").size());
+        assertTrue(empty.isNull("nextCursor"));
+    }
+
+    @Test
+    void pages_consistentWhileIssuersChange() {
+        for (var did : List.of("did:web:b", "did:web:d", "did:web:f", "did:web:h", "did:web:j", "did:web:l")) {
+            registry.registerWithMetadata(did, null, "Org A", null, null, null);
+        }
+
+        var first = page("Org A", null, 3);
+        assertEquals(List.of("did:web:b", "did:web:d", "did:web:f"), dids(first));
+        // before the cursor, after it, and removed after it
+        registry.registerWithMetadata("did:web:a", null, "Org A", null, null, null);
+        registry.registerWithMetadata("did:web:g", null, "Org A", null, null, null);
+        registry.unregister("did:web:h");
+        var second = page("Org A", first.getString("nextCursor"), 3);
+
+        assertEquals(List.of("did:web:g", "did:web:j", "did:web:l"), dids(second));
+        assertTrue(second.isNull("nextCursor"));
+    }
+
+    @Test
+    void invalidPageRequest_rejected() {
+        assertEquals(400, controller.listIssuers(null, null, null, 0, null).getStatus());
+        assertEquals(400, controller.listIssuers(null, null, "not base64!", 10, null).getStatus());
+    }
+
+    @Test
+    void ndjsonAndArray_readAlike() throws IOException {
+        var array = """
+                [{"did": "did:web:a", "organization": "Org A", "credentialTypes": ["MembershipCredential"]},
+                 {"did": "did:web:b", "op": "remove"},
+                 {"did": "did:web:c", "name": "C"}]
+                """;
+        var ndjson = """
+                {"did": "did:web:a", "organization": "Org A", "credentialTypes": ["MembershipCredential"]}
+
+                {"did": "did:web:b", "op": "remove"}
+                {"did": "did:web:c", "name": "C"}
+                """;
+
+        var fromArray = TrustedIssuerBulkReader.read(new StringReader(array), 100);
+        var fromNdjson = TrustedIssuerBulkReader.read(new StringReader(ndjson), 100);
+
+        assertEquals(describe(fromArray), describe(fromNdjson));
+        assertEquals(List.of("did:web:a [Org A] [MembershipCredential]", "did:web:b removed", "did:web:c [null] [*]"), describe(fromArray));
+    }
+
+    @Test
+    @Timeout(10)
+    void tooManyEntries_rejectedWith413WithoutReadingTheRest() {
+        // endless bodies, which are only answered if reading stops at the first surplus entry
+        var ndjson = bulk(endless("", "{\"did\": \"did:web:%d\"}\n"));
+        var array = bulk(endless("[", "{\"did\": \"did:web:%d\"},"));
+
+        for (var response : List.of(ndjson, array)) {
+            assertEquals(413, response.getStatus());
+            assertTrue(json(response).getString("error").contains("more than 100 entries"), json(response).toString());
+        }
+        assertTrue(registry.getAll().isEmpty());
+    }
+
+    @Test
+    void invalidEntry_nothingApplied() {
+        registry.registerWithMetadata("did:web:a", "A", "Org A", null, null, null);
+
+        for (var body : List.of("""
+                [{"did": "did:web:b"},
+                 {"did": "did:web:c", "credentialTypes": "MembershipCredential"},
+                 {"did": "did:web:a", "op": "remove"}]
+                """, """
+                {"did": "did:web:b"}
+                {"did": "did:web:c", "name":
+                {"did": "did:web:a", "op": "remove"}
+                """)) {
+            var response = bulk(body);
+            var result = json(response);
+
+            assertEquals(400, response.getStatus());
+            assertEquals(false, result.getBoolean("applied"));
+            assertEquals(List.of("not_applied", "invalid", "not_applied"), statuses(result));
+            assertTrue(result.getJsonArray("results").getJsonObject(1).containsKey("error"));
+        }
+        assertEquals(Set.of("did:web:a"), registry.getAll().keySet());
+    }
+
+    @Test
+    void malformedArray_rejected() {
+        var response = bulk("[{\"did\": \"did:web:a\"}, {\"did\": ");
+
+        assertEquals(400, response.getStatus());
+        assertTrue(registry.getAll().isEmpty());
+    }
+
+    @Test
+    void outcomes_reportedPerEntry() {
+        registry.registerWithMetadata("did:web:a", "A", "Org A", null, null, null, Set.of("MembershipCredential"));
+
+        var response = bulk("""
+                {"did": "did:web:a", "name": "A2", "organization": "Org A"}
+                {"did": "did:web:b", "organization": "Org B"}
+                {"did": "did:web:c", "op": "remove"}
+                {"did": "did:web:d"}
+                {"did": "did:web:d", "op": "remove"}
+                {"did": "did:web:b", "op": "remove"}
+                {"did": "did:web:b", "organization": "Org B2"}
+                """);
+        var result = json(response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(true, result.getBoolean("applied"));
+        assertEquals(List.of("updated", "added", "not_found", "added", "removed", "removed", "added"), statuses(result));
+        assertEquals(Set.of("did:web:a", "did:web:b"), registry.getAll().keySet());
+        assertEquals("A2", registry.getAll().get("did:web:a").getName());
+        assertEquals(Set.of("*", "MembershipCredential"), registry.getAll().get("did:web:a").getCredentialTypes());
+        assertEquals("Org B2", registry.getAll().get("did:web:b").getOrganization());
+    }
+
+    private Response bulk(String body) {
+        return bulk(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Response bulk(InputStream body) {
+        return controller.bulkImport(body);
+    }
+
+    /**
+     * A body of the prefix, then the entry format with ever increasing numbers, without end.
+     */
+    private static InputStream endless(String prefix, String entry) {
+        return new InputStream() {
+            private byte[] current = prefix.getBytes(StandardCharsets.UTF_8);
+            private int position;
+            private int next;
+
+            @Override
+            public int read() {
+                if (position == current.length) {
+                    current = entry.formatted(next++).getBytes(StandardCharsets.UTF_8);
+                    position = 0;
+                }
+                return current[position++];
+            }
+        };
+    }
+
+    private static List<String> describe(List<TrustedIssuerBulkReader.Item> items) {
+        return items.stream()
+                .map(item -> item.change().record() == null ? item.did() + " removed"
+                        : "%s [%s] %s".formatted(item.did(), item.change().record().getOrganization(), item.change().record().getCredentialTypes()))
+                .toList();
+    }
+
+    private static List<String> statuses(JsonObject result) {
+        return result.getJsonArray("results").stream()
+                .map(item -> item.asJsonObject().getString("status"))
+                .toList();
+    }
+
+    private static JsonObject json(Response response) {
+        return Json.createReader(new StringReader((String) response.getEntity())).readObject();
+    }
+
+    private Response list(String ifNoneMatch) {
+        return controller.listIssuers(null, null, null, null, ifNoneMatch);
+    }
+
+    private JsonObject page(String organization, String cursor, int limit) {
+        var response = controller.listIssuers(organization, null, cursor, limit, null);
+        assertEquals(200, response.getStatus());
+        return Json.createReader(new StringReader((String) response.getEntity())).readObject();
+    }
+
+    // the DIDs of every page, following the cursors
+    private List<List<String>> pages(int limit) {
+        var pages = new ArrayList<List<String>>();
+        String cursor = null;
+        do {
+            var page = page(null, cursor, limit);
+            pages.add(dids(page));
+            cursor = page.isNull("nextCursor") ? null : page.getString("nextCursor");
+        } while (cursor != null);
+        return pages;
+    }
+
+    private static List<String> dids(JsonObject page) {
+        return page.getJsonArray("items").stream()
+                .map(item -> ((JsonString) item.asJsonObject().get("did")).getString())
+                .toList();
+    }
+}
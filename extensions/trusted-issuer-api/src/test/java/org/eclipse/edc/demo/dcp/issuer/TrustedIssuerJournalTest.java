@@ -0,0 +1,178 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import jakarta.json.Json;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Loads journals written by hand into a temporary directory, the way a crash or a replay after a crash leaves them,
+ * and checks that a registry persisted through the journal reloads to the same issuers.
+ */
+class TrustedIssuerJournalTest {
+
+    private static final Monitor MONITOR = new Monitor() {
+    };
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void tornLastLine_cutOff() throws IOException {
+        var complete = put(issuer("did:web:a", "Org A")) + "\n" + put(issuer("did:web:b", "Org B")) + "\n";
+        writeJournal(complete + put(issuer("did:web:c", "Org C")).substring(0, 20));
+
+        var issuers = journal(100).load();
+
+        assertEquals(Set.of("did:web:a", "did:web:b"), issuers.keySet());
+        assertEquals(complete, Files.readString(journalPath()), "the torn line is truncated away");
+    }
+
+    @Test
+    void corruptLineFollowedByOthers_failsTheLoad() throws IOException {
+        writeJournal(put(issuer("did:web:a", "Org A")) + "\n"
+                + "{\"issuer\": {\"did\": \"did:web:x\"\n"
+                + put(issuer("did:web:b", "Org B")) + "\n");
+
+        var exception = assertThrows(IOException.class, () -> journal(100).load());
+
+        assertTrue(exception.getMessage().contains("line 2"), exception.getMessage());
+        assertTrue(Files.readString(journalPath()).contains("did:web:b"), "a corrupt journal is left as it is");
+    }
+
+    @Test
+    void duplicateEntries_replayedIdempotently() throws IOException {
+        // a crash between writing the snapshot and truncating the journal replays changes the snapshot already has
+        Files.writeString(snapshotPath(), Json.createArrayBuilder()
+                .add(TrustedIssuerJournal.toJson(issuer("did:web:a", "Org A v2")))
+                .add(TrustedIssuerJournal.toJson(issuer("did:web:c", "Org C")))
+                .build().toString());
+        writeJournal(put(issuer("did:web:a", "Org A v1")) + "\n"
+                + put(issuer("did:web:b", "Org B")) + "\n"
+                + remove("did:web:b") + "\n"
+                + remove("did:web:b") + "\n"
+                + put(issuer("did:web:a", "Org A v2")) + "\n"
+                + put(issuer("did:web:a", "Org A v2")) + "\n");
+
+        var issuers = journal(100).load();
+
+        assertEquals(Set.of("did:web:a", "did:web:c"), issuers.keySet());
+        assertEquals("Org A v2", issuers.get("did:web:a").getOrganization());
+        assertEquals(describe(issuers), describe(journal(100).load()), "loading again changes nothing");
+    }
+
+    @Test
+    void batch_replayedWholeOrNotAtAll() throws IOException {
+        var batch = Json.createObjectBuilder().add("batch", Json.createArrayBuilder()
+                .add(Json.createObjectBuilder().add("issuer", TrustedIssuerJournal.toJson(issuer("did:web:b", "Org B"))))
+                .add(Json.createObjectBuilder().add("did", "did:web:a"))
+                .add(Json.createObjectBuilder().add("issuer", TrustedIssuerJournal.toJson(issuer("did:web:c", "Org C")))))
+                .build().toString();
+        var torn = Json.createObjectBuilder().add("batch", Json.createArrayBuilder()
+                .add(Json.createObjectBuilder().add("did", "did:web:b"))
+                .add(Json.createObjectBuilder().add("did", "did:web:c")))
+                .build().toString();
+        writeJournal(put(issuer("did:web:a", "Org A")) + "\n" + batch + "\n" + torn.substring(0, torn.length() - 5));
+
+        var issuers = journal(100).load();
+
+        assertEquals(Set.of("did:web:b", "did:web:c"), issuers.keySet());
+    }
+
+    @Test
+    void compaction_reloadsToTheSameRegistry() throws IOException {
+        var registry = registry(1);
+        change(registry);
+        registry.close();
+
+        assertEquals(0, Files.size(journalPath()), "every change is compacted into the snapshot");
+        var reloaded = registry(1);
+        assertEquals(describe(registry.getAll()), describe(reloaded.getAll()));
+        reloaded.close();
+    }
+
+    @Test
+    void journalOnly_reloadsToTheSameRegistry() throws IOException {
+        var registry = registry(1000);
+        change(registry);
+        registry.close();
+
+        assertTrue(Files.notExists(snapshotPath()), "below the threshold nothing is compacted");
+        var reloaded = registry(1000);
+        assertEquals(describe(registry.getAll()), describe(reloaded.getAll()));
+        reloaded.close();
+    }
+
+    private DynamicTrustedIssuerRegistry registry(int compactionThreshold) {
+        var registry = new DynamicTrustedIssuerRegistry();
+        registry.configurePersistence(snapshotPath(), MONITOR, true, compactionThreshold, Duration.ofHours(1));
+        registry.load();
+        return registry;
+    }
+
+    // single changes, a bulk change and removals, some of them of the same issuers
+    private static void change(DynamicTrustedIssuerRegistry registry) {
+        registry.registerWithMetadata("did:web:a", "A", "Org A", "a@example.com", "https://a/dsp", "did:web:pa", Set.of("MembershipCredential"));
+        registry.registerWithMetadata("did:web:b", "B", "Org B", null, null, null);
+        registry.registerWithMetadata("did:web:a", "A2", "Org A", null, null, null, Set.of("DataProcessorCredential"));
+        registry.applyAll(List.of(
+                new DynamicTrustedIssuerRegistry.Change("did:web:c", issuer("did:web:c", "Org C")),
+                new DynamicTrustedIssuerRegistry.Change("did:web:b", null),
+                new DynamicTrustedIssuerRegistry.Change("did:web:d", issuer("did:web:d", "Org D"))));
+        registry.unregister("did:web:d");
+        registry.registerWithMetadata("did:web:e", "E", "Org E", null, null, null, Set.of("*"));
+    }
+
+    private TrustedIssuerJournal journal(int compactionThreshold) {
+        return new TrustedIssuerJournal(snapshotPath(), MONITOR, true, compactionThreshold, Duration.ofHours(1));
+    }
+
+    private Path snapshotPath() {
+        return directory.resolve("issuers.json");
+    }
+
+    private Path journalPath() {
+        return directory.resolve("issuers.json.journal");
+    }
+
+    private void writeJournal(String content) throws IOException {
+        Files.write(journalPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static TrustedIssuerRecord issuer(String did, String organization) {
+        return new TrustedIssuerRecord(did, did.substring(did.lastIndexOf(':') + 1), organization, null, null, null,
+                Set.of("MembershipCredential"));
+    }
+
+    private static String put(TrustedIssuerRecord record) {
+        return Json.createObjectBuilder().add("issuer", TrustedIssuerJournal.toJson(record)).build().toString();
+    }
+
+    private static String remove(String did) {
+        return Json.createObjectBuilder().add("did", did).build().toString();
+    }
+
+    // records do not implement equals, their fields are compared instead
+    private static Map<String, List<Object>> describe(Map<String, TrustedIssuerRecord> issuers) {
+        var described = new TreeMap<String, List<Object>>();
+        issuers.forEach((did, record) -> described.put(did, List.of(String.valueOf(record.getName()), String.valueOf(record.getOrganization()),
+                String.valueOf(record.getEmail()), String.valueOf(record.getDspEndpoint()), String.valueOf(record.getParticipantDid()),
+                new TreeSet<>(record.getCredentialTypes()))));
+        return described;
+    }
+}
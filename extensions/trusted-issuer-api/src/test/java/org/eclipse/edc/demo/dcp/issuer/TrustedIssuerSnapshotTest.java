@@ -0,0 +1,136 @@
+package org.eclipse.edc.demo.dcp.issuer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.eclipse.edc.iam.verifiablecredentials.spi.validation.TrustedIssuerRegistry.WILDCARD;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks the snapshot's queries and index counts against the issuers searched one by one, as issuers are added,
+ * move between organizations, gain and lose credential types, and are removed.
+ */
+class TrustedIssuerSnapshotTest {
+
+    private static final List<String> ORGANIZATIONS = Arrays.asList("Org A", "Org B", "Org C", " ", null);
+    private static final List<String> CREDENTIAL_TYPES = List.of("MembershipCredential", "DataProcessorCredential", "DismantlerCredential", WILDCARD);
+
+    @Test
+    void randomChanges_matchOracle() {
+        var random = new Random(42);
+        var snapshot = TrustedIssuerSnapshot.EMPTY;
+        var oracle = new TreeMap<String, TrustedIssuerRecord>();
+        for (var i = 0; i < 2_000; i++) {
+            var changes = new LinkedHashMap<String, TrustedIssuerRecord>();
+            for (var c = random.nextInt(3) + 1; c > 0; c--) {
+                var did = "did:web:" + random.nextInt(60);
+                changes.put(did, random.nextInt(4) == 0 ? null : issuer(did, random));
+            }
+            snapshot = snapshot.with(changes);
+            changes.forEach((did, record) -> {
+                if (record != null) {
+                    oracle.put(did, record);
+                } else {
+                    oracle.remove(did);
+                }
+            });
+            assertEquals(i + 1, snapshot.version());
+            if (i % 50 == 0) {
+                assertMatches(oracle, snapshot);
+            }
+        }
+        assertMatches(oracle, snapshot);
+    }
+
+    @Test
+    void changedOrganizationAndTypes_reindexed() {
+        var snapshot = TrustedIssuerSnapshot.EMPTY
+                .with(Map.of("did:web:a", new TrustedIssuerRecord("did:web:a", "A", "Org A", null, null, null, Set.of("MembershipCredential"))))
+                .with(Map.of("did:web:a", new TrustedIssuerRecord("did:web:a", "A", "Org B", null, null, null, Set.of("DataProcessorCredential"))));
+
+        assertEquals(Map.of("Org B", 1), snapshot.organizationCounts());
+        assertEquals(Map.of("DataProcessorCredential", 1), snapshot.credentialTypeCounts());
+        assertFalse(snapshot.query("Org A", null, null).hasNext());
+        assertFalse(snapshot.query(null, "MembershipCredential", null).hasNext());
+        assertEquals(List.of("did:web:a"), toList(snapshot.query("Org B", "DataProcessorCredential", null)));
+
+        var removal = new HashMap<String, TrustedIssuerRecord>();
+        removal.put("did:web:a", null);
+        var removed = snapshot.with(removal);
+
+        assertEquals(Map.of(), removed.organizationCounts());
+        assertEquals(Map.of(), removed.credentialTypeCounts());
+        assertEquals(List.of("did:web:a"), toList(snapshot.query(null, null, null)), "an earlier snapshot is unchanged");
+    }
+
+    private static void assertMatches(TreeMap<String, TrustedIssuerRecord> oracle, TrustedIssuerSnapshot snapshot) {
+        assertEquals(oracle.keySet(), snapshot.issuers().keySet());
+        assertEquals(List.copyOf(oracle.keySet()), new ArrayList<>(snapshot.issuers().keySet()));
+        var typeCounts = new TreeMap<String, Integer>();
+        var organizationCounts = new TreeMap<String, Integer>();
+        for (var record : oracle.values()) {
+            record.getCredentialTypes().forEach(type -> typeCounts.merge(type, 1, Integer::sum));
+            if (organization(record) != null) {
+                organizationCounts.merge(organization(record), 1, Integer::sum);
+            }
+        }
+        assertEquals(typeCounts, snapshot.credentialTypeCounts());
+        assertEquals(organizationCounts, snapshot.organizationCounts());
+
+        var organizations = new ArrayList<>(ORGANIZATIONS.subList(0, 3));
+        organizations.add(null);
+        organizations.add("Org Z");
+        var types = new ArrayList<>(CREDENTIAL_TYPES);
+        types.add(null);
+        types.add("UnknownCredential");
+        for (var organization : organizations) {
+            for (var type : types) {
+                for (var after : Arrays.asList(null, "did:web:", "did:web:3", "did:web:42", "did:web:9")) {
+                    var expected = oracle.values().stream()
+                            .filter(record -> after == null || record.getDid().compareTo(after) > 0)
+                            .filter(record -> organization == null || organization.equals(organization(record)))
+                            .filter(record -> type == null || record.getCredentialTypes().contains(type)
+                                    || (!WILDCARD.equals(type) && record.getCredentialTypes().contains(WILDCARD)))
+                            .map(TrustedIssuerRecord::getDid)
+                            .toList();
+                    assertEquals(expected, toList(snapshot.query(organization, type, after)),
+                            "organization %s, type %s, after %s".formatted(organization, type, after));
+                }
+            }
+        }
+    }
+
+    private static TrustedIssuerRecord issuer(String did, Random random) {
+        var types = new HashSet<String>();
+        for (var type : CREDENTIAL_TYPES) {
+            // the wildcard rarely, so that the explicit types are not drowned by it
+            if (random.nextInt(WILDCARD.equals(type) ? 8 : 2) == 0) {
+                types.add(type);
+            }
+        }
+        return new TrustedIssuerRecord(did, null, ORGANIZATIONS.get(random.nextInt(ORGANIZATIONS.size())), null, null, null, types);
+    }
+
+    private static String organization(TrustedIssuerRecord record) {
+        var organization = record.getOrganization();
+        return organization != null && !organization.isBlank() ? organization : null;
+    }
+
+    private static List<String> toList(Iterator<String> iterator) {
+        var list = new ArrayList<String>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+}
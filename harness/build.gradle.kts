@@ -0,0 +1,26 @@
+plugins {
+    id("application")
+}
+
+dependencies {
+    implementation(libs.edc.spi.core)
+    implementation(libs.edc.junit)
+}
+
+application {
+    mainClass.set("org.eclipse.edc.demo.harness.ThroughputHarness")
+}
+
+tasks.named<JavaExec>("run") {
+    // the embedded runtimes resolve their classpaths through ./gradlew, so run from the repository root; their
+    // classpaths reference the jars of the project modules, which therefore have to be built first
+    workingDir = rootDir
+    dependsOn(":extensions:dataplane-public-endpoint:jar")
+    listOf("harness.flows", "harness.concurrency", "harness.payload.size", "harness.poll.interval", "harness.timeout")
+            .forEach { name -> providers.gradleProperty(name).orNull?.let { systemProperty(name, it) } }
+    systemProperty("harness.report", layout.buildDirectory.file("harness/report.json").get().asFile.path)
+}
+
+edcBuild {
+    publish.set(false)
+}
@@ -0,0 +1,15 @@
+plugins {
+    `java-library`
+}
+
+// control plane of the throughput harness: in-memory stores and vault, mock identity instead of DCP
+dependencies {
+    runtimeOnly(libs.edc.bom.controlplane.base)
+    runtimeOnly("org.eclipse.edc:iam-mock:${libs.versions.edc.get()}")
+    runtimeOnly("org.eclipse.edc:data-plane-selector-core:${libs.versions.edc.get()}")
+    runtimeOnly("org.eclipse.edc:data-plane-selector-control-api:${libs.versions.edc.get()}")
+}
+
+edcBuild {
+    publish.set(false)
+}
@@ -0,0 +1,15 @@
+plugins {
+    `java-library`
+}
+
+// data plane of the throughput harness: in-memory stores and vault
+dependencies {
+    runtimeOnly(libs.edc.bom.dataplane)
+    runtimeOnly(project(":extensions:dataplane-public-endpoint"))
+    runtimeOnly(libs.edc.participant.context.config.core)
+    runtimeOnly(libs.edc.participant.context.single.core)
+}
+
+edcBuild {
+    publish.set(false)
+}
@@ -0,0 +1,240 @@
+package org.eclipse.edc.demo.harness;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The calls of {@code test-e2e.sh} against one participant's management API, with the JSON-LD bodies it sends.
+ */
+class ManagementApi {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Map<String, String> CONTEXT = Map.of("@vocab", "https://w3id.org/edc/v0.0.1/ns/");
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final String apiKey;
+    private final Duration pollInterval;
+    private final Duration timeout;
+
+    ManagementApi(HttpClient httpClient, String baseUrl, String apiKey, Duration pollInterval, Duration timeout) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+        this.pollInterval = pollInterval;
+        this.timeout = timeout;
+    }
+
+    void createAsset(String assetId, String sourceUrl) {
+        post("/v3/assets", Map.of(
+                "@context", CONTEXT,
+                "@id", assetId,
+                "properties", Map.of("name", assetId, "contenttype", "application/octet-stream"),
+                "dataAddress", Map.of("type", "HttpData", "baseUrl", sourceUrl)));
+    }
+
+    void createOpenPolicy(String policyId) {
+        post("/v3/policydefinitions", Map.of(
+                "@context", Map.of("@vocab", "https://w3id.org/edc/v0.0.1/ns/", "odrl", "http://www.w3.org/ns/odrl/2/"),
+                "@id", policyId,
+                "policy", Map.of(
+                        "@context", "http://www.w3.org/ns/odrl.jsonld",
+                        "@type", "Set",
+                        "permission", new Object[0],
+                        "prohibition", new Object[0],
+                        "obligation", new Object[0])));
+    }
+
+    void createContractDefinition(String contractDefinitionId, String policyId) {
+        post("/v3/contractdefinitions", Map.of(
+                "@context", CONTEXT,
+                "@id", contractDefinitionId,
+                "accessPolicyId", policyId,
+                "contractPolicyId", policyId,
+                "assetsSelector", new Object[0]));
+    }
+
+    /**
+     * Blocks until the provider has at least one data plane registered with its selector.
+     */
+    void awaitDataPlane() throws InterruptedException {
+        await("data plane registration", () -> {
+            var dataPlanes = get("/v3/dataplanes");
+            return dataPlanes != null && dataPlanes.isArray() && !dataPlanes.isEmpty() ? dataPlanes : null;
+        });
+    }
+
+    /**
+     * Requests the provider's catalog and returns the id of the offer for the given asset.
+     */
+    String requestOffer(String counterPartyAddress, String counterPartyId, String assetId) {
+        var catalog = post("/v3/catalog/request", Map.of(
+                "@context", CONTEXT,
+                "counterPartyAddress", counterPartyAddress,
+                "counterPartyId", counterPartyId,
+                "protocol", "dataspace-protocol-http"));
+        for (var dataset : elements(catalog.path("dcat:dataset"))) {
+            if (assetId.equals(dataset.path("@id").asText())) {
+                for (var offer : elements(dataset.path("odrl:hasPolicy"))) {
+                    return offer.path("@id").asText();
+                }
+            }
+        }
+        throw new IllegalStateException("Catalog holds no offer for asset " + assetId);
+    }
+
+    /**
+     * Negotiates the offer and returns the id of the resulting contract agreement.
+     */
+    String negotiate(String counterPartyAddress, String counterPartyId, String offerId, String assetId) throws InterruptedException {
+        var negotiation = post("/v3/contractnegotiations", Map.of(
+                "@context", CONTEXT,
+                "counterPartyAddress", counterPartyAddress,
+                "counterPartyId", counterPartyId,
+                "protocol", "dataspace-protocol-http",
+                "policy", Map.of(
+                        "@context", "http://www.w3.org/ns/odrl.jsonld",
+                        "@id", offerId,
+                        "@type", "Offer",
+                        "assigner", counterPartyId,
+                        "target", assetId,
+                        "permission", new Object[0],
+                        "prohibition", new Object[0],
+                        "obligation", new Object[0])));
+        var finalized = awaitState("/v3/contractnegotiations/" + negotiation.path("@id").asText(), "FINALIZED");
+        return finalized.path("contractAgreementId").asText();
+    }
+
+    /**
+     * Starts a pull transfer and returns its id once the transfer process has reached {@code STARTED}.
+     */
+    String startPullTransfer(String counterPartyAddress, String counterPartyId, String agreementId, String assetId) throws InterruptedException {
+        var transfer = post("/v3/transferprocesses", Map.of(
+                "@context", CONTEXT,
+                "counterPartyAddress", counterPartyAddress,
+                "counterPartyId", counterPartyId,
+                "protocol", "dataspace-protocol-http",
+                "contractId", agreementId,
+                "assetId", assetId,
+                "transferType", "HttpData-PULL"));
+        var transferId = transfer.path("@id").asText();
+        awaitState("/v3/transferprocesses/" + transferId, "STARTED");
+        return transferId;
+    }
+
+    /**
+     * Waits for the EDR of a started transfer and returns its data address, carrying {@code endpoint} and
+     * {@code authorization}.
+     */
+    JsonNode edrDataAddress(String transferId) throws InterruptedException {
+        return await("EDR of transfer " + transferId, () -> {
+            var dataAddress = get("/v3/edrs/" + transferId + "/dataaddress");
+            return dataAddress != null && dataAddress.hasNonNull("authorization") ? dataAddress : null;
+        });
+    }
+
+    private JsonNode awaitState(String path, String targetState) throws InterruptedException {
+        return await(path + " to reach " + targetState, () -> {
+            var entity = get(path);
+            var state = entity != null ? entity.path("state").asText() : "";
+            if ("TERMINATED".equals(state)) {
+                throw new IllegalStateException(path + " was terminated: " + entity.path("errorDetail").asText());
+            }
+            return targetState.equals(state) ? entity : null;
+        });
+    }
+
+    private JsonNode await(String description, Poll poll) throws InterruptedException {
+        var deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            var result = poll.attempt();
+            if (result != null) {
+                return result;
+            }
+            Thread.sleep(pollInterval.toMillis());
+        }
+        throw new IllegalStateException("Timed out after %ss waiting for %s".formatted(timeout.toSeconds(), description));
+    }
+
+    private JsonNode post(String path, Object body) {
+        try {
+            var request = request(path)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)))
+                    .build();
+            var response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() / 100 != 2 && response.statusCode() != 409) {
+                throw new IllegalStateException("POST %s returned %d: %s".formatted(path, response.statusCode(), text(response.body())));
+            }
+            return read(response.body());
+        } catch (IOException e) {
+            throw new IllegalStateException("POST " + path + " failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during POST " + path, e);
+        }
+    }
+
+    /**
+     * Returns the response entity, or {@code null} if it does not exist (yet).
+     */
+    private JsonNode get(String path) {
+        try {
+            var response = httpClient.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() == 404) {
+                response.body().close();
+                return null;
+            }
+            if (response.statusCode() / 100 != 2) {
+                throw new IllegalStateException("GET %s returned %d: %s".formatted(path, response.statusCode(), text(response.body())));
+            }
+            return read(response.body());
+        } catch (IOException e) {
+            throw new IllegalStateException("GET " + path + " failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during GET " + path, e);
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("X-Api-Key", apiKey)
+                .timeout(timeout);
+    }
+
+    private static JsonNode read(InputStream body) throws IOException {
+        try (body) {
+            var bytes = body.readAllBytes();
+            return bytes.length == 0 ? MAPPER.createObjectNode() : MAPPER.readTree(bytes);
+        }
+    }
+
+    private static String text(InputStream body) throws IOException {
+        try (body) {
+            return new String(body.readAllBytes());
+        }
+    }
+
+    /**
+     * The elements of a JSON-LD value that holds either a single object or an array of them.
+     */
+    private static Iterable<JsonNode> elements(JsonNode node) {
+        return node.isArray() ? node : node.isMissingNode() ? List.of() : List.of(node);
+    }
+
+    @FunctionalInterface
+    private interface Poll {
+        JsonNode attempt();
+    }
+}
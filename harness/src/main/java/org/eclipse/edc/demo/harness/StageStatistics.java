@@ -0,0 +1,66 @@
+package org.eclipse.edc.demo.harness;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and failures of one stage of the harness flows. Every sample is kept, so the percentiles are exact.
+ */
+class StageStatistics {
+
+    private final String name;
+    private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+    private final LongAdder failures = new LongAdder();
+
+    StageStatistics(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    void record(long startNanos) {
+        latencies.add(System.nanoTime() - startNanos);
+    }
+
+    void fail() {
+        failures.increment();
+    }
+
+    /**
+     * The summary of the stage, latencies in milliseconds.
+     */
+    Map<String, Object> summary() {
+        var sorted = new ArrayList<>(latencies);
+        sorted.sort(null);
+        var summary = new LinkedHashMap<String, Object>();
+        summary.put("count", sorted.size());
+        summary.put("failures", failures.sum());
+        summary.put("mean", millis(sorted.isEmpty() ? 0 : (long) sorted.stream().mapToLong(Long::longValue).average().orElse(0)));
+        summary.put("p50", millis(percentile(sorted, 0.50)));
+        summary.put("p90", millis(percentile(sorted, 0.90)));
+        summary.put("p99", millis(percentile(sorted, 0.99)));
+        summary.put("max", millis(sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1)));
+        return summary;
+    }
+
+    /**
+     * Nearest-rank percentile of an ascending list.
+     */
+    private static long percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        var rank = (int) Math.ceil(quantile * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -0,0 +1,329 @@
+package org.eclipse.edc.demo.harness;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.edc.junit.extensions.EmbeddedRuntime;
+import org.eclipse.edc.spi.system.configuration.ConfigFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Boots a provider control plane, the provider's data plane and a consumer control plane in this JVM and drives
+ * concurrent catalog, negotiation, transfer and pull flows between them, reporting throughput and per-stage latency.
+ * <p>
+ * The runtimes use in-memory stores and vault and the mock identity service, so no Docker, Postgres, Vault or
+ * IdentityHub is needed; the data source is a local stub. Settings are read from system properties:
+ * <ul>
+ *     <li>{@code harness.flows}: number of flows to run, default 100</li>
+ *     <li>{@code harness.concurrency}: number of flows in flight at a time, default 10</li>
+ *     <li>{@code harness.payload.size}: size of the pulled payload in bytes, default 1024</li>
+ *     <li>{@code harness.poll.interval}: interval of the state polls in milliseconds, default 20</li>
+ *     <li>{@code harness.timeout}: maximum time of each stage in seconds, default 60</li>
+ *     <li>{@code harness.report}: file to write the JSON report to, none by default</li>
+ * </ul>
+ */
+public final class ThroughputHarness {
+
+    private static final String API_KEY = "password";
+    private static final String PROVIDER_ID = "provider";
+    private static final String CONSUMER_ID = "consumer";
+    private static final String ASSET_ID = "harness-asset";
+
+    private ThroughputHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var flows = Integer.getInteger("harness.flows", 100);
+        var concurrency = Integer.getInteger("harness.concurrency", 10);
+        var payloadSize = Integer.getInteger("harness.payload.size", 1024);
+        var pollInterval = Duration.ofMillis(Long.getLong("harness.poll.interval", 20));
+        var timeout = Duration.ofSeconds(Long.getLong("harness.timeout", 60));
+        var reportFile = System.getProperty("harness.report");
+
+        var dataSource = startDataSource(payloadSize);
+        var keyDirectory = Files.createTempDirectory("harness-keys");
+        writeTokenKeys(keyDirectory);
+
+        var providerControlPlane = ports("web.http", "web.http.management", "web.http.protocol", "web.http.control");
+        var providerDataPlane = ports("web.http", "web.http.control", "web.http.public");
+        var consumerControlPlane = ports("web.http", "web.http.management", "web.http.protocol", "web.http.control");
+        var providerDsp = "http://localhost:%d/protocol".formatted(providerControlPlane.get("web.http.protocol"));
+
+        var runtimes = List.of(
+                runtime("provider-controlplane", ":harness:runtime-controlplane", controlPlaneConfiguration(PROVIDER_ID, providerControlPlane)),
+                runtime("provider-dataplane", ":harness:runtime-dataplane", dataPlaneConfiguration(providerDataPlane, providerControlPlane, keyDirectory)),
+                runtime("consumer-controlplane", ":harness:runtime-controlplane", controlPlaneConfiguration(CONSUMER_ID, consumerControlPlane)));
+        var booted = new ArrayList<EmbeddedRuntime>();
+        ExecutorService workers = null;
+        var exitCode = 0;
+        try {
+            for (var runtime : runtimes) {
+                runtime.boot(false);
+                booted.add(runtime);
+            }
+
+            var httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+            var provider = new ManagementApi(httpClient, managementUrl(providerControlPlane), API_KEY, pollInterval, timeout);
+            var consumer = new ManagementApi(httpClient, managementUrl(consumerControlPlane), API_KEY, pollInterval, timeout);
+            provider.createAsset(ASSET_ID, "http://localhost:%d/data".formatted(dataSource.getAddress().getPort()));
+            provider.createOpenPolicy("harness-policy");
+            provider.createContractDefinition("harness-contract-definition", "harness-policy");
+            provider.awaitDataPlane();
+
+            var stages = new LinkedHashMap<String, StageStatistics>();
+            for (var name : List.of("catalog", "negotiation", "transfer", "edr", "pull", "flow")) {
+                stages.put(name, new StageStatistics(name));
+            }
+            var completed = new LongAdder();
+            workers = Executors.newFixedThreadPool(concurrency);
+            var start = System.nanoTime();
+            for (var i = 0; i < flows; i++) {
+                workers.execute(() -> {
+                    if (runFlow(consumer, httpClient, providerDsp, payloadSize, timeout, stages)) {
+                        completed.increment();
+                    }
+                });
+            }
+            workers.shutdown();
+            if (!workers.awaitTermination(timeout.toSeconds() * (flows / Math.max(1, concurrency) + 5), TimeUnit.SECONDS)) {
+                System.err.println("Harness: flows still running after the overall timeout, reporting what finished");
+            }
+            var elapsed = System.nanoTime() - start;
+
+            var report = report(flows, concurrency, payloadSize, completed.sum(), elapsed, stages);
+            print(report, stages);
+            if (reportFile != null) {
+                var path = Path.of(reportFile);
+                Files.createDirectories(path.toAbsolutePath().getParent());
+                new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), report);
+                System.out.println("Report written to " + path.toAbsolutePath());
+            }
+            exitCode = completed.sum() < flows ? 1 : 0;
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+            for (var i = booted.size() - 1; i >= 0; i--) {
+                booted.get(i).shutdown();
+            }
+            dataSource.stop(0);
+        }
+        // the runtimes and the data source leave non-daemon threads behind
+        System.exit(exitCode);
+    }
+
+    /**
+     * Runs one catalog, negotiation, transfer and pull flow, recording each stage. Returns whether the flow completed.
+     */
+    private static boolean runFlow(ManagementApi consumer, HttpClient httpClient, String providerDsp, int payloadSize,
+                                   Duration timeout, Map<String, StageStatistics> stages) {
+        var flowStart = System.nanoTime();
+        var stage = stages.get("catalog");
+        try {
+            var stageStart = System.nanoTime();
+            var offerId = consumer.requestOffer(providerDsp, PROVIDER_ID, ASSET_ID);
+            stage.record(stageStart);
+
+            stage = stages.get("negotiation");
+            stageStart = System.nanoTime();
+            var agreementId = consumer.negotiate(providerDsp, PROVIDER_ID, offerId, ASSET_ID);
+            stage.record(stageStart);
+
+            stage = stages.get("transfer");
+            stageStart = System.nanoTime();
+            var transferId = consumer.startPullTransfer(providerDsp, PROVIDER_ID, agreementId, ASSET_ID);
+            stage.record(stageStart);
+
+            stage = stages.get("edr");
+            stageStart = System.nanoTime();
+            var edr = consumer.edrDataAddress(transferId);
+            stage.record(stageStart);
+
+            stage = stages.get("pull");
+            stageStart = System.nanoTime();
+            var request = HttpRequest.newBuilder(URI.create(edr.path("endpoint").asText()))
+                    .header("Authorization", "Bearer " + edr.path("authorization").asText())
+                    .timeout(timeout)
+                    .GET()
+                    .build();
+            var response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            var received = drain(response.body());
+            if (response.statusCode() != 200 || received != payloadSize) {
+                throw new IllegalStateException("Pull returned %d with %d of %d bytes".formatted(response.statusCode(), received, payloadSize));
+            }
+            stage.record(stageStart);
+
+            stages.get("flow").record(flowStart);
+            return true;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            stage.fail();
+            stages.get("flow").fail();
+            System.err.printf("Harness: %s stage failed: %s%n", stage.name(), e.getMessage());
+            return false;
+        }
+    }
+
+    private static Map<String, Object> report(int flows, int concurrency, int payloadSize, long completed, long elapsedNanos,
+                                              Map<String, StageStatistics> stages) {
+        var seconds = elapsedNanos / 1e9;
+        var report = new LinkedHashMap<String, Object>();
+        report.put("flows", flows);
+        report.put("concurrency", concurrency);
+        report.put("payloadSize", payloadSize);
+        report.put("completed", completed);
+        report.put("elapsedSeconds", Math.round(seconds * 1000) / 1000.0);
+        report.put("flowsPerSecond", Math.round(completed / seconds * 100) / 100.0);
+        var stageReport = new LinkedHashMap<String, Object>();
+        stages.forEach((name, statistics) -> stageReport.put(name, statistics.summary()));
+        report.put("stages", stageReport);
+        return report;
+    }
+
+    private static void print(Map<String, Object> report, Map<String, StageStatistics> stages) {
+        System.out.printf("%n%d of %d flows completed in %ss (%s flows/s, concurrency %d, payload %d bytes)%n%n",
+                report.get("completed"), report.get("flows"), report.get("elapsedSeconds"), report.get("flowsPerSecond"),
+                report.get("concurrency"), report.get("payloadSize"));
+        System.out.printf("%-12s %7s %8s %10s %10s %10s %10s %10s%n", "stage [ms]", "count", "failures", "mean", "p50", "p90", "p99", "max");
+        for (var statistics : stages.values()) {
+            var summary = statistics.summary();
+            System.out.printf("%-12s %7s %8s %10s %10s %10s %10s %10s%n", statistics.name(), summary.get("count"), summary.get("failures"),
+                    summary.get("mean"), summary.get("p50"), summary.get("p90"), summary.get("p99"), summary.get("max"));
+        }
+    }
+
+    private static EmbeddedRuntime runtime(String name, String module, Map<String, String> configuration) {
+        return new EmbeddedRuntime(name, module).configurationProvider(() -> ConfigFactory.fromMap(configuration));
+    }
+
+    private static Map<String, String> controlPlaneConfiguration(String participantId, Map<String, Integer> ports) {
+        var configuration = new HashMap<String, String>();
+        configuration.put("edc.participant.id", participantId);
+        configuration.put("edc.hostname", "localhost");
+        configuration.put("edc.api.auth.key", API_KEY);
+        configuration.put("edc.mock.region", "eu");
+        configuration.put("edc.dsp.callback.address", "http://localhost:%d/protocol".formatted(ports.get("web.http.protocol")));
+        // the state machines otherwise idle up to a second between iterations, which would dominate every stage
+        configuration.put("edc.negotiation.consumer.state-machine.iteration-wait-millis", "10");
+        configuration.put("edc.negotiation.provider.state-machine.iteration-wait-millis", "10");
+        configuration.put("edc.transfer.state-machine.iteration-wait-millis", "10");
+        webContexts(configuration, ports, Map.of("web.http", "/api", "web.http.management", "/management",
+                "web.http.protocol", "/protocol", "web.http.control", "/control"));
+        return configuration;
+    }
+
+    private static Map<String, String> dataPlaneConfiguration(Map<String, Integer> ports, Map<String, Integer> controlPlanePorts, Path keyDirectory) {
+        var configuration = new HashMap<String, String>();
+        configuration.put("edc.participant.id", PROVIDER_ID);
+        configuration.put("edc.hostname", "localhost");
+        configuration.put("edc.api.auth.key", API_KEY);
+        configuration.put("edc.dpf.selector.url", "http://localhost:%d/control/v1/dataplanes".formatted(controlPlanePorts.get("web.http.control")));
+        configuration.put("edc.dataplane.api.public.baseurl", "http://localhost:%d/public".formatted(ports.get("web.http.public")));
+        configuration.put("edc.transfer.proxy.token.signer.privatekey.alias", "private-key");
+        configuration.put("edc.transfer.proxy.token.verifier.publickey.alias", "public-key");
+        configuration.put("edc.transfer.proxy.token.signer.privatekey.path", keyDirectory.resolve("private-key.pem").toString());
+        configuration.put("edc.transfer.proxy.token.verifier.publickey.path", keyDirectory.resolve("public-key.pem").toString());
+        webContexts(configuration, ports, Map.of("web.http", "/api", "web.http.control", "/control", "web.http.public", "/public"));
+        return configuration;
+    }
+
+    private static void webContexts(Map<String, String> configuration, Map<String, Integer> ports, Map<String, String> paths) {
+        paths.forEach((context, path) -> {
+            configuration.put(context + ".port", String.valueOf(ports.get(context)));
+            configuration.put(context + ".path", path);
+        });
+    }
+
+    private static String managementUrl(Map<String, Integer> ports) {
+        return "http://localhost:%d/management".formatted(ports.get("web.http.management"));
+    }
+
+    /**
+     * Picks a free port for every web context.
+     */
+    private static Map<String, Integer> ports(String... contexts) throws IOException {
+        var ports = new HashMap<String, Integer>();
+        for (var context : contexts) {
+            try (var socket = new ServerSocket(0)) {
+                ports.put(context, socket.getLocalPort());
+            }
+        }
+        return ports;
+    }
+
+    /**
+     * Serves a fixed payload of the given size at {@code /data}, standing in for the provider's data source.
+     */
+    private static HttpServer startDataSource(int payloadSize) throws IOException {
+        var payload = new byte[payloadSize];
+        for (var i = 0; i < payload.length; i++) {
+            payload[i] = (byte) ('a' + i % 26);
+        }
+        var server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/data", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, payload.length);
+            try (var body = exchange.getResponseBody()) {
+                body.write(payload);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Generates the EC key pair the data plane signs and verifies EDR tokens with, as the PEM files
+     * {@code generate-keys.sh} would otherwise provide.
+     */
+    private static void writeTokenKeys(Path directory) throws IOException, GeneralSecurityException {
+        var generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        var keyPair = generator.generateKeyPair();
+        Files.writeString(directory.resolve("private-key.pem"), pem("PRIVATE KEY", keyPair.getPrivate().getEncoded()));
+        Files.writeString(directory.resolve("public-key.pem"), pem("PUBLIC KEY", keyPair.getPublic().getEncoded()));
+    }
+
+    private static String pem(String type, byte[] der) {
+        var encoder = Base64.getMimeEncoder(64, "\n".getBytes());
+        return "-----BEGIN %s-----%n%s%n-----END %s-----%n".formatted(type, encoder.encodeToString(der), type);
+    }
+
+    private static long drain(InputStream body) throws IOException {
+        try (body) {
+            var buffer = new byte[8192];
+            long total = 0;
+            for (int read; (read = body.read(buffer)) != -1; ) {
+                total += read;
+            }
+            return total;
+        }
+    }
+}
@@ -45,4 +45,11 @@ include(":extensions:dcp-patch")
 include(":extensions:trusted-issuer-api")
 include(":runtimes:controlplane")
 include(":runtimes:dataplane")
-include(":runtimes:identityhub")
\ No newline at end of file
+include(":runtimes:identityhub")
+// micro-benchmarks, run with ./gradlew :benchmarks:jmh
+include(":benchmarks")
+
+// in-process throughput harness, run with ./gradlew :harness:run
+include(":harness")
+include(":harness:runtime-controlplane")
+include(":harness:runtime-dataplane")